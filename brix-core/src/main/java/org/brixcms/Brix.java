@@ -21,13 +21,25 @@ import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.IApplicationListener;
 import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.RestartResponseException;
+import org.apache.wicket.ThreadContext;
 import org.apache.wicket.core.request.handler.IPageRequestHandler;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.protocol.https.HttpsConfig;
@@ -46,6 +58,8 @@ import org.brixcms.jcr.RepositoryInitializer;
 import org.brixcms.jcr.SessionBehavior;
 import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.base.EventUtil;
+import org.brixcms.jcr.base.event.EventsListener;
 import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.plugin.site.SitePlugin;
 import org.brixcms.plugin.site.SiteRootNode;
@@ -67,6 +81,8 @@ import org.brixcms.web.nodepage.PageParametersAwareEnabler;
 import org.brixcms.web.tile.pagetile.PageTile;
 import org.brixcms.workspace.Workspace;
 import org.brixcms.workspace.WorkspaceManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * TODO doc
@@ -90,6 +106,8 @@ public abstract class Brix {
             new MetaDataKey<Map<Brix, Map<Session, JcrSession>>>() {
             };
 
+    private static final Logger log = LoggerFactory.getLogger(Brix.class);
+
     private final BrixConfig config;
 
     /*
@@ -110,6 +128,11 @@ public abstract class Brix {
     private AuthorizationStrategy authorizationStrategy = null;
     private volatile Collection<Plugin> pluginCache;
     private volatile Map<String, Plugin> pluginByIdCache;
+    private final List<CacheInvalidationListener> cacheInvalidationListeners =
+            new CopyOnWriteArrayList<CacheInvalidationListener>();
+    private final List<EventsListener> eventsListeners = new CopyOnWriteArrayList<EventsListener>();
+    private final ConcurrentMap<String, Object> pendingWorkspaceInits = new ConcurrentHashMap<String, Object>();
+    private volatile InitializationReport initializationReport;
 
     public static Brix get() {
         Application application = Application.get();
@@ -287,6 +310,13 @@ public abstract class Brix {
            */
         application.getComponentOnConfigureListeners().add(new PageParametersAwareEnabler());
 
+        // stop background work together with the application
+        application.getApplicationListeners().add(new IApplicationListener() {
+            @Override
+            public void onBeforeDestroyed(Application application) {
+                destroy();
+            }
+        });
 
         // allow brix to handle any url that wicket cant
         // todo: make sure that BrixRequestMapper is changed so that it can work together with HttpsMapper, problem seems that
@@ -303,6 +333,18 @@ public abstract class Brix {
         config.getRegistry().register(loader, true);
     }
 
+    /**
+     * Stops the background threads of this instance. Called when the application this instance is attached to (see
+     * {@link #attachTo(WebApplication)}) is destroyed.
+     */
+    public void destroy() {
+        SitePlugin sitePlugin = SitePlugin.get(this);
+        if (sitePlugin != null) {
+            sitePlugin.getContentHashService().shutdown();
+        }
+        EventUtil.shutdownAsynchronousExecutor();
+    }
+
     public void attachRequestMapper(WebApplication application) {
         application.getRootRequestMapperAsCompound()
                 .add(new BrixRequestMapper(this, getHttpsConfig()));
@@ -330,7 +372,9 @@ public abstract class Brix {
     }
 
     /**
-     * Discards rendered markup for the specified workspace.
+     * Discards rendered markup, page responses and the site caches (see
+     * {@link SitePlugin#invalidateWorkspaceCaches(String)}) of the specified workspace, then notifies the registered
+     * {@link CacheInvalidationListener}s.
      *
      * @param workspace workspace whose markup should be discarded
      */
@@ -341,7 +385,46 @@ public abstract class Brix {
         SitePlugin sitePlugin = SitePlugin.get(this);
         if (sitePlugin != null) {
             sitePlugin.getMarkupCache().invalidateWorkspace(workspace);
+            sitePlugin.invalidateWorkspaceCaches(workspace);
+            sitePlugin.getOutputCache().invalidateWorkspace(workspace);
+        }
+        for (CacheInvalidationListener listener : cacheInvalidationListeners) {
+            listener.invalidateWorkspace(workspace);
+        }
+    }
+
+    /**
+     * Registers a listener that is notified by {@link #invalidateMarkupCache(String)}, so that plugins can discard
+     * their own data derived from workspace content.
+     *
+     * @param listener listener
+     */
+    public void addCacheInvalidationListener(CacheInvalidationListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener may not be null");
+        }
+        cacheInvalidationListeners.add(listener);
+    }
+
+    public void removeCacheInvalidationListener(CacheInvalidationListener listener) {
+        cacheInvalidationListeners.remove(listener);
+    }
+
+    /**
+     * Registers a listener that is added to every session wrapped by {@link #wrapSession(Session)}, so that plugins
+     * can observe the changes saved through Brix sessions.
+     *
+     * @param listener listener
+     */
+    public void addEventsListener(EventsListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener may not be null");
         }
+        eventsListeners.add(listener);
+    }
+
+    public void removeEventsListener(EventsListener listener) {
+        eventsListeners.remove(listener);
     }
 
     public void cleanWorkspace(JcrSession session) {
@@ -405,11 +488,21 @@ public abstract class Brix {
         return config.getWorkspaceManager();
     }
 
+    /**
+     * Runs the {@link RepositoryInitializer}s and initializes the workspaces. Workspaces are initialized on up to
+     * {@link BrixConfig#getWorkspaceInitThreads()} threads, a workspace that fails is reported and skipped. Workspaces
+     * of the {@link BrixConfig#getLazyWorkspaceTypes() lazy types} are initialized when a session for them is first
+     * requested.
+     *
+     * @see #getInitializationReport()
+     */
     public void initRepository() {
+        InitializationReport report = new InitializationReport();
         List<RepositoryInitializer> initializers = new ArrayList<RepositoryInitializer>();
         initializers.addAll(config.getRegistry().lookupCollection(RepositoryInitializer.POINT));
         initializers.addAll(config.getRegistry().lookupCollection(JcrNodeWrapperFactory.POINT));
 
+        long start = System.nanoTime();
         try {
             JcrSession s = getCurrentSession(null);
             for (RepositoryInitializer initializer : initializers) {
@@ -420,15 +513,129 @@ public abstract class Brix {
         } catch (RepositoryException e) {
             throw new RuntimeException("Couldn't initialize repository", e);
         }
+        report.addPhase("repository", System.nanoTime() - start);
 
+        start = System.nanoTime();
+        Set<String> lazyTypes = config.getLazyWorkspaceTypes();
+        List<Workspace> workspaces = new ArrayList<Workspace>();
         for (Workspace w : getWorkspaceManager().getWorkspaces()) {
-            JcrSession s = getCurrentSession(w.getId());
-            initWorkspace(w, s);
-            s.logout();
+            String type = w.getAttribute(WORKSPACE_ATTRIBUTE_TYPE);
+            if (type != null && lazyTypes.contains(type)) {
+                pendingWorkspaceInits.putIfAbsent(w.getId(), new Object());
+                report.addDeferred();
+            } else {
+                workspaces.add(w);
+            }
+        }
+        initWorkspaces(workspaces, report);
+        report.addPhase("workspaces", System.nanoTime() - start);
+
+        initializationReport = report;
+        log.info("Initialized repository: {}", report);
+    }
+
+    /**
+     * @return report of the last {@link #initRepository()} or <code>null</code> if it has not been called yet
+     */
+    public InitializationReport getInitializationReport() {
+        return initializationReport;
+    }
+
+    private void initWorkspaces(final List<Workspace> workspaces, final InitializationReport report) {
+        final AtomicInteger next = new AtomicInteger();
+        final Application application = Application.exists() ? Application.get() : null;
+        Runnable worker = new Runnable() {
+            public void run() {
+                // plugins may look up Brix through the application
+                boolean attach = application != null && !Application.exists();
+                if (attach) {
+                    ThreadContext.setApplication(application);
+                }
+                try {
+                    int index;
+                    while ((index = next.getAndIncrement()) < workspaces.size()) {
+                        Workspace workspace = workspaces.get(index);
+                        try {
+                            initWorkspaceInOwnSession(workspace);
+                            report.addInitialized();
+                        } catch (Exception e) {
+                            log.warn("Couldn't initialize workspace {}", workspace.getId(), e);
+                            report.addFailure(workspace.getId(), e);
+                        }
+                    }
+                } finally {
+                    if (attach) {
+                        ThreadContext.detach();
+                    }
+                }
+            }
+        };
+
+        int threads = Math.min(config.getWorkspaceInitThreads(), workspaces.size());
+        if (threads <= 1) {
+            worker.run();
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+            for (int i = 0; i < threads; ++i) {
+                futures.add(executor.submit(worker));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BrixException("Workspace initialization was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new BrixException("Workspace initialization failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void initWorkspaceInOwnSession(Workspace workspace) {
+        Session session = config.getSessionFactory().createSession(workspace.getId());
+        try {
+            initWorkspace(workspace, wrapSession(session));
+        } finally {
+            session.logout();
+        }
+    }
+
+    /**
+     * Initializes the workspace if its initialization has been deferred by {@link #initRepository()}.
+     */
+    private void initPendingWorkspace(String workspaceId) {
+        Object lock = pendingWorkspaceInits.get(workspaceId);
+        if (lock == null) {
+            return;
+        }
+        synchronized (lock) {
+            if (pendingWorkspaceInits.get(workspaceId) != lock) {
+                return;
+            }
+            try {
+                Workspace workspace = getWorkspaceManager().getWorkspace(workspaceId);
+                if (workspace != null) {
+                    long start = System.nanoTime();
+                    initWorkspaceInOwnSession(workspace);
+                    log.debug("Initialized workspace {} on first access in {} ms", workspaceId,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Couldn't initialize workspace {}", workspaceId, e);
+            } finally {
+                pendingWorkspaceInits.remove(workspaceId);
+            }
         }
     }
 
     public JcrSession getCurrentSession(String workspace) {
+        if (workspace != null && !pendingWorkspaceInits.isEmpty()) {
+            initPendingWorkspace(workspace);
+        }
         Session session = config.getSessionFactory().getCurrentSession(workspace);
         RequestCycle requestCycle = RequestCycle.get();
         if (requestCycle == null || session == null) {
@@ -457,7 +664,13 @@ public abstract class Brix {
 
     public JcrSession wrapSession(Session session) {
         SessionBehavior behavior = new SessionBehavior(this);
-        return JcrSession.Wrapper.wrap(session, behavior);
+        JcrSession wrapped = JcrSession.Wrapper.wrap(session, behavior);
+        if (wrapped != null) {
+            for (EventsListener listener : eventsListeners) {
+                wrapped.addEventsListener(listener);
+            }
+        }
+        return wrapped;
     }
 
     public void initWorkspace(org.brixcms.workspace.Workspace workspace, JcrSession session) {
@@ -517,4 +730,12 @@ public abstract class Brix {
     public HttpsConfig getHttpsConfig() {
         return new HttpsConfig(config.getHttpPort(), config.getHttpsPort());
     }
+
+    /**
+     * Notified when the content of a workspace was replaced outside the normal node save path, e.g. by publishing or
+     * restoring a snapshot, or when the workspace was deleted.
+     */
+    public interface CacheInvalidationListener {
+        void invalidateWorkspace(String workspace);
+    }
 }
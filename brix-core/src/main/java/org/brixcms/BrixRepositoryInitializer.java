@@ -22,6 +22,8 @@ import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.markup.MarkupCacheInvalidationListener;
 import org.brixcms.plugin.site.folder.FolderNodePlugin;
 import org.brixcms.plugin.site.page.tile.TileContainerFacet;
+import org.brixcms.plugin.site.resource.ContentHashSaveEventListener;
+import org.brixcms.web.SiteCacheInvalidationListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,6 +63,8 @@ public class BrixRepositoryInitializer implements RepositoryInitializer {
 
         EventUtil.registerSaveEventListener(new JcrEventListener());
         EventUtil.registerSaveEventListener(new MarkupCacheInvalidationListener(brix));
+        EventUtil.registerSaveEventListener(new SiteCacheInvalidationListener(brix));
+        EventUtil.registerSaveEventListener(new ContentHashSaveEventListener(brix));
 
         //register the unstructured brix:unstructured base so it can be used as mixin
         RepositoryUtil.registerBrixUnstructuredMixin(w);
@@ -0,0 +1,87 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings and outcome of {@link Brix#initRepository()}.
+ *
+ * @see Brix#getInitializationReport()
+ */
+public class InitializationReport {
+    private final Map<String, Duration> phases = new LinkedHashMap<String, Duration>();
+    private final Map<String, Exception> failures = new TreeMap<String, Exception>();
+    private int initializedCount;
+    private int deferredCount;
+
+    synchronized void addPhase(String name, long nanos) {
+        phases.put(name, Duration.ofNanos(nanos));
+    }
+
+    synchronized void addInitialized() {
+        ++initializedCount;
+    }
+
+    synchronized void addDeferred() {
+        ++deferredCount;
+    }
+
+    synchronized void addFailure(String workspace, Exception e) {
+        failures.put(workspace, e);
+    }
+
+    /**
+     * @return duration of each initialization phase in the order the phases ran
+     */
+    public synchronized Map<String, Duration> getPhases() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, Duration>(phases));
+    }
+
+    /**
+     * @return workspaces whose initialization failed, mapped to the failure
+     */
+    public synchronized Map<String, Exception> getFailures() {
+        return Collections.unmodifiableMap(new TreeMap<String, Exception>(failures));
+    }
+
+    public synchronized int getInitializedCount() {
+        return initializedCount;
+    }
+
+    /**
+     * @return number of workspaces left to be initialized on first access
+     */
+    public synchronized int getDeferredCount() {
+        return deferredCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, Duration> phase : phases.entrySet()) {
+            result.append(phase.getKey()).append('=').append(TimeUnit.NANOSECONDS.toMillis(phase.getValue().toNanos()))
+                    .append("ms, ");
+        }
+        return result.append("initialized=").append(initializedCount).append(", deferred=").append(deferredCount)
+                .append(", failed=").append(failures.size()).toString();
+    }
+}
@@ -14,6 +14,11 @@
 
 package org.brixcms.auth;
 
+/**
+ * Base class for actions. Actions are compared by identity unless a subclass opts in to value equality by implementing
+ * {@link #equals(Object)} and {@link #hashCode()} on top of {@link #valueEquals(Object)} and {@link #valueHashCode()},
+ * which lets {@link CachingAuthorizationStrategy} reuse decisions for equal actions.
+ */
 public abstract class AbstractAction implements Action {
     private final Context context;
 
@@ -24,4 +29,35 @@ public abstract class AbstractAction implements Action {
     public Context getContext() {
         return context;
     }
+
+    /**
+     * Returns whether the object is an action of the same class with the same context. Subclasses add the state they
+     * know about; a class opting in to value equality must compare its own state as well.
+     *
+     * @param obj
+     * @return
+     */
+    protected boolean valueEquals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return context == ((AbstractAction) obj).context;
+    }
+
+    /**
+     * @return hash code consistent with {@link #valueEquals(Object)}
+     */
+    protected int valueHashCode() {
+        return 31 * getClass().getName().hashCode() + (context != null ? context.hashCode() : 0);
+    }
+
+    /**
+     * Returns a value that is equal for equal actions and can be kept after the current request, e.g. one that does
+     * not reference nodes loaded by the request's sessions. Only used for actions with value equality.
+     *
+     * @return key or <code>null</code> if decisions for this action may not outlive the request
+     */
+    public Object getDetachedKey() {
+        return this;
+    }
 }
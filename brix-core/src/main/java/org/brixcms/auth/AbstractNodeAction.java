@@ -14,12 +14,19 @@
 
 package org.brixcms.auth;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.workspace.Workspace;
 
 
 public abstract class AbstractNodeAction extends AbstractAction {
     private final BrixNode node;
+    private Object nodeKey;
 
     public AbstractNodeAction(Context context, BrixNode node) {
         super(context);
@@ -35,6 +42,67 @@ public abstract class AbstractNodeAction extends AbstractAction {
         return "AbstractNodeAction{" + "node=" + node + "} " + super.toString();
     }
 
+    @Override
+    protected boolean valueEquals(Object obj) {
+        return super.valueEquals(obj) && Objects.equals(getNodeKey(), ((AbstractNodeAction) obj).getNodeKey());
+    }
+
+    @Override
+    protected int valueHashCode() {
+        return 31 * super.valueHashCode() + Objects.hashCode(getNodeKey());
+    }
+
+    /**
+     * Returns the class, context and node key (see {@link #getNodeKey(JcrNode)}) of this action. Subclasses with
+     * additional state must add it to the key.
+     */
+    @Override
+    public Object getDetachedKey() {
+        return newDetachedKey(getNodeKey(), getClass(), getContext());
+    }
+
+    /**
+     * Builds a detached key (see {@link #getDetachedKey()}) from the node key and other values identifying an action.
+     *
+     * @param nodeKey
+     * @param values
+     * @return key or <code>null</code> if the node key references the node itself
+     */
+    public static Object newDetachedKey(Object nodeKey, Object... values) {
+        if (nodeKey != null && !(nodeKey instanceof String)) {
+            return null;
+        }
+        List<Object> key = new ArrayList<Object>(Arrays.asList(values));
+        key.add(nodeKey);
+        return key;
+    }
+
+    private Object getNodeKey() {
+        if (nodeKey == null && node != null) {
+            nodeKey = getNodeKey(node);
+        }
+        return nodeKey;
+    }
+
+    /**
+     * Returns the value that identifies given node in action comparisons: its workspace name and path. The key is
+     * independent of the session the node was obtained from. Falls back to the node itself if the path is not
+     * available, e.g. because the node has been removed.
+     *
+     * @param node
+     * @return key or <code>null</code> if node is <code>null</code>
+     */
+    public static Object getNodeKey(JcrNode node) {
+        if (node == null) {
+            return null;
+        }
+        try {
+            return node.getSession().getWorkspace().getName() + ":" + node.getPath();
+        } catch (RuntimeException e) {
+            return node;
+        }
+    }
+
     public Workspace getWorkspace() {
         if (node == null) {
             return null;
@@ -14,6 +14,8 @@
 
 package org.brixcms.auth;
 
+import java.util.Objects;
+
 import org.brixcms.workspace.Workspace;
 
 
@@ -29,6 +31,16 @@ public abstract class AbstractWorkspaceAction extends AbstractAction {
         return workspace;
     }
 
+    @Override
+    protected boolean valueEquals(Object obj) {
+        return super.valueEquals(obj) && Objects.equals(workspace, ((AbstractWorkspaceAction) obj).workspace);
+    }
+
+    @Override
+    protected int valueHashCode() {
+        return 31 * super.valueHashCode() + Objects.hashCode(workspace);
+    }
+
     @Override
     public String toString() {
         return "AbstractWorkspaceAction{" + "workspace=" + workspace + "} " + super.toString();
@@ -0,0 +1,298 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.auth;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.Session;
+import org.apache.wicket.request.cycle.RequestCycle;
+
+/**
+ * Authorization strategy that remembers the decisions of the wrapped strategy for the duration of the current
+ * {@link RequestCycle}, so that the same question asked by many components of a page only reaches the wrapped strategy
+ * once. Decisions are looked up by action, so only actions that override {@link Object#equals(Object)} are cached;
+ * the Brix actions do. Actions compared by identity are passed to the wrapped strategy every time without being
+ * remembered.
+ * <p>
+ * Optionally decisions can also be kept in the Wicket {@link Session} for a short time, see
+ * {@link #setSessionCacheTtl(Duration)}. Only enable that tier if permission changes may take that long to become
+ * visible. The session tier is keyed by {@link AbstractAction#getDetachedKey()}, so it does not keep the nodes of
+ * node actions alive; actions without a detached key are only cached for the request. Outside of a request every call
+ * is passed to the wrapped strategy.
+ *
+ * <pre>
+ * public AuthorizationStrategy newAuthorizationStrategy() {
+ *     return new CachingAuthorizationStrategy(new MyAuthorizationStrategy());
+ * }
+ * </pre>
+ */
+public class CachingAuthorizationStrategy implements AuthorizationStrategy {
+    private static final MetaDataKey<Map<CachingAuthorizationStrategy, RequestCache>> REQUEST_CACHE_KEY =
+            new MetaDataKey<Map<CachingAuthorizationStrategy, RequestCache>>() {
+            };
+
+    private static final MetaDataKey<SessionCache> SESSION_CACHE_KEY = new MetaDataKey<SessionCache>() {
+    };
+
+    private static final ClassValue<Boolean> VALUE_EQUALITY = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    /**
+     * Upper bound of decisions kept per session and strategy, the session tier is cleared when it is exceeded
+     */
+    private static final int MAX_SESSION_ENTRIES = 1000;
+
+    private final AuthorizationStrategy delegate;
+    private volatile long sessionCacheTtlNanos;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder delegatedCalls = new LongAdder();
+
+    public CachingAuthorizationStrategy(AuthorizationStrategy delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Argument 'delegate' may not be null.");
+        }
+        this.delegate = delegate;
+    }
+
+    public AuthorizationStrategy getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Sets how long decisions are kept in the user's session in addition to the current request.
+     *
+     * @param ttl duration or <code>null</code> to only cache decisions for the current request (the default)
+     * @return this strategy
+     */
+    public CachingAuthorizationStrategy setSessionCacheTtl(Duration ttl) {
+        sessionCacheTtlNanos = ttl != null && !ttl.isNegative() ? ttl.toNanos() : 0;
+        return this;
+    }
+
+    public boolean isActionAuthorized(Action action) {
+        calls.increment();
+        RequestCycle requestCycle = RequestCycle.get();
+        if (requestCycle == null || action == null || !VALUE_EQUALITY.get(action.getClass())) {
+            return delegate(action);
+        }
+
+        RequestCache requestCache = getRequestCache(requestCycle);
+        ++requestCache.calls;
+        Boolean decision = requestCache.decisions.get(action);
+        if (decision != null) {
+            return decision;
+        }
+
+        Object sessionKey = action instanceof AbstractAction abstractAction ? abstractAction.getDetachedKey() : action;
+        Map<Object, SessionDecision> sessionDecisions = sessionKey != null ? getSessionDecisions() : null;
+        if (sessionDecisions != null) {
+            synchronized (sessionDecisions) {
+                SessionDecision cached = sessionDecisions.get(sessionKey);
+                if (cached != null && cached.expires - System.nanoTime() > 0) {
+                    requestCache.decisions.put(action, cached.authorized);
+                    return cached.authorized;
+                }
+            }
+        }
+
+        ++requestCache.delegatedCalls;
+        boolean authorized = delegate(action);
+        requestCache.decisions.put(action, authorized);
+        if (sessionDecisions != null) {
+            long now = System.nanoTime();
+            synchronized (sessionDecisions) {
+                if (sessionDecisions.size() >= MAX_SESSION_ENTRIES) {
+                    removeExpired(sessionDecisions, now);
+                    if (sessionDecisions.size() >= MAX_SESSION_ENTRIES) {
+                        sessionDecisions.clear();
+                    }
+                }
+                sessionDecisions.put(sessionKey, new SessionDecision(authorized, now + sessionCacheTtlNanos));
+            }
+        }
+        return authorized;
+    }
+
+    /**
+     * Discards the decisions cached for the current request and session, e.g. after the permissions of the current
+     * user have changed.
+     */
+    public void invalidate() {
+        RequestCycle requestCycle = RequestCycle.get();
+        if (requestCycle != null) {
+            Map<CachingAuthorizationStrategy, RequestCache> caches = requestCycle.getMetaData(REQUEST_CACHE_KEY);
+            if (caches != null) {
+                caches.remove(this);
+            }
+        }
+        if (Application.exists() && Session.exists()) {
+            SessionCache sessionCache = Session.get().getMetaData(SESSION_CACHE_KEY);
+            if (sessionCache != null) {
+                sessionCache.remove(this);
+            }
+        }
+    }
+
+    /**
+     * @return number of authorization checks made through this strategy
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * @return number of authorization checks that were passed to the wrapped strategy
+     */
+    public long getDelegatedCallCount() {
+        return delegatedCalls.sum();
+    }
+
+    /**
+     * @return number of authorization checks made through this strategy in the current request
+     */
+    public int getRequestCallCount() {
+        RequestCache requestCache = peekRequestCache();
+        return requestCache != null ? requestCache.calls : 0;
+    }
+
+    /**
+     * @return number of authorization checks that were passed to the wrapped strategy in the current request
+     */
+    public int getRequestDelegatedCallCount() {
+        RequestCache requestCache = peekRequestCache();
+        return requestCache != null ? requestCache.delegatedCalls : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "calls=" + getCallCount() + ", delegatedCalls=" + getDelegatedCallCount();
+    }
+
+    private boolean delegate(Action action) {
+        delegatedCalls.increment();
+        return delegate.isActionAuthorized(action);
+    }
+
+    private RequestCache peekRequestCache() {
+        RequestCycle requestCycle = RequestCycle.get();
+        if (requestCycle == null) {
+            return null;
+        }
+        Map<CachingAuthorizationStrategy, RequestCache> caches = requestCycle.getMetaData(REQUEST_CACHE_KEY);
+        return caches != null ? caches.get(this) : null;
+    }
+
+    private RequestCache getRequestCache(RequestCycle requestCycle) {
+        Map<CachingAuthorizationStrategy, RequestCache> caches = requestCycle.getMetaData(REQUEST_CACHE_KEY);
+        if (caches == null) {
+            caches = new IdentityHashMap<CachingAuthorizationStrategy, RequestCache>();
+            requestCycle.setMetaData(REQUEST_CACHE_KEY, caches);
+        }
+        RequestCache requestCache = caches.get(this);
+        if (requestCache == null) {
+            requestCache = new RequestCache();
+            caches.put(this, requestCache);
+        }
+        return requestCache;
+    }
+
+    private Map<Object, SessionDecision> getSessionDecisions() {
+        if (sessionCacheTtlNanos == 0 || !Application.exists() || !Session.exists()) {
+            return null;
+        }
+        Session session = Session.get();
+        if (session.isTemporary()) {
+            return null;
+        }
+        SessionCache sessionCache;
+        synchronized (session) {
+            sessionCache = session.getMetaData(SESSION_CACHE_KEY);
+            if (sessionCache == null) {
+                sessionCache = new SessionCache();
+                session.setMetaData(SESSION_CACHE_KEY, sessionCache);
+            }
+        }
+        return sessionCache.get(this);
+    }
+
+    private static void removeExpired(Map<Object, SessionDecision> decisions, long now) {
+        Iterator<SessionDecision> iterator = decisions.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expires - now <= 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class RequestCache {
+        private final Map<Action, Boolean> decisions = new HashMap<Action, Boolean>();
+        private int calls;
+        private int delegatedCalls;
+    }
+
+    private static final class SessionDecision {
+        private final boolean authorized;
+        private final long expires;
+
+        private SessionDecision(boolean authorized, long expires) {
+            this.authorized = authorized;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Holder of the session tier. The decisions are not replicated with the session, a deserialized session simply
+     * starts with an empty cache.
+     */
+    private static final class SessionCache implements Serializable {
+        private transient Map<CachingAuthorizationStrategy, Map<Object, SessionDecision>> decisions;
+
+        private synchronized Map<Object, SessionDecision> get(CachingAuthorizationStrategy strategy) {
+            if (decisions == null) {
+                decisions = new IdentityHashMap<CachingAuthorizationStrategy, Map<Object, SessionDecision>>();
+            }
+            Map<Object, SessionDecision> result = decisions.get(strategy);
+            if (result == null) {
+                result = new HashMap<Object, SessionDecision>();
+                decisions.put(strategy, result);
+            }
+            return result;
+        }
+
+        private synchronized void remove(CachingAuthorizationStrategy strategy) {
+            if (decisions != null) {
+                decisions.remove(strategy);
+            }
+        }
+    }
+}
@@ -20,4 +20,14 @@ public class ViewWorkspaceAction extends AbstractWorkspaceAction {
     public ViewWorkspaceAction(Context context, Workspace workspace) {
         super(context, workspace);
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || valueEquals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return valueHashCode();
+    }
 }
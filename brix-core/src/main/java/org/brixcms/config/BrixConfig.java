@@ -14,8 +14,16 @@
 
 package org.brixcms.config;
 
+import java.util.Collections;
+import java.util.Set;
+
 import org.brixcms.jcr.JcrSessionFactory;
+import org.brixcms.markup.CountingMarkupCacheStats;
+import org.brixcms.markup.MarkupCache;
+import org.brixcms.markup.MarkupCacheStats;
+import org.brixcms.plugin.site.resource.ContentHashService;
 import org.brixcms.registry.ExtensionPointRegistry;
+import org.brixcms.web.UriResolutionCache;
 import org.brixcms.workspace.WorkspaceManager;
 
 public class BrixConfig {
@@ -28,6 +36,22 @@ public class BrixConfig {
     private int httpPort = 80;
     private int httpsPort = 443;
 
+    private int uriResolutionCacheSize = UriResolutionCache.DEFAULT_MAX_ENTRIES;
+
+    private long markupCacheMaxWeight = MarkupCache.DEFAULT_MAX_WEIGHT;
+    private MarkupCacheStats markupCacheStats;
+
+    private int outputCacheSize = 0;
+    private boolean outputCacheGzip = false;
+
+    private boolean pageSizeMeasurement = false;
+
+    private int contentHashThreads = ContentHashService.DEFAULT_THREADS;
+    private int contentHashMaxPending = ContentHashService.DEFAULT_MAX_PENDING;
+
+    private int workspaceInitThreads = Math.min(8, Runtime.getRuntime().availableProcessors());
+    private Set<String> lazyWorkspaceTypes = Collections.emptySet();
+
     private final WorkspaceManager workspaceManager;
     private final JcrSessionFactory sessionFactory;
 
@@ -58,6 +82,169 @@ public class BrixConfig {
         this.httpsPort = httpsPort;
     }
 
+    public int getUriResolutionCacheSize() {
+        return uriResolutionCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of uri path resolutions cached per workspace. Must be set before the {@link
+     * org.brixcms.Brix} instance is created, <code>0</code> disables the cache.
+     *
+     * @param uriResolutionCacheSize maximum number of cached resolutions per workspace
+     */
+    public void setUriResolutionCacheSize(int uriResolutionCacheSize) {
+        if (uriResolutionCacheSize < 0) {
+            throw new IllegalArgumentException("Argument 'uriResolutionCacheSize' may not be negative");
+        }
+        this.uriResolutionCacheSize = uriResolutionCacheSize;
+    }
+
+    public long getMarkupCacheMaxWeight() {
+        return markupCacheMaxWeight;
+    }
+
+    /**
+     * Sets the maximum weight of the markup cache, measured in approximate bytes of generated markup across all
+     * workspaces. Must be set before the {@link org.brixcms.Brix} instance is created, <code>0</code> removes the
+     * limit.
+     *
+     * @param markupCacheMaxWeight maximum weight of cached markup
+     */
+    public void setMarkupCacheMaxWeight(long markupCacheMaxWeight) {
+        if (markupCacheMaxWeight < 0) {
+            throw new IllegalArgumentException("Argument 'markupCacheMaxWeight' may not be negative");
+        }
+        this.markupCacheMaxWeight = markupCacheMaxWeight;
+    }
+
+    public MarkupCacheStats getMarkupCacheStats() {
+        return markupCacheStats;
+    }
+
+    /**
+     * Sets the receiver of markup cache hits, misses, load times and evictions. Must be set before the {@link
+     * org.brixcms.Brix} instance is created, by default a {@link CountingMarkupCacheStats} is used.
+     *
+     * @param markupCacheStats markup cache statistics or <code>null</code> for the default
+     */
+    public void setMarkupCacheStats(MarkupCacheStats markupCacheStats) {
+        this.markupCacheStats = markupCacheStats;
+    }
+
+    public int getOutputCacheSize() {
+        return outputCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of anonymous page responses cached per workspace. Only pages whose tiles all declare
+     * themselves output cacheable are cached. Must be set before the {@link org.brixcms.Brix} instance is created,
+     * <code>0</code> (the default) disables the cache.
+     *
+     * @param outputCacheSize maximum number of cached responses per workspace
+     * @see org.brixcms.web.OutputCache
+     */
+    public void setOutputCacheSize(int outputCacheSize) {
+        if (outputCacheSize < 0) {
+            throw new IllegalArgumentException("Argument 'outputCacheSize' may not be negative");
+        }
+        this.outputCacheSize = outputCacheSize;
+    }
+
+    public boolean isOutputCacheGzip() {
+        return outputCacheGzip;
+    }
+
+    /**
+     * Keeps a gzip compressed copy of every cached page response, served to clients that accept gzip encoding. Must be
+     * set before the {@link org.brixcms.Brix} instance is created.
+     *
+     * @param outputCacheGzip whether cached responses should be compressed up front
+     */
+    public void setOutputCacheGzip(boolean outputCacheGzip) {
+        this.outputCacheGzip = outputCacheGzip;
+    }
+
+    public boolean isPageSizeMeasurement() {
+        return pageSizeMeasurement;
+    }
+
+    /**
+     * Enables logging of the serialized size of every {@link org.brixcms.web.nodepage.BrixNodeWebPage} at the end of
+     * the request, at debug level of the <code>org.brixcms.web.nodepage.PageSizeReporter</code> logger. Serializing
+     * pages twice is expensive, so this is meant for diagnosing the page store footprint only.
+     *
+     * @param pageSizeMeasurement whether serialized page sizes should be reported
+     */
+    public void setPageSizeMeasurement(boolean pageSizeMeasurement) {
+        this.pageSizeMeasurement = pageSizeMeasurement;
+    }
+
+    public int getContentHashThreads() {
+        return contentHashThreads;
+    }
+
+    /**
+     * Sets the number of threads computing resource content hashes (ETags) in the background. Must be set before the
+     * {@link org.brixcms.Brix} instance is created, <code>0</code> hashes resources on the request thread instead.
+     *
+     * @param contentHashThreads number of hashing threads
+     */
+    public void setContentHashThreads(int contentHashThreads) {
+        if (contentHashThreads < 0) {
+            throw new IllegalArgumentException("Argument 'contentHashThreads' may not be negative");
+        }
+        this.contentHashThreads = contentHashThreads;
+    }
+
+    public int getContentHashMaxPending() {
+        return contentHashMaxPending;
+    }
+
+    /**
+     * Sets the maximum number of resources waiting to be hashed in the background. Must be set before the {@link
+     * org.brixcms.Brix} instance is created.
+     *
+     * @param contentHashMaxPending maximum number of queued resources
+     */
+    public void setContentHashMaxPending(int contentHashMaxPending) {
+        if (contentHashMaxPending < 1) {
+            throw new IllegalArgumentException("Argument 'contentHashMaxPending' must be positive");
+        }
+        this.contentHashMaxPending = contentHashMaxPending;
+    }
+
+    public int getWorkspaceInitThreads() {
+        return workspaceInitThreads;
+    }
+
+    /**
+     * Sets the number of threads initializing workspaces in {@link org.brixcms.Brix#initRepository()}, each of them
+     * with its own session.
+     *
+     * @param workspaceInitThreads number of threads, <code>1</code> initializes the workspaces on the calling thread
+     */
+    public void setWorkspaceInitThreads(int workspaceInitThreads) {
+        if (workspaceInitThreads < 1) {
+            throw new IllegalArgumentException("Argument 'workspaceInitThreads' must be positive");
+        }
+        this.workspaceInitThreads = workspaceInitThreads;
+    }
+
+    public Set<String> getLazyWorkspaceTypes() {
+        return lazyWorkspaceTypes;
+    }
+
+    /**
+     * Sets the {@link org.brixcms.Brix#WORKSPACE_ATTRIBUTE_TYPE workspace types} that are not initialized by
+     * {@link org.brixcms.Brix#initRepository()} but when a session for them is first requested, e.g. snapshots that
+     * are rarely looked at.
+     *
+     * @param types workspace types
+     */
+    public void setLazyWorkspaceTypes(String... types) {
+        this.lazyWorkspaceTypes = Set.of(types);
+    }
+
     public UriMapper getMapper() {
         return mapper;
     }
@@ -0,0 +1,566 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.Item;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.brixcms.Brix;
+import org.brixcms.jcr.base.event.AddNodeEvent;
+import org.brixcms.jcr.base.event.ChangeChildNodesOrderEvent;
+import org.brixcms.jcr.base.event.ChangeNodeMixinsEvent;
+import org.brixcms.jcr.base.event.Event;
+import org.brixcms.jcr.base.event.EventsListener;
+import org.brixcms.jcr.base.event.MoveNodeEvent;
+import org.brixcms.jcr.base.event.RemoveNodeEvent;
+import org.brixcms.jcr.base.event.RemovePropertyEvent;
+import org.brixcms.jcr.base.event.SetPropertyEvent;
+import org.brixcms.jcr.exception.JcrException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent per-workspace journal of the nodes below the Brix root that have been created, modified, moved or
+ * deleted. Every entry gets a sequence number that grows by one within the workspace, so that a consumer can remember
+ * the last entry it has processed and later ask only for the newer ones.
+ * <p>
+ * The journal is stored in the journaled workspace itself, outside the Brix root so that it is neither cloned nor
+ * cleaned together with the content. Entries are written through separate sessions after the changes have been saved.
+ * Before the save a pending marker is written, it is removed together with the appended entries. When the entries can
+ * not be appended the journal is {@link #reset(String) reset}, and a marker left behind by a crash makes
+ * {@link #getEntries(String, long)} report a gap once it is older than {@link #PENDING_TIMEOUT}. Either way consumers
+ * fall back to a full copy instead of missing changes. Changes that bypass the session change log, such as XML
+ * imports and workspace clones, are not journaled.
+ *
+ * @see #newRecorder(Predicate)
+ */
+public class ChangeJournal {
+    private static final Logger log = LoggerFactory.getLogger(ChangeJournal.class);
+
+    public enum Type {
+        CREATED, MODIFIED, MOVED, DELETED
+    }
+
+    /**
+     * Single journaled change.
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final Type type;
+        private final String path;
+        private final String sourcePath;
+
+        public Entry(long sequence, Type type, String path, String sourcePath) {
+            this.sequence = sequence;
+            this.type = type;
+            this.path = path;
+            this.sourcePath = sourcePath;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return path of the changed node, for moved nodes the destination path
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return path a moved node had before the move, <code>null</code> for other changes
+         */
+        public String getSourcePath() {
+            return sourcePath;
+        }
+
+        @Override
+        public String toString() {
+            return sequence + " " + type + " " + (sourcePath != null ? sourcePath + " -> " : "") + path;
+        }
+    }
+
+    static final String NODE_NAME = Brix.NS_PREFIX + "journal";
+
+    private static final String NODE_PATH = "/" + NODE_NAME;
+
+    private static final String PROPERTY_ID = Brix.NS_PREFIX + "journalId";
+
+    private static final String PROPERTY_SEQUENCE = Brix.NS_PREFIX + "sequence";
+
+    private static final String PROPERTY_FIRST = Brix.NS_PREFIX + "first";
+
+    private static final String PROPERTY_TYPE = Brix.NS_PREFIX + "type";
+
+    private static final String PROPERTY_PATH = Brix.NS_PREFIX + "path";
+
+    private static final String PROPERTY_SOURCE_PATH = Brix.NS_PREFIX + "sourcePath";
+
+    private static final String PROPERTY_STARTED = Brix.NS_PREFIX + "started";
+
+    private static final String PENDING_PREFIX = "p";
+
+    /**
+     * Time after which a pending marker is considered to be left behind by a save whose changes were never journaled
+     */
+    public static final Duration PENDING_TIMEOUT = Duration.ofMinutes(10);
+
+    /**
+     * Number of entries kept below one bucket node
+     */
+    private static final int BUCKET_SIZE = 1000;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final int MAX_NESTED_SAVES = 16;
+
+    private final JcrSessionFactory sessionFactory;
+
+    private final String rootPath;
+
+    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * @param sessionFactory factory used to open the sessions the journal is read and written with
+     * @param rootPath       only changes of this node and its descendants are journaled
+     */
+    public ChangeJournal(JcrSessionFactory sessionFactory, String rootPath) {
+        if (sessionFactory == null) {
+            throw new IllegalArgumentException("Argument 'sessionFactory' may not be null.");
+        }
+        if (rootPath == null) {
+            throw new IllegalArgumentException("Argument 'rootPath' may not be null.");
+        }
+        this.sessionFactory = sessionFactory;
+        this.rootPath = rootPath;
+    }
+
+    /**
+     * Returns the identifier of the journal of given workspace. The identifier changes when the journal is lost
+     * together with the workspace content, sequence numbers are only comparable for the same identifier.
+     *
+     * @param workspace
+     * @return identifier or <code>null</code> if nothing has been journaled in the workspace yet
+     */
+    public String getJournalId(String workspace) {
+        return read(workspace, journal -> journal != null ? journal.getProperty(PROPERTY_ID).getString() : null);
+    }
+
+    /**
+     * @param workspace
+     * @return sequence of the latest entry or <code>0</code> if there is none
+     */
+    public long getSequence(String workspace) {
+        return read(workspace, journal -> journal != null ? journal.getProperty(PROPERTY_SEQUENCE).getLong() : 0L);
+    }
+
+    /**
+     * Returns the entries newer than the given sequence in the order they were journaled.
+     *
+     * @param workspace
+     * @param afterSequence sequence of the last entry that has already been processed
+     * @return entries or <code>null</code> if some of the requested entries have been {@link #trim(String, long)
+     *         trimmed}
+     */
+    public List<Entry> getEntries(String workspace, final long afterSequence) {
+        return read(workspace, journal -> {
+            List<Entry> result = new ArrayList<Entry>();
+            if (journal == null) {
+                return afterSequence == 0 ? result : null;
+            }
+            long last = journal.getProperty(PROPERTY_SEQUENCE).getLong();
+            if (afterSequence >= last) {
+                return result;
+            }
+            if (afterSequence + 1 < journal.getProperty(PROPERTY_FIRST).getLong() || hasStalePending(journal)) {
+                return null;
+            }
+            for (long bucket = (afterSequence + 1) / BUCKET_SIZE; bucket <= last / BUCKET_SIZE; ++bucket) {
+                String name = bucketName(bucket);
+                if (!journal.hasNode(name)) {
+                    continue;
+                }
+                NodeIterator entries = journal.getNode(name).getNodes();
+                while (entries.hasNext()) {
+                    Entry entry = toEntry(entries.nextNode());
+                    if (entry.getSequence() > afterSequence) {
+                        result.add(entry);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Appends the changes to the journal of given workspace.
+     *
+     * @param workspace
+     * @param changes   entries to append, their sequence numbers are ignored
+     * @return sequence of the last appended entry
+     */
+    public long append(String workspace, List<Entry> changes) {
+        return append(workspace, changes, null);
+    }
+
+    private long append(String workspace, List<Entry> changes, final String pending) {
+        synchronized (lock(workspace)) {
+            return write(workspace, journal -> {
+                if (pending != null && journal.hasNode(pending)) {
+                    journal.getNode(pending).remove();
+                }
+                long sequence = journal.getProperty(PROPERTY_SEQUENCE).getLong();
+                for (Entry change : changes) {
+                    ++sequence;
+                    String bucketName = bucketName(sequence / BUCKET_SIZE);
+                    Node bucket = journal.hasNode(bucketName) ? journal.getNode(bucketName) :
+                            journal.addNode(bucketName, "nt:unstructured");
+                    Node node = bucket.addNode("e" + sequence, "nt:unstructured");
+                    node.setProperty(PROPERTY_TYPE, change.getType().name());
+                    node.setProperty(PROPERTY_PATH, change.getPath());
+                    if (change.getSourcePath() != null) {
+                        node.setProperty(PROPERTY_SOURCE_PATH, change.getSourcePath());
+                    }
+                }
+                journal.setProperty(PROPERTY_SEQUENCE, sequence);
+                return sequence;
+            });
+        }
+    }
+
+    /**
+     * Removes entries up to and including given sequence. Consumers that have not processed them yet will get
+     * <code>null</code> from {@link #getEntries(String, long)} and have to fall back to a full copy.
+     *
+     * @param workspace
+     * @param upToSequence
+     */
+    public void trim(String workspace, final long upToSequence) {
+        synchronized (lock(workspace)) {
+            write(workspace, journal -> {
+                long first = journal.getProperty(PROPERTY_FIRST).getLong();
+                long last = journal.getProperty(PROPERTY_SEQUENCE).getLong();
+                long end = Math.min(upToSequence, last);
+                for (long bucket = first / BUCKET_SIZE; bucket <= end / BUCKET_SIZE; ++bucket) {
+                    String name = bucketName(bucket);
+                    if (!journal.hasNode(name)) {
+                        continue;
+                    }
+                    Node node = journal.getNode(name);
+                    if ((bucket + 1) * BUCKET_SIZE - 1 <= end) {
+                        node.remove();
+                    } else {
+                        for (long sequence = Math.max(first, bucket * BUCKET_SIZE); sequence <= end; ++sequence) {
+                            if (node.hasNode("e" + sequence)) {
+                                node.getNode("e" + sequence).remove();
+                            }
+                        }
+                    }
+                }
+                journal.setProperty(PROPERTY_FIRST, Math.max(first, end + 1));
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Starts a new journal for given workspace. The journal identifier changes and all entries are removed, so that
+     * every consumer falls back to a full copy. Used when changes may have been saved without being journaled.
+     *
+     * @param workspace
+     */
+    public void reset(String workspace) {
+        reset(workspace, null);
+    }
+
+    private void reset(String workspace, final String pending) {
+        synchronized (lock(workspace)) {
+            write(workspace, journal -> {
+                if (pending != null && journal.hasNode(pending)) {
+                    journal.getNode(pending).remove();
+                }
+                rotate(journal, false);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Writes a marker for a save that is about to happen.
+     *
+     * @return name of the marker node
+     */
+    private String beginPending(String workspace) {
+        synchronized (lock(workspace)) {
+            return write(workspace, journal -> {
+                String name = PENDING_PREFIX + UUID.randomUUID().toString().replace("-", "");
+                journal.addNode(name, "nt:unstructured").setProperty(PROPERTY_STARTED, Calendar.getInstance());
+                return name;
+            });
+        }
+    }
+
+    /**
+     * Changes the identifier of the journal and removes its entries. Pending markers of saves still in progress are
+     * kept unless <code>stalePendingOnly</code> is set, in which case only markers older than the timeout are
+     * removed.
+     */
+    private static void rotate(Node journal, boolean stalePendingOnly) throws RepositoryException {
+        List<Node> obsolete = new ArrayList<Node>();
+        NodeIterator children = journal.getNodes();
+        while (children.hasNext()) {
+            Node child = children.nextNode();
+            if (!child.getName().startsWith(PENDING_PREFIX) || (stalePendingOnly && isStale(child))) {
+                obsolete.add(child);
+            }
+        }
+        for (Node child : obsolete) {
+            child.remove();
+        }
+        journal.setProperty(PROPERTY_ID, UUID.randomUUID().toString());
+        journal.setProperty(PROPERTY_FIRST, journal.getProperty(PROPERTY_SEQUENCE).getLong() + 1);
+    }
+
+    private static boolean hasStalePending(Node journal) throws RepositoryException {
+        NodeIterator children = journal.getNodes(PENDING_PREFIX + "*");
+        while (children.hasNext()) {
+            if (isStale(children.nextNode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isStale(Node pending) throws RepositoryException {
+        if (!pending.getName().startsWith(PENDING_PREFIX)) {
+            return false;
+        }
+        long started = pending.getProperty(PROPERTY_STARTED).getDate().getTimeInMillis();
+        return System.currentTimeMillis() - started > PENDING_TIMEOUT.toMillis();
+    }
+
+    /**
+     * Creates a listener that journals the changes saved through the sessions it is registered with.
+     *
+     * @param workspaceFilter decides which workspaces are journaled
+     * @return listener
+     * @see Brix#addEventsListener(EventsListener)
+     */
+    public EventsListener newRecorder(Predicate<String> workspaceFilter) {
+        return new Recorder(workspaceFilter);
+    }
+
+    private Object lock(String workspace) {
+        return locks.computeIfAbsent(workspace, ignored -> new Object());
+    }
+
+    private static String bucketName(long bucket) {
+        return "b" + bucket;
+    }
+
+    private static Entry toEntry(Node node) throws RepositoryException {
+        String name = node.getName();
+        String sourcePath = node.hasProperty(PROPERTY_SOURCE_PATH) ? node.getProperty(PROPERTY_SOURCE_PATH)
+                .getString() : null;
+        return new Entry(Long.parseLong(name.substring(1)), Type.valueOf(node.getProperty(PROPERTY_TYPE).getString()),
+                node.getProperty(PROPERTY_PATH).getString(), sourcePath);
+    }
+
+    private interface JournalCallback<T> {
+        T execute(Node journal) throws RepositoryException;
+    }
+
+    private <T> T read(String workspace, JournalCallback<T> callback) {
+        Session session = sessionFactory.createSession(workspace);
+        try {
+            Node journal = session.nodeExists(NODE_PATH) ? session.getNode(NODE_PATH) : null;
+            return callback.execute(journal);
+        } catch (RepositoryException e) {
+            throw new JcrException(e);
+        } finally {
+            session.logout();
+        }
+    }
+
+    private <T> T write(String workspace, JournalCallback<T> callback) {
+        Session session = sessionFactory.createSession(workspace);
+        try {
+            for (int attempt = 1; ; ++attempt) {
+                try {
+                    Node journal;
+                    if (session.nodeExists(NODE_PATH)) {
+                        journal = session.getNode(NODE_PATH);
+                        if (hasStalePending(journal)) {
+                            // a save whose changes were never journaled, start over before writing anything new
+                            rotate(journal, true);
+                        }
+                    } else {
+                        journal = session.getRootNode().addNode(NODE_NAME, "nt:unstructured");
+                        journal.setProperty(PROPERTY_ID, UUID.randomUUID().toString());
+                        journal.setProperty(PROPERTY_SEQUENCE, 0L);
+                        journal.setProperty(PROPERTY_FIRST, 1L);
+                    }
+                    T result = callback.execute(journal);
+                    session.save();
+                    return result;
+                } catch (InvalidItemStateException e) {
+                    // concurrent update from another cluster node
+                    if (attempt == MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    session.refresh(false);
+                }
+            }
+        } catch (RepositoryException e) {
+            throw new JcrException(e);
+        } finally {
+            session.logout();
+        }
+    }
+
+    private boolean isJournaled(String path) {
+        return path != null && (path.equals(rootPath) || path.startsWith(rootPath + "/"));
+    }
+
+    private static String childPath(String parentPath, String name) {
+        return "/".equals(parentPath) ? "/" + name : parentPath + "/" + name;
+    }
+
+    private class Recorder implements EventsListener {
+        private final Predicate<String> workspaceFilter;
+
+        // changes of the saves in progress on the current thread, keyed by their event list
+        private final ThreadLocal<Map<List<Event>, Pending>> pending =
+                ThreadLocal.withInitial(IdentityHashMap::new);
+
+        private Recorder(Predicate<String> workspaceFilter) {
+            this.workspaceFilter = workspaceFilter;
+        }
+
+        public void handleEventsBeforeSave(Session session, Item item, List<Event> events) {
+            String workspace = session.getWorkspace().getName();
+            try {
+                if (!workspaceFilter.test(workspace)) {
+                    return;
+                }
+                Set<String> modified = new LinkedHashSet<String>();
+                List<Entry> changes = new ArrayList<Entry>();
+                for (Event event : events) {
+                    addChange(event, changes, modified);
+                }
+                if (!changes.isEmpty()) {
+                    Map<List<Event>, Pending> saves = pending.get();
+                    if (saves.size() > MAX_NESTED_SAVES) {
+                        // left behind by saves that failed, their markers time out
+                        saves.clear();
+                    }
+                    saves.put(events, new Pending(changes, beginPending(workspace)));
+                }
+            } catch (RepositoryException | RuntimeException e) {
+                log.warn("Could not prepare journaling of changes in workspace {}", workspace, e);
+                pending.get().put(events, new Pending(null, null));
+            }
+        }
+
+        public void handleEventsAfterSave(Session session, Item item, List<Event> events) {
+            Pending saved = pending.get().remove(events);
+            if (saved == null) {
+                return;
+            }
+            String workspace = session.getWorkspace().getName();
+            try {
+                if (saved.changes == null) {
+                    throw new IllegalStateException("Changes were not collected before the save");
+                }
+                append(workspace, saved.changes, saved.marker);
+            } catch (RuntimeException e) {
+                // the content has been saved already, make consumers of the journal fall back to a full copy
+                log.warn("Could not journal changes saved in workspace {}, resetting the journal", workspace, e);
+                try {
+                    reset(workspace, saved.marker);
+                } catch (RuntimeException resetFailure) {
+                    log.error("Could not reset the journal of workspace {}, it will be reset once the pending " +
+                            "marker {} times out", workspace, saved.marker, resetFailure);
+                }
+            }
+        }
+
+        private void addChange(Event event, List<Entry> changes, Set<String> modified) throws RepositoryException {
+            if (event instanceof AddNodeEvent e) {
+                add(changes, Type.CREATED, e.getNewNode().getPath(), null);
+            } else if (event instanceof RemoveNodeEvent e) {
+                add(changes, Type.DELETED, childPath(e.getParentNode().getPath(), e.getNodeName()), null);
+            } else if (event instanceof MoveNodeEvent e) {
+                String path = e.getNode().getPath();
+                if (isJournaled(e.getOriginalPath()) || isJournaled(path)) {
+                    changes.add(new Entry(0, Type.MOVED, path, e.getOriginalPath()));
+                }
+            } else if (event instanceof SetPropertyEvent e) {
+                addModified(changes, modified, e.getNode().getPath());
+            } else if (event instanceof RemovePropertyEvent e) {
+                addModified(changes, modified, e.getNode().getPath());
+            } else if (event instanceof ChangeNodeMixinsEvent e) {
+                addModified(changes, modified, e.getNode().getPath());
+            } else if (event instanceof ChangeChildNodesOrderEvent e) {
+                addModified(changes, modified, e.getNode().getPath());
+            }
+        }
+
+        private void addModified(List<Entry> changes, Set<String> modified, String path) {
+            if (modified.add(path)) {
+                add(changes, Type.MODIFIED, path, null);
+            }
+        }
+
+        private void add(List<Entry> changes, Type type, String path, String sourcePath) {
+            if (isJournaled(path)) {
+                changes.add(new Entry(0, type, path, sourcePath));
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final List<Entry> changes;
+        private final String marker;
+
+        private Pending(List<Entry> changes, String marker) {
+            this.changes = changes;
+            this.marker = marker;
+        }
+    }
+}
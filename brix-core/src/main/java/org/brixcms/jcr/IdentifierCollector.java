@@ -0,0 +1,85 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import static org.brixcms.jcr.IdentifierRemappingFilter.getSvAttribute;
+import static org.brixcms.jcr.IdentifierRemappingFilter.isSvElement;
+
+/**
+ * Collects the identifiers of referenceable nodes from system view events together with the path of the parent the
+ * node will have once the exported subtree is imported under the given target path.
+ */
+class IdentifierCollector extends DefaultHandler {
+    private final Map<String, String> parentPaths = new LinkedHashMap<String, String>();
+    private final List<String> path = new ArrayList<String>();
+    private final StringBuilder value = new StringBuilder(36);
+    private boolean uuidProperty;
+    private boolean inValue;
+
+    /**
+     * @param targetParentPath path of the node the subtree will be imported under
+     */
+    IdentifierCollector(String targetParentPath) {
+        path.add(targetParentPath.equals("/") ? "" : targetParentPath);
+    }
+
+    /**
+     * @return map of node identifier to the path of the node's parent in the target workspace
+     */
+    Map<String, String> getParentPaths() {
+        return parentPaths;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) {
+        if (isSvElement(uri, localName, qName, "node")) {
+            path.add(path.get(path.size() - 1) + "/" + getSvAttribute(atts, "name"));
+        } else if (isSvElement(uri, localName, qName, "property")) {
+            uuidProperty = "jcr:uuid".equals(getSvAttribute(atts, "name"));
+        } else if (uuidProperty && isSvElement(uri, localName, qName, "value")) {
+            inValue = true;
+            value.setLength(0);
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (inValue) {
+            value.append(ch, start, length);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        if (inValue) {
+            String parent = path.get(path.size() - 2);
+            parentPaths.put(value.toString(), parent.length() == 0 ? "/" : parent);
+            inValue = false;
+        } else if (isSvElement(uri, localName, qName, "node")) {
+            path.remove(path.size() - 1);
+        } else if (isSvElement(uri, localName, qName, "property")) {
+            uuidProperty = false;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr;
+
+import java.util.Map;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Filter for system view events that replaces node identifiers and the values of reference properties according to
+ * the given map. Everything else is passed to the wrapped handler unchanged, so a subtree can be exported straight into
+ * an import content handler.
+ *
+ * @see JcrUtil#cloneNodes(java.util.List, JcrUtil.TargetRootNodeProvider, JcrUtil.ParentLimiter)
+ */
+class IdentifierRemappingFilter extends XMLFilterImpl {
+    static final String SV = "http://www.jcp.org/jcr/sv/1.0";
+
+    private final Map<String, String> identifierMap;
+    private final StringBuilder value = new StringBuilder(36);
+    private boolean remapProperty;
+    private boolean inValue;
+
+    IdentifierRemappingFilter(ContentHandler delegate, Map<String, String> identifierMap) {
+        this.identifierMap = identifierMap;
+        setContentHandler(delegate);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        if (isSvElement(uri, localName, qName, "property")) {
+            remapProperty = isIdentifierProperty(atts);
+        } else if (remapProperty && isSvElement(uri, localName, qName, "value")) {
+            inValue = true;
+            value.setLength(0);
+        }
+        super.startElement(uri, localName, qName, atts);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (inValue) {
+            value.append(ch, start, length);
+        } else {
+            super.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (inValue && isSvElement(uri, localName, qName, "value")) {
+            String identifier = value.toString();
+            String mapped = identifierMap.get(identifier);
+            char[] chars = (mapped != null ? mapped : identifier).toCharArray();
+            super.characters(chars, 0, chars.length);
+            inValue = false;
+        } else if (isSvElement(uri, localName, qName, "property")) {
+            remapProperty = false;
+        }
+        super.endElement(uri, localName, qName);
+    }
+
+    /**
+     * Returns whether the <code>sv:property</code> element with the given attributes holds node identifiers, i.e. it is
+     * either <code>jcr:uuid</code> or a (weak) reference.
+     */
+    static boolean isIdentifierProperty(Attributes atts) {
+        String type = getSvAttribute(atts, "type");
+        return "Reference".equals(type) || "WeakReference".equals(type)
+                || "jcr:uuid".equals(getSvAttribute(atts, "name"));
+    }
+
+    static String getSvAttribute(Attributes atts, String name) {
+        String value = atts.getValue(SV, name);
+        return value != null ? value : atts.getValue("sv:" + name);
+    }
+
+    static boolean isSvElement(String uri, String localName, String qName, String name) {
+        if (localName != null && localName.length() > 0) {
+            return name.equals(localName) && SV.equals(uri);
+        }
+        return qName.equals("sv:" + name);
+    }
+}
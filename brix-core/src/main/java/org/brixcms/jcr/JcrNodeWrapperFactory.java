@@ -17,6 +17,7 @@ package org.brixcms.jcr;
 import org.brixcms.Brix;
 import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.registry.ExtensionPoint;
 
 import javax.jcr.Node;
@@ -84,6 +85,18 @@ public abstract class JcrNodeWrapperFactory implements RepositoryInitializer {
      */
     public abstract boolean canWrap(Brix brix, JcrNode node);
 
+    /**
+     * Returns the node type (see {@link BrixNode#getNodeType(JcrNode)}) of nodes this factory wraps. Factories that
+     * declare a type are selected by looking up the type of the node instead of probing {@link #canWrap(Brix,
+     * JcrNode)}, therefore {@link #canWrap(Brix, JcrNode)} must be equivalent to comparing the declared type with the
+     * type of the node.
+     *
+     * @return node type or <code>null</code> if this factory decides by other criteria
+     */
+    public String getNodeType() {
+        return null;
+    }
+
     /**
      * Wraps the node with a subclass.
      * <p>
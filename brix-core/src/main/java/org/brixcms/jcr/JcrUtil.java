@@ -26,6 +26,9 @@ import org.brixcms.jcr.api.JcrValueFactory;
 import org.brixcms.jcr.api.JcrWorkspace;
 import org.brixcms.jcr.exception.JcrException;
 import org.brixcms.jcr.wrapper.BrixNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
 
 import javax.jcr.ImportUUIDBehavior;
 import javax.jcr.ItemNotFoundException;
@@ -36,13 +39,20 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
 
 /**
  * @author Matej Knopp
  */
 public class JcrUtil {
+    private static final Logger log = LoggerFactory.getLogger(JcrUtil.class);
+
     /**
      * Clones the given list of nodes. The clones will be located relative to targetRootNode.
      * <p>
@@ -75,11 +85,23 @@ public class JcrUtil {
                                   ParentLimiter parentLimiter) {
         if (nodes != null && !nodes.isEmpty()) {
             JcrNode firstTargetRoot = targetRootNodeProvider.getTargetRootNode(nodes.iterator().next());
-            String xmlns = createXMLNS(firstTargetRoot.getSession());
-            Map<String, String> uuidMap = new HashMap<String, String>();
+            JcrSession targetSession = firstTargetRoot.getSession();
+            String xmlns = createXMLNS(targetSession);
 
             nodes = filterRedundantNodes(nodes);
 
+            // the bulk import can only be undone by discarding all pending changes
+            if (!targetSession.hasPendingChanges()) {
+                try {
+                    importNodes(nodes, targetRootNodeProvider, parentLimiter, xmlns);
+                    return;
+                } catch (RuntimeException e) {
+                    log.warn("Bulk import of cloned nodes failed, falling back to copying them node by node", e);
+                    targetSession.refresh(false);
+                }
+            }
+
+            Map<String, String> uuidMap = new HashMap<String, String>();
             List<NodePair> processedNodes = new ArrayList<NodePair>();
 
             for (JcrNode node : nodes) {
@@ -91,6 +113,86 @@ public class JcrUtil {
         }
     }
 
+    /**
+     * Copies the given subtrees by exporting each of them in system view and streaming the events straight into an
+     * import content handler of the target session. Identifiers that would clash with nodes located elsewhere in the
+     * target workspace are replaced by new ones before the import, together with all references to them, so a single
+     * pass over every subtree is enough.
+     *
+     * @param nodes                  list of nodes to clone, without nodes whose ancestors are in the list
+     * @param targetRootNodeProvider provider for parents for clones
+     * @param parentLimiter          (non mandatory) allows to skip certain nodes when creating parent hierarchy
+     * @param xmlns                  string containing the xmlns attributes of sv:node element
+     */
+    /**
+     * Clones the given list of nodes like {@link #cloneNodes(List, JcrNode)}, but always streams them through the
+     * import handler of the target session, also when the session has pending changes. Nothing is saved, so the import
+     * can be combined with other changes in a single save. There is no node by node fallback, if the import fails the
+     * caller has to discard the pending changes of the target session.
+     *
+     * @param nodes          list of nodes to clone
+     * @param targetRootNode parent for clones
+     */
+    public static void importNodes(List<JcrNode> nodes, final JcrNode targetRootNode) {
+        if (nodes != null && !nodes.isEmpty()) {
+            TargetRootNodeProvider provider = new TargetRootNodeProvider() {
+                public JcrNode getTargetRootNode(JcrNode node) {
+                    return targetRootNode;
+                }
+            };
+            importNodes(filterRedundantNodes(nodes), provider, null, createXMLNS(targetRootNode.getSession()));
+        }
+    }
+
+    private static void importNodes(List<JcrNode> nodes, TargetRootNodeProvider targetRootNodeProvider,
+                                    ParentLimiter parentLimiter, String xmlns) {
+        Map<String, String> uuidMap = new HashMap<String, String>();
+        List<JcrNode> targetParents = new ArrayList<JcrNode>(nodes.size());
+        Map<String, String> parentPaths = new HashMap<String, String>();
+
+        // first pass: create missing parents and find out where each referenceable node would end up
+        for (JcrNode node : nodes) {
+            JcrNode targetRoot = targetRootNodeProvider.getTargetRootNode(node);
+            JcrNode targetParent = ensureParentExists(node, targetRoot, parentLimiter, xmlns, uuidMap);
+            targetParents.add(targetParent);
+
+            IdentifierCollector collector = new IdentifierCollector(targetParent.getPath());
+            node.getSession().exportSystemView(node.getPath(), collector, true, false);
+            parentPaths.putAll(collector.getParentPaths());
+        }
+
+        // nodes with an identifier that already exists in target workspace replace the existing node if it has the
+        // same parent, otherwise they get a new identifier
+        JcrSession targetSession = targetParents.get(0).getSession();
+        for (Map.Entry<String, String> entry : parentPaths.entrySet()) {
+            JcrNode existing = findNodeByIdentifier(targetSession, entry.getKey());
+            if (existing != null && !existing.getParent().getPath().equals(entry.getValue())) {
+                uuidMap.put(entry.getKey(), UUID.randomUUID().toString());
+            }
+        }
+
+        // second pass: stream each subtree into the target session
+        for (int i = 0; i < nodes.size(); ++i) {
+            JcrNode node = nodes.get(i);
+            ContentHandler importer = targetSession.getImportContentHandler(targetParents.get(i).getPath(),
+                    ImportUUIDBehavior.IMPORT_UUID_COLLISION_REPLACE_EXISTING);
+            node.getSession().exportSystemView(node.getPath(), new IdentifierRemappingFilter(importer, uuidMap), false,
+                    false);
+        }
+    }
+
+    private static JcrNode findNodeByIdentifier(JcrSession session, String identifier) {
+        try {
+            return session.getNodeByIdentifier(identifier);
+        }
+        catch (JcrException e) {
+            if (e.getCause() instanceof ItemNotFoundException) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
     /**
      * Creates the XML snippet containing namespace definitions.
      *
@@ -123,22 +225,37 @@ public class JcrUtil {
      * @return
      */
     private static List<JcrNode> filterRedundantNodes(List<JcrNode> nodes) {
-        List<JcrNode> result = new ArrayList<JcrNode>(nodes);
-
-        for (JcrNode n : nodes) {
-            String pathCurrent = n.getPath();
-            for (JcrNode n2 : result) {
-                String pathExisting = n2.getPath();
-                if (pathCurrent.startsWith(pathExisting) && n != n2) {
-                    result.remove(n);
-                    break;
-                }
-            }
+        NavigableSet<String> paths = new TreeSet<String>();
+        for (JcrNode node : nodes) {
+            paths.add(node.getPath());
         }
 
+        List<JcrNode> result = new ArrayList<JcrNode>(nodes.size());
+        Set<String> added = new HashSet<String>();
+        for (JcrNode node : nodes) {
+            String path = node.getPath();
+            if (!containsAncestor(paths, path) && added.add(path)) {
+                result.add(node);
+            }
+        }
         return result;
     }
 
+    /**
+     * Returns whether the sorted path set contains a proper ancestor of the given path.
+     */
+    private static boolean containsAncestor(NavigableSet<String> paths, String path) {
+        int index = path.lastIndexOf('/');
+        while (index > 0) {
+            path = path.substring(0, index);
+            if (paths.contains(path)) {
+                return true;
+            }
+            index = path.lastIndexOf('/');
+        }
+        return index == 0 && path.length() > 1 && paths.contains("/");
+    }
+
     /**
      * Creates a copy of originalNode (without setting the properties). The node position will be concatenation of
      * targetRootNode path and originalNode path. If the targetRootNode path doesn't contains the appropriate child
@@ -433,7 +550,7 @@ public class JcrUtil {
      */
     public static Map<JcrNode, List<JcrNode>> getUnsatisfiedDependencies(List<JcrNode> nodes,
                                                                          JcrWorkspace targetWorkspace) {
-        List<String> paths = new ArrayList<String>();
+        NavigableSet<String> paths = new TreeSet<String>();
         for (JcrNode node : nodes) {
             paths.add(node.getPath());
         }
@@ -454,7 +571,7 @@ public class JcrUtil {
      * @param targetWorkspace
      * @param result
      */
-    private static void checkDependencies(JcrNode node, List<String> paths, JcrWorkspace targetWorkspace,
+    private static void checkDependencies(JcrNode node, NavigableSet<String> paths, JcrWorkspace targetWorkspace,
                                           Map<JcrNode, List<JcrNode>> result) {
         // go through all properties
         JcrPropertyIterator iterator = node.getProperties();
@@ -494,20 +611,14 @@ public class JcrUtil {
      * @param targetWorkspace
      * @param result
      */
-    private static void checkReferenceValue(JcrValue value, JcrNode node, List<String> paths,
+    private static void checkReferenceValue(JcrValue value, JcrNode node, NavigableSet<String> paths,
                                             JcrWorkspace targetWorkspace, Map<JcrNode, List<JcrNode>> result) {
         // get the referenced node and it's path
         JcrNode target = node.getSession().getNodeByIdentifier(value.getString());
         String path = target.getPath();
 
         // check if the node is child of node from paths
-        boolean found = false;
-        for (String p : paths) {
-            if (path.startsWith(p)) {
-                found = true;
-                break;
-            }
-        }
+        boolean found = paths.contains(path) || containsAncestor(paths, path);
 
         // in case it is not check if node with same uuid exists in target
         // workspace
@@ -0,0 +1,410 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.cycle.IRequestCycleListener;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Session factory that keeps a bounded pool of sessions for every workspace. The current session of a workspace is
+ * borrowed from the pool when it is first requested in a {@link RequestCycle} and returned automatically when the
+ * request cycle detaches, so the number of open sessions depends on the number of concurrent requests rather than on
+ * the number of container threads. This makes the factory suitable for containers that run requests on virtual
+ * threads.
+ * <p>
+ * Returned sessions are {@link Session#refresh(boolean) refreshed} with pending changes discarded, borrowed sessions
+ * are validated before they are handed out. When all sessions of a workspace are in use, requests wait up to the
+ * borrow timeout for one to be returned instead of logging in again.
+ * <p>
+ * Outside of a request cycle, e.g. during application initialization, the current sessions are bound to the calling
+ * thread until {@link #cleanup()} is called.
+ */
+public class PooledSessionFactory implements JcrSessionFactory {
+    private static final Logger logger = LoggerFactory.getLogger(PooledSessionFactory.class);
+
+    private static final MetaDataKey<Map<PooledSessionFactory, Map<String, Session>>> REQUEST_SESSIONS_KEY =
+            new MetaDataKey<Map<PooledSessionFactory, Map<String, Session>>>() {
+            };
+
+    private final Repository repository;
+    private final Credentials credentials;
+    private final int maxSessionsPerWorkspace;
+    private final ConcurrentMap<String, WorkspacePool> pools = new ConcurrentHashMap<String, WorkspacePool>();
+    private final ThreadLocal<Map<String, Session>> threadSessions = new ThreadLocal<Map<String, Session>>();
+    private volatile long borrowTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+    private volatile boolean closed;
+
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder returned = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    private final IRequestCycleListener releaseListener = new IRequestCycleListener() {
+        @Override
+        public void onDetach(RequestCycle cycle) {
+            Map<PooledSessionFactory, Map<String, Session>> sessions = cycle.getMetaData(REQUEST_SESSIONS_KEY);
+            if (sessions != null) {
+                Map<String, Session> map = sessions.remove(PooledSessionFactory.this);
+                if (map != null) {
+                    release(map);
+                }
+            }
+        }
+    };
+
+    /**
+     * @param repository              repository to log in to
+     * @param credentials             credentials used for every session
+     * @param maxSessionsPerWorkspace maximum number of sessions open for one workspace at the same time
+     */
+    public PooledSessionFactory(Repository repository, Credentials credentials, int maxSessionsPerWorkspace) {
+        if (repository == null) {
+            throw new IllegalArgumentException("repository cannot be null");
+        }
+        if (credentials == null) {
+            throw new IllegalArgumentException("credentials cannot be null");
+        }
+        if (maxSessionsPerWorkspace < 1) {
+            throw new IllegalArgumentException("maxSessionsPerWorkspace must be positive");
+        }
+        this.repository = repository;
+        this.credentials = credentials;
+        this.maxSessionsPerWorkspace = maxSessionsPerWorkspace;
+    }
+
+    /**
+     * Sets how long {@link #getCurrentSession(String)} waits for a session when all sessions of the workspace are in
+     * use. The default is 30 seconds.
+     *
+     * @param timeout
+     * @return this factory
+     */
+    public PooledSessionFactory setBorrowTimeout(Duration timeout) {
+        if (timeout == null || timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout must not be null or negative");
+        }
+        borrowTimeoutNanos = timeout.toNanos();
+        return this;
+    }
+
+    public Session createSession(String workspace) throws CannotOpenJcrSessionException {
+        logger.debug("Opening unmanaged jcr session to workspace: {}", workspace);
+        return login(workspace);
+    }
+
+    public Session getCurrentSession(String workspace) throws CannotOpenJcrSessionException {
+        Map<String, Session> sessions = getScopeSessions();
+        Session session = sessions.get(workspace);
+        if (session != null && session.isLive()) {
+            return session;
+        }
+        if (session != null) {
+            // logged out by the caller, give the permit back
+            getPool(workspace).discard(session);
+        }
+        session = getPool(workspace).borrow();
+        sessions.put(workspace, session);
+        return session;
+    }
+
+    /**
+     * Returns the sessions bound to the calling thread outside of a request cycle to the pool. Sessions borrowed in a
+     * request cycle are returned automatically when the request cycle detaches.
+     */
+    public void cleanup() {
+        Map<String, Session> sessions = threadSessions.get();
+        if (sessions != null) {
+            threadSessions.remove();
+            release(sessions);
+        }
+    }
+
+    /**
+     * Logs out all idle sessions. Sessions that are currently borrowed are logged out when they are returned.
+     */
+    public void close() {
+        closed = true;
+        for (WorkspacePool pool : pools.values()) {
+            pool.clear();
+        }
+    }
+
+    /**
+     * @return number of sessions currently borrowed from the pool of given workspace
+     */
+    public int getActiveCount(String workspace) {
+        WorkspacePool pool = pools.get(workspace);
+        return pool != null ? maxSessionsPerWorkspace - pool.permits.availablePermits() : 0;
+    }
+
+    /**
+     * @return number of sessions of given workspace that are waiting to be borrowed
+     */
+    public int getIdleCount(String workspace) {
+        WorkspacePool pool = pools.get(workspace);
+        return pool != null ? pool.getIdleCount() : 0;
+    }
+
+    public long getBorrowCount() {
+        return borrowed.sum();
+    }
+
+    public long getReturnCount() {
+        return returned.sum();
+    }
+
+    /**
+     * @return number of sessions logged in by the pools
+     */
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    /**
+     * @return number of pooled sessions that have been logged out
+     */
+    public long getDestroyedCount() {
+        return destroyed.sum();
+    }
+
+    /**
+     * @return number of idle sessions found to be unusable when they were borrowed
+     */
+    public long getValidationFailureCount() {
+        return validationFailures.sum();
+    }
+
+    /**
+     * @return number of borrows that had to wait for a session to be returned
+     */
+    public long getWaitCount() {
+        return waits.sum();
+    }
+
+    /**
+     * @return number of borrows that failed because no session became available in time
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "borrowed=" + getBorrowCount() + ", returned=" + getReturnCount() + ", created=" + getCreatedCount()
+                + ", destroyed=" + getDestroyedCount() + ", validationFailures=" + getValidationFailureCount()
+                + ", waits=" + getWaitCount() + ", timeouts=" + getTimeoutCount();
+    }
+
+    /**
+     * Checks whether an idle session can be handed out again. Sessions that fail the check are logged out and
+     * replaced.
+     *
+     * @param session idle session
+     * @return <code>true</code> if the session is usable
+     */
+    protected boolean validate(Session session) {
+        return session.isLive();
+    }
+
+    private Map<String, Session> getScopeSessions() {
+        RequestCycle requestCycle = RequestCycle.get();
+        if (requestCycle == null) {
+            Map<String, Session> sessions = threadSessions.get();
+            if (sessions == null) {
+                sessions = new HashMap<String, Session>();
+                threadSessions.set(sessions);
+            }
+            return sessions;
+        }
+
+        Map<PooledSessionFactory, Map<String, Session>> factories = requestCycle.getMetaData(REQUEST_SESSIONS_KEY);
+        if (factories == null) {
+            factories = new IdentityHashMap<PooledSessionFactory, Map<String, Session>>();
+            requestCycle.setMetaData(REQUEST_SESSIONS_KEY, factories);
+        }
+        Map<String, Session> sessions = factories.get(this);
+        if (sessions == null) {
+            sessions = new HashMap<String, Session>();
+            factories.put(this, sessions);
+            requestCycle.getListeners().add(releaseListener);
+        }
+        return sessions;
+    }
+
+    private void release(Map<String, Session> sessions) {
+        for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+            getPool(entry.getKey()).giveBack(entry.getValue());
+        }
+        sessions.clear();
+    }
+
+    private WorkspacePool getPool(String workspace) {
+        // null stands for the default workspace
+        String key = workspace != null ? workspace : "";
+        WorkspacePool pool = pools.get(key);
+        if (pool == null) {
+            WorkspacePool newPool = new WorkspacePool(workspace);
+            pool = pools.putIfAbsent(key, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+        return pool;
+    }
+
+    private Session login(String workspace) {
+        try {
+            return repository.login(credentials, workspace);
+        } catch (RepositoryException e) {
+            throw new CannotOpenJcrSessionException(workspace, e);
+        }
+    }
+
+    private void logout(Session session) {
+        destroyed.increment();
+        try {
+            session.logout();
+        } catch (RuntimeException e) {
+            logger.debug("Could not log out pooled session", e);
+        }
+    }
+
+    private class WorkspacePool {
+        private final String workspace;
+        private final Semaphore permits = new Semaphore(maxSessionsPerWorkspace, true);
+        private final Deque<Session> idle = new ArrayDeque<Session>();
+
+        private WorkspacePool(String workspace) {
+            this.workspace = workspace;
+        }
+
+        private Session borrow() {
+            if (!permits.tryAcquire()) {
+                waits.increment();
+                boolean acquired;
+                try {
+                    acquired = permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CannotOpenJcrSessionException(workspace, e);
+                }
+                if (!acquired) {
+                    timeouts.increment();
+                    throw new CannotOpenJcrSessionException(workspace, new IllegalStateException(
+                            "All " + maxSessionsPerWorkspace + " sessions of the workspace are in use"));
+                }
+            }
+
+            try {
+                Session session;
+                while ((session = pollIdle()) != null) {
+                    if (validate(session)) {
+                        borrowed.increment();
+                        return session;
+                    }
+                    validationFailures.increment();
+                    logout(session);
+                }
+                logger.debug("Opening pooled jcr session to workspace: {}", workspace);
+                session = login(workspace);
+                created.increment();
+                borrowed.increment();
+                return session;
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private void giveBack(Session session) {
+            returned.increment();
+            try {
+                if (session.isLive() && !closed) {
+                    try {
+                        session.refresh(false);
+                        synchronized (idle) {
+                            idle.push(session);
+                        }
+                        return;
+                    } catch (RepositoryException | RuntimeException e) {
+                        logger.debug("Could not refresh pooled session, logging it out", e);
+                    }
+                    logout(session);
+                } else if (session.isLive()) {
+                    logout(session);
+                }
+            } finally {
+                permits.release();
+            }
+        }
+
+        private void discard(Session session) {
+            returned.increment();
+            if (session.isLive()) {
+                logout(session);
+            }
+            permits.release();
+        }
+
+        private Session pollIdle() {
+            synchronized (idle) {
+                return idle.poll();
+            }
+        }
+
+        private int getIdleCount() {
+            synchronized (idle) {
+                return idle.size();
+            }
+        }
+
+        private void clear() {
+            List<Session> sessions;
+            synchronized (idle) {
+                sessions = new ArrayList<Session>(idle);
+                idle.clear();
+            }
+            for (Session session : sessions) {
+                logout(session);
+            }
+        }
+    }
+}
@@ -14,7 +14,16 @@
 
 package org.brixcms.jcr;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -24,24 +33,37 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.jcr.ItemNotFoundException;
 import javax.jcr.PropertyType;
 
+import org.brixcms.exception.BrixException;
 import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.api.JcrNodeIterator;
 import org.brixcms.jcr.api.JcrProperty;
 import org.brixcms.jcr.api.JcrPropertyIterator;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.jcr.api.JcrValue;
+import org.brixcms.jcr.exception.JcrException;
 
 /**
  * Scans a JCR subtree for broken references and optional UUID-like string references.
+ * <p>
+ * {@link #scan(JcrNode, Options)} collects and sorts all findings in memory. Large workspaces should use
+ * {@link #scan(JcrSessionFactory, String, String, Options, Sink)}, which streams findings to a {@link Sink} as they are
+ * discovered, scans the child subtrees of the root (down to {@link Options#setSplitDepth(int) the split depth}) in
+ * parallel, one session per worker, and records finished subtrees in an optional {@link Checkpoint} so that an
+ * interrupted scan can be resumed.
  */
 public final class ReferenceIntegrityScanner {
-    private static final Pattern UUID_PATTERN =
-            Pattern.compile("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[1-5][0-9a-fA-F]{3}-[89abAB][0-9a-fA-F]{3}-[0-9a-fA-F]{12}$");
-
     public ScanResult scan(JcrNode root) {
         return scan(root, new Options());
     }
@@ -54,9 +76,8 @@ public final class ReferenceIntegrityScanner {
             options = new Options();
         }
 
-        List<ReferenceEntry> entries = new ArrayList<ReferenceEntry>();
-        Map<String, Boolean> existenceCache = new HashMap<String, Boolean>();
-        scanNode(root, options, entries, existenceCache);
+        final List<ReferenceEntry> entries = new ArrayList<ReferenceEntry>();
+        new Walker(root.getSession(), options, entries::add).scanSubtree(root);
 
         Collections.sort(entries, new Comparator<ReferenceEntry>() {
             @Override
@@ -79,92 +100,187 @@ public final class ReferenceIntegrityScanner {
         return new ScanResult(entries);
     }
 
-    private void scanNode(JcrNode node, Options options, List<ReferenceEntry> entries, Map<String, Boolean> existenceCache) {
-        String sourcePath = node.getPath();
-        JcrPropertyIterator properties = node.getProperties();
-        while (properties.hasNext()) {
-            JcrProperty property = properties.nextProperty();
-            scanProperty(node.getSession(), sourcePath, property, options, entries, existenceCache);
+    /**
+     * Scans the subtree at <code>rootPath</code> and passes every finding to the sink as soon as it is discovered.
+     * Only counters are kept in memory. The properties of the root node are scanned first, then each child subtree is a
+     * unit of work taken by the next idle worker. Every worker uses its own session created by the session factory.
+     * The sink is never called concurrently, but findings of different units interleave.
+     * <p>
+     * Parallelism is limited to the units, so a root with a single child (such as the root of a Brix workspace) is
+     * scanned by a single worker unless {@link Options#setSplitDepth(int)} splits the tree further: nodes above the
+     * split depth have their properties scanned while the units are planned, and their children become the units.
+     * <p>
+     * Units already listed in the checkpoint of the options are skipped. Finished units are reported to
+     * {@link Sink#unitCompleted(String)} and then added to the checkpoint. A unit that was interrupted is scanned again
+     * from its start when the scan is resumed, so the findings it reported before the interruption are reported a
+     * second time.
+     *
+     * @param sessionFactory factory for the worker sessions
+     * @param workspace      workspace to scan
+     * @param rootPath       absolute path of the subtree root
+     * @param options        scan options
+     * @param sink           receiver of the findings
+     * @return counters of the findings reported in this scan
+     */
+    public ScanSummary scan(JcrSessionFactory sessionFactory, String workspace, String rootPath, Options options,
+                            Sink sink) {
+        if (sessionFactory == null) {
+            throw new IllegalArgumentException("Argument 'sessionFactory' may not be null.");
         }
-
-        JcrNodeIterator children = node.getNodes();
-        while (children.hasNext()) {
-            scanNode(children.nextNode(), options, entries, existenceCache);
+        if (rootPath == null) {
+            throw new IllegalArgumentException("Argument 'rootPath' may not be null.");
+        }
+        if (sink == null) {
+            throw new IllegalArgumentException("Argument 'sink' may not be null.");
+        }
+        if (options == null) {
+            options = new Options();
         }
-    }
 
-    private void scanProperty(JcrSession session, String sourcePath, JcrProperty property, Options options,
-                              List<ReferenceEntry> entries, Map<String, Boolean> existenceCache) {
-        int type = property.getType();
-        String propertyName = property.getName();
+        final ScanSummary summary = new ScanSummary();
+        final Checkpoint checkpoint = options.getCheckpoint();
+        final Sink synchronizedSink = new Sink() {
+            @Override
+            public void accept(ReferenceEntry entry) {
+                synchronized (summary) {
+                    summary.add(entry);
+                    sink.accept(entry);
+                }
+            }
 
-        if (type == PropertyType.REFERENCE || type == PropertyType.WEAKREFERENCE) {
-            scanReferenceProperty(session, sourcePath, propertyName, property, type, entries, existenceCache);
-        } else if (options.isIncludeStringUuidCandidates() && type == PropertyType.STRING
-                && shouldScanStringProperty(propertyName, options)) {
-            scanStringUuidCandidates(session, sourcePath, propertyName, property, entries, existenceCache);
+            @Override
+            public void unitCompleted(String unit) {
+                synchronized (summary) {
+                    sink.unitCompleted(unit);
+                }
+                // only recorded once the sink has persisted the findings of the unit
+                if (checkpoint != null) {
+                    checkpoint.markCompleted(unit);
+                }
+            }
+        };
+
+        final ConcurrentLinkedQueue<String> units = new ConcurrentLinkedQueue<String>();
+        JcrSession session = openSession(sessionFactory, workspace);
+        try {
+            JcrNode root = session.getNode(rootPath);
+            Walker walker = new Walker(session, options, synchronizedSink);
+            if (checkpoint == null || !checkpoint.isCompleted(root.getPath())) {
+                walker.scanProperties(root);
+                synchronizedSink.unitCompleted(root.getPath());
+            }
+            planUnits(root, 1, options.getSplitDepth(), walker, synchronizedSink, checkpoint, units);
+        } finally {
+            session.logout();
         }
-    }
 
-    private void scanReferenceProperty(JcrSession session, String sourcePath, String propertyName, JcrProperty property,
-                                       int type, List<ReferenceEntry> entries, Map<String, Boolean> existenceCache) {
-        if (property.getDefinition().isMultiple()) {
-            JcrValue[] values = property.getValues();
-            for (JcrValue value : values) {
-                addEntry(session, sourcePath, propertyName, value.getString(), kindFor(type), entries, existenceCache);
+        int threads = Math.max(1, Math.min(options.getThreads(), units.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final Options workerOptions = options;
+        try {
+            List<Future<Void>> workers = new ArrayList<Future<Void>>(threads);
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        JcrSession session = openSession(sessionFactory, workspace);
+                        try {
+                            Walker walker = new Walker(session, workerOptions, synchronizedSink);
+                            String path;
+                            while (!failed.get() && (path = units.poll()) != null) {
+                                walker.scanSubtree(session.getNode(path));
+                                synchronizedSink.unitCompleted(path);
+                            }
+                            return null;
+                        } catch (RuntimeException e) {
+                            failed.set(true);
+                            throw e;
+                        } finally {
+                            session.logout();
+                        }
+                    }
+                }));
             }
-        } else {
-            addEntry(session, sourcePath, propertyName, property.getValue().getString(), kindFor(type), entries, existenceCache);
+            for (Future<Void> worker : workers) {
+                await(worker);
+            }
+        } finally {
+            executor.shutdownNow();
         }
+        return summary;
     }
 
-    private void scanStringUuidCandidates(JcrSession session, String sourcePath, String propertyName, JcrProperty property,
-                                          List<ReferenceEntry> entries, Map<String, Boolean> existenceCache) {
-        if (property.getDefinition().isMultiple()) {
-            JcrValue[] values = property.getValues();
-            for (JcrValue value : values) {
-                String candidate = value.getString();
-                if (looksLikeUuid(candidate)) {
-                    addEntry(session, sourcePath, propertyName, candidate, ReferenceKind.STRING_UUID, entries, existenceCache);
-                }
+    /**
+     * Adds the child subtrees of the node to the units. Children above the split depth that have children themselves
+     * are split further, their properties are scanned right away and recorded as a unit of their own (see {@link
+     * Checkpoint}).
+     */
+    private static void planUnits(JcrNode node, int depth, int splitDepth, Walker walker, Sink sink,
+                                  Checkpoint checkpoint, Collection<String> units) {
+        JcrNodeIterator children = node.getNodes();
+        while (children.hasNext()) {
+            JcrNode child = children.nextNode();
+            String path = child.getPath();
+            if (checkpoint != null && checkpoint.isCompleted(path)) {
+                continue;
             }
-        } else {
-            String candidate = property.getString();
-            if (looksLikeUuid(candidate)) {
-                addEntry(session, sourcePath, propertyName, candidate, ReferenceKind.STRING_UUID, entries, existenceCache);
+            if (depth < splitDepth && child.hasNodes()) {
+                String propertiesUnit = path + "/";
+                if (checkpoint == null || !checkpoint.isCompleted(propertiesUnit)) {
+                    walker.scanProperties(child);
+                    sink.unitCompleted(propertiesUnit);
+                }
+                planUnits(child, depth + 1, splitDepth, walker, sink, checkpoint, units);
+            } else {
+                units.add(path);
             }
         }
     }
 
-    private void addEntry(JcrSession session, String sourcePath, String propertyName, String identifier, ReferenceKind kind,
-                          List<ReferenceEntry> entries, Map<String, Boolean> existenceCache) {
-        boolean exists = targetExists(session, identifier, existenceCache);
-        entries.add(new ReferenceEntry(sourcePath, propertyName, identifier, exists, kind));
+    private static JcrSession openSession(JcrSessionFactory sessionFactory, String workspace) {
+        return JcrSession.Wrapper.wrap(sessionFactory.createSession(workspace));
     }
 
-    private boolean targetExists(JcrSession session, String identifier, Map<String, Boolean> existenceCache) {
-        if (identifier == null || identifier.isEmpty()) {
-            return false;
-        }
-        Boolean cached = existenceCache.get(identifier);
-        if (cached != null) {
-            return cached.booleanValue();
+    private static void await(Future<Void> worker) {
+        try {
+            worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BrixException("Reference scan was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new BrixException("Reference scan failed", e.getCause());
         }
-        boolean exists = JcrUtil.getNodeByUUID(session, identifier) != null;
-        existenceCache.put(identifier, Boolean.valueOf(exists));
-        return exists;
     }
 
-    private boolean shouldScanStringProperty(String propertyName, Options options) {
-        Set<String> names = options.getStringReferencePropertyNames();
-        if (names.isEmpty()) {
-            return true;
+    /**
+     * Returns whether the value has the canonical form of a version 1 to 5 UUID, without allocating.
+     */
+    static boolean looksLikeUuid(String value) {
+        if (value == null || value.length() != 36) {
+            return false;
         }
-        return names.contains(propertyName.toLowerCase(Locale.ROOT));
+        for (int i = 0; i < 36; i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!isHexDigit(c)) {
+                return false;
+            }
+        }
+        char version = value.charAt(14);
+        char variant = value.charAt(19);
+        return version >= '1' && version <= '5' && (variant == '8' || variant == '9' || variant == 'a' ||
+                variant == 'b' || variant == 'A' || variant == 'B');
     }
 
-    private static boolean looksLikeUuid(String value) {
-        return value != null && UUID_PATTERN.matcher(value).matches();
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
     }
 
     private static ReferenceKind kindFor(int type) {
@@ -174,9 +290,146 @@ public final class ReferenceIntegrityScanner {
         return ReferenceKind.REFERENCE;
     }
 
+    /**
+     * Walks nodes on a single session and reports findings to a sink. Target existence is cached in a bounded LRU
+     * map.
+     */
+    private static final class Walker {
+        private final JcrSession session;
+        private final Options options;
+        private final Sink sink;
+        private final Map<String, Boolean> existenceCache;
+
+        private Walker(JcrSession session, Options options, Sink sink) {
+            this.session = session;
+            this.options = options;
+            this.sink = sink;
+            final int maxSize = options.getExistenceCacheSize();
+            this.existenceCache = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        private void scanSubtree(JcrNode node) {
+            scanProperties(node);
+            JcrNodeIterator children = node.getNodes();
+            while (children.hasNext()) {
+                scanSubtree(children.nextNode());
+            }
+        }
+
+        private void scanProperties(JcrNode node) {
+            String sourcePath = node.getPath();
+            JcrPropertyIterator properties = node.getProperties();
+            while (properties.hasNext()) {
+                scanProperty(sourcePath, properties.nextProperty());
+            }
+        }
+
+        private void scanProperty(String sourcePath, JcrProperty property) {
+            int type = property.getType();
+            String propertyName = property.getName();
+
+            if (type == PropertyType.REFERENCE || type == PropertyType.WEAKREFERENCE) {
+                scanReferenceProperty(sourcePath, propertyName, property, type);
+            } else if (options.isIncludeStringUuidCandidates() && type == PropertyType.STRING
+                    && shouldScanStringProperty(propertyName)) {
+                scanStringUuidCandidates(sourcePath, propertyName, property);
+            }
+        }
+
+        private void scanReferenceProperty(String sourcePath, String propertyName, JcrProperty property, int type) {
+            if (property.getDefinition().isMultiple()) {
+                JcrValue[] values = property.getValues();
+                for (JcrValue value : values) {
+                    addEntry(sourcePath, propertyName, value.getString(), kindFor(type));
+                }
+            } else {
+                addEntry(sourcePath, propertyName, property.getValue().getString(), kindFor(type));
+            }
+        }
+
+        private void scanStringUuidCandidates(String sourcePath, String propertyName, JcrProperty property) {
+            if (property.getDefinition().isMultiple()) {
+                JcrValue[] values = property.getValues();
+                for (JcrValue value : values) {
+                    String candidate = value.getString();
+                    if (looksLikeUuid(candidate)) {
+                        addEntry(sourcePath, propertyName, candidate, ReferenceKind.STRING_UUID);
+                    }
+                }
+            } else {
+                String candidate = property.getString();
+                if (looksLikeUuid(candidate)) {
+                    addEntry(sourcePath, propertyName, candidate, ReferenceKind.STRING_UUID);
+                }
+            }
+        }
+
+        private void addEntry(String sourcePath, String propertyName, String identifier, ReferenceKind kind) {
+            boolean exists = targetExists(identifier);
+            sink.accept(new ReferenceEntry(sourcePath, propertyName, identifier, exists, kind));
+        }
+
+        private boolean targetExists(String identifier) {
+            if (identifier == null || identifier.isEmpty()) {
+                return false;
+            }
+            Boolean cached = existenceCache.get(identifier);
+            if (cached != null) {
+                return cached.booleanValue();
+            }
+            boolean exists;
+            try {
+                // plain sessions do not wrap nodes as BrixNode, so JcrUtil.getNodeByUUID can not be used
+                session.getNodeByIdentifier(identifier);
+                exists = true;
+            } catch (JcrException e) {
+                if (!(e.getCause() instanceof ItemNotFoundException)) {
+                    throw e;
+                }
+                exists = false;
+            }
+            existenceCache.put(identifier, Boolean.valueOf(exists));
+            return exists;
+        }
+
+        private boolean shouldScanStringProperty(String propertyName) {
+            Set<String> names = options.getStringReferencePropertyNames();
+            if (names.isEmpty()) {
+                return true;
+            }
+            return names.contains(propertyName.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Receiver of findings of a streaming scan.
+     */
+    public interface Sink {
+        void accept(ReferenceEntry entry);
+
+        /**
+         * Called when all findings of a unit have been passed to {@link #accept(ReferenceEntry)}, before the unit is
+         * recorded in the checkpoint. Sinks that buffer their output should flush it here, otherwise a resumed scan
+         * skips findings that never reached the report.
+         *
+         * @param unit checkpoint key of the unit
+         */
+        default void unitCompleted(String unit) {
+        }
+    }
+
     public static final class Options {
         private boolean includeStringUuidCandidates;
         private final Set<String> stringReferencePropertyNames = new HashSet<String>();
+        private int threads = 1;
+        private int splitDepth = 1;
+        private int existenceCacheSize = 100000;
+        private Checkpoint checkpoint;
 
         public boolean isIncludeStringUuidCandidates() {
             return includeStringUuidCandidates;
@@ -198,6 +451,65 @@ public final class ReferenceIntegrityScanner {
             stringReferencePropertyNames.add(propertyName.trim().toLowerCase(Locale.ROOT));
             return this;
         }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Sets the number of workers used by the streaming scan.
+         */
+        public Options setThreads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("Argument 'threads' must be positive.");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        public int getSplitDepth() {
+            return splitDepth;
+        }
+
+        /**
+         * Sets how many levels below the root of the streaming scan are split into units of work. With the default of
+         * <code>1</code> every child subtree of the root is a unit; roots with few children need a larger depth for the
+         * workers to run in parallel.
+         */
+        public Options setSplitDepth(int splitDepth) {
+            if (splitDepth < 1) {
+                throw new IllegalArgumentException("Argument 'splitDepth' must be positive.");
+            }
+            this.splitDepth = splitDepth;
+            return this;
+        }
+
+        public int getExistenceCacheSize() {
+            return existenceCacheSize;
+        }
+
+        /**
+         * Sets how many target identifiers each worker remembers as existing or missing.
+         */
+        public Options setExistenceCacheSize(int existenceCacheSize) {
+            if (existenceCacheSize < 0) {
+                throw new IllegalArgumentException("Argument 'existenceCacheSize' may not be negative.");
+            }
+            this.existenceCacheSize = existenceCacheSize;
+            return this;
+        }
+
+        public Checkpoint getCheckpoint() {
+            return checkpoint;
+        }
+
+        /**
+         * Sets the checkpoint used by the streaming scan to skip and record finished subtrees.
+         */
+        public Options setCheckpoint(Checkpoint checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
     }
 
     public enum ReferenceKind {
@@ -292,24 +604,119 @@ public final class ReferenceIntegrityScanner {
             Integer current = counts.get(key);
             counts.put(key, current == null ? 1 : current + 1);
         }
+    }
 
-        private Map<String, Integer> sortByCountDescending(Map<String, Integer> counts) {
-            List<Map.Entry<String, Integer>> entries = new ArrayList<Map.Entry<String, Integer>>(counts.entrySet());
-            Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>() {
-                @Override
-                public int compare(Map.Entry<String, Integer> left, Map.Entry<String, Integer> right) {
-                    int byCount = right.getValue().compareTo(left.getValue());
-                    if (byCount != 0) {
-                        return byCount;
-                    }
-                    return left.getKey().compareTo(right.getKey());
+    /**
+     * Counters of the findings of a streaming scan. Missing references are counted by target identifier and property
+     * name; they are expected to be rare, so these maps stay small.
+     */
+    public static final class ScanSummary {
+        private int totalCount;
+        private int missingCount;
+        private final Map<String, Integer> missingByTargetIdentifier = new HashMap<String, Integer>();
+        private final Map<String, Integer> missingByPropertyName = new HashMap<String, Integer>();
+
+        void add(ReferenceEntry entry) {
+            totalCount++;
+            if (!entry.isExists()) {
+                missingCount++;
+                missingByTargetIdentifier.merge(entry.getTargetIdentifier(), 1, Integer::sum);
+                missingByPropertyName.merge(entry.getPropertyName(), 1, Integer::sum);
+            }
+        }
+
+        public int getTotalCount() {
+            return totalCount;
+        }
+
+        public int getMissingCount() {
+            return missingCount;
+        }
+
+        public Map<String, Integer> getMissingByTargetIdentifier() {
+            return sortByCountDescending(missingByTargetIdentifier);
+        }
+
+        public Map<String, Integer> getMissingByPropertyName() {
+            return sortByCountDescending(missingByPropertyName);
+        }
+    }
+
+    /**
+     * File backed record of the units finished by a streaming scan. Subtrees and the properties of the scan root are
+     * recorded by path, the properties of nodes split into smaller units by path followed by a slash. Each finished
+     * unit is appended as a line and flushed immediately, so the file survives an interrupted scan. Findings of a unit
+     * that was interrupted half way are reported again when the scan is resumed; consumers that need exact reports have
+     * to drop duplicate findings of the resumed run.
+     */
+    public static final class Checkpoint implements Closeable {
+        private final Set<String> completed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final Writer writer;
+
+        private Checkpoint(Path file, boolean resume) throws IOException {
+            if (resume && Files.exists(file)) {
+                completed.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            } else {
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            }
+        }
+
+        /**
+         * Opens a checkpoint file.
+         *
+         * @param file   checkpoint file
+         * @param resume <code>true</code> to keep units recorded by a previous scan, <code>false</code> to start over
+         * @return checkpoint
+         * @throws IOException if the file can not be read or written
+         */
+        public static Checkpoint open(Path file, boolean resume) throws IOException {
+            return new Checkpoint(file, resume);
+        }
+
+        public boolean isCompleted(String path) {
+            return completed.contains(path);
+        }
+
+        public int getCompletedCount() {
+            return completed.size();
+        }
+
+        synchronized void markCompleted(String path) {
+            if (!completed.add(path)) {
+                return;
+            }
+            try {
+                writer.write(path);
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write checkpoint", e);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static Map<String, Integer> sortByCountDescending(Map<String, Integer> counts) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<Map.Entry<String, Integer>>(counts.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>() {
+            @Override
+            public int compare(Map.Entry<String, Integer> left, Map.Entry<String, Integer> right) {
+                int byCount = right.getValue().compareTo(left.getValue());
+                if (byCount != 0) {
+                    return byCount;
                 }
-            });
-            Map<String, Integer> sorted = new LinkedHashMap<String, Integer>();
-            for (Map.Entry<String, Integer> entry : entries) {
-                sorted.put(entry.getKey(), entry.getValue());
+                return left.getKey().compareTo(right.getKey());
             }
-            return sorted;
+        });
+        Map<String, Integer> sorted = new LinkedHashMap<String, Integer>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue());
         }
+        return sorted;
     }
 }
@@ -27,19 +27,79 @@ import org.brixcms.jcr.wrapper.ResourceNode;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Session behavior that wraps nodes using the registered {@link JcrNodeWrapperFactory}s. Factories that declare a node
+ * type are dispatched through a lookup on the node type, which is resolved at most once per node until the session
+ * content changes or any node is saved.
+ */
 public class SessionBehavior implements Behavior {
+    private static final int MAX_CACHED_NODE_TYPES = 4096;
+
+    /**
+     * Marker for nodes without node type, distinguishes them from nodes that have not been resolved yet
+     */
+    private static final String NO_TYPE = new String();
+
+    /**
+     * Incremented on every node save; node types resolved at an older revision are discarded
+     */
+    private static final AtomicLong saveRevision = new AtomicLong();
+
     private final Brix brix;
     private final List<JcrNodeWrapperFactory> factories;
 
+    /**
+     * Factories that do not declare a node type, in registration order
+     */
+    private final List<JcrNodeWrapperFactory> untypedFactories;
+
+    /**
+     * Registration index of each entry in {@link #untypedFactories}
+     */
+    private final int[] untypedFactoryIndexes;
+
+    private final Map<String, JcrNodeWrapperFactory> typedFactories;
+    private final Map<String, Integer> typedFactoryIndexes;
+    private final int firstTypedFactoryIndex;
+
+    private final Map<String, String> nodeTypes = new HashMap<String, String>();
+    private long nodeTypesRevision = saveRevision.get();
+
     public SessionBehavior(Brix brix) {
         this.brix = brix;
         this.factories = List.copyOf(
                 brix.getConfig().getRegistry().lookupCollection(JcrNodeWrapperFactory.POINT));
-    }
-
 
+        List<JcrNodeWrapperFactory> untyped = new ArrayList<JcrNodeWrapperFactory>();
+        List<Integer> untypedIndexes = new ArrayList<Integer>();
+        Map<String, JcrNodeWrapperFactory> typed = new HashMap<String, JcrNodeWrapperFactory>();
+        Map<String, Integer> typedIndexes = new HashMap<String, Integer>();
+        int firstTyped = factories.size();
+        for (int i = 0; i < factories.size(); i++) {
+            JcrNodeWrapperFactory factory = factories.get(i);
+            String type = factory.getNodeType();
+            if (type == null) {
+                untyped.add(factory);
+                untypedIndexes.add(i);
+            } else if (!typed.containsKey(type)) {
+                // first registered factory wins, same as with the linear probe
+                typed.put(type, factory);
+                typedIndexes.put(type, i);
+                firstTyped = Math.min(firstTyped, i);
+            }
+        }
+        this.untypedFactories = List.copyOf(untyped);
+        this.untypedFactoryIndexes = untypedIndexes.stream().mapToInt(Integer::intValue).toArray();
+        this.typedFactories = Map.copyOf(typed);
+        this.typedFactoryIndexes = Map.copyOf(typedIndexes);
+        this.firstTypedFactoryIndex = firstTyped;
+    }
 
     public JcrNode wrap(Node node, JcrSession session) {
         if (node instanceof JcrNode jcrNode) {
@@ -48,12 +108,39 @@ public class SessionBehavior implements Behavior {
 
         JcrNode n = new NodeWrapper(node, session);
 
-        for (JcrNodeWrapperFactory factory : factories) {
+        // untyped factories registered before the first typed factory do not need the node type
+        int i = 0;
+        for (; i < untypedFactories.size() && untypedFactoryIndexes[i] < firstTypedFactoryIndex; i++) {
+            JcrNodeWrapperFactory factory = untypedFactories.get(i);
             if (factory.canWrap(brix, n)) {
                 return factory.wrap(brix, node, session);
             }
         }
 
+        // remaining untyped factories only take precedence if registered before the matching typed factory
+        int limit = factories.size();
+        JcrNodeWrapperFactory typed = null;
+        if (!typedFactories.isEmpty()) {
+            String type = getNodeType(node, n);
+            if (type != null) {
+                typed = typedFactories.get(type);
+                if (typed != null) {
+                    limit = typedFactoryIndexes.get(type);
+                }
+            }
+        }
+
+        for (; i < untypedFactories.size() && untypedFactoryIndexes[i] < limit; i++) {
+            JcrNodeWrapperFactory factory = untypedFactories.get(i);
+            if (factory.canWrap(brix, n)) {
+                return factory.wrap(brix, node, session);
+            }
+        }
+
+        if (typed != null) {
+            return typed.wrap(brix, node, session);
+        }
+
         if (ResourceNode.FACTORY.canWrap(brix, n)) {
             return ResourceNode.FACTORY.wrap(brix, node, session);
         }
@@ -61,10 +148,38 @@ public class SessionBehavior implements Behavior {
         return new BrixNode(node, session);
     }
 
+    private String getNodeType(Node node, JcrNode wrapper) {
+        long revision = saveRevision.get();
+        if (nodeTypesRevision != revision || nodeTypes.size() >= MAX_CACHED_NODE_TYPES) {
+            nodeTypes.clear();
+            nodeTypesRevision = revision;
+        }
+
+        String key;
+        try {
+            key = node.getIdentifier();
+        } catch (RepositoryException e) {
+            return BrixNode.getNodeType(wrapper);
+        }
+
+        String type = nodeTypes.get(key);
+        if (type == null) {
+            type = BrixNode.getNodeType(wrapper);
+            nodeTypes.put(key, type != null ? type : NO_TYPE);
+        }
+        return type != NO_TYPE ? type : null;
+    }
+
     public void nodeSaved(JcrNode node) {
+        saveRevision.incrementAndGet();
         EventUtil.raiseSaveEvent(node);
     }
 
+    @Override
+    public void wrappersInvalidated() {
+        nodeTypes.clear();
+    }
+
     public void handleException(Exception e) {
         if (e instanceof RepositoryException exception) {
             throw new JcrException(exception);
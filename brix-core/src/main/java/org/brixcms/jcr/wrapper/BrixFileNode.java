@@ -19,6 +19,7 @@ import org.apache.wicket.util.string.Strings;
 import org.brixcms.Brix;
 import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.base.EventUtil;
 import org.brixcms.plugin.site.SitePlugin;
 import org.brixcms.plugin.site.resource.ResourceNodePlugin;
 import org.slf4j.Logger;
@@ -183,13 +184,21 @@ public class BrixFileNode extends BrixNode {
         if (hash != null && isPersistedHashForCurrentContent()) {
             return hash;
         }
+        // nothing but the hash is saved unless the session holds other changes
+        boolean hashOnly = !getSession().hasPendingChanges();
         if (getContentLastModified() == null) {
             touchContentLastModified();
+            hashOnly = false;
         }
         long contentLength = getContentLength();
         hash = calculateContentSha256();
         setContentSha256(hash, contentLength);
-        saveHashBestEffort();
+        if (hashOnly) {
+            // the content did not change, caches derived from it stay valid
+            EventUtil.runWithoutSaveEvents(this::saveHashBestEffort);
+        } else {
+            saveHashBestEffort();
+        }
         return hash;
     }
 
@@ -244,7 +253,13 @@ public class BrixFileNode extends BrixNode {
         }
     }
 
-    private Long getContentLastModified() {
+    /**
+     * Returns the revision of the current content, that is the {@code jcr:lastModified} timestamp of the resource in
+     * milliseconds. The persisted hash is only valid for the revision it was computed for.
+     *
+     * @return content revision or <code>null</code> if the resource has no modification timestamp yet
+     */
+    public Long getContentLastModified() {
         JcrNode content = getContent();
         if (!content.hasProperty("jcr:lastModified")) {
             return null;
@@ -373,6 +388,15 @@ public class BrixFileNode extends BrixNode {
         }
     }
 
+    /**
+     * Returns the data of this node as binary. The caller is responsible for disposing the binary.
+     *
+     * @return
+     */
+    public Binary getDataAsBinary() {
+        return getContent().getProperty("jcr:data").getBinary();
+    }
+
     /**
      * Returns the data of this node as stream
      *
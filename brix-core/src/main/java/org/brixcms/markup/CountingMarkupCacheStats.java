@@ -0,0 +1,100 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.markup;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link MarkupCacheStats} that keeps running totals. This is the default statistics of a {@link MarkupCache}.
+ */
+public class CountingMarkupCacheStats implements MarkupCacheStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder evictedWeight = new LongAdder();
+
+    @Override
+    public void recordHit() {
+        hits.increment();
+    }
+
+    @Override
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    @Override
+    public void recordLoad(long loadTimeNanos) {
+        loads.increment();
+        totalLoadTime.add(loadTimeNanos);
+    }
+
+    @Override
+    public void recordEviction(long weight) {
+        evictions.increment();
+        evictedWeight.add(weight);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return ratio of hits to all requests, <code>1.0</code> if there were no requests yet
+     */
+    public double getHitRate() {
+        long hitCount = getHitCount();
+        long requestCount = hitCount + getMissCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public long getTotalLoadTime() {
+        return totalLoadTime.sum();
+    }
+
+    /**
+     * @return average time spent generating markup in nanoseconds
+     */
+    public double getAverageLoadPenalty() {
+        long loadCount = getLoadCount();
+        return loadCount == 0 ? 0.0 : (double) getTotalLoadTime() / loadCount;
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getEvictedWeight() {
+        return evictedWeight.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHitCount() + ", misses=" + getMissCount() + ", hitRate=" + getHitRate() + ", loads="
+                + getLoadCount() + ", averageLoadPenalty=" + getAverageLoadPenalty() + "ns, evictions="
+                + getEvictionCount() + ", evictedWeight=" + getEvictedWeight();
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.markup;
+
+/**
+ * Count-min sketch estimating how often keys were requested, used by {@link MarkupCache} to decide whether a newly
+ * generated markup is worth more than the entry it would evict. Counters saturate at 15 and are halved periodically so
+ * that the estimate follows recent popularity rather than all-time totals.
+ * <p>
+ * Not thread safe, callers synchronize externally.
+ */
+class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb4b82e39, 0x5a2d9f15, 0xc2b2ae35};
+
+    private byte[][] table;
+    private int mask;
+    private int additions;
+    private int sampleSize;
+
+    FrequencySketch(int expectedEntries) {
+        resize(expectedEntries);
+    }
+
+    /**
+     * Grows the sketch when it tracks considerably more entries than it was sized for. Growing discards the
+     * collected frequencies.
+     *
+     * @param expectedEntries number of entries currently held by the cache
+     */
+    void ensureCapacity(int expectedEntries) {
+        if (expectedEntries > table[0].length) {
+            resize(expectedEntries);
+        }
+    }
+
+    private void resize(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(64, Math.min(expectedEntries, 1 << 24)) - 1) << 1;
+        table = new byte[DEPTH][width];
+        mask = width - 1;
+        sampleSize = 10 * width;
+        additions = 0;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < DEPTH; ++i) {
+            int index = indexOf(hash, i);
+            if (table[i][index] < MAX_COUNT) {
+                table[i][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; ++i) {
+            frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    /**
+     * Halves all counters, aging popularity that is no longer current.
+     */
+    private void reset() {
+        for (byte[] row : table) {
+            for (int i = 0; i < row.length; ++i) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+        additions /= 2;
+    }
+}
@@ -22,17 +22,31 @@ import java.util.List;
 /**
  * Contains list of generated markup items and expiration token.
  * <p>
- * TODO: Consider optimizing the list of items by grouping static items together (as text).
+ * The items are precompiled into static segments, which are rendered once when the markup is generated, and dynamic
+ * slots in between them that are rendered every time (see {@link MarkupRenderer#isStatic(Item)}). There is always
+ * one static segment more than there are slots; the first segment includes the doctype.
  *
  * @author Matej Knopp
  */
 class GeneratedMarkup {
-    final List<Item> items;
-
     final Object expirationToken;
 
     final String doctype;
 
+    final String[] staticSegments;
+
+    final Item[] slots;
+
+    /**
+     * Total length of all static segments
+     */
+    final int staticLength;
+
+    /**
+     * Approximate number of bytes retained by this instance, see {@link MarkupCache}
+     */
+    final long weight;
+
     /**
      * Creates new {@link GeneratedMarkup} instance from given {@link MarkupSource}.
      *
@@ -43,12 +57,44 @@ class GeneratedMarkup {
             throw new IllegalArgumentException("Argument 'markupSource' may not be null.");
         }
         this.expirationToken = markupSource.getExpirationToken();
-        items = new ArrayList<Item>();
+        List<Item> items = new ArrayList<Item>();
         Item item = markupSource.nextMarkupItem();
         while (item != null) {
             items.add(item);
             item = markupSource.nextMarkupItem();
         }
         this.doctype = markupSource.getDoctype();
+
+        List<String> segments = new ArrayList<String>();
+        List<Item> dynamicItems = new ArrayList<Item>();
+        StringBuilder segment = new StringBuilder();
+        int length = 0;
+        if (doctype != null) {
+            segment.append(doctype);
+        }
+        for (Item i : items) {
+            if (MarkupRenderer.isStatic(i)) {
+                MarkupRenderer.renderStatic(i, segment);
+            } else {
+                length += segment.length();
+                segments.add(segment.toString());
+                segment.setLength(0);
+                dynamicItems.add(i);
+            }
+        }
+        length += segment.length();
+        segments.add(segment.toString());
+
+        this.staticSegments = segments.toArray(new String[segments.size()]);
+        this.slots = dynamicItems.toArray(new Item[dynamicItems.size()]);
+        this.staticLength = length;
+        this.weight = estimateWeight();
+    }
+
+    /**
+     * Estimates the retained size: the static segments (two bytes per character) plus a fixed overhead per slot.
+     */
+    private long estimateWeight() {
+        return 64L + 2L * staticLength + 56L * slots.length;
     }
 }
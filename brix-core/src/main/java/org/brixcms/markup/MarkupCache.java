@@ -18,24 +18,119 @@ import org.apache.wicket.MarkupContainer;
 import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.web.generic.IGenericComponent;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Contains {@link GeneratedMarkup} instances associated with {@link MarkupContainer}s. The {@link MarkupContainer}s
  * must also implement {@link MarkupSourceProvider} so that the cache can generate markup on demand and reuse it until
- * explicitly invalidated.
+ * explicitly invalidated or evicted.
+ * <p>
+ * The cache is bounded by the approximate number of bytes held by the generated markup. Eviction follows the
+ * W-TinyLFU policy: new markup enters a small LRU window and, once it leaves the window, is only admitted to the main
+ * segmented LRU if it was requested more often than the entry it would replace. Popularity is estimated by a {@link
+ * FrequencySketch}, so a crawler touching every page once cannot flush frequently rendered templates. Reads adjust the
+ * policy only when its lock is free; under contention the recency update is skipped rather than waited for.
+ * <p>
+ * Every entry records the nodes its markup was generated from (the container and its templates), invalidating a node
+ * looks its dependents up in an index instead of scanning the cache.
  *
  * @author Matej Knopp
  */
 public class MarkupCache {
-    private final ConcurrentMap<String, ConcurrentMap<CacheKey, GeneratedMarkup>> workspaceCaches =
-            new ConcurrentHashMap<String, ConcurrentMap<CacheKey, GeneratedMarkup>>();
+    /**
+     * Default maximum weight (approximate bytes) of all cached markup
+     */
+    public static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+    private static final ThreadLocal<Set<String>> CURRENT_DEPENDENCIES = new ThreadLocal<Set<String>>();
+
+    private static final int NONE = -1;
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final ConcurrentMap<String, Partition> workspaceCaches = new ConcurrentHashMap<String, Partition>();
+
+    private final long maxWeight;
+    private final long windowMaxWeight;
+    private final long protectedMaxWeight;
+    private final MarkupCacheStats stats;
+
+    // guards the queues, the sketch, the dependency indexes and the weight
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final EntryQueue window = new EntryQueue();
+    private final EntryQueue probation = new EntryQueue();
+    private final EntryQueue protectedQueue = new EntryQueue();
+    private final FrequencySketch sketch = new FrequencySketch(256);
+    private long weight;
+    private int size;
+
+    public MarkupCache() {
+        this(DEFAULT_MAX_WEIGHT, new CountingMarkupCacheStats());
+    }
+
+    /**
+     * @param maxWeight maximum approximate number of bytes of all cached markup, <code>0</code> for no limit
+     * @param stats     receiver of cache events
+     */
+    public MarkupCache(long maxWeight, MarkupCacheStats stats) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("Argument 'maxWeight' may not be negative");
+        }
+        if (stats == null) {
+            throw new IllegalArgumentException("Argument 'stats' may not be null");
+        }
+        this.maxWeight = maxWeight == 0 ? Long.MAX_VALUE : maxWeight;
+        this.windowMaxWeight = Math.max(1, this.maxWeight / 100);
+        this.protectedMaxWeight = (this.maxWeight - windowMaxWeight) / 5 * 4;
+        this.stats = stats;
+    }
+
+    public MarkupCacheStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return maximum weight, {@link Long#MAX_VALUE} if the cache is not bounded
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return approximate number of bytes held by the cached markup
+     */
+    public long getWeight() {
+        policyLock.lock();
+        try {
+            return weight;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * @return number of cached markup instances
+     */
+    public int size() {
+        policyLock.lock();
+        try {
+            return size;
+        } finally {
+            policyLock.unlock();
+        }
+    }
 
     /**
      * Returns the {@link GeneratedMarkup} instance for given container. The container must implement {@link
-     * MarkupSourceProvider}. Markup is regenerated only when explicitly invalidated.
+     * MarkupSourceProvider}. Markup is regenerated only when invalidated or evicted.
      *
      * @param container
      * @return
@@ -47,9 +142,40 @@ public class MarkupCache {
         MarkupSourceProvider provider = (MarkupSourceProvider) container;
         BrixNode node = container.getModelObject();
         String workspace = node.getSession().getWorkspace().getName();
-        ConcurrentMap<CacheKey, GeneratedMarkup> cache = getWorkspaceCache(workspace);
+        Partition partition = getWorkspaceCache(workspace);
         CacheKey key = getKey(container, node);
-        return cache.computeIfAbsent(key, ignored -> new GeneratedMarkup(provider.getMarkupSource()));
+
+        Entry entry = partition.entries.get(key);
+        if (entry != null) {
+            stats.recordHit();
+            onAccess(entry);
+            return entry.markup;
+        }
+
+        long invalidations = partition.invalidations;
+        Entry[] loaded = new Entry[1];
+        entry = partition.entries.computeIfAbsent(key, ignored -> loaded[0] = load(partition, key, provider));
+        if (loaded[0] == null) {
+            // generated by a concurrent request
+            stats.recordHit();
+            onAccess(entry);
+        } else {
+            onInsert(partition, entry, invalidations);
+        }
+        return entry.markup;
+    }
+
+    /**
+     * Records that the markup being generated on the current thread is derived from the given node, e.g. a template,
+     * so that it is invalidated together with that node. Does nothing outside of markup generation.
+     *
+     * @param node node the markup depends on
+     */
+    public static void recordDependency(BrixNode node) {
+        Set<String> dependencies = CURRENT_DEPENDENCIES.get();
+        if (dependencies != null && node != null) {
+            dependencies.add(getNodeId(node));
+        }
     }
 
     public void invalidate(BrixNode node) {
@@ -61,13 +187,32 @@ public class MarkupCache {
         invalidate(workspace, nodeId);
     }
 
+    /**
+     * Discards markup generated from the specified node, including markup of containers that use it as template.
+     *
+     * @param workspace
+     * @param nodeId
+     */
     public void invalidate(String workspace, String nodeId) {
         if (workspace == null || nodeId == null) {
             return;
         }
-        ConcurrentMap<CacheKey, GeneratedMarkup> cache = workspaceCaches.get(workspace);
-        if (cache != null) {
-            cache.keySet().removeIf(key -> nodeId.equals(key.nodeId));
+        Partition partition = workspaceCaches.get(workspace);
+        if (partition == null) {
+            return;
+        }
+        policyLock.lock();
+        try {
+            // markup generated concurrently may be based on the old content and must not be linked
+            partition.invalidations++;
+            Set<Entry> dependents = partition.dependents.get(nodeId);
+            if (dependents != null) {
+                for (Entry entry : dependents.toArray(new Entry[dependents.size()])) {
+                    remove(entry);
+                }
+            }
+        } finally {
+            policyLock.unlock();
         }
     }
 
@@ -83,12 +228,169 @@ public class MarkupCache {
         if (workspace == null) {
             return;
         }
-        workspaceCaches.remove(workspace);
+        Partition partition = workspaceCaches.remove(workspace);
+        if (partition == null) {
+            return;
+        }
+        policyLock.lock();
+        try {
+            partition.detached = true;
+            for (Entry entry : partition.entries.values()) {
+                unlink(entry);
+            }
+            partition.dependents.clear();
+        } finally {
+            policyLock.unlock();
+        }
     }
 
-    private ConcurrentMap<CacheKey, GeneratedMarkup> getWorkspaceCache(String workspace) {
-        return workspaceCaches.computeIfAbsent(workspace,
-                ignored -> new ConcurrentHashMap<CacheKey, GeneratedMarkup>());
+    private Partition getWorkspaceCache(String workspace) {
+        return workspaceCaches.computeIfAbsent(workspace, ignored -> new Partition());
+    }
+
+    private Entry load(Partition partition, CacheKey key, MarkupSourceProvider provider) {
+        stats.recordMiss();
+        Set<String> previous = CURRENT_DEPENDENCIES.get();
+        Set<String> dependencies = new HashSet<String>();
+        dependencies.add(key.nodeId);
+        CURRENT_DEPENDENCIES.set(dependencies);
+        long start = System.nanoTime();
+        try {
+            return new Entry(partition, key, new GeneratedMarkup(provider.getMarkupSource()), dependencies);
+        } finally {
+            stats.recordLoad(System.nanoTime() - start);
+            if (previous != null) {
+                CURRENT_DEPENDENCIES.set(previous);
+            } else {
+                CURRENT_DEPENDENCIES.remove();
+            }
+        }
+    }
+
+    private void onAccess(Entry entry) {
+        if (!policyLock.tryLock()) {
+            return;
+        }
+        try {
+            sketch.increment(entry.hash);
+            switch (entry.queue) {
+                case WINDOW:
+                    window.moveToBack(entry);
+                    break;
+                case PROBATION:
+                    probation.remove(entry);
+                    protectedQueue.add(entry);
+                    entry.queue = PROTECTED;
+                    demoteProtected();
+                    break;
+                case PROTECTED:
+                    protectedQueue.moveToBack(entry);
+                    break;
+                default:
+                    // not linked yet or already removed
+                    break;
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void onInsert(Partition partition, Entry entry, long invalidations) {
+        policyLock.lock();
+        try {
+            if (partition.detached || partition.invalidations != invalidations) {
+                partition.entries.remove(entry.key, entry);
+                return;
+            }
+            sketch.increment(entry.hash);
+            for (String dependency : entry.dependencies) {
+                partition.dependents.computeIfAbsent(dependency, ignored -> new HashSet<Entry>()).add(entry);
+            }
+            window.add(entry);
+            entry.queue = WINDOW;
+            weight += entry.markup.weight;
+            ++size;
+            sketch.ensureCapacity(size);
+            evict();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void demoteProtected() {
+        while (protectedQueue.weight > protectedMaxWeight) {
+            Entry demoted = protectedQueue.first;
+            protectedQueue.remove(demoted);
+            probation.add(demoted);
+            demoted.queue = PROBATION;
+        }
+    }
+
+    private void evict() {
+        // markup leaving the window competes with the least recently used markup of the main space
+        while (window.weight > windowMaxWeight && window.first != null) {
+            Entry candidate = window.first;
+            Entry victim = probation.first != null ? probation.first : protectedQueue.first;
+            if (weight <= maxWeight || victim == null
+                    || sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                window.remove(candidate);
+                probation.add(candidate);
+                candidate.queue = PROBATION;
+                if (weight > maxWeight && victim != null) {
+                    evict(victim);
+                }
+            } else {
+                evict(candidate);
+            }
+        }
+        while (weight > maxWeight) {
+            Entry victim = probation.first;
+            if (victim == null) {
+                victim = protectedQueue.first != null ? protectedQueue.first : window.first;
+            }
+            if (victim == null) {
+                break;
+            }
+            evict(victim);
+        }
+    }
+
+    private void evict(Entry entry) {
+        remove(entry);
+        stats.recordEviction(entry.markup.weight);
+    }
+
+    private void remove(Entry entry) {
+        unlink(entry);
+        entry.partition.entries.remove(entry.key, entry);
+        for (String dependency : entry.dependencies) {
+            Set<Entry> dependents = entry.partition.dependents.get(dependency);
+            if (dependents != null) {
+                dependents.remove(entry);
+                if (dependents.isEmpty()) {
+                    entry.partition.dependents.remove(dependency);
+                }
+            }
+        }
+    }
+
+    private void unlink(Entry entry) {
+        switch (entry.queue) {
+            case WINDOW:
+                window.remove(entry);
+                break;
+            case PROBATION:
+                probation.remove(entry);
+                break;
+            case PROTECTED:
+                protectedQueue.remove(entry);
+                break;
+            default:
+                return;
+        }
+        entry.queue = NONE;
+        weight -= entry.markup.weight;
+        --size;
     }
 
     /**
@@ -106,13 +408,87 @@ public class MarkupCache {
         return new CacheKey(container.getClass().getName(), nodeId);
     }
 
-    private String getNodeId(BrixNode node) {
+    private static String getNodeId(BrixNode node) {
         if (node.isNodeType("mix:referenceable")) {
             return node.getIdentifier();
         }
         return node.getPath();
     }
 
+    /**
+     * Markup of a single workspace. The map is read without locking, the dependency index and invalidation counter
+     * are guarded by the policy lock.
+     */
+    private static class Partition {
+        private final ConcurrentMap<CacheKey, Entry> entries = new ConcurrentHashMap<CacheKey, Entry>();
+        private final Map<String, Set<Entry>> dependents = new HashMap<String, Set<Entry>>();
+        private volatile long invalidations;
+        private boolean detached;
+    }
+
+    private static class Entry {
+        private final Partition partition;
+        private final CacheKey key;
+        private final int hash;
+        private final GeneratedMarkup markup;
+        private final Set<String> dependencies;
+        private int queue = NONE;
+        private Entry prev;
+        private Entry next;
+
+        private Entry(Partition partition, CacheKey key, GeneratedMarkup markup, Set<String> dependencies) {
+            this.partition = partition;
+            this.key = key;
+            this.hash = key.hashCode();
+            this.markup = markup;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list ordered from least to most recently used.
+     */
+    private static class EntryQueue {
+        private Entry first;
+        private Entry last;
+        private long weight;
+
+        private void add(Entry entry) {
+            entry.prev = last;
+            entry.next = null;
+            if (last == null) {
+                first = entry;
+            } else {
+                last.next = entry;
+            }
+            last = entry;
+            weight += entry.markup.weight;
+        }
+
+        private void remove(Entry entry) {
+            if (entry.prev == null) {
+                first = entry.next;
+            } else {
+                entry.prev.next = entry.next;
+            }
+            if (entry.next == null) {
+                last = entry.prev;
+            } else {
+                entry.next.prev = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+            weight -= entry.markup.weight;
+        }
+
+        private void moveToBack(Entry entry) {
+            if (entry != last) {
+                remove(entry);
+                add(entry);
+            }
+        }
+    }
+
     private static class CacheKey {
         private final String componentClass;
         private final String nodeId;
@@ -27,18 +27,29 @@ import org.brixcms.Brix;
 import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.api.JcrProperty;
 import org.brixcms.jcr.api.JcrPropertyIterator;
+import org.brixcms.jcr.base.BatchedSaveEventListener;
 import org.brixcms.jcr.base.SaveEvent;
-import org.brixcms.jcr.base.SaveEventListener;
 import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.plugin.site.SitePlugin;
 import org.brixcms.plugin.site.page.AbstractContainer;
+import org.brixcms.plugin.site.page.PageNode;
 import org.brixcms.plugin.site.page.PageSiteNodePlugin;
 import org.brixcms.plugin.site.page.TemplateNode;
 import org.brixcms.plugin.site.page.TemplateSiteNodePlugin;
+import org.brixcms.web.OutputCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class MarkupCacheInvalidationListener implements SaveEventListener {
+/**
+ * Invalidates cached markup of saved pages and templates, and of all containers that use a saved template. Events of
+ * a batch share the set of visited containers, so the containers referencing a template are looked up once per batch
+ * no matter how many of its dependents were saved.
+ * <p>
+ * Cached page responses (see {@link org.brixcms.web.OutputCache}) rendered from the same containers are dropped along
+ * with their markup. Any other save, e.g. of a tile, a global container or a folder whose children moved, may change
+ * links or content of arbitrary pages and therefore drops all cached responses of the workspace.
+ */
+public class MarkupCacheInvalidationListener implements BatchedSaveEventListener {
     private static final Logger log = LoggerFactory.getLogger(MarkupCacheInvalidationListener.class);
     private static final String TEMPLATE_PROPERTY = Brix.NS_PREFIX + "template";
 
@@ -53,28 +64,36 @@ public class MarkupCacheInvalidationListener implements SaveEventListener {
 
     @Override
     public void onEvent(EventIterator events) {
+        Set<String> visited = new HashSet<String>();
+        Set<String> droppedOutput = new HashSet<String>();
         while (events.hasNext()) {
             Event event = events.nextEvent();
             if (event instanceof SaveEvent saveEvent) {
-                invalidateForNode(saveEvent.getNode());
+                invalidateForNode(saveEvent.getNode(), visited, droppedOutput);
             }
         }
     }
 
-    private void invalidateForNode(JcrNode node) {
+    private void invalidateForNode(JcrNode node, Set<String> visited, Set<String> droppedOutput) {
         if (node == null) {
             return;
         }
         try {
-            JcrNode container = resolveContainerNode(node);
-            if (container == null) {
-                return;
-            }
             SitePlugin plugin = SitePlugin.get(brix);
             if (plugin == null) {
                 return;
             }
-            invalidateContainerAndDependents(plugin.getMarkupCache(), container);
+            JcrNode container = resolveContainerNode(node);
+            if (container == null || !isPageOrTemplateNode(container)) {
+                String workspace = node.getSession().getWorkspace().getName();
+                if (droppedOutput.add(workspace)) {
+                    plugin.getOutputCache().invalidateWorkspace(workspace);
+                }
+            }
+            if (container == null) {
+                return;
+            }
+            invalidateContainerAndDependents(plugin, container, visited);
         } catch (RuntimeException e) {
             log.debug("Failed to invalidate markup cache for {}", safePath(node), e);
         }
@@ -94,9 +113,10 @@ public class MarkupCacheInvalidationListener implements SaveEventListener {
         return null;
     }
 
-    private void invalidateContainerAndDependents(MarkupCache cache, JcrNode container) {
+    private void invalidateContainerAndDependents(SitePlugin plugin, JcrNode container, Set<String> visited) {
+        MarkupCache cache = plugin.getMarkupCache();
+        OutputCache outputCache = plugin.getOutputCache();
         Deque<JcrNode> queue = new ArrayDeque<JcrNode>();
-        Set<String> visited = new HashSet<String>();
         queue.add(container);
 
         while (!queue.isEmpty()) {
@@ -106,6 +126,7 @@ public class MarkupCacheInvalidationListener implements SaveEventListener {
                 continue;
             }
             cache.invalidate(toBrixNode(current));
+            outputCache.invalidate(current.getSession().getWorkspace().getName(), getNodeId(current));
 
             if (isTemplateNode(current)) {
                 enqueueReferencingContainers(current, queue);
@@ -133,6 +154,14 @@ public class MarkupCacheInvalidationListener implements SaveEventListener {
         return PageSiteNodePlugin.TYPE.equals(type) || TemplateSiteNodePlugin.TYPE.equals(type);
     }
 
+    private boolean isPageOrTemplateNode(JcrNode node) {
+        if (node instanceof PageNode || node instanceof TemplateNode) {
+            return true;
+        }
+        String type = BrixNode.getNodeType(node);
+        return PageSiteNodePlugin.TYPE.equals(type) || TemplateSiteNodePlugin.TYPE.equals(type);
+    }
+
     private boolean isTemplateNode(JcrNode node) {
         if (node instanceof TemplateNode) {
             return true;
@@ -153,8 +182,11 @@ public class MarkupCacheInvalidationListener implements SaveEventListener {
             return null;
         }
         String workspace = node.getSession().getWorkspace().getName();
-        String nodeId = node.isNodeType("mix:referenceable") ? node.getIdentifier() : node.getPath();
-        return workspace + "-" + nodeId;
+        return workspace + "-" + getNodeId(node);
+    }
+
+    private String getNodeId(JcrNode node) {
+        return node.isNodeType("mix:referenceable") ? node.getIdentifier() : node.getPath();
     }
 
     private String safePath(JcrNode node) {
@@ -0,0 +1,48 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.markup;
+
+/**
+ * Receives the events of a {@link MarkupCache}, e.g. to publish them to a monitoring system. Implementations are
+ * called on request threads and must be thread safe and cheap. {@link CountingMarkupCacheStats} keeps simple totals.
+ *
+ * @see org.brixcms.config.BrixConfig#setMarkupCacheStats(MarkupCacheStats)
+ */
+public interface MarkupCacheStats {
+    /**
+     * Called when requested markup was found in the cache.
+     */
+    void recordHit();
+
+    /**
+     * Called when requested markup had to be generated.
+     */
+    void recordMiss();
+
+    /**
+     * Called after markup was generated.
+     *
+     * @param loadTimeNanos time spent generating the markup in nanoseconds
+     */
+    void recordLoad(long loadTimeNanos);
+
+    /**
+     * Called when markup was evicted to keep the cache within its maximum weight. Invalidations are not reported.
+     *
+     * @param weight approximate size of the evicted markup in bytes
+     */
+    void recordEviction(long weight);
+}
@@ -42,7 +42,11 @@ public class MarkupHelper implements Serializable {
 
     private final IGenericComponent<BrixNode> component;
 
-    private String markup = null;
+    /**
+     * Rendered markup, derived from the shared {@link MarkupCache} entry. Never serialized with the page, it is
+     * rendered again on first access after {@link #detach()} or deserialization.
+     */
+    private transient String markup = null;
 
     public MarkupHelper(IGenericComponent<BrixNode> component) {
         this.component = component;
@@ -58,7 +62,7 @@ public class MarkupHelper implements Serializable {
         final Set<String> existingComponents = getExistingComponents();
         GeneratedMarkup markup = getMarkupCache().getMarkup(component);
 
-        MarkupRenderer renderer = new MarkupRenderer(markup.items, markup.doctype) {
+        MarkupRenderer renderer = new MarkupRenderer(markup) {
             @Override
             void postprocessTagAttributes(Tag tag, Map<String, String> attributes) {
                 // if during rendering we have a ComponentTag
@@ -117,9 +121,20 @@ public class MarkupHelper implements Serializable {
     }
 
     public String getMarkup() {
+        if (markup == null) {
+            initMarkup();
+        }
         return markup;
     }
 
+    /**
+     * Discards the rendered markup. It will be rendered again, and the tag components reconciled with it, the next
+     * time {@link #getMarkup()} is invoked.
+     */
+    public void detach() {
+        markup = null;
+    }
+
     private MarkupCache getMarkupCache() {
         return SitePlugin.get().getMarkupCache();
     }
@@ -18,24 +18,32 @@ import org.brixcms.markup.tag.Comment;
 import org.brixcms.markup.tag.Item;
 import org.brixcms.markup.tag.Tag;
 import org.brixcms.markup.tag.Text;
+import org.brixcms.markup.tag.simple.SimpleComment;
+import org.brixcms.markup.tag.simple.SimpleTag;
+import org.brixcms.markup.tag.simple.SimpleText;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 /**
  * Renders the given list of items into an XHTML markup.
+ * <p>
+ * Static items are rendered only once, when the {@link GeneratedMarkup} is created, rendering afterwards concatenates
+ * the precompiled segments and renders the dynamic slots in between.
  *
  * @author Matej Knopp
  */
 public abstract class MarkupRenderer {
-    private final String doctype;
-    private final List<Item> items;
+    /**
+     * Expected length of a rendered dynamic slot, used to presize the output buffer
+     */
+    private static final int ESTIMATED_SLOT_LENGTH = 64;
 
-    MarkupRenderer(List<Item> items, String doctype) {
-        this.items = items;
-        this.doctype = doctype;
+    private final GeneratedMarkup markup;
+
+    MarkupRenderer(GeneratedMarkup markup) {
+        this.markup = markup;
     }
 
     /**
@@ -44,19 +52,49 @@ public abstract class MarkupRenderer {
      * @return XHTML string
      */
     public String render() {
-        StringBuilder builder = new StringBuilder();
-
-        if (doctype != null) {
-            builder.append(doctype);
-        }
-
-        for (Item item : items) {
-            render(item, builder);
+        final String[] segments = markup.staticSegments;
+        final Item[] slots = markup.slots;
+        StringBuilder builder = new StringBuilder(markup.staticLength + slots.length * ESTIMATED_SLOT_LENGTH);
+
+        builder.append(segments[0]);
+        for (int i = 0; i < slots.length; ++i) {
+            render(slots[i], builder);
+            builder.append(segments[i + 1]);
         }
 
         return builder.toString();
     }
 
+    /**
+     * Returns whether the item always renders the same output and does not need post processing. Such items are
+     * rendered only once into the static segments of {@link GeneratedMarkup}.
+     *
+     * @param item
+     * @return <code>true</code> if the item is static
+     */
+    static boolean isStatic(Item item) {
+        // subclasses of the simple items may compute their content
+        Class<?> type = item.getClass();
+        return type == SimpleTag.class || type == SimpleText.class || type == SimpleComment.class;
+    }
+
+    static void renderStatic(Item item, StringBuilder builder) {
+        if (item instanceof Tag tag) {
+            Map<String, String> attributeMap = null;
+            if (tag.getType() == Tag.Type.OPEN || tag.getType() == Tag.Type.OPEN_CLOSE) {
+                // same attribute order as for dynamic tags
+                attributeMap = new HashMap<String, String>(tag.getAttributeMap());
+            }
+            renderTag(tag, attributeMap, builder);
+        } else if (item instanceof Text text) {
+            render(text, builder);
+        } else if (item instanceof Comment comment) {
+            render(comment, builder);
+        } else {
+            throw new IllegalStateException("Unknown item type '" + item.getClass().getName() + "'");
+        }
+    }
+
     private void render(Item item, StringBuilder builder) {
         if (item instanceof Tag tag) {
             render(tag, builder);
@@ -70,6 +108,15 @@ public abstract class MarkupRenderer {
     }
 
     private void render(Tag tag, StringBuilder builder) {
+        Map<String, String> attributeMap = null;
+        if (tag.getType() == Tag.Type.OPEN || tag.getType() == Tag.Type.OPEN_CLOSE) {
+            attributeMap = new HashMap<String, String>(tag.getAttributeMap());
+            postprocessTagAttributes(tag, attributeMap);
+        }
+        renderTag(tag, attributeMap, builder);
+    }
+
+    private static void renderTag(Tag tag, Map<String, String> attributeMap, StringBuilder builder) {
         if (tag.getType() == Tag.Type.CLOSE) {
             builder.append("</");
         } else {
@@ -77,9 +124,7 @@ public abstract class MarkupRenderer {
         }
         builder.append(tag.getName());
 
-        if (tag.getType() == Tag.Type.OPEN || tag.getType() == Tag.Type.OPEN_CLOSE) {
-            Map<String, String> attributeMap = new HashMap<String, String>(tag.getAttributeMap());
-            postprocessTagAttributes(tag, attributeMap);
+        if (attributeMap != null) {
             for (Entry<String, String> e : attributeMap.entrySet()) {
                 builder.append(" ");
                 builder.append(e.getKey());
@@ -96,13 +141,20 @@ public abstract class MarkupRenderer {
         builder.append(">");
     }
 
+    /**
+     * Allows to modify the attributes of a dynamic tag before it is rendered. Not invoked for static tags (see {@link
+     * #isStatic(Item)}).
+     *
+     * @param tag
+     * @param attributes
+     */
     abstract void postprocessTagAttributes(Tag tag, Map<String, String> attributes);
 
-    private void render(Text text, StringBuilder builder) {
+    private static void render(Text text, StringBuilder builder) {
         builder.append(text.getText());
     }
 
-    private void render(Comment comment, StringBuilder builder) {
+    private static void render(Comment comment, StringBuilder builder) {
         builder.append("<!-- ");
         builder.append(comment.getText());
         builder.append(" -->");
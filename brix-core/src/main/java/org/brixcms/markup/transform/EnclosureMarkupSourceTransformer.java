@@ -21,10 +21,12 @@ import org.brixcms.markup.MarkupSource;
 import org.brixcms.markup.tag.ComponentTag;
 import org.brixcms.markup.tag.Item;
 import org.brixcms.markup.tag.Tag;
+import org.brixcms.markup.tag.simple.SimpleTag;
 import org.brixcms.plugin.site.page.AbstractContainer;
 import org.brixcms.plugin.site.page.tile.TileTag;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -60,20 +62,23 @@ public class EnclosureMarkupSourceTransformer extends MarkupSourceTransformer {
     @Override
     protected List<Item> transform(List<Item> items) {
         Tag enclosure = null;
+        int enclosureIndex = -1;
         List<String> children = null;
         List<Tag> enclosureChildTags = null;
-        for (Item i : items) {
-            if (i instanceof Tag tag) {
+        for (int j = 0; j < items.size(); j++) {
+            if (items.get(j) instanceof Tag tag) {
                 if (isEnclosure(tag)) {
                     if (tag.getType() == Tag.Type.OPEN) {
                         // found opening enclosure
                         enclosure = tag;
+                        enclosureIndex = j;
                         children = getChildren(enclosure);
                         enclosureChildTags = new ArrayList<Tag>();
                     } else if (tag.getType() == Tag.Type.CLOSE) {
-                        // tidy up on close tag
-                        updateEnclosureChildId(enclosure, children,
-                                enclosureChildTags);
+                        // tidy up on close tag, the tags may be shared with other markup so the enclosure is replaced
+                        // rather than changed
+                        items.set(enclosureIndex, updateEnclosureChildId(enclosure, children,
+                                enclosureChildTags));
                         enclosure = null;
                         children = null;
                         enclosureChildTags = null;
@@ -120,16 +125,19 @@ public class EnclosureMarkupSourceTransformer extends MarkupSourceTransformer {
     }
 
     /**
-     * Replaces the supplied enclosure child tag with the actual resolved comma separated component path
+     * Returns a copy of the enclosure tag with the supplied enclosure child replaced by the actual resolved comma
+     * separated component path
      *
      * @param enclosure
      * @param children
      * @param enclosureChildTags
+     * @return updated enclosure tag
      */
-    private void updateEnclosureChildId(Tag enclosure, List<String> children,
-                                        List<Tag> enclosureChildTags) {
+    private Tag updateEnclosureChildId(Tag enclosure, List<String> children,
+                                       List<Tag> enclosureChildTags) {
         Map<String, String> attributes = enclosure.getAttributeMap();
         if (attributes != null) {
+            attributes = new LinkedHashMap<String, String>(attributes);
             String child = "";
             for (int i = 0; i < children.size(); i++) {
                 String childid = children.get(i);
@@ -147,7 +155,9 @@ public class EnclosureMarkupSourceTransformer extends MarkupSourceTransformer {
                 }
             }
             attributes.put(EnclosureHandler.CHILD_ATTRIBUTE, child);
+            return new SimpleTag(enclosure.getName(), enclosure.getType(), attributes);
         }
+        return enclosure;
     }
 
     /**
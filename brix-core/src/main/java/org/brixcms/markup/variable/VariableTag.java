@@ -30,7 +30,13 @@ public class VariableTag implements Tag, VariableKeyProvider {
     private final Tag delegate;
     private final BrixNodeModel<BrixNode> pageNodeModel;
 
-    static String getKey(String value) {
+    /**
+     * Returns the key of the variable referenced by an attribute value of the form <code>brix:var:key</code>.
+     *
+     * @param value attribute value
+     * @return variable key or <code>null</code> if the value does not reference a variable
+     */
+    public static String getKey(String value) {
         String key = null;
         if (value != null && value.startsWith(ATTRIBUTE_PREFIX)) {
             key = value.substring(ATTRIBUTE_PREFIX.length());
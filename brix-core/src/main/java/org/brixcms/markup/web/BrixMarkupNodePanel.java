@@ -33,7 +33,7 @@ import org.brixcms.web.generic.BrixGenericPanel;
  */
 public abstract class BrixMarkupNodePanel extends BrixGenericPanel<BrixNode> implements IMarkupResourceStreamProvider,
         IMarkupCacheKeyProvider, MarkupSourceProvider {
-    private MarkupHelper markupHelper;
+    private transient MarkupHelper markupHelper;
 
     public BrixMarkupNodePanel(String id) {
         super(id);
@@ -44,6 +44,9 @@ public abstract class BrixMarkupNodePanel extends BrixGenericPanel<BrixNode> imp
     }
 
     public MarkupHelper getMarkupHelper() {
+        if (markupHelper == null) {
+            markupHelper = new MarkupHelper(this);
+        }
         return markupHelper;
     }
 
@@ -54,18 +57,20 @@ public abstract class BrixMarkupNodePanel extends BrixGenericPanel<BrixNode> imp
 
 
     public IResourceStream getMarkupResourceStream(MarkupContainer container, Class<?> containerClass) {
-        return new StringResourceStream(markupHelper.getMarkup(), "text/html");
+        return new StringResourceStream(getMarkupHelper().getMarkup(), "text/html");
     }
 
     @Override
     protected void onInitialize() {
-        this.markupHelper = new MarkupHelper(this);
+        getMarkupHelper();
         super.onInitialize();
     }
 
     @Override
     protected void onDetach() {
         super.onDetach();
-        markupHelper = null;
+        if (markupHelper != null) {
+            markupHelper.detach();
+        }
     }
 }
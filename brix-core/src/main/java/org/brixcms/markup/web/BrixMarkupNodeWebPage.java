@@ -71,6 +71,8 @@ public abstract class BrixMarkupNodeWebPage extends BrixNodeWebPage implements I
     @Override
     protected void onDetach() {
         super.onDetach();
-        markupHelper = null;
+        if (markupHelper != null) {
+            markupHelper.detach();
+        }
     }
 }
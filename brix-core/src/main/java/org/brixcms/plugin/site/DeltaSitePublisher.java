@@ -0,0 +1,276 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.jcr.nodetype.NodeType;
+
+import org.brixcms.Brix;
+import org.brixcms.jcr.ChangeJournal;
+import org.brixcms.jcr.JcrUtil;
+import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrNodeIterator;
+import org.brixcms.jcr.api.JcrProperty;
+import org.brixcms.jcr.api.JcrPropertyIterator;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.workspace.Workspace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings a published site workspace up to date by applying only the changes {@link ChangeJournal journaled} in the
+ * source workspace since the target was last published, instead of replacing the whole content. Created and moved
+ * subtrees are copied with {@link JcrUtil#importNodes(List, JcrNode)}, which keeps identifiers so that references from
+ * untouched nodes stay valid; modified nodes only get their properties, mixins and child order updated. All changes
+ * are saved at once, visitors never see a partially updated site and a failed update leaves the target untouched.
+ * <p>
+ * A delta can only be applied to a workspace that has been {@link #markPublished(Workspace, String, long) marked} with
+ * the journal of the source workspace, e.g. after a full publishing through {@link StagedSitePublisher}.
+ */
+public class DeltaSitePublisher {
+    private static final Logger log = LoggerFactory.getLogger(DeltaSitePublisher.class);
+
+    /**
+     * Workspace attribute holding the identifier of the journal the workspace content was published from
+     */
+    public static final String WORKSPACE_ATTRIBUTE_PUBLISHED_FROM = "brix:published-from";
+
+    /**
+     * Workspace attribute holding the last journal sequence contained in the workspace content
+     */
+    public static final String WORKSPACE_ATTRIBUTE_PUBLISHED_SEQUENCE = "brix:published-sequence";
+
+    private final Brix brix;
+
+    private final ChangeJournal journal;
+
+    public DeltaSitePublisher(Brix brix, ChangeJournal journal) {
+        this.brix = brix;
+        this.journal = journal;
+    }
+
+    public ChangeJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Records that the target workspace contains the changes of given journal up to given sequence.
+     *
+     * @param target
+     * @param journalId
+     * @param sequence
+     */
+    public void markPublished(Workspace target, String journalId, long sequence) {
+        target.setAttribute(WORKSPACE_ATTRIBUTE_PUBLISHED_FROM, journalId);
+        target.setAttribute(WORKSPACE_ATTRIBUTE_PUBLISHED_SEQUENCE, Long.toString(sequence));
+    }
+
+    /**
+     * Applies the changes journaled in the source workspace since the last publishing to the target workspace.
+     *
+     * @param source session of the workspace to publish
+     * @param target workspace previously published from the source workspace
+     * @return <code>false</code> if the target can not be updated incrementally, e.g. because it was published from
+     *         another workspace or because the journal has been trimmed in the meantime; the target is untouched then
+     */
+    public boolean publish(JcrSession source, Workspace target) {
+        String sourceWorkspace = source.getWorkspace().getName();
+        String journalId = journal.getJournalId(sourceWorkspace);
+        String publishedSequence = target.getAttribute(WORKSPACE_ATTRIBUTE_PUBLISHED_SEQUENCE);
+        if (journalId == null || publishedSequence == null ||
+                !journalId.equals(target.getAttribute(WORKSPACE_ATTRIBUTE_PUBLISHED_FROM))) {
+            return false;
+        }
+
+        long after;
+        try {
+            after = Long.parseLong(publishedSequence);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        List<ChangeJournal.Entry> entries = journal.getEntries(sourceWorkspace, after);
+        if (entries == null) {
+            return false;
+        }
+        if (entries.isEmpty()) {
+            return true;
+        }
+
+        JcrSession session = brix.getCurrentSession(target.getId());
+        try {
+            apply(source, session, entries);
+        } catch (RuntimeException e) {
+            session.refresh(false);
+            throw e;
+        } finally {
+            brix.invalidateMarkupCache(session);
+        }
+        long sequence = entries.get(entries.size() - 1).getSequence();
+        target.setAttribute(WORKSPACE_ATTRIBUTE_PUBLISHED_SEQUENCE, Long.toString(sequence));
+        log.debug("Applied {} journaled change(s) of workspace {} to workspace {}", entries.size(), sourceWorkspace,
+                target.getId());
+        return true;
+    }
+
+    /**
+     * Applies the entries to the target session and saves it once.
+     */
+    static void apply(JcrSession source, JcrSession target, List<ChangeJournal.Entry> entries) {
+        Set<String> removed = new HashSet<String>();
+        Set<String> created = new HashSet<String>();
+        Set<String> modified = new LinkedHashSet<String>();
+        for (ChangeJournal.Entry entry : entries) {
+            switch (entry.getType()) {
+                case CREATED:
+                    created.add(entry.getPath());
+                    modified.add(getParentPath(entry.getPath()));
+                    break;
+                case MODIFIED:
+                    modified.add(entry.getPath());
+                    break;
+                case MOVED:
+                    removed.add(entry.getSourcePath());
+                    created.add(entry.getPath());
+                    modified.add(getParentPath(entry.getPath()));
+                    break;
+                case DELETED:
+                    removed.add(entry.getPath());
+                    break;
+            }
+        }
+
+        // nodes re-created at the path of a removed node are copied again as a whole
+        NavigableSet<String> copied = new TreeSet<String>();
+        for (String path : created) {
+            if (source.nodeExists(path)) {
+                copied.add(path);
+            }
+        }
+        for (String path : removed) {
+            if (source.nodeExists(path)) {
+                copied.add(path);
+            }
+        }
+        Set<String> topCopied = new LinkedHashSet<String>();
+        for (String path : copied) {
+            if (!containsAncestor(copied, path)) {
+                topCopied.add(path);
+            }
+        }
+
+        // remove deepest nodes first so that same name sibling indexes of the remaining paths stay valid
+        List<String> stale = new ArrayList<String>(removed);
+        stale.addAll(topCopied);
+        Collections.sort(stale, Collections.reverseOrder());
+        for (String path : stale) {
+            if (target.nodeExists(path) && (topCopied.contains(path) || !source.nodeExists(path))) {
+                target.getNode(path).remove();
+            }
+        }
+
+        List<JcrNode> nodes = new ArrayList<JcrNode>(topCopied.size());
+        for (String path : topCopied) {
+            nodes.add(source.getNode(path));
+        }
+        JcrUtil.importNodes(nodes, target.getRootNode());
+
+        for (String path : modified) {
+            if (!copied.contains(path) && !containsAncestor(copied, path) && source.nodeExists(path) &&
+                    target.nodeExists(path)) {
+                update(source.getNode(path), target.getNode(path));
+            }
+        }
+        target.save();
+    }
+
+    /**
+     * Copies mixins, non protected properties and the order of child nodes of the source node to the target node.
+     */
+    private static void update(JcrNode source, JcrNode target) {
+        Set<String> mixins = new HashSet<String>();
+        for (NodeType type : source.getMixinNodeTypes()) {
+            mixins.add(type.getName());
+            if (!target.isNodeType(type.getName())) {
+                target.addMixin(type.getName());
+            }
+        }
+
+        Set<String> properties = new HashSet<String>();
+        JcrPropertyIterator iterator = source.getProperties();
+        while (iterator.hasNext()) {
+            JcrProperty property = iterator.nextProperty();
+            if (!property.getDefinition().isProtected()) {
+                properties.add(property.getName());
+                if (property.getDefinition().isMultiple()) {
+                    target.setProperty(property.getName(), property.getValues());
+                } else {
+                    target.setProperty(property.getName(), property.getValue());
+                }
+            }
+        }
+        iterator = target.getProperties();
+        List<JcrProperty> extra = new ArrayList<JcrProperty>();
+        while (iterator.hasNext()) {
+            JcrProperty property = iterator.nextProperty();
+            if (!property.getDefinition().isProtected() && !properties.contains(property.getName())) {
+                extra.add(property);
+            }
+        }
+        for (JcrProperty property : extra) {
+            property.remove();
+        }
+
+        for (NodeType type : target.getMixinNodeTypes()) {
+            if (!mixins.contains(type.getName())) {
+                target.removeMixin(type.getName());
+            }
+        }
+
+        if (target.getPrimaryNodeType().hasOrderableChildNodes()) {
+            JcrNodeIterator children = source.getNodes();
+            while (children.hasNext()) {
+                JcrNode child = children.nextNode();
+                String name = child.getIndex() > 1 ? child.getName() + "[" + child.getIndex() + "]" : child.getName();
+                if (target.hasNode(name)) {
+                    target.orderBefore(name, null);
+                }
+            }
+        }
+    }
+
+    private static String getParentPath(String path) {
+        int index = path.lastIndexOf('/');
+        return index > 0 ? path.substring(0, index) : "/";
+    }
+
+    private static boolean containsAncestor(NavigableSet<String> paths, String path) {
+        while (!"/".equals(path)) {
+            path = getParentPath(path);
+            if (paths.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
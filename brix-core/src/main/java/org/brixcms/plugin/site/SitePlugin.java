@@ -21,6 +21,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -46,13 +47,16 @@ import org.brixcms.jcr.api.JcrNodeIterator;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.jcr.api.wrapper.NodeWrapper;
 import org.brixcms.jcr.base.BrixSession;
+import org.brixcms.jcr.base.EventUtil;
 import org.brixcms.jcr.base.action.AbstractActionHandler;
 import org.brixcms.jcr.base.event.AddNodeEvent;
 import org.brixcms.jcr.base.event.Event;
 import org.brixcms.jcr.base.event.EventsListener;
 import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.jcr.wrapper.ResourceNode;
+import org.brixcms.markup.CountingMarkupCacheStats;
 import org.brixcms.markup.MarkupCache;
+import org.brixcms.markup.MarkupCacheStats;
 import org.brixcms.plugin.site.admin.NodeManagerContainerPanel;
 import org.brixcms.plugin.site.admin.NodeTreeContainer;
 import org.brixcms.plugin.site.admin.convert.ConvertNodeTabFactory;
@@ -69,10 +73,14 @@ import org.brixcms.plugin.site.auth.AccessSitePluginAction;
 import org.brixcms.plugin.site.auth.SiteNodeAction;
 import org.brixcms.plugin.site.auth.SiteNodeAction.Type;
 import org.brixcms.plugin.site.fallback.FallbackNodePlugin;
+import org.brixcms.plugin.site.folder.FolderListingCache;
 import org.brixcms.plugin.site.folder.FolderNodePlugin;
 import org.brixcms.plugin.site.page.AbstractContainer;
 import org.brixcms.plugin.site.page.PageNode;
 import org.brixcms.plugin.site.page.PageSiteNodePlugin;
+import org.brixcms.plugin.site.page.ParsedMarkupCache;
+import org.brixcms.plugin.site.page.RequiredProtocolCache;
+import org.brixcms.plugin.site.page.VariableTableCache;
 import org.brixcms.plugin.site.page.TemplateNode;
 import org.brixcms.plugin.site.page.TemplateSiteNodePlugin;
 import org.brixcms.plugin.site.page.admin.MarkupEditorFactory;
@@ -80,12 +88,17 @@ import org.brixcms.plugin.site.page.admin.SimpleMarkupEditorFactory;
 import org.brixcms.plugin.site.page.global.GlobalContainerNode;
 import org.brixcms.plugin.site.page.global.GlobalTilesPanel;
 import org.brixcms.plugin.site.page.global.GlobalVariablesPanel;
+import org.brixcms.plugin.site.page.tile.Tile;
 import org.brixcms.plugin.site.page.tile.TileContainerFacet;
+import org.brixcms.plugin.site.page.tile.TileIndexCache;
+import org.brixcms.plugin.site.resource.ContentHashService;
 import org.brixcms.plugin.site.resource.ResourceNodePlugin;
 import org.brixcms.plugin.site.webdav.Rule;
 import org.brixcms.plugin.site.webdav.RulesNode;
 import org.brixcms.plugin.site.webdav.RulesPanel;
 import org.brixcms.registry.ExtensionPointRegistry;
+import org.brixcms.web.OutputCache;
+import org.brixcms.web.UriResolutionCache;
 import org.brixcms.web.tab.AbstractWorkspaceTab;
 import org.brixcms.web.tab.IBrixTab;
 import org.brixcms.workspace.JcrException;
@@ -120,11 +133,31 @@ public class SitePlugin implements SessionAwarePlugin {
 
     private Comparator<String> stateComparator = null;
 
-    private MarkupCache markupCache = new MarkupCache();
+    private final MarkupCache markupCache;
+
+    private final UriResolutionCache uriResolutionCache;
+
+    private final RequiredProtocolCache requiredProtocolCache = new RequiredProtocolCache();
+
+    private final ParsedMarkupCache parsedMarkupCache = new ParsedMarkupCache();
+
+    private final VariableTableCache variableTableCache = new VariableTableCache();
+
+    private final TileIndexCache tileIndexCache = new TileIndexCache();
+
+    private final FolderListingCache folderListingCache = new FolderListingCache();
+
+    private final OutputCache outputCache;
+
+    private final ContentHashService contentHashService;
 
     private WebDavEventListener webDavEventListener = new WebDavEventListener();
     private volatile Collection<SiteNodePlugin> nodePluginsCache;
+    // root paths are probed by the node wrapper factories for every wrapped node
+    private volatile String webRootPath;
+    private volatile String siteRootPath;
     private volatile Map<String, SiteNodePlugin> nodePluginByTypeCache;
+    private volatile Map<String, Tile> tileByTypeCache;
 
     public static SitePlugin get() {
         return get(Brix.get());
@@ -136,6 +169,14 @@ public class SitePlugin implements SessionAwarePlugin {
 
     public SitePlugin(Brix brix) {
         this.brix = brix;
+        MarkupCacheStats markupCacheStats = brix.getConfig().getMarkupCacheStats();
+        this.markupCache = new MarkupCache(brix.getConfig().getMarkupCacheMaxWeight(),
+                markupCacheStats != null ? markupCacheStats : new CountingMarkupCacheStats());
+        this.uriResolutionCache = new UriResolutionCache(brix.getConfig().getUriResolutionCacheSize());
+        this.outputCache = new OutputCache(brix.getConfig().getOutputCacheSize(),
+                brix.getConfig().isOutputCacheGzip());
+        this.contentHashService = new ContentHashService(brix, brix.getConfig().getContentHashThreads(),
+                brix.getConfig().getContentHashMaxPending());
         registerNodePlugin(new FolderNodePlugin(this));
         registerNodePlugin(new ResourceNodePlugin(this));
         registerNodePlugin(new TemplateSiteNodePlugin(this));
@@ -149,6 +190,8 @@ public class SitePlugin implements SessionAwarePlugin {
             public void registered(org.brixcms.registry.ExtensionPoint<?> point, Object extension) {
                 if (SiteNodePlugin.POINT == point) {
                     invalidateNodePluginCache();
+                } else if (Tile.POINT == point) {
+                    invalidateTileCache();
                 }
             }
 
@@ -156,6 +199,8 @@ public class SitePlugin implements SessionAwarePlugin {
             public void unregistered(org.brixcms.registry.ExtensionPoint<?> point, Object extension) {
                 if (SiteNodePlugin.POINT == point) {
                     invalidateNodePluginCache();
+                } else if (Tile.POINT == point) {
+                    invalidateTileCache();
                 }
             }
         }, false);
@@ -196,6 +241,56 @@ public class SitePlugin implements SessionAwarePlugin {
         return markupCache;
     }
 
+    public UriResolutionCache getUriResolutionCache() {
+        return uriResolutionCache;
+    }
+
+    public ParsedMarkupCache getParsedMarkupCache() {
+        return parsedMarkupCache;
+    }
+
+    public RequiredProtocolCache getRequiredProtocolCache() {
+        return requiredProtocolCache;
+    }
+
+    public VariableTableCache getVariableTableCache() {
+        return variableTableCache;
+    }
+
+    public TileIndexCache getTileIndexCache() {
+        return tileIndexCache;
+    }
+
+    public FolderListingCache getFolderListingCache() {
+        return folderListingCache;
+    }
+
+    public OutputCache getOutputCache() {
+        return outputCache;
+    }
+
+    /**
+     * Discards the cached uri resolutions, required protocols, variable tables, tile indexes and folder listings of
+     * the specified workspace. These are dropped as a whole whenever a node in the workspace is saved, rendered
+     * markup and page responses are discarded per node by {@link org.brixcms.markup.MarkupCacheInvalidationListener}.
+     *
+     * @param workspace workspace whose caches should be discarded
+     */
+    public void invalidateWorkspaceCaches(String workspace) {
+        if (workspace == null) {
+            return;
+        }
+        uriResolutionCache.invalidateWorkspace(workspace);
+        requiredProtocolCache.invalidateWorkspace(workspace);
+        variableTableCache.invalidateWorkspace(workspace);
+        tileIndexCache.invalidateWorkspace(workspace);
+        folderListingCache.invalidateWorkspace(workspace);
+    }
+
+    public ContentHashService getContentHashService() {
+        return contentHashService;
+    }
+
     public void setStateComparator(Comparator<String> stateComparator) {
         this.stateComparator = stateComparator;
     }
@@ -429,7 +524,12 @@ public class SitePlugin implements SessionAwarePlugin {
     }
 
     public String getWebRootPath() {
-        return brix.getRootPath() + "/" + WEB_NODE_NAME;
+        String path = webRootPath;
+        if (path == null) {
+            path = brix.getRootPath() + "/" + WEB_NODE_NAME;
+            webRootPath = path;
+        }
+        return path;
     }
 
     public String getGlobalVariableValue(JcrSession session, String variableKey) {
@@ -484,6 +584,37 @@ public class SitePlugin implements SessionAwarePlugin {
         return byType;
     }
 
+    /**
+     * Returns the registered tiles keyed by type name. The map is a snapshot of the registry that is rebuilt after a
+     * tile is registered or unregistered; the first tile registered for a type name wins.
+     *
+     * @return unmodifiable map of tile type names to tiles
+     */
+    public Map<String, Tile> getTilesByType() {
+        Map<String, Tile> byType = tileByTypeCache;
+        if (byType == null) {
+            synchronized (this) {
+                byType = tileByTypeCache;
+                if (byType == null) {
+                    Collection<Tile> tiles = brix.getConfig().getRegistry().lookupCollection(Tile.POINT);
+                    Map<String, Tile> result = new LinkedHashMap<String, Tile>(tiles.size());
+                    for (Tile tile : tiles) {
+                        result.putIfAbsent(tile.getTypeName(), tile);
+                    }
+                    byType = Collections.unmodifiableMap(result);
+                    tileByTypeCache = byType;
+                }
+            }
+        }
+        return byType;
+    }
+
+    private void invalidateTileCache() {
+        synchronized (this) {
+            tileByTypeCache = null;
+        }
+    }
+
     private void invalidateNodePluginCache() {
         synchronized (this) {
             nodePluginsCache = null;
@@ -498,7 +629,12 @@ public class SitePlugin implements SessionAwarePlugin {
     }
 
     public String getSiteRootPath() {
-        return getWebRootPath() + "/" + SITE_NODE_NAME;
+        String path = siteRootPath;
+        if (path == null) {
+            path = getWebRootPath() + "/" + SITE_NODE_NAME;
+            siteRootPath = path;
+        }
+        return path;
     }
 
     public RulesNode getWebDavRules(JcrSession session) {
@@ -807,6 +943,13 @@ public class SitePlugin implements SessionAwarePlugin {
 
         public void handleEventsAfterSave(Session session, Item item, List<Event> events)
                 throws RepositoryException {
+            // webdav saves through the session and bypasses the save events, saves that suppress them (such as
+            // content hashes) leave the content unchanged
+            if (!events.isEmpty() && !EventUtil.isSaveEventsSuppressed()) {
+                String workspace = session.getWorkspace().getName();
+                invalidateWorkspaceCaches(workspace);
+                outputCache.invalidateWorkspace(workspace);
+            }
         }
     }
 
@@ -0,0 +1,227 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.brixcms.Brix;
+import org.brixcms.exception.BrixException;
+import org.brixcms.jcr.ReferenceIntegrityScanner;
+import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrNodeIterator;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.plugin.site.page.AbstractContainer;
+import org.brixcms.plugin.site.page.PageMarkupSource;
+import org.brixcms.workspace.Workspace;
+
+/**
+ * Replaces the content of a site workspace without exposing a half populated workspace. The content is cloned into a
+ * fresh staging workspace, optionally verified, and the staging workspace then takes over the state of the site in
+ * one step through {@link org.brixcms.workspace.WorkspaceManager#setAttributes(String, Map)}. The workspace that was
+ * live before is kept with the {@link #getPreviousState(String) previous state} so that the change can be
+ * {@link #rollback(String, String) rolled back}.
+ *
+ * @see SitePlugin#getSiteWorkspace(String, String)
+ */
+public class StagedSitePublisher {
+    /**
+     * Verifies the content of a staging workspace before it becomes live. Throwing an exception aborts the publishing
+     * and discards the staging workspace.
+     */
+    public interface Verifier {
+        void verify(Workspace workspace, JcrSession session);
+    }
+
+    /**
+     * Fails if any reference in the staging workspace points to a node that does not exist.
+     */
+    public static final Verifier REFERENCE_INTEGRITY = new Verifier() {
+        public void verify(Workspace workspace, JcrSession session) {
+            JcrNode root = session.getRootNode().getNode(Brix.ROOT_NODE_NAME);
+            int missing = new ReferenceIntegrityScanner().scan(root).getMissingCount();
+            if (missing > 0) {
+                throw new BrixException("Workspace " + workspace.getId() + " contains " + missing +
+                        " references to missing nodes.");
+            }
+        }
+    };
+
+    /**
+     * Fails if the markup of any page, template or global container can not be assembled, e.g. because of a template
+     * loop.
+     */
+    public static final Verifier MARKUP = new Verifier() {
+        public void verify(Workspace workspace, JcrSession session) {
+            List<String> failed = new ArrayList<String>();
+            verify(session.getRootNode().getNode(Brix.ROOT_NODE_NAME), failed);
+            if (!failed.isEmpty()) {
+                throw new BrixException("Markup of " + failed.size() + " node(s) in workspace " + workspace.getId() +
+                        " can not be parsed: " + failed);
+            }
+        }
+
+        private void verify(JcrNode node, List<String> failed) {
+            if (node instanceof AbstractContainer container) {
+                try {
+                    new PageMarkupSource(container).getTileIDs();
+                } catch (RuntimeException e) {
+                    failed.add(node.getPath());
+                }
+            }
+            JcrNodeIterator children = node.getNodes();
+            while (children.hasNext()) {
+                verify(children.nextNode(), failed);
+            }
+        }
+    };
+
+    private static final String STAGING_SUFFIX = ":staging";
+
+    private static final String PREVIOUS_SUFFIX = ":previous";
+
+    private final Brix brix;
+
+    private final List<Verifier> verifiers = new CopyOnWriteArrayList<Verifier>();
+
+    public StagedSitePublisher(Brix brix) {
+        this.brix = brix;
+    }
+
+    /**
+     * Adds a verifier that every staging workspace has to pass before it becomes live.
+     *
+     * @param verifier
+     * @return this publisher
+     */
+    public StagedSitePublisher addVerifier(Verifier verifier) {
+        if (verifier == null) {
+            throw new IllegalArgumentException("Argument 'verifier' may not be null.");
+        }
+        verifiers.add(verifier);
+        return this;
+    }
+
+    public void removeVerifier(Verifier verifier) {
+        verifiers.remove(verifier);
+    }
+
+    /**
+     * Returns the state the site workspace gets while its content is being prepared.
+     *
+     * @param state
+     * @return
+     */
+    public static String getStagingState(String state) {
+        return state + STAGING_SUFFIX;
+    }
+
+    /**
+     * Returns the state of the workspace that was live before the last publishing or rollback.
+     *
+     * @param state
+     * @return
+     */
+    public static String getPreviousState(String state) {
+        return state + PREVIOUS_SUFFIX;
+    }
+
+    /**
+     * Publishes the content of the source workspace as site with given name and state. Until the staging workspace is
+     * complete and verified the site workspace with given state stays untouched. A workspace that was kept as rollback
+     * target from an earlier publishing is deleted once the new workspace is live.
+     *
+     * @param source session of the workspace to publish
+     * @param name   site name
+     * @param state  site state to publish to
+     * @return the new live workspace
+     */
+    public Workspace publish(JcrSession source, String name, String state) {
+        SitePlugin sitePlugin = SitePlugin.get(brix);
+        Workspace live = sitePlugin.getSiteWorkspace(name, state);
+
+        // leftovers of an interrupted publishing
+        Workspace stale;
+        while ((stale = sitePlugin.getSiteWorkspace(name, getStagingState(state))) != null) {
+            stale.delete();
+        }
+
+        Workspace staging = sitePlugin.createSite(name, getStagingState(state));
+        try {
+            if (live != null) {
+                copyAttributes(live, staging);
+            }
+            JcrSession session = brix.getCurrentSession(staging.getId());
+            brix.clone(source, session);
+            brix.initWorkspace(staging, session);
+            for (Verifier verifier : verifiers) {
+                verifier.verify(staging, session);
+            }
+        } catch (RuntimeException e) {
+            staging.delete();
+            throw e;
+        }
+
+        Workspace previous = live != null ? sitePlugin.getSiteWorkspace(name, getPreviousState(state)) : null;
+        swap(staging, live, state);
+        if (previous != null) {
+            previous.delete();
+        }
+        return staging;
+    }
+
+    /**
+     * Makes the workspace that was live before the last publishing live again. The current workspace becomes the
+     * rollback target, so calling this method twice restores the original state.
+     *
+     * @param name  site name
+     * @param state site state
+     * @return the new live workspace
+     */
+    public Workspace rollback(String name, String state) {
+        SitePlugin sitePlugin = SitePlugin.get(brix);
+        Workspace previous = sitePlugin.getSiteWorkspace(name, getPreviousState(state));
+        if (previous == null) {
+            throw new IllegalStateException("There is no previous workspace of site '" + name + "' in state '" +
+                    state + "'.");
+        }
+        swap(previous, sitePlugin.getSiteWorkspace(name, state), state);
+        return previous;
+    }
+
+    private void swap(Workspace next, Workspace live, String state) {
+        Map<String, String> states = new LinkedHashMap<String, String>();
+        states.put(next.getId(), state);
+        if (live != null) {
+            states.put(live.getId(), getPreviousState(state));
+        }
+        brix.getWorkspaceManager().setAttributes(SitePlugin.WORKSPACE_ATTRIBUTE_STATE, states);
+    }
+
+    private static void copyAttributes(Workspace source, Workspace target) {
+        Iterator<String> keys = source.getAttributeKeys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!SitePlugin.WORKSPACE_ATTRIBUTE_STATE.equals(key) && target.getAttribute(key) == null) {
+                target.setAttribute(key, source.getAttribute(key));
+            }
+        }
+    }
+}
@@ -14,6 +14,9 @@
 
 package org.brixcms.plugin.site.auth;
 
+import java.util.Arrays;
+import java.util.Objects;
+
 import org.brixcms.auth.AbstractNodeAction;
 import org.brixcms.jcr.wrapper.BrixNode;
 
@@ -25,6 +28,31 @@ public class ConvertNodeAction extends AbstractNodeAction {
         this.targetType = targetType;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!valueEquals(obj)) {
+            return false;
+        }
+        ConvertNodeAction that = (ConvertNodeAction) obj;
+        return Objects.equals(targetType, that.targetType);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = valueHashCode();
+        result = 31 * result + Objects.hashCode(targetType);
+        return result;
+    }
+
+    @Override
+    public Object getDetachedKey() {
+        Object key = super.getDetachedKey();
+        return key != null ? Arrays.asList(key, targetType) : null;
+    }
+
     @Override
     public String toString() {
         return "ConvertNodeAction{" + "targetType='" + targetType + '\'' + "} " + super.toString();
@@ -14,7 +14,10 @@
 
 package org.brixcms.plugin.site.auth;
 
+import java.util.Objects;
+
 import org.brixcms.auth.AbstractAction;
+import org.brixcms.auth.AbstractNodeAction;
 import org.brixcms.jcr.api.JcrNode;
 
 /**
@@ -40,6 +43,33 @@ public class SelectNewNodeTypeAction extends AbstractAction {
         return parentNode;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!valueEquals(obj)) {
+            return false;
+        }
+        SelectNewNodeTypeAction that = (SelectNewNodeTypeAction) obj;
+        return Objects.equals(nodeType, that.nodeType) &&
+                Objects.equals(AbstractNodeAction.getNodeKey(parentNode), AbstractNodeAction.getNodeKey(that.parentNode));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = valueHashCode();
+        result = 31 * result + Objects.hashCode(nodeType);
+        result = 31 * result + Objects.hashCode(AbstractNodeAction.getNodeKey(parentNode));
+        return result;
+    }
+
+    @Override
+    public Object getDetachedKey() {
+        return AbstractNodeAction.newDetachedKey(AbstractNodeAction.getNodeKey(parentNode), getClass(), getContext(),
+                nodeType);
+    }
+
     @Override
     public String toString() {
         return "SelectNewNodeTypeAction{" + "nodeType='" + nodeType + '\'' + ", parentNode=" + parentNode + "} " + super.toString();
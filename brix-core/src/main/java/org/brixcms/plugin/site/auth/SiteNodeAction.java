@@ -14,6 +14,9 @@
 
 package org.brixcms.plugin.site.auth;
 
+import java.util.Arrays;
+import java.util.Objects;
+
 import org.brixcms.auth.AbstractNodeAction;
 import org.brixcms.jcr.wrapper.BrixNode;
 
@@ -31,6 +34,31 @@ public class SiteNodeAction extends AbstractNodeAction {
         return type;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!valueEquals(obj)) {
+            return false;
+        }
+        SiteNodeAction that = (SiteNodeAction) obj;
+        return type == that.type;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = valueHashCode();
+        result = 31 * result + Objects.hashCode(type);
+        return result;
+    }
+
+    @Override
+    public Object getDetachedKey() {
+        Object key = super.getDetachedKey();
+        return key != null ? Arrays.asList(key, type) : null;
+    }
+
     @Override
     public String toString() {
         return "SiteNodeAction{" + "type=" + type + "} " + super.toString();
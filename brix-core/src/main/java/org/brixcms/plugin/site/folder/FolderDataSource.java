@@ -19,22 +19,34 @@ package org.brixcms.plugin.site.folder;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.inmethod.grid.IDataSource;
-import com.inmethod.grid.IGridSortState;
-import com.inmethod.grid.IGridSortState.ISortStateColumn;
 import org.apache.wicket.model.IModel;
 import org.brixcms.BrixNodeModel;
 import org.brixcms.auth.Action.Context;
-import org.brixcms.jcr.api.JcrNodeIterator;
-import org.brixcms.jcr.wrapper.BrixFileNode;
+import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.plugin.site.SitePlugin;
 import org.brixcms.plugin.site.tree.SiteNodeFilter;
+import org.brixcms.util.WorkspacePartitionedCache.Partition;
 import org.brixcms.web.tree.NodeFilter;
 
+/**
+ * Data source of the folder listing grid. Children are sorted on a {@link FolderListing} shared through the
+ * {@link FolderListingCache} until the next save in the workspace. Whether the current user may view a child is
+ * checked by loading it, which happens for every child the first time the folder is listed. The decisions are kept by
+ * path for the lifetime of the page, so a listing rebuilt after a save only loads the children that were not listed
+ * before; apart from those only the nodes of the requested page are loaded.
+ * <p>
+ * The listing is built in memory rather than with an ordered JCR query with offset and limit, because the name and
+ * type the grid sorts by are computed by the node wrappers and hidden, filtered and unauthorized children have to be
+ * skipped before paging.
+ */
 abstract class FolderDataSource implements IDataSource<BrixNode> {
     public static final String PROPERTY_NAME = "name";
     public static final String PROPERTY_TYPE = "type";
@@ -49,24 +61,52 @@ abstract class FolderDataSource implements IDataSource<BrixNode> {
 
 
 
+    // whether the current user may view a child, by path, kept between requests of the same page instance
+    private transient Map<String, Boolean> viewDecisions;
+
+    // children of the last listing the current user may view
+    private transient FolderListing viewableListing;
+    private transient Set<String> viewablePaths;
+
     public void query(IQuery query, IQueryResult<BrixNode> result) {
         BrixNode node = getFolderNode();
-        List<BrixNode> visibleNodes = visibleNodes(node.getNodes());
-        if (query.getSortState().getColumns().isEmpty() == false) {
-            sort(visibleNodes, query.<String>getSortState());
-        } else {
-            sort(visibleNodes, PROPERTY_NAME, IGridSortState.Direction.ASC);
+        JcrSession session = node.getSession();
+        FolderListing listing = getListing(node);
+        Set<String> viewable = getViewablePaths(session, listing);
+
+        List<FolderListing.Child> children = new ArrayList<FolderListing.Child>(viewable.size());
+        for (FolderListing.Child child : listing.getSorted(query.<String>getSortState().getColumns())) {
+            if (viewable.contains(child.getPath())) {
+                children.add(child);
+            }
         }
 
+        BrixNode parent = null;
         if (node.getPath().equals(SitePlugin.get().getSiteRootPath()) == false) {
-            BrixNode parent = (BrixNode) node.getParent();
-            if (canShowNode(parent)) {
-                visibleNodes.add(0, parent);
+            parent = (BrixNode) node.getParent();
+            if (!canShowNode(parent)) {
+                parent = null;
+            }
+        }
+        int offset = parent != null ? 1 : 0;
+        int total = children.size() + offset;
+
+        int from = (int) Math.min(Math.max(query.getFrom(), 0), total);
+        int to = query.getCount() >= 0 ? (int) Math.min(total, from + query.getCount()) : total;
+        List<BrixNode> items = new ArrayList<BrixNode>(to - from);
+        for (int i = from; i < to; ++i) {
+            if (i < offset) {
+                items.add(parent);
+            } else {
+                String path = children.get(i - offset).getPath();
+                if (session.nodeExists(path)) {
+                    items.add((BrixNode) session.getNode(path));
+                }
             }
         }
 
-        result.setItems(visibleNodes.iterator());
-        result.setTotalCount(visibleNodes.size());
+        result.setItems(items.iterator());
+        result.setTotalCount(total);
     }
 
     public IModel<BrixNode> model(BrixNode brixNode) {
@@ -79,83 +119,47 @@ abstract class FolderDataSource implements IDataSource<BrixNode> {
 
     abstract BrixNode getFolderNode();
 
-    private void sort(List<BrixNode> node, IGridSortState<String> state) {
-        int max = Math.min(state.getColumns().size() - 1, 2);
-        for (int i = max; i >= 0; --i) {
-            ISortStateColumn<String> column = state.getColumns().get(i);
-            sort(node, column.getPropertyName(), column.getDirection());
-        }
-    }
-
-    private void sort(List<BrixNode> original, final String property, final IGridSortState.Direction direction) {
-        Collections.sort(original, new Comparator<BrixNode>() {
-            public int compare(BrixNode o1, BrixNode o2) {
-                int res = compareNodes(o1, o2, property);
-                if (direction == IGridSortState.Direction.DESC) {
-                    res = -res;
-                }
-                return res;
-            }
-        });
-    }
-
-    private int compareNodes(BrixNode n1, BrixNode n2, String property) {
-        SitePlugin sp = SitePlugin.get();
-
-        // always put folders first if we sort by name, size or mime type
-        if (PROPERTY_NAME.equals(property) || PROPERTY_SIZE.equals(property) || PROPERTY_MIME_TYPE.equals(property)) {
-            if (n1.isFolder() && !n2.isFolder()) {
-                return -1;
-            } else if (n2.isFolder() && !n1.isFolder()) {
-                return 1;
-            }
-        }
-
-        if (PROPERTY_NAME.equals(property)) {
-            return compare(n1.getUserVisibleName(), n2.getUserVisibleName());
-        } else if (PROPERTY_TYPE.equals(property)) {
-            return compare(n1.getUserVisibleType(), n2.getUserVisibleType());
-        } else if (PROPERTY_CREATED.equals(property)) {
-            return compare(n1.getCreated(), n2.getCreated());
-        } else if (PROPERTY_CREATED_BY.equals(property)) {
-            return compare(n1.getCreatedBy(), n2.getCreatedBy());
-        } else if (PROPERTY_LAST_MODIFIED.equals(property)) {
-            return compare(n1.getLastModified(), n2.getLastModified());
-        } else if (PROPERTY_LAST_MODIFIED_BY.equals(n2.getLastModifiedBy())) {
-            return compare(n1.getLastModifiedBy(), n2.getLastModifiedBy());
-        } else if (PROPERTY_MIME_TYPE.equals(property)) {
-            String mime1 = (n1 instanceof BrixFileNode bfn) ? bfn.getMimeType(true) : null;
-            String mime2 = (n2 instanceof BrixFileNode bfn) ? bfn.getMimeType(true) : null;
-            return compare(mime1, mime2);
-        } else if (PROPERTY_SIZE.equals(property)) {
-            Long size1 = (n1 instanceof BrixFileNode bfn) ? bfn.getContentLength() : null;
-            Long size2 = (n2 instanceof BrixFileNode bfn) ? bfn.getContentLength() : null;
-            return compare(size1, size2);
+    private FolderListing getListing(BrixNode folder) {
+        JcrSession session = folder.getSession();
+        if (session.hasPendingChanges()) {
+            // unsaved changes are only visible to this session
+            return FolderListing.build(folder, SITE_FILTER);
         }
-        return 0;
-    }
-
-    private <T> int compare(Comparable<T> c1, T c2) {
-        if (c1 == null || c2 == null) {
-            return 0;
-        } else {
-            if (c1 instanceof String string) {
-                return string.compareToIgnoreCase((String) c2);
-            } else {
-                return c1.compareTo(c2);
-            }
+        Partition<String, FolderListing> listings = SitePlugin.get().getFolderListingCache()
+                .getPartition(session.getWorkspace().getName());
+        FolderListing listing = listings.get(folder.getPath());
+        if (listing == null) {
+            listing = FolderListing.build(folder, SITE_FILTER);
+            listings.put(folder.getPath(), listing);
         }
+        return listing;
     }
 
-    private List<BrixNode> visibleNodes(JcrNodeIterator iterator) {
-        List<BrixNode> res = new ArrayList<BrixNode>();
-        while (iterator.hasNext()) {
-            BrixNode node = (BrixNode) iterator.nextNode();
-            if (canShowNode(node)) {
-                res.add(node);
+    private Set<String> getViewablePaths(JcrSession session, FolderListing listing) {
+        if (listing != viewableListing) {
+            Map<String, Boolean> previous = viewDecisions != null ? viewDecisions
+                    : Collections.<String, Boolean>emptyMap();
+            Map<String, Boolean> decisions = new HashMap<String, Boolean>();
+            Set<String> paths = new HashSet<String>();
+            SitePlugin plugin = SitePlugin.get();
+            for (FolderListing.Child child : listing.getSorted(Collections.emptyList())) {
+                String path = child.getPath();
+                Boolean viewable = previous.get(path);
+                if (viewable == null) {
+                    viewable = session.nodeExists(path)
+                            && plugin.canViewNode((BrixNode) session.getNode(path), Context.ADMINISTRATION);
+                }
+                decisions.put(path, viewable);
+                if (viewable) {
+                    paths.add(path);
+                }
             }
+            // only the decisions for current children are kept
+            viewDecisions = decisions;
+            viewablePaths = paths;
+            viewableListing = listing;
         }
-        return res;
+        return viewablePaths;
     }
 
     private boolean canShowNode(BrixNode node) {
@@ -0,0 +1,216 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.folder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.inmethod.grid.IGridSortState;
+import com.inmethod.grid.IGridSortState.ISortStateColumn;
+import org.brixcms.jcr.api.JcrNodeIterator;
+import org.brixcms.jcr.wrapper.BrixFileNode;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.web.tree.NodeFilter;
+
+/**
+ * Immutable projection of the children of a folder to the values the administration grid sorts by. The values are
+ * read once per child when the listing is built, sorted orders are kept for the lifetime of the listing (see
+ * {@link FolderListingCache}).
+ */
+public final class FolderListing {
+    /**
+     * Maximum number of distinct sort orders kept by a single listing
+     */
+    private static final int MAX_SORT_ORDERS = 16;
+
+    private static final Comparator<String> TEXT = Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER);
+
+    private static final Comparator<Child> FOLDERS_FIRST = Comparator.comparing(child -> !child.isFolder());
+
+    private final List<Child> children;
+
+    private final ConcurrentMap<String, List<Child>> sorted = new ConcurrentHashMap<String, List<Child>>();
+
+    FolderListing(List<Child> children) {
+        this.children = Collections.unmodifiableList(new ArrayList<Child>(children));
+    }
+
+    /**
+     * Reads the children of the folder that are not hidden and allowed by the filter.
+     *
+     * @param folder
+     * @param filter
+     * @return listing of the folder children in repository order
+     */
+    public static FolderListing build(BrixNode folder, NodeFilter filter) {
+        List<Child> children = new ArrayList<Child>();
+        JcrNodeIterator iterator = folder.getNodes();
+        while (iterator.hasNext()) {
+            BrixNode node = (BrixNode) iterator.nextNode();
+            if (!node.isHidden() && filter.isNodeAllowed(node)) {
+                children.add(new Child(node));
+            }
+        }
+        return new FolderListing(children);
+    }
+
+    public int size() {
+        return children.size();
+    }
+
+    /**
+     * Returns the children ordered by up to three sort columns, the first column being the primary order. Children
+     * are ordered by name if none of the columns is known.
+     *
+     * @param columns
+     * @return unmodifiable sorted list of children
+     */
+    public List<Child> getSorted(List<? extends ISortStateColumn<String>> columns) {
+        StringBuilder key = new StringBuilder();
+        Comparator<Child> comparator = null;
+        for (int i = 0; i < columns.size() && i < 3; ++i) {
+            ISortStateColumn<String> column = columns.get(i);
+            Comparator<Child> next = comparator(column.getPropertyName());
+            if (next == null) {
+                continue;
+            }
+            if (column.getDirection() == IGridSortState.Direction.DESC) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+            key.append(column.getPropertyName()).append(':').append(column.getDirection()).append('|');
+        }
+        if (comparator == null) {
+            comparator = comparator(FolderDataSource.PROPERTY_NAME);
+        }
+
+        String sortKey = key.toString();
+        List<Child> result = sorted.get(sortKey);
+        if (result == null) {
+            List<Child> copy = new ArrayList<Child>(children);
+            copy.sort(comparator);
+            result = Collections.unmodifiableList(copy);
+            if (sorted.size() < MAX_SORT_ORDERS) {
+                sorted.putIfAbsent(sortKey, result);
+            }
+        }
+        return result;
+    }
+
+    private static Comparator<Child> comparator(String property) {
+        if (FolderDataSource.PROPERTY_NAME.equals(property)) {
+            // folders always go first when sorting by name, size or mime type
+            return FOLDERS_FIRST.thenComparing(Child::getName, TEXT);
+        } else if (FolderDataSource.PROPERTY_TYPE.equals(property)) {
+            return Comparator.comparing(Child::getType, TEXT);
+        } else if (FolderDataSource.PROPERTY_CREATED.equals(property)) {
+            return Comparator.comparing(Child::getCreated, Comparator.nullsLast(Comparator.<Date>naturalOrder()));
+        } else if (FolderDataSource.PROPERTY_CREATED_BY.equals(property)) {
+            return Comparator.comparing(Child::getCreatedBy, TEXT);
+        } else if (FolderDataSource.PROPERTY_LAST_MODIFIED.equals(property)) {
+            return Comparator.comparing(Child::getLastModified, Comparator.nullsLast(Comparator.<Date>naturalOrder()));
+        } else if (FolderDataSource.PROPERTY_LAST_MODIFIED_BY.equals(property)) {
+            return Comparator.comparing(Child::getLastModifiedBy, TEXT);
+        } else if (FolderDataSource.PROPERTY_MIME_TYPE.equals(property)) {
+            return FOLDERS_FIRST.thenComparing(Child::getMimeType, TEXT);
+        } else if (FolderDataSource.PROPERTY_SIZE.equals(property)) {
+            return FOLDERS_FIRST.thenComparing(Child::getSize, Comparator.nullsLast(Comparator.<Long>naturalOrder()));
+        }
+        return null;
+    }
+
+    /**
+     * Sort keys of a single child node.
+     */
+    public static final class Child {
+        private final String path;
+        private final boolean folder;
+        private final String name;
+        private final String type;
+        private final Date created;
+        private final String createdBy;
+        private final Date lastModified;
+        private final String lastModifiedBy;
+        private final String mimeType;
+        private final Long size;
+
+        private Child(BrixNode node) {
+            this(node.getPath(), node.isFolder(), node.getUserVisibleName(), node.getUserVisibleType(),
+                    node.getCreated(), node.getCreatedBy(), node.getLastModified(), node.getLastModifiedBy(),
+                    node instanceof BrixFileNode file ? file.getMimeType(true) : null,
+                    node instanceof BrixFileNode file ? Long.valueOf(file.getContentLength()) : null);
+        }
+
+        Child(String path, boolean folder, String name, String type, Date created, String createdBy,
+              Date lastModified, String lastModifiedBy, String mimeType, Long size) {
+            this.path = path;
+            this.folder = folder;
+            this.name = name;
+            this.type = type;
+            this.created = created;
+            this.createdBy = createdBy;
+            this.lastModified = lastModified;
+            this.lastModifiedBy = lastModifiedBy;
+            this.mimeType = mimeType;
+            this.size = size;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public boolean isFolder() {
+            return folder;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Date getCreated() {
+            return created;
+        }
+
+        public String getCreatedBy() {
+            return createdBy;
+        }
+
+        public Date getLastModified() {
+            return lastModified;
+        }
+
+        public String getLastModifiedBy() {
+            return lastModifiedBy;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public Long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.folder;
+
+import org.brixcms.util.WorkspacePartitionedCache;
+
+/**
+ * Application scoped cache of folder listings shown by the administration grid (see {@link FolderDataSource}). A
+ * listing holds the sort keys of the children of a folder so that sorting and paging a large folder does not read
+ * node properties again for every comparison or request.
+ * <p>
+ * Listings are keyed by folder path, the partition of a workspace is discarded on save (which is the revision boundary
+ * for other sessions) and when the workspace content is replaced. At most 256 listings are kept per workspace.
+ */
+public class FolderListingCache extends WorkspacePartitionedCache<String, FolderListing> {
+    /**
+     * Maximum number of folders whose listings are kept per workspace
+     */
+    private static final int MAX_LISTINGS = 256;
+
+    public FolderListingCache() {
+        super(MAX_LISTINGS);
+    }
+}
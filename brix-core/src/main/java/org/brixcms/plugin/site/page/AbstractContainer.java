@@ -18,24 +18,24 @@ import org.brixcms.Brix;
 import org.brixcms.exception.NodeNotFoundException;
 import org.brixcms.jcr.JcrUtil;
 import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrProperty;
 import org.brixcms.jcr.api.JcrPropertyIterator;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.jcr.wrapper.BrixFileNode;
 import org.brixcms.jcr.wrapper.BrixNode;
-import org.brixcms.markup.tag.Item;
 import org.brixcms.markup.variable.VariableKeyProvider;
-import org.brixcms.markup.variable.VariableTransformer;
 import org.brixcms.markup.variable.VariableValueProvider;
 import org.brixcms.plugin.site.SitePlugin;
 import org.brixcms.plugin.site.page.tile.TileContainerFacet;
-import org.brixcms.plugin.site.page.tile.TileTag;
+import org.brixcms.util.WorkspacePartitionedCache.Partition;
 
 import javax.jcr.Node;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public abstract class AbstractContainer extends BrixFileNode
@@ -62,35 +62,106 @@ public abstract class AbstractContainer extends BrixFileNode
      * Returns collection of possible variable keys for this node.
      */
     public Collection<String> getVariableKeys() {
-        Set<String> keys = new HashSet<String>();
-        PageMarkupSource source = new PageMarkupSource(this);
-        VariableTransformer transfomer = new VariableTransformer(source, this);
-        Item i = transfomer.nextMarkupItem();
-        while (i != null) {
-            if (i instanceof VariableKeyProvider provider) {
-                Collection<String> k = provider.getVariableKeys();
-                if (k != null) {
-                    keys.addAll(k);
-                }
-            }
-            i = transfomer.nextMarkupItem();
-        }
-
+        Set<String> keys = new PageMarkupSource(this).getVariableKeys();
         keys.addAll(SitePlugin.get().getGlobalVariableKeys(getSession()));
 
         return keys;
     }
 
     public String getVariableValue(String key) {
-        return getVariableValue(key, true);
+        return getVariables().get(key);
+    }
+
+    /**
+     * Returns the values of all variables visible to this container: its own, those of its templates and the global
+     * ones, the definition nearest to this container wins. The table is cached per workspace until the next save,
+     * unless the session has unsaved changes.
+     *
+     * @return unmodifiable map of variable keys to values
+     */
+    public Map<String, String> getVariables() {
+        SitePlugin plugin = SitePlugin.get(getBrix());
+        Partition<String, Map<String, String>> tables = plugin != null ? plugin.getVariableTableCache()
+                .getPartition(getSession().getWorkspace().getName()) : null;
+        if (tables == null || getSession().hasPendingChanges()) {
+            return computeVariables();
+        }
+
+        String identifier = getIdentifier();
+        Map<String, String> variables = tables.get(identifier);
+        if (variables == null) {
+            variables = computeVariables();
+            tables.put(identifier, variables);
+        }
+        return variables;
+    }
+
+    private Map<String, String> computeVariables() {
+        List<AbstractContainer> chain = new ArrayList<AbstractContainer>();
+        for (AbstractContainer container = this; container != null && !chain.contains(container);
+             container = container.getTemplate()) {
+            chain.add(container);
+        }
+
+        Map<String, String> result = new HashMap<String, String>();
+        AbstractContainer global = SitePlugin.get(getBrix()).getGlobalContainer(getSession());
+        if (global != null && !chain.contains(global)) {
+            global.addSavedVariables(result);
+        }
+        for (int i = chain.size() - 1; i >= 0; --i) {
+            chain.get(i).addSavedVariables(result);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private void addSavedVariables(Map<String, String> result) {
+        if (hasNode(VARIABLES_NODE_NAME)) {
+            JcrPropertyIterator i = getNode(VARIABLES_NODE_NAME).getProperties();
+            while (i.hasNext()) {
+                JcrProperty property = i.nextProperty();
+                // filter out jcr: properties (or other possible brix properties)
+                if (!property.getName().contains(":") && !property.getDefinition().isMultiple()) {
+                    result.put(property.getName(), property.getString());
+                }
+            }
+        }
     }
 
     public AbstractSitePagePlugin getNodePlugin() {
         return (AbstractSitePagePlugin) SitePlugin.get().getNodePluginForNode(this);
     }
 
+    /**
+     * Returns the protocol required by this container. The decision is cached per workspace until the next save, unless
+     * the session has unsaved changes or a consulted tile opts out of caching.
+     */
     @Override
     public Protocol getRequiredProtocol() {
+        SitePlugin plugin = SitePlugin.get(getBrix());
+        Partition<String, Protocol> protocols = plugin != null ? plugin.getRequiredProtocolCache()
+                .getPartition(getSession().getWorkspace().getName()) : null;
+        if (protocols == null) {
+            return computeRequiredProtocol();
+        }
+
+        String identifier = getIdentifier();
+        Protocol protocol = protocols.get(identifier);
+        if (protocol == null) {
+            boolean cacheable = !getSession().hasPendingChanges();
+            RequiredProtocolCache.Decision decision = RequiredProtocolCache.beginDecision();
+            try {
+                protocol = computeRequiredProtocol();
+            } finally {
+                cacheable &= decision.end();
+            }
+            if (cacheable) {
+                protocols.put(identifier, protocol);
+            }
+        }
+        return protocol;
+    }
+
+    private Protocol computeRequiredProtocol() {
         // requiring SSL takes precedence
         if (requiresSSL()) {
             return Protocol.HTTPS;
@@ -165,16 +236,7 @@ public abstract class AbstractContainer extends BrixFileNode
     }
 
     public Collection<String> getTileIDs() {
-        Set<String> keys = new HashSet<String>();
-        PageMarkupSource source = new PageMarkupSource(this);
-        Item i = source.nextMarkupItem();
-        while (i != null) {
-            if (i instanceof TileTag tag) {
-                keys.add(tag.getTileName());
-            }
-            i = source.nextMarkupItem();
-        }
-
+        Set<String> keys = new PageMarkupSource(this).getTileIDs();
         keys.addAll(SitePlugin.get().getGlobalTileIDs(getSession()));
 
         return keys;
@@ -205,20 +267,15 @@ public abstract class AbstractContainer extends BrixFileNode
     }
 
     public String getVariableValue(String key, boolean followTemplate) {
+        if (followTemplate) {
+            return getVariables().get(key);
+        }
         if (hasNode(VARIABLES_NODE_NAME)) {
             JcrNode node = getNode(VARIABLES_NODE_NAME);
             if (node.hasProperty(key)) {
                 return node.getProperty(key).getString();
             }
         }
-        if (followTemplate) {
-            TemplateNode template = getTemplate();
-            if (template != null) {
-                return template.getVariableValue(key);
-            } else {
-                return SitePlugin.get().getGlobalVariableValue(getSession(), key);
-            }
-        }
         return null;
     }
 
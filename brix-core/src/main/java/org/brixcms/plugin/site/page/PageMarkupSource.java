@@ -14,34 +14,27 @@
 
 package org.brixcms.plugin.site.page;
 
-import org.brixcms.Brix;
 import org.brixcms.exception.BrixException;
+import org.brixcms.markup.MarkupCache;
 import org.brixcms.markup.MarkupSource;
 import org.brixcms.markup.tag.Item;
-import org.brixcms.markup.tag.Tag;
 import org.brixcms.markup.tag.Tag.Type;
-import org.brixcms.markup.tag.simple.SimpleComment;
 import org.brixcms.markup.tag.simple.SimpleTag;
-import org.brixcms.markup.tag.simple.SimpleText;
+import org.brixcms.plugin.site.SitePlugin;
 import org.brixcms.plugin.site.page.tile.TileTag;
-import org.htmlparser.Attribute;
-import org.htmlparser.Node;
-import org.htmlparser.Remark;
-import org.htmlparser.Text;
-import org.htmlparser.lexer.Lexer;
-import org.htmlparser.util.ParserException;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 /**
  * {@link MarkupSource} for tile markup. Parses and merges the content of tile container node and it's templates.
+ * Markup of the individual nodes is tokenized by {@link PageMarkupTokenizer} and shared through the
+ * {@link ParsedMarkupCache}.
  *
  * @author Matej Knopp
  */
@@ -49,6 +42,9 @@ public class PageMarkupSource implements MarkupSource {
     List<Item> items = null;
     private final AbstractContainer node;
 
+    private List<ParsedMarkup> included;
+    private List<TileTag> tileTags;
+
     private Iterator<Item> iterator;
 
     private String doctype = null;
@@ -81,9 +77,8 @@ public class PageMarkupSource implements MarkupSource {
     }
 
     public Item nextMarkupItem() {
-        if (items == null) {
-            parseMarkup();
-            iterator = items.iterator();
+        if (iterator == null) {
+            iterator = getItems().iterator();
         }
         if (iterator.hasNext()) {
             return iterator.next();
@@ -92,6 +87,48 @@ public class PageMarkupSource implements MarkupSource {
         }
     }
 
+    /**
+     * Returns ids of the tiles placed in the markup of the container and the included templates.
+     *
+     * @return tile ids
+     */
+    public Set<String> getTileIDs() {
+        getItems();
+        Set<String> result = new HashSet<String>();
+        for (ParsedMarkup markup : included) {
+            result.addAll(markup.getTileIds());
+        }
+        return result;
+    }
+
+    /**
+     * Returns keys of the variables used in the markup of the container and the included templates, including
+     * variables provided by the tiles.
+     *
+     * @return variable keys
+     */
+    public Set<String> getVariableKeys() {
+        getItems();
+        Set<String> result = new HashSet<String>();
+        for (ParsedMarkup markup : included) {
+            result.addAll(markup.getVariableKeys());
+        }
+        for (TileTag tag : tileTags) {
+            Collection<String> keys = tag.getVariableKeys();
+            if (keys != null) {
+                result.addAll(keys);
+            }
+        }
+        return result;
+    }
+
+    private List<Item> getItems() {
+        if (items == null) {
+            parseMarkup();
+        }
+        return items;
+    }
+
     /**
      * Returns the most recent date of last modification of tile page and it's templates. The date is then used as
      * expiration token.
@@ -114,6 +151,8 @@ public class PageMarkupSource implements MarkupSource {
 
     private void parseMarkup() {
         items = new ArrayList<Item>();
+        included = new ArrayList<ParsedMarkup>();
+        tileTags = new ArrayList<TileTag>();
 
         List<AbstractContainer> nodes = new ArrayList<AbstractContainer>();
         nodes.add(node);
@@ -125,116 +164,39 @@ public class PageMarkupSource implements MarkupSource {
                 throw new BrixException("Loop detected.");
             }
             nodes.add(0, n);
+            MarkupCache.recordDependency(n);
         }
 
-        parseNode(nodes, 0, items);
+        appendNode(nodes, 0);
     }
 
-    private void parseNode(List<AbstractContainer> nodes, int current, List<Item> items) {
+    private void appendNode(List<AbstractContainer> nodes, int current) {
         AbstractContainer node = nodes.get(current);
-        final String content = node.getDataAsString();
-        final Lexer lexer = new Lexer(content);
-        Node cursor = null;
-
-        try {
-            while ((cursor = lexer.nextNode()) != null) {
-                if (cursor instanceof Remark) {
-                    items.add(new SimpleComment(cursor.getText()));
-                } else if (cursor instanceof Text) {
-                    items.add(new SimpleText(cursor.toHtml()));
-                } else if (cursor instanceof org.htmlparser.Tag tag) {
-                    processTag(nodes, current, items, tag);
-                } else {
-                    throw new BrixException("Unknown node type " + cursor.getClass().getName());
-                }
-            }
-        }
-        catch (ParserException e) {
-            throw new BrixException("Couldn't parse node content: '" + node.getPath() + "'", e);
-        }
-    }
-
-    private void processTag(List<AbstractContainer> nodes, int current, List<Item> items,
-                            org.htmlparser.Tag tag) {
-        final Tag.Type type;
-        final String rawName = tag.getRawTagName();
-        if (rawName.startsWith("/")) {
-            type = Tag.Type.CLOSE;
-        } else if (isOpenClose(tag)) {
-            type = Tag.Type.OPEN_CLOSE;
-        } else {
-            type = Tag.Type.OPEN;
+        ParsedMarkup markup = getParsedMarkup(node);
+        included.add(markup);
+        if (markup.getDoctype() != null) {
+            doctype = markup.getDoctype();
         }
 
-        final String tagName = tag.getTagName().toLowerCase();
-
-        if ("!doctype".equals(tagName)) {
-            this.doctype = tag.toHtml();
-        } else if (type == Tag.Type.CLOSE) {
-            if (!isKnownBrixTag(tagName)) {
-                Map<String, String> attributes = Collections.emptyMap();
-                items.add(new SimpleTag(tagName, type, attributes));
-            }
-        } else {
-            Map<String, String> attributes = getAttributes(tag);
-            if (isKnownBrixTag(tagName)) {
-                processBrixTag(nodes, current, items, tagName, getAttributes(tag), type);
+        for (Object token : markup.getTokens()) {
+            if (token == ParsedMarkup.CONTENT) {
+                if (current != nodes.size() - 1) {
+                    appendNode(nodes, current + 1);
+                }
+            } else if (token instanceof ParsedMarkup.TilePlaceholder tile) {
+                TileTag tag = new TileTag("div", Type.OPEN, tile.getAttributes(), node, tile.getId());
+                tileTags.add(tag);
+                items.add(tag);
+                items.add(new SimpleTag("div", Type.CLOSE, null));
             } else {
-                items.add(new SimpleTag(tagName, type, attributes));
+                items.add((Item) token);
             }
         }
     }
 
-    private boolean isOpenClose(org.htmlparser.Tag tag) {
-        if (tag.getRawTagName().endsWith("/")) {
-            return true;
-        } else {
-            List<?> atts = tag.getAttributesEx();
-            Attribute a = (Attribute) atts.get(atts.size() - 1);
-            return a.getName() != null && a.getName().equals("/");
-        }
-    }
-
-    private boolean isKnownBrixTag(String tagName) {
-        if (!tagName.startsWith(Brix.NS_PREFIX)) {
-            return false;
-        }
-        String simpleTagName = tagName.substring(Brix.NS_PREFIX.length());
-        return TemplateNode.CONTENT_TAG.equals(tagName) || "tile".equals(simpleTagName) ||
-                "fragment".equals(simpleTagName);
-    }
-
-    private void processBrixTag(List<AbstractContainer> nodes, int current, List<Item> items,
-                                String tagName, Map<String, String> attributes, Tag.Type type) {
-        AbstractContainer node = nodes.get(current);
-        final String simpleTagName = tagName.substring(Brix.NS_PREFIX.length());
-        if (TemplateNode.CONTENT_TAG.equals(tagName)) {
-            if (current != nodes.size() - 1) {
-                parseNode(nodes, current + 1, items);
-            }
-        } else if ("tile".equals(simpleTagName)) {
-            String id = attributes.get(AbstractContainer.MARKUP_TILE_ID);
-            //Map<String, String> newAttributes = new HashMap<String, String>(attributes);
-            //newAttributes.remove("id");            
-            items.add(new TileTag("div", Type.OPEN, attributes, node, id));
-            items.add(new SimpleTag("div", Type.CLOSE, null));
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    private Map<String, String> getAttributes(org.htmlparser.Tag tag) {
-        Map<String, String> result = new HashMap<String, String>();
-
-        List<?> original = tag.getAttributesEx();
-        List<Attribute> list = new ArrayList<Attribute>((Collection<? extends Attribute>) original
-                .subList(1, original.size()));
-
-        for (Attribute a : list) {
-            if (a.getName() != null && !a.getName().equals("/") && !a.isWhitespace()) {
-                result.put(a.getName(), a.getValue());
-            }
-        }
-
-        return result;
+    private static ParsedMarkup getParsedMarkup(AbstractContainer node) {
+        String content = node.getDataAsString();
+        SitePlugin plugin = SitePlugin.get(node.getBrix());
+        return plugin != null ? plugin.getParsedMarkupCache().get(content) : ParsedMarkup.parse(content);
     }
 }
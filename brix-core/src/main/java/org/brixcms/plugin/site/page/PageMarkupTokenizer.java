@@ -0,0 +1,337 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.markup.tag.Tag;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Single pass tokenizer for page and template markup. Only tags that the markup transformers and Wicket rely on are
+ * parsed into name, type and attributes: namespaced tags (<code>brix:</code>, <code>wicket:</code>), the
+ * <code>html</code>, <code>head</code>, <code>body</code> and <code>title</code> tags and tags with a namespaced
+ * attribute or a <code>brix:var:</code> attribute value, together with the close tags of such elements. Everything
+ * else, including comments, script and style content, is reported as raw text spans that are copied verbatim.
+ */
+final class PageMarkupTokenizer {
+    private static final String VAR_ATTRIBUTE_PREFIX = "brix:var:";
+
+    private final String content;
+    private final Handler handler;
+    private final int length;
+
+    // text not yet reported to the handler starts here
+    private int textStart = 0;
+
+    // result of the last scanTag call
+    private boolean selfClosing;
+    private boolean colonSeen;
+
+    // number of open detailed elements by name, their close tags are detailed too
+    private Map<String, Integer> openElements = Collections.emptyMap();
+
+    private PageMarkupTokenizer(String content, Handler handler) {
+        this.content = content;
+        this.handler = handler;
+        this.length = content.length();
+    }
+
+    /**
+     * Tokenizes the given markup and reports the tokens to the handler in document order.
+     *
+     * @param content markup
+     * @param handler receiver of the tokens
+     */
+    static void tokenize(String content, Handler handler) {
+        new PageMarkupTokenizer(content, handler).run();
+    }
+
+    private void run() {
+        int pos = 0;
+        while (pos < length) {
+            int start = content.indexOf('<', pos);
+            if (start < 0 || start + 1 >= length) {
+                break;
+            }
+            char c = content.charAt(start + 1);
+            if (c == '!') {
+                pos = declaration(start);
+            } else if (c == '?') {
+                pos = skipPast('>', start + 2);
+            } else {
+                pos = tag(start, c == '/');
+            }
+        }
+        flushText(length);
+    }
+
+    private int declaration(int start) {
+        if (content.startsWith("<!--", start)) {
+            int end = content.indexOf("-->", start + 4);
+            return end < 0 ? length : end + 3;
+        }
+        int end = content.indexOf('>', start + 2);
+        if (end < 0) {
+            return length;
+        }
+        if (content.regionMatches(true, start + 2, "doctype", 0, 7)) {
+            flushText(start);
+            handler.doctype(content.substring(start, end + 1));
+            textStart = end + 1;
+        }
+        return end + 1;
+    }
+
+    private int tag(int start, boolean close) {
+        int nameStart = close ? start + 2 : start + 1;
+        if (nameStart >= length || !Character.isLetter(content.charAt(nameStart))) {
+            // stray '<' is text
+            return start + 1;
+        }
+        int nameEnd = nameStart;
+        boolean namespaced = false;
+        while (nameEnd < length && isNameChar(content.charAt(nameEnd))) {
+            namespaced |= content.charAt(nameEnd) == ':';
+            ++nameEnd;
+        }
+
+        int end = scanTag(nameEnd);
+        if (end < 0) {
+            // unterminated tag, the rest is text
+            return length;
+        }
+
+        boolean detailed = namespaced || isStructural(nameStart, nameEnd);
+        String name = null;
+        Map<String, String> attributes = null;
+        if (close) {
+            if (!detailed && !openElements.isEmpty()) {
+                name = lowerCase(nameStart, nameEnd);
+                detailed = openElements.containsKey(name);
+            }
+        } else if (!detailed && colonSeen) {
+            attributes = parseAttributes(nameEnd, end);
+            detailed = needsDetail(attributes);
+        }
+
+        if (detailed) {
+            if (name == null) {
+                name = lowerCase(nameStart, nameEnd);
+            }
+            flushText(start);
+            textStart = end + 1;
+            if (close) {
+                closed(name);
+                handler.tag(name, Tag.Type.CLOSE, Collections.<String, String>emptyMap());
+            } else {
+                if (attributes == null) {
+                    attributes = parseAttributes(nameEnd, end);
+                }
+                if (!selfClosing) {
+                    opened(name);
+                }
+                handler.tag(name, selfClosing ? Tag.Type.OPEN_CLOSE : Tag.Type.OPEN, attributes);
+            }
+        }
+
+        if (!close && !selfClosing && isRawTextElement(nameStart, nameEnd)) {
+            // script and style content is never markup, continue at the close tag
+            return findCloseTag(end + 1, nameStart, nameEnd);
+        }
+        return end + 1;
+    }
+
+    /**
+     * Scans the attributes of a tag without allocating, remembering whether the tag is self closing and whether a
+     * colon appeared in an attribute name or value.
+     *
+     * @return index of the closing '&gt;' or -1 if the tag is not terminated
+     */
+    private int scanTag(int pos) {
+        selfClosing = false;
+        colonSeen = false;
+        while (pos < length) {
+            char c = content.charAt(pos);
+            if (c == '>') {
+                return pos;
+            } else if (c == '/') {
+                selfClosing = true;
+                ++pos;
+                continue;
+            } else if (c == '"' || c == '\'') {
+                ++pos;
+                while (pos < length && content.charAt(pos) != c) {
+                    colonSeen |= content.charAt(pos) == ':';
+                    ++pos;
+                }
+                if (pos == length) {
+                    return -1;
+                }
+                ++pos;
+            } else {
+                colonSeen |= c == ':';
+                ++pos;
+            }
+            if (!Character.isWhitespace(c)) {
+                selfClosing = false;
+            }
+        }
+        return -1;
+    }
+
+    private Map<String, String> parseAttributes(int pos, int end) {
+        Map<String, String> attributes = null;
+        while (pos < end) {
+            char c = content.charAt(pos);
+            if (Character.isWhitespace(c) || c == '/') {
+                ++pos;
+                continue;
+            }
+            int nameStart = pos;
+            while (pos < end && !isAttributeNameEnd(content.charAt(pos))) {
+                ++pos;
+            }
+            String name = content.substring(nameStart, pos);
+            pos = skipWhitespace(pos, end);
+            String value = "";
+            if (pos < end && content.charAt(pos) == '=') {
+                pos = skipWhitespace(pos + 1, end);
+                if (pos < end && (content.charAt(pos) == '"' || content.charAt(pos) == '\'')) {
+                    int close = content.indexOf(content.charAt(pos), pos + 1);
+                    if (close < 0 || close > end) {
+                        close = end;
+                    }
+                    value = content.substring(pos + 1, close);
+                    pos = close + 1;
+                } else {
+                    int valueStart = pos;
+                    while (pos < end && !Character.isWhitespace(content.charAt(pos))) {
+                        ++pos;
+                    }
+                    value = content.substring(valueStart, pos);
+                }
+            }
+            if (attributes == null) {
+                attributes = new LinkedHashMap<String, String>();
+            }
+            attributes.put(name, value);
+        }
+        // the maps end up in tags shared by all containers with the same markup
+        return attributes != null ? Collections.unmodifiableMap(attributes) : Collections.<String, String>emptyMap();
+    }
+
+    private static boolean needsDetail(Map<String, String> attributes) {
+        for (Map.Entry<String, String> e : attributes.entrySet()) {
+            if (e.getKey().indexOf(':') >= 0 || e.getValue().startsWith(VAR_ATTRIBUTE_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int findCloseTag(int pos, int nameStart, int nameEnd) {
+        int nameLength = nameEnd - nameStart;
+        while ((pos = content.indexOf("</", pos)) >= 0) {
+            if (content.regionMatches(true, pos + 2, content, nameStart, nameLength)) {
+                return pos;
+            }
+            pos += 2;
+        }
+        return length;
+    }
+
+    private int skipPast(char c, int pos) {
+        int end = content.indexOf(c, pos);
+        return end < 0 ? length : end + 1;
+    }
+
+    private int skipWhitespace(int pos, int end) {
+        while (pos < end && Character.isWhitespace(content.charAt(pos))) {
+            ++pos;
+        }
+        return pos;
+    }
+
+    private void flushText(int end) {
+        if (end > textStart) {
+            handler.text(content.substring(textStart, end));
+        }
+        textStart = end;
+    }
+
+    private void opened(String name) {
+        if (openElements.isEmpty()) {
+            openElements = new HashMap<String, Integer>();
+        }
+        openElements.merge(name, 1, Integer::sum);
+    }
+
+    private void closed(String name) {
+        if (openElements.containsKey(name)) {
+            openElements.computeIfPresent(name, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private boolean isStructural(int nameStart, int nameEnd) {
+        return is("html", nameStart, nameEnd) || is("head", nameStart, nameEnd) || is("body", nameStart, nameEnd) ||
+                is("title", nameStart, nameEnd);
+    }
+
+    private boolean isRawTextElement(int nameStart, int nameEnd) {
+        return is("script", nameStart, nameEnd) || is("style", nameStart, nameEnd);
+    }
+
+    private boolean is(String name, int nameStart, int nameEnd) {
+        return nameEnd - nameStart == name.length() && content.regionMatches(true, nameStart, name, 0, name.length());
+    }
+
+    private String lowerCase(int nameStart, int nameEnd) {
+        return content.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == ':' || c == '-' || c == '_' || c == '.';
+    }
+
+    private static boolean isAttributeNameEnd(char c) {
+        return Character.isWhitespace(c) || c == '=' || c == '>' || c == '/';
+    }
+
+    /**
+     * Receiver of the tokens.
+     */
+    interface Handler {
+        /**
+         * Raw markup that is copied verbatim. Consecutive spans are reported as one.
+         */
+        void text(String text);
+
+        /**
+         * A tag that was parsed in detail. Names are lower case, attributes without value are reported with an empty
+         * value. The attribute map is read only.
+         */
+        void tag(String name, Tag.Type type, Map<String, String> attributes);
+
+        /**
+         * The document type declaration, it is not part of the text.
+         */
+        void doctype(String doctype);
+    }
+}
@@ -29,7 +29,12 @@ public class PageNode extends AbstractContainer {
     public static JcrNodeWrapperFactory FACTORY = new JcrNodeWrapperFactory() {
         @Override
         public boolean canWrap(Brix brix, JcrNode node) {
-            return PageSiteNodePlugin.TYPE.equals(getNodeType(node));
+            return PageSiteNodePlugin.TYPE.equals(BrixNode.getNodeType(node));
+        }
+
+        @Override
+        public String getNodeType() {
+            return PageSiteNodePlugin.TYPE;
         }
 
         @Override
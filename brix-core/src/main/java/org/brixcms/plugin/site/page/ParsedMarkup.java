@@ -0,0 +1,179 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.Brix;
+import org.brixcms.markup.tag.Tag;
+import org.brixcms.markup.tag.simple.SimpleTag;
+import org.brixcms.markup.tag.simple.SimpleText;
+import org.brixcms.markup.variable.VariableTag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable result of tokenizing the markup of a single page or template. The tokens are shared by all containers
+ * with the same markup, so the parts that are bound to a container (the position of the <code>&lt;brix:content&gt;</code>
+ * tag and the tiles) are kept as placeholders that {@link PageMarkupSource} resolves when assembling the template
+ * chain.
+ */
+final class ParsedMarkup {
+    /**
+     * Placeholder for the markup of the next node in the template chain.
+     */
+    static final Object CONTENT = new Object();
+
+    private static final String TILE_TAG = Brix.NS_PREFIX + "tile";
+    private static final String FRAGMENT_TAG = Brix.NS_PREFIX + "fragment";
+    private static final String VAR_TAG = Brix.NS_PREFIX + "var";
+
+    private final List<Object> tokens;
+    private final String doctype;
+    private final Set<String> tileIds;
+    private final Set<String> variableKeys;
+    private final int weight;
+
+    private ParsedMarkup(Builder builder, int weight) {
+        this.tokens = Collections.unmodifiableList(builder.tokens);
+        this.doctype = builder.doctype;
+        this.tileIds = Collections.unmodifiableSet(builder.tileIds);
+        this.variableKeys = Collections.unmodifiableSet(builder.variableKeys);
+        this.weight = weight;
+    }
+
+    /**
+     * Tokenizes the given markup.
+     *
+     * @param content markup of a page or template
+     * @return parsed markup
+     */
+    static ParsedMarkup parse(String content) {
+        Builder builder = new Builder();
+        PageMarkupTokenizer.tokenize(content, builder);
+        return new ParsedMarkup(builder, content.length());
+    }
+
+    /**
+     * @return static items, {@link #CONTENT} and {@link TilePlaceholder}s in document order
+     */
+    List<Object> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * @return the last document type declaration or <code>null</code>
+     */
+    String getDoctype() {
+        return doctype;
+    }
+
+    /**
+     * @return ids of the tiles placed in the markup
+     */
+    Set<String> getTileIds() {
+        return tileIds;
+    }
+
+    /**
+     * @return keys of the variables used in the markup, tile provided variables are not included
+     */
+    Set<String> getVariableKeys() {
+        return variableKeys;
+    }
+
+    /**
+     * @return length of the parsed markup
+     */
+    int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Position and attributes of a <code>&lt;brix:tile&gt;</code> tag.
+     */
+    static final class TilePlaceholder {
+        private final Map<String, String> attributes;
+        private final String id;
+
+        private TilePlaceholder(Map<String, String> attributes) {
+            this.attributes = Collections.unmodifiableMap(attributes);
+            this.id = attributes.get(AbstractContainer.MARKUP_TILE_ID);
+        }
+
+        Map<String, String> getAttributes() {
+            return attributes;
+        }
+
+        String getId() {
+            return id;
+        }
+    }
+
+    private static final class Builder implements PageMarkupTokenizer.Handler {
+        private final List<Object> tokens = new ArrayList<Object>();
+        private final Set<String> tileIds = new LinkedHashSet<String>();
+        private final Set<String> variableKeys = new LinkedHashSet<String>();
+        private String doctype;
+
+        public void text(String text) {
+            tokens.add(new SimpleText(text));
+        }
+
+        public void doctype(String doctype) {
+            this.doctype = doctype;
+        }
+
+        public void tag(String name, Tag.Type type, Map<String, String> attributes) {
+            if (type != Tag.Type.CLOSE) {
+                collectVariableKeys(name, attributes);
+            }
+            if (TemplateNode.CONTENT_TAG.equals(name)) {
+                if (type != Tag.Type.CLOSE) {
+                    tokens.add(CONTENT);
+                }
+            } else if (TILE_TAG.equals(name)) {
+                if (type != Tag.Type.CLOSE) {
+                    TilePlaceholder tile = new TilePlaceholder(attributes);
+                    if (tile.getId() != null) {
+                        tileIds.add(tile.getId());
+                    }
+                    tokens.add(tile);
+                }
+            } else if (!FRAGMENT_TAG.equals(name)) {
+                tokens.add(new SimpleTag(name, type, attributes));
+            }
+        }
+
+        private void collectVariableKeys(String name, Map<String, String> attributes) {
+            if (VAR_TAG.equals(name)) {
+                String key = attributes.get("key");
+                if (key != null) {
+                    variableKeys.add(key);
+                }
+            }
+            for (String value : attributes.values()) {
+                String key = VariableTag.getKey(value);
+                if (key != null) {
+                    variableKeys.add(key);
+                }
+            }
+        }
+    }
+}
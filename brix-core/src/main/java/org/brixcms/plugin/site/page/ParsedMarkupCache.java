@@ -0,0 +1,107 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Application scoped cache of tokenized page and template markup. Entries are keyed by the markup itself, so a lookup
+ * never returns a stale parse (unsaved changes included) and copies of a node in other workspaces share one entry.
+ * Rendering, tile id and variable key discovery all start from the cached parse instead of tokenizing the markup again.
+ * <p>
+ * The cache holds at most the configured number of markup characters and evicts the least recently used entries.
+ */
+public class ParsedMarkupCache {
+    /**
+     * Default number of markup characters held by the cache.
+     */
+    public static final int DEFAULT_MAX_WEIGHT = 4 * 1024 * 1024;
+
+    private final int maxWeight;
+    private final Map<String, ParsedMarkup> entries = new LinkedHashMap<String, ParsedMarkup>(64, 0.75f, true);
+    private long weight = 0;
+
+    public ParsedMarkupCache() {
+        this(DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * @param maxWeight maximum number of markup characters to keep, 0 disables the cache
+     */
+    public ParsedMarkupCache(int maxWeight) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("Argument 'maxWeight' may not be negative");
+        }
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the parse of the given markup, tokenizing it if it is not cached.
+     *
+     * @param content markup of a page or template
+     * @return parsed markup
+     */
+    ParsedMarkup get(String content) {
+        ParsedMarkup markup;
+        synchronized (this) {
+            markup = entries.get(content);
+        }
+        if (markup == null) {
+            markup = ParsedMarkup.parse(content);
+            if (markup.getWeight() <= maxWeight) {
+                put(content, markup);
+            }
+        }
+        return markup;
+    }
+
+    private synchronized void put(String content, ParsedMarkup markup) {
+        ParsedMarkup previous = entries.put(content, markup);
+        if (previous != null) {
+            weight -= previous.getWeight();
+        }
+        weight += markup.getWeight();
+        Iterator<ParsedMarkup> i = entries.values().iterator();
+        while (weight > maxWeight && i.hasNext()) {
+            weight -= i.next().getWeight();
+            i.remove();
+        }
+    }
+
+    /**
+     * @return number of cached entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of markup characters held by the cache
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Discards all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import org.brixcms.jcr.wrapper.BrixNode.Protocol;
+import org.brixcms.util.WorkspacePartitionedCache;
+
+/**
+ * Application scoped cache of the protocols required by containers (see {@link AbstractContainer#getRequiredProtocol()}).
+ * Deciding the protocol consults every tile of the container, its template chain and pages referenced by page tiles,
+ * so it is computed once and reused until a node in the workspace is saved.
+ * <p>
+ * Protocols are keyed by container node identifier, the partition of a workspace is discarded on save and when the
+ * workspace content is replaced. Decisions that consulted a tile which opts out of caching (see
+ * {@link org.brixcms.plugin.site.page.tile.Tile#isRequiresSSLCacheable(org.apache.wicket.model.IModel)}) are not
+ * stored.
+ */
+public class RequiredProtocolCache extends WorkspacePartitionedCache<String, Protocol> {
+    private static final ThreadLocal<Decision> CURRENT_DECISION = new ThreadLocal<Decision>();
+
+    /**
+     * Starts tracking whether the protocol decision made by the current thread may be cached. Every call must be
+     * paired with {@link Decision#end()}.
+     */
+    static Decision beginDecision() {
+        Decision decision = new Decision(CURRENT_DECISION.get());
+        CURRENT_DECISION.set(decision);
+        return decision;
+    }
+
+    /**
+     * Marks the protocol decision in progress on the current thread as not cacheable. Does nothing when no decision
+     * is in progress.
+     */
+    public static void markNotCacheable() {
+        Decision decision = CURRENT_DECISION.get();
+        if (decision != null) {
+            decision.cacheable = false;
+        }
+    }
+
+    static final class Decision {
+        private final Decision parent;
+        private boolean cacheable = true;
+
+        private Decision(Decision parent) {
+            this.parent = parent;
+        }
+
+        /**
+         * @return <code>true</code> if nothing marked the decision as not cacheable
+         */
+        boolean end() {
+            if (parent != null) {
+                parent.cacheable &= cacheable;
+                CURRENT_DECISION.set(parent);
+            } else {
+                CURRENT_DECISION.remove();
+            }
+            return cacheable;
+        }
+    }
+}
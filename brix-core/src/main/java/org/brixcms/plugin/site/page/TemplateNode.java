@@ -30,7 +30,12 @@ public class TemplateNode extends AbstractContainer {
     public static JcrNodeWrapperFactory FACTORY = new JcrNodeWrapperFactory() {
         @Override
         public boolean canWrap(Brix brix, JcrNode node) {
-            return TemplateSiteNodePlugin.TYPE.equals(getNodeType(node));
+            return TemplateSiteNodePlugin.TYPE.equals(BrixNode.getNodeType(node));
+        }
+
+        @Override
+        public String getNodeType() {
+            return TemplateSiteNodePlugin.TYPE;
         }
 
         @Override
@@ -45,7 +50,7 @@ public class TemplateNode extends AbstractContainer {
     };
 
     public static boolean canHandle(JcrNode node) {
-        return TemplateSiteNodePlugin.TYPE.equals(getNodeType(node));
+        return TemplateSiteNodePlugin.TYPE.equals(BrixNode.getNodeType(node));
     }
 
     public static TemplateNode initialize(JcrNode node) {
@@ -0,0 +1,31 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import java.util.Map;
+
+import org.brixcms.util.WorkspacePartitionedCache;
+
+/**
+ * Application scoped cache of the flattened variable tables of containers (see {@link AbstractContainer#getVariables()}).
+ * A table holds the variables of the container, its template chain and the global container, so resolving a variable
+ * while rendering is a single map lookup instead of a walk over the template chain.
+ * <p>
+ * Tables are keyed by container node identifier, the partition of a workspace is discarded on save and when the
+ * workspace content is replaced.
+ */
+public class VariableTableCache extends WorkspacePartitionedCache<String, Map<String, String>> {
+}
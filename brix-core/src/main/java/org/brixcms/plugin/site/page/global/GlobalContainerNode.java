@@ -32,7 +32,12 @@ public class GlobalContainerNode extends AbstractContainer {
     public static JcrNodeWrapperFactory FACTORY = new JcrNodeWrapperFactory() {
         @Override
         public boolean canWrap(Brix brix, JcrNode node) {
-            return TYPE.equals(getNodeType(node));
+            return TYPE.equals(BrixNode.getNodeType(node));
+        }
+
+        @Override
+        public String getNodeType() {
+            return TYPE;
         }
 
         @Override
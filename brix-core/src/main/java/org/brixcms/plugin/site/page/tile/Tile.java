@@ -18,6 +18,7 @@ import org.apache.wicket.Component;
 import org.apache.wicket.model.IModel;
 import org.brixcms.Brix;
 import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.site.SitePlugin;
 import org.brixcms.plugin.site.page.PageNode;
 import org.brixcms.plugin.site.page.TemplateNode;
 import org.brixcms.plugin.site.page.global.GlobalContainerNode;
@@ -27,6 +28,7 @@ import org.brixcms.registry.ExtensionPointRegistry;
 import org.brixcms.web.nodepage.PageParametersAware;
 import org.brixcms.web.tile.unknown.UnknownTile;
 
+import java.time.Duration;
 import java.util.Collection;
 
 /**
@@ -94,6 +96,42 @@ public interface Tile {
      */
     boolean requiresSSL(IModel<BrixNode> tileNode);
 
+    /**
+     * Returns whether the result of {@link #requiresSSL(IModel)} only depends on repository content. The protocol
+     * required by pages and templates is cached until the next save in their workspace; tiles that decide based on
+     * e.g. the current user or time should return <code>false</code> so that containers using them are evaluated on
+     * every request.
+     *
+     * @param tileNode
+     * @return <code>true</code> if the SSL requirement may be cached
+     */
+    default boolean isRequiresSSLCacheable(IModel<BrixNode> tileNode) {
+        return true;
+    }
+
+    /**
+     * Returns whether the output rendered by the viewer of this tile only depends on repository content, the page
+     * parameters, the scheme and the locale. Anonymous responses of pages whose tiles are all output cacheable may be
+     * served from the {@link org.brixcms.web.OutputCache} (when enabled) without rendering the page.
+     *
+     * @param tileNode
+     * @return <code>true</code> if pages rendering this tile may be cached, <code>false</code> by default
+     */
+    default boolean isOutputCacheable(IModel<BrixNode> tileNode) {
+        return false;
+    }
+
+    /**
+     * Returns how long output rendered by the viewer of this tile stays valid. Only consulted for output cacheable
+     * tiles, the shortest duration of all tiles on a page applies.
+     *
+     * @param tileNode
+     * @return duration or <code>null</code> if the output only changes when the repository content does
+     */
+    default Duration getOutputCacheTtl(IModel<BrixNode> tileNode) {
+        return null;
+    }
+
     /**
      * Utility class for retrieving registered tiles
      *
@@ -106,6 +144,11 @@ public interface Tile {
         }
 
         public static Tile getTileOfType(String type, Brix brix) {
+            SitePlugin plugin = SitePlugin.get(brix);
+            if (plugin != null) {
+                Tile tile = plugin.getTilesByType().get(type);
+                return tile != null ? tile : UnknownTile.INSTANCE;
+            }
             for (Tile t : getTiles(brix)) {
                 if (t.getTypeName().equals(type)) {
                     return t;
@@ -17,11 +17,18 @@ package org.brixcms.plugin.site.page.tile;
 import org.apache.wicket.model.IModel;
 import org.brixcms.Brix;
 import org.brixcms.BrixNodeModel;
+import org.brixcms.jcr.JcrUtil;
 import org.brixcms.jcr.api.JcrNodeIterator;
 import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.site.SitePlugin;
+import org.brixcms.plugin.site.page.RequiredProtocolCache;
+import org.brixcms.util.WorkspacePartitionedCache.Partition;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Helper for managing node's tile collection
@@ -52,6 +59,9 @@ public class TileContainerFacet {
             String className = TileContainerFacet.getTileClassName(tileNode);
             Tile tile = Tile.Helper.getTileOfType(className, container.getBrix());
             IModel<BrixNode> tileNodeModel = new BrixNodeModel(tileNode);
+            if (!tile.isRequiresSSLCacheable(tileNodeModel)) {
+                RequiredProtocolCache.markNotCacheable();
+            }
             if (tile.requiresSSL(tileNodeModel)) {
                 return true;
             }
@@ -118,6 +128,18 @@ public class TileContainerFacet {
         if (id == null) {
             throw new IllegalArgumentException("tile id cannot be null");
         }
+        Map<String, String> index = getTileIndex();
+        if (index != null) {
+            String identifier = index.get(id);
+            if (identifier == null) {
+                return null;
+            }
+            BrixNode node = JcrUtil.getNodeByUUID(container.getSession(), identifier);
+            if (node != null) {
+                return node;
+            }
+            // removed by a save that has not invalidated the index yet
+        }
         JcrNodeIterator iterator = container.getNodes(TILE_NODE_NAME);
         while (iterator.hasNext()) {
             BrixNode node = (BrixNode) iterator.nextNode();
@@ -128,6 +150,39 @@ public class TileContainerFacet {
         return null;
     }
 
+    /**
+     * Returns the index of tile ids to tile node identifiers of the container. The index is cached per workspace until
+     * the next save, sessions with unsaved changes scan the container instead.
+     *
+     * @return index or <code>null</code> if it can not be cached
+     */
+    private Map<String, String> getTileIndex() {
+        SitePlugin plugin = SitePlugin.get(container.getBrix());
+        if (plugin == null || container.getSession().hasPendingChanges()) {
+            return null;
+        }
+        Partition<String, Map<String, String>> indexes = plugin.getTileIndexCache()
+                .getPartition(container.getSession().getWorkspace().getName());
+        if (indexes == null) {
+            return null;
+        }
+
+        String identifier = container.getIdentifier();
+        Map<String, String> index = indexes.get(identifier);
+        if (index == null) {
+            Map<String, String> result = new HashMap<String, String>();
+            for (BrixNode node : getTileNodes()) {
+                String id = getTileId(node);
+                if (id != null) {
+                    result.putIfAbsent(id, node.getIdentifier());
+                }
+            }
+            index = Collections.unmodifiableMap(result);
+            indexes.put(identifier, index);
+        }
+        return index;
+    }
+
     public static String getTileId(BrixNode tile) {
         if (tile.hasProperty(Properties.TILE_ID)) {
             return tile.getProperty(Properties.TILE_ID).getString();
@@ -0,0 +1,31 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page.tile;
+
+import java.util.Map;
+
+import org.brixcms.util.WorkspacePartitionedCache;
+
+/**
+ * Application scoped cache of the tiles of tile containers. For every container it keeps a map from tile id to the
+ * identifier of the tile node, so that {@link TileContainerFacet#getTile(String)} is a hash lookup instead of a scan
+ * over the children of the container.
+ * <p>
+ * Indexes are keyed by container node identifier, the partition of a workspace is discarded on save (which is when
+ * tiles are added or removed for other sessions) and when the workspace content is replaced.
+ */
+public class TileIndexCache extends WorkspacePartitionedCache<String, Map<String, String>> {
+}
@@ -25,6 +25,7 @@ import org.brixcms.markup.tag.simple.SimpleTag;
 import org.brixcms.markup.variable.VariableKeyProvider;
 import org.brixcms.plugin.site.page.AbstractContainer;
 import org.brixcms.plugin.site.SitePlugin;
+import org.brixcms.web.OutputCache;
 
 import java.util.Collection;
 import java.util.HashMap;
@@ -90,7 +91,9 @@ public class TileTag extends SimpleTag
         if (tileNode != null) {
             Tile tile = Tile.Helper.getTileOfType(TileContainerFacet.getTileClassName(tileNode),
                     tileNode.getBrix());
-            return tile.newViewer(id, new BrixNodeModel(tileNode));
+            BrixNodeModel tileNodeModel = new BrixNodeModel(tileNode);
+            OutputCache.recordTile(tile, tileNodeModel, container);
+            return tile.newViewer(id, tileNodeModel);
         } else {
             return null;
         }
@@ -0,0 +1,180 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.site.resource;
+
+import javax.jcr.Binary;
+import javax.jcr.RepositoryException;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read access to resource content for a single response. A {@link FileInputStream} is read through its
+ * {@link FileChannel}, any other stream is opened once, skipped to the start of the first range and then read
+ * sequentially. Ranges are served in ascending order, so the stream never has to move backwards.
+ * <p>
+ * Positional {@link Binary#read(byte[], long)} is deliberately not used, backends such as Jackrabbit implement it by
+ * opening a new stream and skipping to the position for every call.
+ */
+abstract class BinaryAccess implements Closeable {
+    /**
+     * Reads bytes starting at the given position into the buffer.
+     *
+     * @param position position of the first byte to read
+     * @param buffer   buffer to read into, starting at index 0
+     * @param length   maximum number of bytes to read
+     * @return number of bytes read, always positive
+     * @throws EOFException if the position is at or beyond the end of content
+     */
+    abstract int read(long position, byte[] buffer, int length) throws IOException;
+
+    /**
+     * @return <code>true</code> if arbitrary positions can be read without reading the preceding content
+     */
+    abstract boolean isRandomAccess();
+
+    /**
+     * Creates access for the given binary. The binary is disposed when the access is closed.
+     *
+     * @param binary binary to read
+     * @return binary access
+     */
+    static BinaryAccess forBinary(final Binary binary) throws RepositoryException {
+        InputStream stream;
+        try {
+            stream = binary.getStream();
+        } catch (RepositoryException | RuntimeException e) {
+            binary.dispose();
+            throw e;
+        }
+        return new StreamAccess(stream) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    binary.dispose();
+                }
+            }
+        };
+    }
+
+    /**
+     * Creates sequential access for the given stream. The stream is closed when the access is closed.
+     *
+     * @param stream stream to read
+     * @return binary access
+     */
+    static BinaryAccess forStream(InputStream stream) {
+        if (stream instanceof FileInputStream fileStream) {
+            return new FileChannelAccess(fileStream);
+        }
+        return new StreamAccess(stream);
+    }
+
+    /**
+     * Reads the channel of a file stream with positional reads, the file pointer is never moved.
+     */
+    private static class FileChannelAccess extends BinaryAccess {
+        private final FileInputStream stream;
+        private final FileChannel channel;
+
+        private FileChannelAccess(FileInputStream stream) {
+            this.stream = stream;
+            this.channel = stream.getChannel();
+        }
+
+        @Override
+        int read(long position, byte[] buffer, int length) throws IOException {
+            int read = channel.read(ByteBuffer.wrap(buffer, 0, length), position);
+            if (read <= 0) {
+                throw new EOFException("Resource content ended before byte " + position);
+            }
+            return read;
+        }
+
+        @Override
+        boolean isRandomAccess() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+
+    private static class StreamAccess extends BinaryAccess {
+        private final InputStream stream;
+        private long position = 0;
+
+        private StreamAccess(InputStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        int read(long position, byte[] buffer, int length) throws IOException {
+            if (position < this.position) {
+                throw new IOException("Can not move back from byte " + this.position + " to byte " + position);
+            }
+            skipFully(position - this.position);
+
+            int read = stream.read(buffer, 0, length);
+            if (read == 0) {
+                int singleByte = stream.read();
+                if (singleByte != -1) {
+                    buffer[0] = (byte) singleByte;
+                    read = 1;
+                } else {
+                    read = -1;
+                }
+            }
+            if (read == -1) {
+                throw new EOFException("Resource content ended before byte " + position);
+            }
+            this.position += read;
+            return read;
+        }
+
+        private void skipFully(long bytes) throws IOException {
+            long left = bytes;
+            while (left > 0) {
+                long skipped = stream.skip(left);
+                if (skipped > 0) {
+                    left -= skipped;
+                } else if (stream.read() == -1) {
+                    throw new EOFException("Resource stream ended while skipping to byte " + (position + bytes));
+                } else {
+                    left--;
+                }
+            }
+            position += bytes;
+        }
+
+        @Override
+        boolean isRandomAccess() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.resource;
+
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import org.brixcms.Brix;
+import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrNodeIterator;
+import org.brixcms.jcr.base.SaveEvent;
+import org.brixcms.jcr.base.SaveEventListener;
+import org.brixcms.jcr.wrapper.BrixFileNode;
+import org.brixcms.plugin.site.SitePlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queues saved file nodes whose persisted content hash is missing or stale with the {@link ContentHashService}. Must
+ * be registered after {@link org.brixcms.jcr.JcrEventListener} so that the content revision of the saved node has
+ * already been advanced.
+ */
+public class ContentHashSaveEventListener implements SaveEventListener {
+    private static final Logger log = LoggerFactory.getLogger(ContentHashSaveEventListener.class);
+
+    private final Brix brix;
+
+    public ContentHashSaveEventListener(Brix brix) {
+        if (brix == null) {
+            throw new IllegalArgumentException("brix may not be null");
+        }
+        this.brix = brix;
+    }
+
+    @Override
+    public void onEvent(EventIterator events) {
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            if (event instanceof SaveEvent saveEvent) {
+                handleSaveEvent(saveEvent.getNode());
+            }
+        }
+    }
+
+    private void handleSaveEvent(JcrNode node) {
+        if (node == null) {
+            return;
+        }
+        try {
+            SitePlugin plugin = SitePlugin.get(brix);
+            if (plugin == null || !plugin.getContentHashService().isEnabled()) {
+                return;
+            }
+            ContentHashService service = plugin.getContentHashService();
+            if (BrixFileNode.isFileNode(node)) {
+                request(service, node);
+            } else if (node.getDepth() == 0 || node.isNodeType("nt:folder")) {
+                // same as JcrEventListener, a save of the parent covers its immediate children
+                JcrNodeIterator iterator = node.getNodes();
+                while (iterator.hasNext()) {
+                    JcrNode child = iterator.nextNode();
+                    if (BrixFileNode.isFileNode(child)) {
+                        request(service, child);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.debug("Failed to queue content hashing after save", e);
+        }
+    }
+
+    private void request(ContentHashService service, JcrNode node) {
+        // only content changes can invalidate the hash
+        JcrNode content = node.getNode("jcr:content");
+        if (!content.isNew() && !content.isModified()) {
+            return;
+        }
+        service.request(new BrixFileNode(node.getDelegate(), node.getSession()));
+    }
+}
@@ -0,0 +1,360 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.resource;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Session;
+
+import org.brixcms.Brix;
+import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.exception.JcrException;
+import org.brixcms.jcr.wrapper.BrixFileNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes and persists the SHA-256 content hashes used as resource ETags outside of the request threads. Resources
+ * whose persisted hash is missing or stale are queued, either when they are saved (see {@link
+ * ContentHashSaveEventListener}) or when they are first requested; until the hash is available the resource is served
+ * with a <code>Last-Modified</code> validator only.
+ * <p>
+ * Requests are keyed by workspace and node identifier, so a resource that is saved or requested again while it is
+ * still queued is hashed only once. The number of queued resources is bounded, requests beyond that bound are
+ * dropped and picked up again the next time the resource is requested. Save events are raised before the session is
+ * saved, therefore a request carries the content revision it was raised for and is retried with a growing delay until
+ * that revision becomes visible to the background session.
+ */
+public class ContentHashService {
+    private static final Logger log = LoggerFactory.getLogger(ContentHashService.class);
+
+    /**
+     * Default number of hashing threads
+     */
+    public static final int DEFAULT_THREADS = 1;
+
+    /**
+     * Default maximum number of resources waiting to be hashed
+     */
+    public static final int DEFAULT_MAX_PENDING = 1000;
+
+    static final int MAX_ATTEMPTS = 6;
+    static final long RETRY_DELAY_MILLIS = 250;
+
+    private static final long UNKNOWN_REVISION = Long.MIN_VALUE;
+    private static final String KEY_SEPARATOR = "\u0000";
+
+    private final Brix brix;
+    private final int threads;
+    private final int maxPending;
+
+    /**
+     * Queued resources mapped to the latest content revision they were requested for
+     */
+    private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<String, Long>();
+
+    private final Object executorLock = new Object();
+    private volatile ScheduledThreadPoolExecutor executor;
+    private volatile boolean shutdown;
+
+    private final AtomicLong requestedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong retriedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong hashedCount = new AtomicLong();
+    private final AtomicLong hashedBytes = new AtomicLong();
+    private final AtomicLong hashingNanos = new AtomicLong();
+
+    public ContentHashService(Brix brix) {
+        this(brix, DEFAULT_THREADS, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * @param brix       brix instance used to open background sessions
+     * @param threads    number of hashing threads, <code>0</code> disables background hashing
+     * @param maxPending maximum number of resources waiting to be hashed
+     */
+    public ContentHashService(Brix brix, int threads, int maxPending) {
+        if (brix == null) {
+            throw new IllegalArgumentException("Argument 'brix' may not be null");
+        }
+        if (threads < 0) {
+            throw new IllegalArgumentException("Argument 'threads' may not be negative");
+        }
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("Argument 'maxPending' must be positive");
+        }
+        this.brix = brix;
+        this.threads = threads;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * @return <code>true</code> if hashes are computed in the background, <code>false</code> if callers have to hash
+     *         on their own thread
+     */
+    public boolean isEnabled() {
+        return threads > 0 && !shutdown;
+    }
+
+    /**
+     * Queues the given resource for hashing unless its persisted hash is already current.
+     *
+     * @param node resource node
+     * @return <code>true</code> if the resource is queued, <code>false</code> if it does not need hashing or the
+     *         request was dropped
+     */
+    public boolean request(BrixFileNode node) {
+        if (!isEnabled() || node.getCachedContentSha256() != null) {
+            return false;
+        }
+        return request(node.getSession().getWorkspace().getName(), node.getIdentifier(),
+                node.getContentLastModified());
+    }
+
+    /**
+     * Queues the resource with given identifier for hashing.
+     *
+     * @param workspace  workspace name
+     * @param identifier node identifier
+     * @param revision   content revision the request was raised for or <code>null</code> if unknown
+     * @return <code>true</code> if the resource is queued, <code>false</code> if the request was dropped
+     */
+    public boolean request(String workspace, String identifier, Long revision) {
+        if (workspace == null || identifier == null) {
+            throw new IllegalArgumentException("Arguments 'workspace' and 'identifier' may not be null");
+        }
+        if (!isEnabled()) {
+            return false;
+        }
+        requestedCount.incrementAndGet();
+        return enqueue(workspace, identifier, revision != null ? revision : UNKNOWN_REVISION, 1, 0);
+    }
+
+    private boolean enqueue(String workspace, String identifier, long revision, int attempt, long delayMillis) {
+        String key = workspace + KEY_SEPARATOR + identifier;
+        // the bound is checked loosely, concurrent requests may overshoot it by the number of requesting threads
+        if (pending.size() >= maxPending && !pending.containsKey(key)) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        final boolean[] added = new boolean[1];
+        pending.compute(key, (k, queued) -> {
+            if (queued == null) {
+                added[0] = true;
+                return revision;
+            }
+            return Math.max(queued, revision);
+        });
+        if (!added[0]) {
+            coalescedCount.incrementAndGet();
+            return true;
+        }
+        try {
+            getExecutor().schedule(() -> process(key, workspace, identifier, attempt), delayMillis,
+                    TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+    }
+
+    private void process(String key, String workspace, String identifier, int attempt) {
+        // the entry is removed before hashing so that saves arriving meanwhile queue the resource again
+        Long revision = pending.remove(key);
+        if (revision == null || shutdown) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            long bytes = hashContent(workspace, identifier,
+                    revision.longValue() != UNKNOWN_REVISION ? revision : null);
+            if (bytes >= 0) {
+                hashedCount.incrementAndGet();
+                hashedBytes.addAndGet(bytes);
+                hashingNanos.addAndGet(System.nanoTime() - start);
+            } else if (attempt < MAX_ATTEMPTS) {
+                retriedCount.incrementAndGet();
+                enqueue(workspace, identifier, revision, attempt + 1, RETRY_DELAY_MILLIS << (attempt - 1));
+            } else {
+                // the save that raised the request most likely failed, the next request for the resource
+                // queues it again
+                failedCount.incrementAndGet();
+                log.debug("Content revision {} of node {} in workspace {} did not become visible, giving up",
+                        revision, identifier, workspace);
+            }
+        } catch (RuntimeException e) {
+            failedCount.incrementAndGet();
+            log.warn("Unable to calculate content hash for node {} in workspace {}", identifier, workspace, e);
+        }
+    }
+
+    /**
+     * Hashes the resource with given identifier in a session of its own and persists the result.
+     *
+     * @param workspace        workspace name
+     * @param identifier       node identifier
+     * @param expectedRevision content revision the request was raised for or <code>null</code> if unknown
+     * @return number of bytes hashed, <code>0</code> if there was nothing to hash and <code>-1</code> if the
+     *         expected content revision is not visible yet
+     */
+    protected long hashContent(String workspace, String identifier, Long expectedRevision) {
+        Session session = brix.getConfig().getSessionFactory().createSession(workspace);
+        try {
+            JcrSession jcrSession = brix.wrapSession(session);
+            JcrNode node;
+            try {
+                node = jcrSession.getNodeByIdentifier(identifier);
+            } catch (JcrException e) {
+                if (e.getCause() instanceof ItemNotFoundException) {
+                    // removed or not saved yet
+                    return expectedRevision != null ? -1 : 0;
+                }
+                throw e;
+            }
+            if (!BrixFileNode.isFileNode(node)) {
+                return 0;
+            }
+            BrixFileNode file = new BrixFileNode(node.getDelegate(), jcrSession);
+            Long revision = file.getContentLastModified();
+            if (expectedRevision != null && (revision == null || revision < expectedRevision)) {
+                return -1;
+            }
+            if (file.getCachedContentSha256() != null) {
+                return 0;
+            }
+            file.ensureContentSha256();
+            return file.getContentLength();
+        } finally {
+            session.logout();
+        }
+    }
+
+    private ScheduledThreadPoolExecutor getExecutor() {
+        ScheduledThreadPoolExecutor result = executor;
+        if (result == null) {
+            synchronized (executorLock) {
+                if (shutdown) {
+                    throw new RejectedExecutionException("Content hash service has been shut down");
+                }
+                result = executor;
+                if (result == null) {
+                    result = new ScheduledThreadPoolExecutor(threads, new HashThreadFactory());
+                    result.setRemoveOnCancelPolicy(true);
+                    executor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stops the hashing threads. Queued resources are discarded, a hash that is being computed is allowed to
+     * finish.
+     */
+    public void shutdown() {
+        synchronized (executorLock) {
+            shutdown = true;
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * @return number of resources waiting to be hashed
+     */
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    public long getRequestedCount() {
+        return requestedCount.get();
+    }
+
+    /**
+     * @return number of requests merged into a request already queued for the same resource
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return number of requests dropped because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return number of times a resource was queued again because its saved content was not visible yet
+     */
+    public long getRetriedCount() {
+        return retriedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getHashedCount() {
+        return hashedCount.get();
+    }
+
+    public long getHashedBytes() {
+        return hashedBytes.get();
+    }
+
+    /**
+     * @return average hashing throughput in bytes per second, including repository access
+     */
+    public double getHashThroughput() {
+        long nanos = hashingNanos.get();
+        return nanos > 0 ? hashedBytes.get() * 1e9 / nanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentHashService[queued=" + getQueueDepth() + ", hashed=" + getHashedCount() + ", bytes="
+                + getHashedBytes() + ", coalesced=" + getCoalescedCount() + ", rejected=" + getRejectedCount()
+                + ", retried=" + getRetriedCount() + ", failed=" + getFailedCount() + "]";
+    }
+
+    private static class HashThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "brix-content-hash-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
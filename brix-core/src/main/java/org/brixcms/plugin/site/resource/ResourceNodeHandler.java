@@ -108,15 +108,21 @@ public class ResourceNodeHandler implements IRequestHandler {
 			}
 
 			// We are about to send a representation. Only now is it worth ensuring a correct, persisted
-			// hash: on the first request after a content change this backfills and persists the hash (the
-			// write-on-read behaviour is intentionally retained); on subsequent requests it is a cheap
-			// cache hit. 304 and HEAD never reach this point, so they never hash or save.
+			// hash. Normally the hash is computed by the content hash service so the request thread never
+			// reads the binary twice; until it is done the representation goes out with Last-Modified as its
+			// only validator. Without background hashing the first request after a content change backfills
+			// and persists the hash itself. 304 and HEAD never reach this point, so they never hash or save.
 			boolean writeBody = !"HEAD".equalsIgnoreCase(r.getMethod());
 			if (cachedHash == null && writeBody) {
-				String ensuredEtag = createContentETag(resolveContentHash(node));
-				if (ensuredEtag != null) {
-					etag = ensuredEtag;
-					response.setHeader("ETag", etag);
+				ContentHashService hashService = SitePlugin.get().getContentHashService();
+				if (hashService.isEnabled()) {
+					requestContentHash(hashService, node);
+				} else {
+					String ensuredEtag = createContentETag(resolveContentHash(node));
+					if (ensuredEtag != null) {
+						etag = ensuredEtag;
+						response.setHeader("ETag", etag);
+					}
 				}
 			}
 
@@ -127,9 +133,12 @@ public class ResourceNodeHandler implements IRequestHandler {
 			boolean allowRange = ifRangeMatches(r, etag, lastModified);
 
 			String fileName = node.getName();
-			InputStream stream = writeBody ? node.getDataAsStream() : InputStream.nullInputStream();
+			BinaryAccess access = writeBody
+					? BinaryAccess.forBinary(node.getDataAsBinary())
+					: BinaryAccess.forStream(InputStream.nullInputStream());
 
-			new Streamer(contentLength, stream, fileName, save, r, response, writeBody, allowRange).stream();
+			new Streamer(contentLength, access, mimeType, fileName, save, r, response, writeBody, allowRange)
+					.stream();
 		} catch (Exception e) {
 			if (isClientAbort(e)) {
 				log.debug("Client aborted while streaming resource (ignored): {}", rootMessage(e));
@@ -246,6 +255,14 @@ public class ResourceNodeHandler implements IRequestHandler {
 		}
 	}
 
+	private static void requestContentHash(ContentHashService hashService, BrixFileNode node) {
+		try {
+			hashService.request(node);
+		} catch (RuntimeException e) {
+			log.warn("Unable to queue content hashing for {}", node.getPath(), e);
+		}
+	}
+
 	/**
 	 * Reads the already-persisted hash for the conditional decision without ever hashing the binary.
 	 * Mirrors {@link #resolveContentHash}: a transient JCR read failure must degrade gracefully to a
@@ -279,7 +296,14 @@ public class ResourceNodeHandler implements IRequestHandler {
 		return isNotModifiedSince(request, lastModified);
 	}
 
-	static boolean matchesETag(String header, String etag) {
+	/**
+	 * Checks whether an {@code If-None-Match} header matches the given ETag, using the weak comparison of RFC 7232.
+	 *
+	 * @param header header value, a comma separated list of ETags or {@code *}
+	 * @param etag   current ETag, may be {@code null}
+	 * @return {@code true} if the client already has the representation
+	 */
+	public static boolean matchesETag(String header, String etag) {
 		for (String candidate : header.split(",")) {
 			String trimmed = candidate.trim();
 			// The wildcard matches resource existence (RFC 7232), not a specific server ETag, so it is
@@ -19,19 +19,28 @@ import org.apache.wicket.util.lang.Bytes;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import java.io.BufferedInputStream;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 /**
- * Responds stream with support for Content-Range header.
+ * Responds stream with support for Content-Range header. Requests for multiple ranges are answered with a
+ * <code>multipart/byteranges</code> response.
  *
  * @author Matej Knopp
  */
 class Streamer {
+    /**
+     * Range requests with more ranges than this are answered with the full representation
+     */
+    static final int MAX_RANGES = 32;
+
     private final long length;
-    private final InputStream inputStream;
+    private final BinaryAccess access;
+    private final String contentType;
     private final String fileName;
     private final boolean attachment;
     private final HttpServletRequest request;
@@ -56,8 +65,19 @@ class Streamer {
      */
     public Streamer(long length, InputStream inputStream, String fileName, boolean attachment,
                     HttpServletRequest request, WebResponse response, boolean writeBody, boolean allowRange) {
+        this(length, BinaryAccess.forStream(inputStream), null, fileName, attachment, request, response, writeBody,
+                allowRange);
+    }
+
+    /**
+     * @param contentType content type of the resource, repeated in every part of a multipart response
+     * @param allowRange  when {@code false} a Range request is ignored and the full representation is served
+     */
+    public Streamer(long length, BinaryAccess access, String contentType, String fileName, boolean attachment,
+                    HttpServletRequest request, WebResponse response, boolean writeBody, boolean allowRange) {
         this.length = length;
-        this.inputStream = inputStream;
+        this.access = access;
+        this.contentType = contentType;
         this.fileName = fileName;
         this.response = response;
         this.request = request;
@@ -69,23 +89,33 @@ class Streamer {
     private static final int BUFFER_SIZE = (int) Bytes.kilobytes(64).bytes();
 
     public long stream() {
-        Range range = parseRange(allowRange ? request.getHeader("Range") : null, length);
-        long first = 0;
-        long last = length - 1;
+        try {
+            return doStream();
+        } finally {
+            closeAccess();
+        }
+    }
+
+    private long doStream() {
+        List<Range> ranges = parseRanges(allowRange ? request.getHeader("Range") : null, length);
+        String boundary = null;
         long contentLength = length;
 
-        if (range.unsatisfiable) {
+        if (ranges == null) {
             response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
             response.setHeader("Content-Range", "bytes */" + length);
             setResponseContentLength(0);
-            closeInputStream();
             return 0;
-        } else if (range.partial) {
-            first = range.start;
-            last = range.end;
+        } else if (ranges.size() == 1) {
+            Range range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", "bytes " + range.start + "-" + range.end + "/" + length);
+            contentLength = range.length();
+        } else if (ranges.size() > 1) {
+            boundary = UUID.randomUUID().toString().replace("-", "");
             response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-            response.setHeader("Content-Range", "bytes " + first + "-" + last + "/" + length);
-            contentLength = last - first + 1;
+            response.setContentType("multipart/byteranges; boundary=" + boundary);
+            contentLength = getMultipartLength(ranges, boundary);
         } else {
             response.setStatus(HttpServletResponse.SC_OK);
         }
@@ -102,48 +132,68 @@ class Streamer {
 
 
         if (!writeBody) {
-            closeInputStream();
             return 0;
         }
 
-        long written = 0;
-
-        try (InputStream s = new BufferedInputStream(inputStream)) {
-            skipFully(s, first);
-
-            final int bufferSize = (int) Math.min(BUFFER_SIZE, Math.max(1L, contentLength));
-            final byte[] buf = new byte[bufferSize];
-            long left = contentLength;
-            while (left > 0) {
-                int howMuch = bufferSize;
-                if (howMuch > left) {
-                    howMuch = (int) left;
-                }
-
-                int numRead = s.read(buf, 0, howMuch);
-
-                if (numRead == -1) {
-                    throw new EOFException("Resource stream ended with " + left + " bytes left to write");
-                } else if (numRead == 0) {
-                    int singleByte = s.read();
-                    if (singleByte == -1) {
-                        throw new EOFException("Resource stream ended with " + left + " bytes left to write");
-                    }
-                    buf[0] = (byte) singleByte;
-                    response.write(buf, 0, 1);
-                    left--;
-                    written++;
-                } else {
-                    response.write(buf, 0, numRead);
-                    left -= numRead;
-                    written += numRead;
+        try {
+            if (ranges.isEmpty()) {
+                return copy(0, length);
+            } else if (boundary == null) {
+                return copy(ranges.get(0).start, ranges.get(0).length());
+            } else {
+                long written = 0;
+                for (Range range : ranges) {
+                    response.write(getPartHeader(range, boundary));
+                    written += copy(range.start, range.length());
                 }
+                response.write(getMultipartEnd(boundary));
+                return written;
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+    }
 
-        return written;
+    /**
+     * Copies the content between the given positions to the response.
+     *
+     * @return number of content bytes written
+     */
+    private long copy(long first, long count) throws IOException {
+        final int bufferSize = (int) Math.min(BUFFER_SIZE, Math.max(1L, count));
+        final byte[] buf = new byte[bufferSize];
+        long position = first;
+        long left = count;
+        while (left > 0) {
+            int numRead = access.read(position, buf, (int) Math.min(bufferSize, left));
+            response.write(buf, 0, numRead);
+            position += numRead;
+            left -= numRead;
+        }
+        return count;
+    }
+
+    private byte[] getPartHeader(Range range, String boundary) {
+        StringBuilder header = new StringBuilder();
+        header.append("\r\n--").append(boundary).append("\r\n");
+        if (contentType != null) {
+            header.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        header.append("Content-Range: bytes ").append(range.start).append('-').append(range.end).append('/')
+                .append(length).append("\r\n\r\n");
+        return header.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] getMultipartEnd(String boundary) {
+        return ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private long getMultipartLength(List<Range> ranges, String boundary) {
+        long result = getMultipartEnd(boundary).length;
+        for (Range range : ranges) {
+            result += getPartHeader(range, boundary).length + range.length();
+        }
+        return result;
     }
 
     private void setResponseContentLength(long contentLength) {
@@ -155,64 +205,82 @@ class Streamer {
         }
     }
 
-    private void closeInputStream() {
+    private void closeAccess() {
         try {
-            inputStream.close();
+            access.close();
         } catch (IOException ignore) {
         }
     }
 
-    private void skipFully(InputStream s, long bytes) throws IOException {
-        long left = bytes;
-        while (left > 0) {
-            long skipped = s.skip(left);
-            if (skipped > 0) {
-                left -= skipped;
-            } else if (s.read() == -1) {
-                throw new EOFException("Resource stream ended while skipping to byte " + bytes);
-            } else {
-                left--;
-            }
+    /**
+     * Parses the Range header. Satisfiable ranges are sorted and overlapping or adjacent ones coalesced, as permitted
+     * by RFC 7233, which also guarantees that sequential {@link BinaryAccess} never has to move backwards.
+     *
+     * @return empty list if the full representation should be served, <code>null</code> if no range is
+     *         satisfiable, otherwise the ranges to serve
+     */
+    private List<Range> parseRanges(String header, long length) {
+        List<Range> full = new ArrayList<Range>(0);
+        if (isEmpty(header)) {
+            return full;
         }
-    }
 
-    private Range parseRange(String range, long length) {
-        if (isEmpty(range)) {
-            return Range.full();
+        if (length <= 0 || !header.startsWith("bytes=")) {
+            return length <= 0 ? null : full;
         }
 
-        if (length <= 0 || !range.startsWith("bytes=") || range.indexOf(',') != -1) {
-            return length <= 0 ? Range.unsatisfiable() : Range.full();
+        String[] specs = header.substring("bytes=".length()).split(",", -1);
+        if (specs.length > MAX_RANGES) {
+            return full;
         }
 
-        String[] p = range.substring("bytes=".length()).split("-", -1);
-        if (p.length != 2 || (isEmpty(p[0]) && isEmpty(p[1]))) {
-            return Range.full();
-        }
+        List<Range> ranges = new ArrayList<Range>(specs.length);
+        for (String spec : specs) {
+            String[] p = spec.trim().split("-", -1);
+            if (p.length != 2 || (isEmpty(p[0]) && isEmpty(p[1]))) {
+                return full;
+            }
 
-        try {
-            if (isEmpty(p[0])) {
-                long suffixLength = Long.valueOf(p[1]);
-                if (suffixLength <= 0) {
-                    return Range.unsatisfiable();
+            try {
+                if (isEmpty(p[0])) {
+                    long suffixLength = Long.parseLong(p[1]);
+                    if (suffixLength > 0) {
+                        ranges.add(new Range(Math.max(length - suffixLength, 0), length - 1));
+                    }
+                    continue;
                 }
-                long start = Math.max(length - suffixLength, 0);
-                return Range.partial(start, length - 1);
-            }
 
-            long start = Long.valueOf(p[0]);
-            if (start < 0 || start >= length) {
-                return Range.unsatisfiable();
+                long start = Long.parseLong(p[0]);
+                long end = isEmpty(p[1]) ? length - 1 : Long.parseLong(p[1]);
+                if (start < length && end >= start) {
+                    ranges.add(new Range(start, Math.min(end, length - 1)));
+                }
+            } catch (NumberFormatException e) {
+                return full;
             }
+        }
 
-            long end = isEmpty(p[1]) ? length - 1 : Long.valueOf(p[1]);
-            if (end < start) {
-                return Range.unsatisfiable();
+        if (ranges.isEmpty()) {
+            return null;
+        }
+        return coalesce(ranges);
+    }
+
+    private static List<Range> coalesce(List<Range> ranges) {
+        ranges.sort((a, b) -> Long.compare(a.start, b.start));
+        List<Range> result = new ArrayList<Range>(ranges.size());
+        Range current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            Range next = ranges.get(i);
+            if (next.start <= current.end + 1) {
+                current = new Range(current.start, Math.max(current.end, next.end));
+            } else {
+                result.add(current);
+                current = next;
             }
-            return Range.partial(start, Math.min(end, length - 1));
-        } catch (NumberFormatException e) {
-            return Range.full();
         }
+        result.add(current);
+        return result;
     }
 
     private boolean isEmpty(String s) {
@@ -222,26 +290,14 @@ class Streamer {
     private static class Range {
         final long start;
         final long end;
-        final boolean partial;
-        final boolean unsatisfiable;
 
-        private Range(long start, long end, boolean partial, boolean unsatisfiable) {
+        private Range(long start, long end) {
             this.start = start;
             this.end = end;
-            this.partial = partial;
-            this.unsatisfiable = unsatisfiable;
-        }
-
-        private static Range full() {
-            return new Range(0, 0, false, false);
-        }
-
-        private static Range partial(long start, long end) {
-            return new Range(start, end, true, false);
         }
 
-        private static Range unsatisfiable() {
-            return new Range(0, 0, false, true);
+        long length() {
+            return end - start + 1;
         }
     }
 }
@@ -33,6 +33,7 @@ import org.apache.wicket.model.CompoundPropertyModel;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
 import org.brixcms.jcr.api.JcrValueFactory;
+import org.brixcms.jcr.base.EventUtil;
 import org.brixcms.jcr.wrapper.BrixFileNode;
 import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.plugin.site.SimpleCallback;
@@ -74,38 +75,43 @@ public class UploadResourcesPanel extends NodeManagerPanel {
     private void processUploads() {
         final BrixNode parentNode = getModelObject();
 
-        for (final FileUpload upload : uploads) {
-            final String fileName = upload.getClientFileName();
-
-            if (parentNode.hasNode(fileName)) {
-                if (overwrite) {
-                    parentNode.getNode(fileName).remove();
-                } else {
-                    class ModelObject implements Serializable {
-                        @SuppressWarnings("unused")
-                        private String fileName = upload.getClientFileName();
+        // every upload is saved on its own, caches are invalidated once for all of them
+        EventUtil.beginBatch();
+        try {
+            for (final FileUpload upload : uploads) {
+                final String fileName = upload.getClientFileName();
+
+                if (parentNode.hasNode(fileName)) {
+                    if (overwrite) {
+                        parentNode.getNode(fileName).remove();
+                    } else {
+                        class ModelObject implements Serializable {
+                            @SuppressWarnings("unused")
+                            private String fileName = upload.getClientFileName();
+                        }
+
+                        getSession().error(getString("fileExists", new Model<ModelObject>(new ModelObject())));
+                        continue;
                     }
-
-                    getSession().error(getString("fileExists", new Model<ModelObject>(new ModelObject())));
-                    continue;
                 }
-            }
 
-            BrixNode newNode = (BrixNode) parentNode.addNode(fileName, "nt:file");
+                BrixNode newNode = (BrixNode) parentNode.addNode(fileName, "nt:file");
 
-            String mime = upload.getContentType();
+                String mime = upload.getContentType();
 
-            BrixFileNode file = BrixFileNode.initialize(newNode, mime);
-            Binary binary = createUploadBinary(upload, file.getSession().getValueFactory());
-            setUploadData(file, binary);
-            String encoding = resolveUploadEncoding(mime);
-            if (encoding != null) {
-                file.setEncoding(encoding);
+                BrixFileNode file = BrixFileNode.initialize(newNode, mime);
+                Binary binary = createUploadBinary(upload, file.getSession().getValueFactory());
+                setUploadData(file, binary);
+                String encoding = resolveUploadEncoding(mime);
+                if (encoding != null) {
+                    file.setEncoding(encoding);
+                }
+                file.getParent().save();
             }
-            file.getParent().save();
+        } finally {
+            EventUtil.endBatch();
         }
 
-
         SitePlugin.get().selectNode(this, parentNode, true);
     }
 
@@ -23,6 +23,7 @@ import org.apache.wicket.model.Model;
 import org.apache.wicket.model.PropertyModel;
 import org.apache.wicket.model.ResourceModel;
 import org.brixcms.BrixNodeModel;
+import org.brixcms.jcr.base.EventUtil;
 import org.brixcms.jcr.wrapper.BrixFileNode;
 import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.jcr.wrapper.ResourceNode;
@@ -62,20 +63,26 @@ public class CreateTextResourcePanel extends BrixGenericPanel<BrixNode> {
                     return;
                 }
 
-                // create initial node skeleton
-                BrixNode node = (BrixNode) getContainer().addNode(fileName, "nt:file");
-                BrixFileNode file = BrixFileNode.initialize(node, "text"); // temp-mime
-
-                // save the node so brix assigns the correct jcr type to it
-                getContainer().save();
-
-                // populate node
-                ResourceNode resource = (ResourceNode) getContainer().getSession().getItem(
-                        node.getPath());
-                model.setObject(new BrixNodeModel(resource));
-                model.apply();
-
-                getContainer().save();
+                // the container is saved twice, caches are invalidated once for both saves
+                final ResourceNode resource;
+                EventUtil.beginBatch();
+                try {
+                    // create initial node skeleton
+                    BrixNode node = (BrixNode) getContainer().addNode(fileName, "nt:file");
+                    BrixFileNode file = BrixFileNode.initialize(node, "text"); // temp-mime
+
+                    // save the node so brix assigns the correct jcr type to it
+                    getContainer().save();
+
+                    // populate node
+                    resource = (ResourceNode) getContainer().getSession().getItem(node.getPath());
+                    model.setObject(new BrixNodeModel(resource));
+                    model.apply();
+
+                    getContainer().save();
+                } finally {
+                    EventUtil.endBatch();
+                }
 
                 // done
                 getSession().info(getString("saved"));
@@ -35,7 +35,12 @@ public class RulesNode extends BrixNode {
     public static JcrNodeWrapperFactory FACTORY = new JcrNodeWrapperFactory() {
         @Override
         public boolean canWrap(Brix brix, JcrNode node) {
-            return TYPE.equals(getNodeType(node));
+            return TYPE.equals(BrixNode.getNodeType(node));
+        }
+
+        @Override
+        public String getNodeType() {
+            return TYPE;
         }
 
         @Override
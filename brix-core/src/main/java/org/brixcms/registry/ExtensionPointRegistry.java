@@ -130,6 +130,9 @@ public class ExtensionPointRegistry {
         }
 
         extensions.add(extension);
+        for (Listener listener : listeners) {
+            listener.registered(point, extension);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -0,0 +1,110 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Application scoped cache of values derived from workspace content. Entries are partitioned by workspace, a partition
+ * is discarded as a whole when a node in the workspace is saved or when the workspace content is replaced.
+ * <p>
+ * Callers should keep the partition returned by {@link #getPartition(String)} while computing a value, so that a
+ * concurrent invalidation detaches their result instead of exposing a stale value in the new partition.
+ *
+ * @param <K> type of the keys within a partition
+ * @param <V> type of the cached values
+ */
+public class WorkspacePartitionedCache<K, V> {
+    private final ConcurrentMap<String, Partition<K, V>> partitions = new ConcurrentHashMap<String, Partition<K, V>>();
+
+    private final int maxEntries;
+
+    /**
+     * Constructor for a cache whose partitions are not bounded.
+     */
+    public WorkspacePartitionedCache() {
+        this(0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries maximum number of entries kept per partition, a full partition is cleared before a new key is
+     *                   added; <code>0</code> if partitions are not bounded
+     */
+    public WorkspacePartitionedCache(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Argument 'maxEntries' may not be negative");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the partition holding values of the given workspace.
+     *
+     * @param workspace workspace name
+     * @return partition or <code>null</code> if the workspace is <code>null</code>
+     */
+    public Partition<K, V> getPartition(String workspace) {
+        if (workspace == null) {
+            return null;
+        }
+        return partitions.computeIfAbsent(workspace, ignored -> new Partition<K, V>(maxEntries));
+    }
+
+    /**
+     * Discards all values for the specified workspace.
+     *
+     * @param workspace workspace whose values should be discarded
+     */
+    public void invalidateWorkspace(String workspace) {
+        if (workspace == null) {
+            return;
+        }
+        partitions.remove(workspace);
+    }
+
+    /**
+     * Values of a single workspace.
+     */
+    public static final class Partition<K, V> {
+        private final ConcurrentMap<K, V> entries = new ConcurrentHashMap<K, V>();
+
+        private final int maxEntries;
+
+        private Partition(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public V get(K key) {
+            return entries.get(key);
+        }
+
+        public void put(K key, V value) {
+            if (key == null || value == null) {
+                throw new IllegalArgumentException("Arguments 'key' and 'value' may not be null");
+            }
+            if (maxEntries > 0 && entries.size() >= maxEntries && !entries.containsKey(key)) {
+                entries.clear();
+            }
+            entries.put(key, value);
+        }
+
+        public int size() {
+            return entries.size();
+        }
+    }
+}
@@ -65,6 +65,7 @@ import org.brixcms.Brix;
 import org.brixcms.BrixNodeModel;
 import org.brixcms.Path;
 import org.brixcms.config.BrixConfig;
+import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.jcr.exception.JcrException;
 import org.brixcms.jcr.wrapper.BrixNode;
@@ -78,6 +79,7 @@ import org.brixcms.web.nodepage.BrixNodeRequestHandler;
 import org.brixcms.web.nodepage.BrixNodeWebPage;
 import org.brixcms.web.nodepage.BrixPageParameters;
 import org.brixcms.web.nodepage.PageParametersAware;
+import org.brixcms.web.UriResolutionCache.Resolution;
 import org.brixcms.web.reference.Reference;
 import org.brixcms.workspace.WorkspaceUtils;
 import org.slf4j.Logger;
@@ -141,6 +143,27 @@ public class BrixRequestMapper extends AbstractComponentMapper {
             }
         }
 
+        final String requestPathKey = path.toString();
+        final UriResolutionCache.Partition resolutions = node == null ? getUriResolutions() : null;
+        String nodeType = null;
+        if (resolutions != null) {
+            // jump straight to the node that handled this uri before, skipping the lookups
+            // for trailing segments that are indexed page parameters
+            Resolution cached = resolutions.get(requestPathKey);
+            if (cached != null && cached.isResolved() && !cached.isExact()) {
+                BrixNode cachedNode = loadNode(cached);
+                if (cachedNode != null) {
+                    for (int i = 0; i < cached.getConsumedSegments(); ++i) {
+                        path = path.parent();
+                    }
+                    node = cachedNode;
+                    nodeType = cached.getNodeType();
+                } else {
+                    resolutions.remove(requestPathKey);
+                }
+            }
+        }
+
         IRequestHandler handler = null;
         try {
             while (handler == null) {
@@ -148,7 +171,9 @@ public class BrixRequestMapper extends AbstractComponentMapper {
                     node = getNodeForUriPath(path);
                 }
                 if (node != null) {
-                    SiteNodePlugin plugin = sitePlugin.getNodePluginForNode(node);
+                    SiteNodePlugin plugin = nodeType != null
+                            ? sitePlugin.getNodePluginForType(nodeType)
+                            : sitePlugin.getNodePluginForNode(node);
                     BrixNodeModel nodeModel = new BrixNodeModel(node);
                     BrixPageParameters pageParameters = node == rootRedirectTarget && rootRedirectParameters != null
                             ? new BrixPageParameters(rootRedirectParameters)
@@ -162,11 +187,18 @@ public class BrixRequestMapper extends AbstractComponentMapper {
                 if (handler != null || path.toString().equals(".")) {
                     break;
                 }
+                nodeType = null;
                 path = path.parent();
                 if (path.isRoot()) {
                     break;
                 }
             }
+            if (resolutions != null && handler != null && node != null) {
+                int consumed = new Path(requestPathKey).size() - path.size();
+                if (consumed > 0) {
+                    resolutions.put(requestPathKey, Resolution.of(node, consumed));
+                }
+            }
         } catch (JcrException e) {
             log.warn("JcrException caught due to incorrect url", e);
             log.warn("Tracing: URL: {}", request.getUrl());
@@ -238,11 +270,68 @@ public class BrixRequestMapper extends AbstractComponentMapper {
 
             // replace handler with one that will redirect to the created url
             handler = createRedirectHandler(urlChange);
+        } else if (handler instanceof BrixNodePageRequestHandler pageRequestHandler) {
+            IRequestHandler cached = respondFromOutputCache(request, pageRequestHandler);
+            if (cached != null) {
+                return cached;
+            }
         }
 
         return handler;
     }
 
+    /**
+     * Looks up the response of an anonymous page request in the {@link OutputCache}. When there is no cached response
+     * the handler is asked to capture the one it renders.
+     *
+     * @param request
+     *            current request
+     * @param handler
+     *            handler that renders the requested page
+     * @return handler writing the cached response or <code>null</code> if the page needs to be rendered
+     */
+    private IRequestHandler respondFromOutputCache(Request request, BrixNodePageRequestHandler handler) {
+        final OutputCache outputCache = SitePlugin.get(brix).getOutputCache();
+        if (!outputCache.isEnabled() || !(request.getContainerRequest() instanceof HttpServletRequest servletRequest)
+                || !isAnonymous(request, servletRequest)) {
+            return null;
+        }
+        if (!(handler.getNodeModel() instanceof BrixNodeModel<?> nodeModel) || nodeModel.getId() == null) {
+            return null;
+        }
+        final OutputCache.Partition partition = outputCache.getPartition(nodeModel.getWorkspaceName());
+        if (partition == null) {
+            return null;
+        }
+        final String key = OutputCache.createKey(nodeModel.getId(), handler.getPageParameters(),
+                servletRequest.getScheme(), request.getLocale());
+        OutputCache.Entry entry = partition.get(key, System.currentTimeMillis());
+        if (entry != null) {
+            return new CachedOutputRequestHandler(entry);
+        }
+        if ("GET".equals(servletRequest.getMethod())) {
+            OutputCache.Capture capture = partition.newCapture(key, outputCache.isGzip());
+            capture.addDependency(nodeModel.getId());
+            handler.setOutputCapture(capture);
+        }
+        return null;
+    }
+
+    /**
+     * Anonymous requests are plain GET or HEAD requests of visitors without a session. Their responses do not depend
+     * on who is asking and may be shared.
+     */
+    private boolean isAnonymous(Request request, HttpServletRequest servletRequest) {
+        String method = servletRequest.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        if (request instanceof WebRequest webRequest && webRequest.isAjax()) {
+            return false;
+        }
+        return servletRequest.getSession(false) == null;
+    }
+
     private BrixPageParameters createBrixPageParams(Url url, Path path) {
         BrixPageParameters parameters = new BrixPageParameters();
         Path nodePath = path;
@@ -503,14 +592,24 @@ public class BrixRequestMapper extends AbstractComponentMapper {
             return requestCache.get(uriPathKey);
         }
 
+        final UriResolutionCache.Partition resolutions = getUriResolutions();
+        final Resolution cached = resolutions != null ? resolutions.get(uriPathKey) : null;
         BrixNode node = null;
-        final Path nodePath = brix.getConfig().getMapper().getNodePathForUriPath(uriPath.toAbsolute(), brix);
-        if (nodePath != null) {
-            final String jcrPath = SitePlugin.get().toRealWebNodePath(nodePath.toString());
-            final String workspace = WorkspaceUtils.getWorkspace();
-            final JcrSession session = brix.getCurrentSession(workspace);
-            if (session.itemExists(jcrPath)) {
-                node = (BrixNode) session.getItem(jcrPath);
+        if (cached != null && cached.isExact()) {
+            node = loadNode(cached);
+        }
+        if (node == null && (cached == null || cached.isExact())) {
+            final Path nodePath = brix.getConfig().getMapper().getNodePathForUriPath(uriPath.toAbsolute(), brix);
+            if (nodePath != null) {
+                final String jcrPath = SitePlugin.get().toRealWebNodePath(nodePath.toString());
+                final String workspace = WorkspaceUtils.getWorkspace();
+                final JcrSession session = brix.getCurrentSession(workspace);
+                if (session.itemExists(jcrPath)) {
+                    node = (BrixNode) session.getItem(jcrPath);
+                }
+            }
+            if (resolutions != null) {
+                resolutions.put(uriPathKey, Resolution.of(node, 0));
             }
         }
 
@@ -521,6 +620,39 @@ public class BrixRequestMapper extends AbstractComponentMapper {
         return node;
     }
 
+    /**
+     * Returns the application scoped uri resolutions for the workspace of the current request.
+     *
+     * @return resolutions or <code>null</code> if the cache is disabled
+     */
+    private UriResolutionCache.Partition getUriResolutions() {
+        if (RequestCycle.get() == null) {
+            return null;
+        }
+        return SitePlugin.get(brix).getUriResolutionCache().getPartition(WorkspaceUtils.getWorkspace());
+    }
+
+    /**
+     * Loads the node a cached resolution points to.
+     *
+     * @param resolution
+     *            cached resolution
+     * @return node or <code>null</code> if the node no longer exists at the
+     *         resolved path
+     */
+    private BrixNode loadNode(Resolution resolution) {
+        final JcrSession session = brix.getCurrentSession(WorkspaceUtils.getWorkspace());
+        try {
+            JcrNode node = session.getNodeByIdentifier(resolution.getNodeIdentifier());
+            if (node instanceof BrixNode brixNode && resolution.getNodePath().equals(node.getPath())) {
+                return brixNode;
+            }
+        } catch (JcrException e) {
+            log.debug("Cached uri resolution for node {} is stale", resolution.getNodePath(), e);
+        }
+        return null;
+    }
+
     private RequestPathCache getRequestPathCache() {
         RequestCycle requestCycle = RequestCycle.get();
         if (requestCycle == null) {
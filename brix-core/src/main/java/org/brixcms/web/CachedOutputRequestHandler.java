@@ -0,0 +1,103 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.web;
+
+import java.util.List;
+import java.util.Map;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.request.IRequestCycle;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.string.Strings;
+import org.brixcms.plugin.site.resource.ResourceNodeHandler;
+
+/**
+ * Writes a page response kept by the {@link OutputCache} together with the headers the page set when it was rendered.
+ * Clients that already have the response get a <code>304</code>, clients accepting gzip get the pre-compressed
+ * representation when there is one.
+ */
+public class CachedOutputRequestHandler implements IRequestHandler {
+    private final OutputCache.Entry entry;
+
+    public CachedOutputRequestHandler(OutputCache.Entry entry) {
+        this.entry = entry;
+    }
+
+    public OutputCache.Entry getEntry() {
+        return entry;
+    }
+
+    @Override
+    public void respond(IRequestCycle requestCycle) {
+        HttpServletRequest request = (HttpServletRequest) requestCycle.getRequest().getContainerRequest();
+        WebResponse response = (WebResponse) requestCycle.getResponse();
+
+        for (Map.Entry<String, List<String>> header : entry.getHeaders().entrySet()) {
+            boolean first = true;
+            for (String value : header.getValue()) {
+                if (first) {
+                    response.setHeader(header.getKey(), value);
+                    first = false;
+                } else {
+                    response.addHeader(header.getKey(), value);
+                }
+            }
+        }
+        response.setHeader("ETag", entry.getETag());
+        // shared copies must be revalidated, the content changes whenever the page is saved
+        response.setHeader("Cache-Control", "no-cache");
+        byte[] gzipped = entry.getGzippedBody();
+        if (gzipped != null) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (!Strings.isEmpty(ifNoneMatch) && ResourceNodeHandler.matchesETag(ifNoneMatch, entry.getETag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = entry.getBody();
+        if (gzipped != null && acceptsGzip(request)) {
+            response.setHeader("Content-Encoding", "gzip");
+            body = gzipped;
+        }
+        if (entry.getContentType() != null) {
+            response.setContentType(entry.getContentType());
+        }
+        response.setContentLength(body.length);
+        if (!"HEAD".equalsIgnoreCase(request.getMethod())) {
+            response.write(body);
+        }
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String candidate : acceptEncoding.split(",")) {
+            String[] parts = candidate.trim().split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                // "gzip;q=0" explicitly refuses the encoding
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,479 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.request.mapper.parameter.INamedParameters.NamedPair;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.site.page.tile.Tile;
+
+/**
+ * Application scoped cache of complete page responses served to anonymous visitors. A page is only cached when it
+ * renders at least one tile and every tile rendered on it declares itself cacheable (see {@link
+ * Tile#isOutputCacheable(IModel)}), pages without tiles and pages of other plugins are always rendered. The response
+ * bytes and headers are then kept together with an ETag and, optionally, a pre-compressed gzip representation, and are
+ * served by {@link BrixRequestMapper} without constructing or rendering the page.
+ * <p>
+ * Entries are keyed by node identifier, normalised page parameters, scheme and locale and are partitioned by workspace
+ * like {@link UriResolutionCache}. Every entry records the containers it was rendered from, saving one of them (or a
+ * template they use) drops the entries that depend on it, other saves and workspace content replacements discard the
+ * whole partition. Tiles may additionally limit how long the output they render stays valid (see {@link
+ * Tile#getOutputCacheTtl(IModel)}).
+ */
+public class OutputCache {
+    private static final ThreadLocal<Capture> CURRENT_CAPTURE = new ThreadLocal<Capture>();
+
+    private final ConcurrentMap<String, Partition> partitions = new ConcurrentHashMap<String, Partition>();
+    private final int maxEntries;
+    private final boolean gzip;
+
+    /**
+     * @param maxEntries maximum number of responses kept per workspace, <code>0</code> disables the cache
+     * @param gzip       whether a gzip compressed representation should be kept next to every response
+     */
+    public OutputCache(int maxEntries, boolean gzip) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Argument 'maxEntries' may not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.gzip = gzip;
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /**
+     * Returns the partition holding responses for the given workspace. Callers should keep the returned partition for
+     * the duration of a single render so that a concurrent invalidation detaches their result.
+     *
+     * @param workspace workspace name
+     * @return partition or <code>null</code> if the cache is disabled
+     */
+    public Partition getPartition(String workspace) {
+        if (!isEnabled() || workspace == null) {
+            return null;
+        }
+        return partitions.computeIfAbsent(workspace, ignored -> new Partition(maxEntries));
+    }
+
+    /**
+     * Discards all responses rendered from the specified node.
+     *
+     * @param workspace workspace of the node
+     * @param nodeId    node identifier, or path for nodes that are not referenceable
+     */
+    public void invalidate(String workspace, String nodeId) {
+        if (workspace == null || nodeId == null) {
+            return;
+        }
+        Partition partition = partitions.get(workspace);
+        if (partition != null) {
+            partition.invalidate(nodeId);
+        }
+    }
+
+    /**
+     * Discards all responses for the specified workspace.
+     *
+     * @param workspace workspace whose responses should be discarded
+     */
+    public void invalidateWorkspace(String workspace) {
+        if (workspace == null) {
+            return;
+        }
+        partitions.remove(workspace);
+    }
+
+    /**
+     * Builds the key of a response. Indexed parameters keep their order, named parameters are sorted by name so that
+     * urls differing only in parameter order share an entry.
+     *
+     * @param nodeId     identifier of the rendered node
+     * @param parameters page parameters
+     * @param scheme     request scheme
+     * @param locale     locale the page is rendered in
+     * @return key
+     */
+    public static String createKey(String nodeId, PageParameters parameters, String scheme, Locale locale) {
+        StringBuilder key = new StringBuilder(64);
+        append(key, nodeId);
+        append(key, scheme);
+        append(key, locale != null ? locale.toString() : null);
+        if (parameters != null) {
+            key.append('i');
+            for (int i = 0; i < parameters.getIndexedCount(); ++i) {
+                append(key, parameters.get(i).toString());
+            }
+            List<NamedPair> named = new ArrayList<NamedPair>(parameters.getAllNamed());
+            // stable, so repeated values of a parameter keep their order
+            named.sort((a, b) -> a.getKey().compareTo(b.getKey()));
+            key.append('n');
+            for (NamedPair pair : named) {
+                append(key, pair.getKey());
+                append(key, pair.getValue());
+            }
+        }
+        return key.toString();
+    }
+
+    private static void append(StringBuilder key, String value) {
+        if (value == null) {
+            key.append('-');
+        } else {
+            key.append(value.length()).append(':').append(value);
+        }
+    }
+
+    /**
+     * Records a tile instantiated by the render in progress on the current thread. Does nothing when no response is
+     * being captured.
+     *
+     * @param tile      tile
+     * @param tileNode  node holding the tile configuration
+     * @param container container the tile belongs to
+     */
+    public static void recordTile(Tile tile, IModel<BrixNode> tileNode, BrixNode container) {
+        Capture capture = CURRENT_CAPTURE.get();
+        if (capture == null) {
+            return;
+        }
+        if (container != null) {
+            capture.addDependency(getNodeId(container));
+        }
+        capture.tiles = true;
+        if (!tile.isOutputCacheable(tileNode)) {
+            capture.markNotCacheable();
+        } else {
+            capture.limitTtl(tile.getOutputCacheTtl(tileNode));
+        }
+    }
+
+    /**
+     * Marks the response rendered on the current thread as not cacheable. Does nothing when no response is being
+     * captured.
+     */
+    public static void markNotCacheable() {
+        Capture capture = CURRENT_CAPTURE.get();
+        if (capture != null) {
+            capture.markNotCacheable();
+        }
+    }
+
+    static String getNodeId(BrixNode node) {
+        return node.isNodeType("mix:referenceable") ? node.getIdentifier() : node.getPath();
+    }
+
+    /**
+     * Responses of a single workspace keyed by {@link #createKey(String, PageParameters, String, Locale)}, bounded by
+     * least recently used eviction.
+     */
+    public static final class Partition {
+        private final Map<String, Entry> entries;
+        private final Map<String, Set<String>> keysByDependency = new HashMap<String, Set<String>>();
+        private long generation;
+
+        private Partition(final int maxEntries) {
+            this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() > maxEntries) {
+                        unindex(eldest.getKey(), eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * Returns the response stored under the key unless it has expired.
+         *
+         * @param key key
+         * @param now current time in milliseconds
+         * @return response or <code>null</code>
+         */
+        public synchronized Entry get(String key, long now) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isExpired(now)) {
+                entries.remove(key);
+                unindex(key, entry);
+                return null;
+            }
+            return entry;
+        }
+
+        /**
+         * Creates a capture for a response that will be stored under the given key. Invalidations of this partition
+         * that happen after this call prevent the response from being stored.
+         *
+         * @param key  key the response will be stored under
+         * @param gzip whether a compressed representation should be kept
+         * @return capture
+         */
+        public Capture newCapture(String key, boolean gzip) {
+            return new Capture(this, key, gzip, getGeneration());
+        }
+
+        synchronized boolean put(String key, Entry entry, long expectedGeneration) {
+            if (generation != expectedGeneration) {
+                // a dependency was invalidated while the response was rendered
+                return false;
+            }
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                unindex(key, previous);
+            }
+            for (String dependency : entry.dependencies) {
+                keysByDependency.computeIfAbsent(dependency, ignored -> new HashSet<String>()).add(key);
+            }
+            return true;
+        }
+
+        synchronized void invalidate(String nodeId) {
+            ++generation;
+            Set<String> keys = keysByDependency.remove(nodeId);
+            if (keys == null) {
+                return;
+            }
+            for (String key : keys) {
+                Entry entry = entries.remove(key);
+                if (entry != null) {
+                    unindex(key, entry);
+                }
+            }
+        }
+
+        private void unindex(String key, Entry entry) {
+            for (String dependency : entry.dependencies) {
+                Set<String> keys = keysByDependency.get(dependency);
+                if (keys != null) {
+                    keys.remove(key);
+                    if (keys.isEmpty()) {
+                        keysByDependency.remove(dependency);
+                    }
+                }
+            }
+        }
+
+        private synchronized long getGeneration() {
+            return generation;
+        }
+
+        public synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Tracks whether the response rendered on the current thread may be cached, how long it stays valid and which
+     * containers it was rendered from.
+     */
+    public static final class Capture {
+        private final Partition partition;
+        private final String key;
+        private final boolean gzip;
+        private final long generation;
+        private final Set<String> dependencies = new HashSet<String>();
+        private Capture previous;
+        private boolean cacheable = true;
+        private boolean tiles;
+        private Duration ttl;
+
+        private Capture(Partition partition, String key, boolean gzip, long generation) {
+            this.partition = partition;
+            this.key = key;
+            this.gzip = gzip;
+            this.generation = generation;
+        }
+
+        public void addDependency(String nodeId) {
+            if (nodeId != null) {
+                dependencies.add(nodeId);
+            }
+        }
+
+        public void markNotCacheable() {
+            cacheable = false;
+        }
+
+        /**
+         * @return <code>true</code> if at least one tile was rendered and all of them are cacheable
+         */
+        public boolean isCacheable() {
+            return cacheable && tiles;
+        }
+
+        void limitTtl(Duration tileTtl) {
+            if (tileTtl != null && (ttl == null || tileTtl.compareTo(ttl) < 0)) {
+                ttl = tileTtl;
+            }
+        }
+
+        /**
+         * Makes this the capture of the calling thread, so that tiles instantiated while rendering are recorded. Every
+         * call must be paired with {@link #end()}.
+         */
+        public void begin() {
+            previous = CURRENT_CAPTURE.get();
+            CURRENT_CAPTURE.set(this);
+        }
+
+        /**
+         * Stops tracking tiles on the current thread.
+         */
+        public void end() {
+            if (previous != null) {
+                CURRENT_CAPTURE.set(previous);
+            } else {
+                CURRENT_CAPTURE.remove();
+            }
+        }
+
+        /**
+         * Stores the captured response unless it is not cacheable (see {@link #isCacheable()}) or one of its
+         * dependencies was invalidated in the meantime.
+         *
+         * @param body        response bytes
+         * @param contentType response content type
+         * @param headers     headers to send with every copy of the response, keyed by name
+         * @param now         current time in milliseconds
+         * @return <code>true</code> if the response was stored
+         */
+        public boolean store(byte[] body, String contentType, Map<String, List<String>> headers, long now) {
+            if (!isCacheable() || body == null) {
+                return false;
+            }
+            if (ttl != null && (ttl.isZero() || ttl.isNegative())) {
+                return false;
+            }
+            long expiresAt = ttl != null ? now + ttl.toMillis() : 0;
+            Map<String, List<String>> headersCopy = new LinkedHashMap<String, List<String>>();
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                headersCopy.put(header.getKey(), List.copyOf(header.getValue()));
+            }
+            Entry entry = new Entry(body, gzip ? gzip(body) : null, contentType,
+                    Collections.unmodifiableMap(headersCopy), expiresAt,
+                    Collections.unmodifiableSet(new HashSet<String>(dependencies)));
+            return partition.put(key, entry, generation);
+        }
+    }
+
+    /**
+     * Immutable cached response.
+     */
+    public static final class Entry {
+        private final byte[] body;
+        private final byte[] gzippedBody;
+        private final String contentType;
+        private final Map<String, List<String>> headers;
+        private final String etag;
+        private final long expiresAt;
+        private final Set<String> dependencies;
+
+        Entry(byte[] body, byte[] gzippedBody, String contentType, Map<String, List<String>> headers, long expiresAt,
+              Set<String> dependencies) {
+            this.body = body;
+            this.gzippedBody = gzippedBody;
+            this.contentType = contentType;
+            this.headers = headers;
+            this.etag = "\"" + sha256(body) + "\"";
+            this.expiresAt = expiresAt;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * @return response bytes, must not be modified
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return gzip compressed response bytes or <code>null</code> if compression is disabled, must not be
+         *         modified
+         */
+        public byte[] getGzippedBody() {
+            return gzippedBody;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * @return headers set by the page, keyed by name
+         */
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public Set<String> getDependencies() {
+            return dependencies;
+        }
+
+        public boolean isExpired(long now) {
+            return expiresAt != 0 && now >= expiresAt;
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.web;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import org.brixcms.Brix;
+import org.brixcms.jcr.base.BatchedSaveEventListener;
+import org.brixcms.jcr.base.SaveEvent;
+import org.brixcms.plugin.site.SitePlugin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Discards the site caches of a workspace (see {@link SitePlugin#invalidateWorkspaceCaches(String)}) whenever a node
+ * in that workspace is saved. Any save may add, move, rename or remove nodes below the site root, so the whole
+ * workspace partition is dropped. Batched events drop each workspace once, after the nodes have been saved.
+ */
+public class SiteCacheInvalidationListener implements BatchedSaveEventListener {
+    private static final Logger log = LoggerFactory.getLogger(SiteCacheInvalidationListener.class);
+
+    private final Brix brix;
+
+    public SiteCacheInvalidationListener(Brix brix) {
+        if (brix == null) {
+            throw new IllegalArgumentException("brix may not be null");
+        }
+        this.brix = brix;
+    }
+
+    @Override
+    public void onEvent(EventIterator events) {
+        Set<String> workspaces = new HashSet<String>();
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            if (event instanceof SaveEvent saveEvent) {
+                invalidateWorkspace(saveEvent, workspaces);
+            }
+        }
+    }
+
+    private void invalidateWorkspace(SaveEvent event, Set<String> workspaces) {
+        try {
+            String workspace = event.getWorkspaceName();
+            if (!workspaces.add(workspace)) {
+                return;
+            }
+            SitePlugin plugin = SitePlugin.get(brix);
+            if (plugin != null) {
+                plugin.invalidateWorkspaceCaches(workspace);
+            }
+        } catch (RuntimeException e) {
+            log.debug("Failed to invalidate site caches after save", e);
+        }
+    }
+}
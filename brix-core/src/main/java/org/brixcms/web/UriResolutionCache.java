@@ -0,0 +1,193 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.brixcms.jcr.wrapper.BrixNode;
+
+/**
+ * Application scoped cache of uri path resolutions performed by {@link BrixRequestMapper}. Entries are partitioned by
+ * workspace and every partition is bounded by least recently used eviction. Failed lookups are cached as well, so
+ * urls that carry indexed page parameters do not probe the repository for every trailing segment on each request.
+ * <p>
+ * A partition is discarded whenever a node in its workspace is saved and when the workspace content is replaced (see
+ * {@link org.brixcms.Brix#invalidateMarkupCache(String)}). Resolutions computed while a partition is being discarded
+ * only populate the detached partition and are therefore not visible to later requests.
+ *
+ * @see BrixRequestMapper#getNodeForUriPath(org.brixcms.Path)
+ */
+public class UriResolutionCache {
+    /**
+     * Default maximum number of entries kept per workspace
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final ConcurrentMap<String, Partition> partitions = new ConcurrentHashMap<String, Partition>();
+    private final int maxEntries;
+
+    public UriResolutionCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries maximum number of entries kept per workspace, <code>0</code> disables the cache
+     */
+    public UriResolutionCache(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Argument 'maxEntries' may not be negative");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Returns the partition holding resolutions for the given workspace. Callers should keep the returned partition
+     * for the duration of a single resolution so that a concurrent invalidation detaches their result.
+     *
+     * @param workspace workspace name
+     * @return partition or <code>null</code> if the cache is disabled
+     */
+    public Partition getPartition(String workspace) {
+        if (!isEnabled() || workspace == null) {
+            return null;
+        }
+        return partitions.computeIfAbsent(workspace, ignored -> new Partition(maxEntries));
+    }
+
+    /**
+     * Discards all resolutions for the specified workspace.
+     *
+     * @param workspace workspace whose resolutions should be discarded
+     */
+    public void invalidateWorkspace(String workspace) {
+        if (workspace == null) {
+            return;
+        }
+        partitions.remove(workspace);
+    }
+
+    /**
+     * Resolutions of a single workspace keyed by uri path.
+     */
+    public static final class Partition {
+        private final Map<String, Resolution> entries;
+
+        private Partition(final int maxEntries) {
+            this.entries = new LinkedHashMap<String, Resolution>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Resolution> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        public synchronized Resolution get(String uriPath) {
+            return entries.get(uriPath);
+        }
+
+        public synchronized void put(String uriPath, Resolution resolution) {
+            if (uriPath == null || resolution == null) {
+                throw new IllegalArgumentException("Arguments 'uriPath' and 'resolution' may not be null");
+            }
+            entries.put(uriPath, resolution);
+        }
+
+        public synchronized void remove(String uriPath) {
+            entries.remove(uriPath);
+        }
+
+        public synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Immutable result of resolving a uri path. A resolution either denotes that no node maps to the uri path or
+     * points to the node that handles it, together with the number of trailing uri segments that are passed to that
+     * node as indexed page parameters.
+     */
+    public static final class Resolution {
+        /**
+         * Resolution for uri paths that do not map to any node
+         */
+        public static final Resolution NONE = new Resolution(null, null, null, 0);
+
+        private final String nodeIdentifier;
+        private final String nodePath;
+        private final String nodeType;
+        private final int consumedSegments;
+
+        private Resolution(String nodeIdentifier, String nodePath, String nodeType, int consumedSegments) {
+            this.nodeIdentifier = nodeIdentifier;
+            this.nodePath = nodePath;
+            this.nodeType = nodeType;
+            this.consumedSegments = consumedSegments;
+        }
+
+        /**
+         * Creates a resolution for the given node.
+         *
+         * @param node             node the uri path resolved to, or <code>null</code>
+         * @param consumedSegments number of trailing uri segments consumed as indexed page parameters
+         * @return resolution
+         */
+        public static Resolution of(BrixNode node, int consumedSegments) {
+            if (node == null) {
+                return NONE;
+            }
+            if (consumedSegments < 0) {
+                throw new IllegalArgumentException("Argument 'consumedSegments' may not be negative");
+            }
+            return new Resolution(node.getIdentifier(), node.getPath(), node.getNodeType(), consumedSegments);
+        }
+
+        public boolean isResolved() {
+            return nodeIdentifier != null;
+        }
+
+        /**
+         * @return <code>true</code> if a node maps to the uri path itself rather than to one of its ancestors
+         */
+        public boolean isExact() {
+            return isResolved() && consumedSegments == 0;
+        }
+
+        public String getNodeIdentifier() {
+            return nodeIdentifier;
+        }
+
+        /**
+         * @return real JCR path of the node
+         */
+        public String getNodePath() {
+            return nodePath;
+        }
+
+        public String getNodeType() {
+            return nodeType;
+        }
+
+        public int getConsumedSegments() {
+            return consumedSegments;
+        }
+    }
+}
@@ -14,6 +14,11 @@
 
 package org.brixcms.web.nodepage;
 
+import java.nio.charset.Charset;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.apache.wicket.Application;
 import org.apache.wicket.core.request.handler.IPageProvider;
 import org.apache.wicket.core.request.handler.IPageRequestHandler;
 import org.apache.wicket.core.request.handler.RenderPageRequestHandler;
@@ -23,8 +28,10 @@ import org.apache.wicket.request.IRequestCycle;
 import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.component.IRequestablePage;
 import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.web.OutputCache;
 
 public class BrixNodePageRequestHandler extends RenderPageRequestHandler
         implements IRequestHandler, IPageRequestHandler, PageParametersRequestHandler {
@@ -32,6 +39,7 @@ public class BrixNodePageRequestHandler extends RenderPageRequestHandler
 
     private final IModel<BrixNode> node;
     private final PageFactory pageFactory;
+    private OutputCache.Capture outputCapture;
 
     // --------------------------- CONSTRUCTORS ---------------------------
 
@@ -58,6 +66,16 @@ public class BrixNodePageRequestHandler extends RenderPageRequestHandler
         return node;
     }
 
+    /**
+     * Requests the rendered response to be stored in the {@link OutputCache}. The capture is started before the page
+     * is rendered and decides whether the response is actually stored once rendering has finished.
+     *
+     * @param outputCapture capture of the partition and key the response belongs to
+     */
+    public void setOutputCapture(OutputCache.Capture outputCapture) {
+        this.outputCapture = outputCapture;
+    }
+
     // ------------------------ INTERFACE METHODS ------------------------
 
     // --------------------- Interface IRequestHandler ---------------------
@@ -105,9 +123,37 @@ public class BrixNodePageRequestHandler extends RenderPageRequestHandler
         // check if the listener invocation or something else hasn't changed the
         // request target
         if (RequestCycle.get().getActiveRequestHandler() == this) {
+            if (outputCapture != null && requestCycle.getResponse() instanceof WebResponse) {
+                respondCapturingOutput((RequestCycle) requestCycle);
+            } else {
+                super.respond(requestCycle);
+            }
+        }
+    }
 
+    private void respondCapturingOutput(RequestCycle requestCycle) {
+        final OutputCache.Capture capture = outputCapture;
+        outputCapture = null;
+
+        WebResponse original = (WebResponse) requestCycle.getResponse();
+        Charset charset = Charset.forName(Application.get().getRequestCycleSettings().getResponseRequestEncoding());
+        OutputCapturingWebResponse capturing = new OutputCapturingWebResponse(original, charset);
+        requestCycle.setResponse(capturing);
+        capture.begin();
+        try {
             super.respond(requestCycle);
+        } finally {
+            requestCycle.setResponse(original);
+            capture.end();
+        }
 
+        // stateful pages bind a session and render urls that only work within it
+        HttpServletRequest request = (HttpServletRequest) requestCycle.getRequest().getContainerRequest();
+        BrixNodeWebPage page = getPage();
+        if (capturing.isCacheable() && !original.isRedirect() && page != null && page.isPageStateless()
+                && request.getSession(false) == null) {
+            capture.store(capturing.getBody(), capturing.getContentType(), capturing.getHeaders(),
+                    System.currentTimeMillis());
         }
     }
 
@@ -86,6 +86,14 @@ public class BrixNodeWebPage extends WebPage implements IGenericComponent<BrixNo
         return (BrixNode) getDefaultModelObject();
     }
 
+    @Override
+    protected void onDetach() {
+        if (Brix.get().getConfig().isPageSizeMeasurement()) {
+            PageSizeReporter.reportAfterDetach(this);
+        }
+        super.onDetach();
+    }
+
     @Override
     protected void configureResponse(WebResponse response) {
         super.configureResponse(response);
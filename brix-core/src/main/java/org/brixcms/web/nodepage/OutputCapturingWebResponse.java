@@ -0,0 +1,217 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.web.nodepage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.request.http.WebResponse;
+
+/**
+ * Web response that passes everything through to the wrapped response and keeps a copy of the written body and headers,
+ * so that the rendered page can be stored in the {@link org.brixcms.web.OutputCache} and replayed as a whole.
+ * Responses that set cookies, redirect, report anything but a success status or carry a content security policy with a
+ * per-request nonce are flagged as not cacheable.
+ * <p>
+ * Date headers and headers describing caching, length or encoding of the body are not recorded, they are written anew
+ * whenever the cached response is served.
+ */
+class OutputCapturingWebResponse extends WebResponse {
+    private static final Set<String> UNRECORDED_HEADERS = new HashSet<String>(Arrays.asList("cache-control",
+            "pragma", "expires", "date", "last-modified", "etag", "vary", "content-length", "content-type",
+            "content-encoding"));
+
+    private final WebResponse delegate;
+    private final Charset charset;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(8192);
+    private final Map<String, List<String>> headers = new TreeMap<String, List<String>>(
+            String.CASE_INSENSITIVE_ORDER);
+    private String contentType;
+    private boolean cacheable = true;
+
+    OutputCapturingWebResponse(WebResponse delegate, Charset charset) {
+        this.delegate = delegate;
+        this.charset = charset;
+    }
+
+    /**
+     * @return <code>true</code> if nothing happened that makes the response specific to the current visitor
+     */
+    boolean isCacheable() {
+        return cacheable;
+    }
+
+    byte[] getBody() {
+        return body.toByteArray();
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return headers set while rendering that have to be sent with every copy of the response
+     */
+    Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    private void recordHeader(String name, String value, boolean replace) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        if ("set-cookie".equals(lowerCaseName)) {
+            cacheable = false;
+        } else if (lowerCaseName.startsWith("content-security-policy") && value != null
+                && value.contains("'nonce-")) {
+            // the nonce is only secret as long as every visitor gets a fresh one
+            cacheable = false;
+        }
+        if (UNRECORDED_HEADERS.contains(lowerCaseName)) {
+            return;
+        }
+        List<String> values = headers.get(name);
+        if (values == null || replace) {
+            values = new ArrayList<String>(1);
+            headers.put(name, values);
+        }
+        values.add(value);
+    }
+
+    @Override
+    public void write(CharSequence sequence) {
+        body.writeBytes(sequence.toString().getBytes(charset));
+        delegate.write(sequence);
+    }
+
+    @Override
+    public void write(byte[] array) {
+        body.writeBytes(array);
+        delegate.write(array);
+    }
+
+    @Override
+    public void write(byte[] array, int offset, int length) {
+        body.write(array, offset, length);
+        delegate.write(array, offset, length);
+    }
+
+    @Override
+    public String encodeURL(CharSequence url) {
+        return delegate.encodeURL(url);
+    }
+
+    @Override
+    public void reset() {
+        body.reset();
+        headers.clear();
+        delegate.reset();
+    }
+
+    @Override
+    public Object getContainerResponse() {
+        return delegate.getContainerResponse();
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        cacheable = false;
+        delegate.addCookie(cookie);
+    }
+
+    @Override
+    public void clearCookie(Cookie cookie) {
+        cacheable = false;
+        delegate.clearCookie(cookie);
+    }
+
+    @Override
+    public boolean isHeaderSupported() {
+        return delegate.isHeaderSupported();
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        recordHeader(name, value, true);
+        delegate.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        recordHeader(name, value, false);
+        delegate.addHeader(name, value);
+    }
+
+    @Override
+    public void setDateHeader(String name, Instant date) {
+        delegate.setDateHeader(name, date);
+    }
+
+    @Override
+    public void setContentLength(long length) {
+        delegate.setContentLength(length);
+    }
+
+    @Override
+    public void setContentType(String mimeType) {
+        contentType = mimeType;
+        delegate.setContentType(mimeType);
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        if (sc != HttpServletResponse.SC_OK) {
+            cacheable = false;
+        }
+        delegate.setStatus(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+        cacheable = false;
+        delegate.sendError(sc, msg);
+    }
+
+    @Override
+    public String encodeRedirectURL(CharSequence url) {
+        return delegate.encodeRedirectURL(url);
+    }
+
+    @Override
+    public void sendRedirect(String url) {
+        cacheable = false;
+        delegate.sendRedirect(url);
+    }
+
+    @Override
+    public boolean isRedirect() {
+        return delegate.isRedirect();
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+}
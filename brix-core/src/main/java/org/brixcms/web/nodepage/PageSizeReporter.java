@@ -0,0 +1,89 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.web.nodepage;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.core.util.lang.WicketObjects;
+import org.apache.wicket.request.cycle.IRequestCycleListener;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs the serialized size of {@link BrixNodeWebPage}s at debug level once the request has been detached, i.e. in the
+ * state the page is put into the page store. Enabled by
+ * {@link org.brixcms.config.BrixConfig#setPageSizeMeasurement(boolean)}.
+ */
+final class PageSizeReporter implements IRequestCycleListener {
+    private static final Logger log = LoggerFactory.getLogger(PageSizeReporter.class);
+
+    private static final MetaDataKey<PageSizeReporter> REPORTER_KEY = new MetaDataKey<PageSizeReporter>() {
+    };
+
+    /**
+     * Node paths of the pages to measure, a page may be detached several times during a request
+     */
+    private final Map<BrixNodeWebPage, String> pages = new IdentityHashMap<BrixNodeWebPage, String>();
+
+    private PageSizeReporter() {
+    }
+
+    /**
+     * Schedules the measurement of the given page. Must be called from {@link BrixNodeWebPage#onDetach()} before the
+     * page model is detached; a single listener per request is notified after all pages of the request have been
+     * detached.
+     *
+     * @param page page to measure
+     */
+    static void reportAfterDetach(BrixNodeWebPage page) {
+        RequestCycle requestCycle = RequestCycle.get();
+        if (requestCycle == null || !log.isDebugEnabled()) {
+            return;
+        }
+        PageSizeReporter reporter = requestCycle.getMetaData(REPORTER_KEY);
+        if (reporter == null) {
+            reporter = new PageSizeReporter();
+            requestCycle.setMetaData(REPORTER_KEY, reporter);
+            requestCycle.getListeners().add(reporter);
+        }
+        if (!reporter.pages.containsKey(page)) {
+            reporter.pages.put(page, getNodePath(page));
+        }
+    }
+
+    private static String getNodePath(BrixNodeWebPage page) {
+        try {
+            BrixNode node = page.getModel() != null ? page.getModel().getObject() : null;
+            return node != null ? node.getPath() : null;
+        } catch (RuntimeException e) {
+            // the node may have been removed during the request
+            return null;
+        }
+    }
+
+    @Override
+    public void onDetach(RequestCycle cycle) {
+        for (Map.Entry<BrixNodeWebPage, String> e : pages.entrySet()) {
+            BrixNodeWebPage page = e.getKey();
+            long size = WicketObjects.sizeof(page);
+            log.debug("Serialized size of page {} ({}, id {}): {} bytes", e.getValue(), page.getClass().getName(),
+                    page.getPageId(), size);
+        }
+    }
+}
@@ -26,4 +26,14 @@ public class AccessWorkspaceSwitcherToolbarAction implements Action {
     public Context getContext() {
         return Context.PRESENTATION;
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null && getClass() == obj.getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().getName().hashCode();
+    }
 }
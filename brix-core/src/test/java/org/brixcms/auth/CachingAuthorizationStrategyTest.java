@@ -0,0 +1,301 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.jcr.Item;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.mock.MockSessionStore;
+import org.apache.wicket.protocol.http.WebSession;
+import org.apache.wicket.request.IExceptionMapper;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.cycle.RequestCycleContext;
+import org.brixcms.auth.Action.Context;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.api.JcrWorkspace;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.site.auth.SiteNodeAction;
+import org.brixcms.plugin.site.auth.SiteNodeAction.Type;
+import org.brixcms.workspace.Workspace;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Test;
+
+public class CachingAuthorizationStrategyTest {
+    private final Workspace workspace = EasyMock.createNiceMock(Workspace.class);
+    private final Workspace other = EasyMock.createNiceMock(Workspace.class);
+    private int delegateCalls;
+
+    private final AuthorizationStrategy delegate = new AuthorizationStrategy() {
+        public boolean isActionAuthorized(Action action) {
+            ++delegateCalls;
+            return ((AbstractWorkspaceAction) action).getWorkspace() == workspace;
+        }
+    };
+
+    @After
+    public void detachThreadContext() {
+        ThreadContext.detach();
+    }
+
+    @Test
+    public void testEqualActionsAreAskedOncePerRequest() {
+        CachingAuthorizationStrategy strategy = new CachingAuthorizationStrategy(delegate);
+        bindRequestCycle();
+
+        for (int i = 0; i < 10; ++i) {
+            assertTrue(strategy.isActionAuthorized(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace)));
+            assertFalse(strategy.isActionAuthorized(new ViewWorkspaceAction(Context.ADMINISTRATION, other)));
+        }
+
+        assertEquals(2, delegateCalls);
+        assertEquals(20, strategy.getRequestCallCount());
+        assertEquals(2, strategy.getRequestDelegatedCallCount());
+    }
+
+    @Test
+    public void testDecisionsAreNotSharedAcrossRequests() {
+        CachingAuthorizationStrategy strategy = new CachingAuthorizationStrategy(delegate);
+        bindRequestCycle();
+        strategy.isActionAuthorized(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace));
+
+        ThreadContext.detach();
+        bindRequestCycle();
+        assertEquals(0, strategy.getRequestCallCount());
+        strategy.isActionAuthorized(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace));
+
+        assertEquals(2, delegateCalls);
+        assertEquals(2, strategy.getCallCount());
+        assertEquals(2, strategy.getDelegatedCallCount());
+    }
+
+    @Test
+    public void testInvalidateDiscardsRequestDecisions() {
+        CachingAuthorizationStrategy strategy = new CachingAuthorizationStrategy(delegate);
+        bindRequestCycle();
+        strategy.isActionAuthorized(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace));
+
+        strategy.invalidate();
+        strategy.isActionAuthorized(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace));
+
+        assertEquals(2, delegateCalls);
+    }
+
+    @Test
+    public void testEveryCallIsDelegatedWithoutRequestCycle() {
+        CachingAuthorizationStrategy strategy = new CachingAuthorizationStrategy(delegate);
+
+        strategy.isActionAuthorized(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace));
+        strategy.isActionAuthorized(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace));
+
+        assertEquals(2, delegateCalls);
+    }
+
+    @Test
+    public void testActionsAreComparedByValue() {
+        assertEquals(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace),
+                new ViewWorkspaceAction(Context.ADMINISTRATION, workspace));
+        assertEquals(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace).hashCode(),
+                new ViewWorkspaceAction(Context.ADMINISTRATION, workspace).hashCode());
+        assertNotEquals(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace),
+                new ViewWorkspaceAction(Context.PRESENTATION, workspace));
+        assertNotEquals(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace),
+                new ViewWorkspaceAction(Context.ADMINISTRATION, other));
+        assertNotEquals(new ViewWorkspaceAction(Context.ADMINISTRATION, workspace),
+                new AbstractWorkspaceAction(Context.ADMINISTRATION, workspace) {
+                });
+    }
+
+    @Test
+    public void testActionsComparedByIdentityAreNotCached() {
+        CachingAuthorizationStrategy strategy = new CachingAuthorizationStrategy(delegate);
+        bindRequestCycle();
+        Action action = new AbstractWorkspaceAction(Context.ADMINISTRATION, workspace) {
+        };
+
+        strategy.isActionAuthorized(action);
+        strategy.isActionAuthorized(action);
+
+        assertEquals(2, delegateCalls);
+        assertEquals(0, strategy.getRequestCallCount());
+    }
+
+    @Test
+    public void testNodeActionsHaveDetachedKeys() {
+        SiteNodeAction action = new SiteNodeAction(Context.ADMINISTRATION, Type.NODE_VIEW, node("/site/a"));
+        SiteNodeAction equal = new SiteNodeAction(Context.ADMINISTRATION, Type.NODE_VIEW, node("/site/a"));
+
+        assertEquals(action, equal);
+        assertEquals(action.getDetachedKey(), equal.getDetachedKey());
+        assertFalse(referencesNode(action.getDetachedKey()));
+        assertNotEquals(action.getDetachedKey(),
+                new SiteNodeAction(Context.ADMINISTRATION, Type.NODE_EDIT, node("/site/a")).getDetachedKey());
+        assertNotEquals(action.getDetachedKey(),
+                new SiteNodeAction(Context.ADMINISTRATION, Type.NODE_VIEW, node("/site/b")).getDetachedKey());
+    }
+
+    @Test
+    public void testSessionTierKeepsDecisionsAcrossRequests() {
+        MockApplication application = new MockApplication();
+        application.setSessionStoreProvider(MockSessionStore::new);
+        ThreadContext.setApplication(application);
+        bindRequestCycle();
+        Session session = new WebSession(RequestCycle.get().getRequest());
+        ThreadContext.setSession(session);
+        session.bind();
+
+        final List<Action> asked = new ArrayList<Action>();
+        CachingAuthorizationStrategy strategy = new CachingAuthorizationStrategy(new AuthorizationStrategy() {
+            public boolean isActionAuthorized(Action action) {
+                asked.add(action);
+                return true;
+            }
+        }).setSessionCacheTtl(Duration.ofMinutes(1));
+
+        assertTrue(strategy.isActionAuthorized(
+                new SiteNodeAction(Context.ADMINISTRATION, Type.NODE_VIEW, node("/site/a"))));
+        bindRequestCycle();
+        assertTrue(strategy.isActionAuthorized(
+                new SiteNodeAction(Context.ADMINISTRATION, Type.NODE_VIEW, node("/site/a"))));
+        assertEquals(1, asked.size());
+
+        strategy.invalidate();
+        bindRequestCycle();
+        strategy.isActionAuthorized(new SiteNodeAction(Context.ADMINISTRATION, Type.NODE_VIEW, node("/site/a")));
+        assertEquals(2, asked.size());
+    }
+
+    private static boolean referencesNode(Object key) {
+        if (key instanceof List<?> list) {
+            for (Object element : list) {
+                if (referencesNode(element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return key instanceof Item;
+    }
+
+    private static BrixNode node(String path) {
+        JcrWorkspace jcrWorkspace = EasyMock.createNiceMock(JcrWorkspace.class);
+        EasyMock.expect(jcrWorkspace.getName()).andReturn("default").anyTimes();
+        JcrSession session = EasyMock.createNiceMock(JcrSession.class);
+        EasyMock.expect(session.getWorkspace()).andReturn(jcrWorkspace).anyTimes();
+        Node delegate = EasyMock.createNiceMock(Node.class);
+        try {
+            EasyMock.expect(delegate.getPath()).andReturn(path).anyTimes();
+        } catch (RepositoryException e) {
+            throw new AssertionError(e);
+        }
+        EasyMock.replay(jcrWorkspace, session, delegate);
+        return new BrixNode(delegate, session);
+    }
+
+    private static void bindRequestCycle() {
+        Request request = new Request() {
+            private final Url url = Url.parse("");
+
+            @Override
+            public Url getUrl() {
+                return url;
+            }
+
+            @Override
+            public Url getClientUrl() {
+                return url;
+            }
+
+            @Override
+            public Locale getLocale() {
+                return Locale.ROOT;
+            }
+
+            @Override
+            public Charset getCharset() {
+                return StandardCharsets.UTF_8;
+            }
+
+            @Override
+            public Object getContainerRequest() {
+                return null;
+            }
+        };
+        Response response = new Response() {
+            @Override
+            public void write(CharSequence sequence) {
+            }
+
+            @Override
+            public void write(byte[] array) {
+            }
+
+            @Override
+            public void write(byte[] array, int offset, int length) {
+            }
+
+            @Override
+            public String encodeURL(CharSequence url) {
+                return url.toString();
+            }
+
+            @Override
+            public Object getContainerResponse() {
+                return null;
+            }
+        };
+        IRequestMapper requestMapper = new IRequestMapper() {
+            @Override
+            public IRequestHandler mapRequest(Request request) {
+                return null;
+            }
+
+            @Override
+            public int getCompatibilityScore(Request request) {
+                return 0;
+            }
+
+            @Override
+            public Url mapHandler(IRequestHandler requestHandler) {
+                return null;
+            }
+        };
+        IExceptionMapper exceptionMapper = exception -> null;
+        ThreadContext.setRequestCycle(new RequestCycle(
+                new RequestCycleContext(request, response, requestMapper, exceptionMapper)));
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.Item;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.brixcms.Brix;
+import org.brixcms.jcr.ChangeJournal.Entry;
+import org.brixcms.jcr.ChangeJournal.Type;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.base.event.Event;
+import org.brixcms.jcr.base.event.EventsListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChangeJournalTest {
+    private Repository repo;
+    private File home;
+    private Session session;
+    private ChangeJournal journal;
+    private String workspace;
+    private final AtomicInteger failingSessions = new AtomicInteger();
+
+    @Before
+    public void setupRepository() throws Exception {
+        home = new File(System.getProperty("java.io.tmpdir"), getClass().getName());
+        delete(home);
+        try (InputStream config = getClass().getResourceAsStream("wrapper/repository.xml")) {
+            repo = RepositoryImpl.create(RepositoryConfig.create(config, home.getAbsolutePath()));
+        }
+
+        session = login(null);
+        session.getWorkspace().getNamespaceRegistry().registerNamespace(Brix.NS, "http://brix-cms.googlecode.com");
+        Node site = session.getRootNode().addNode("site", "nt:unstructured");
+        site.addNode("section", "nt:unstructured").addNode("page", "nt:unstructured");
+        site.addNode("section2", "nt:unstructured");
+        session.getRootNode().addNode("outside", "nt:unstructured");
+        session.save();
+        workspace = session.getWorkspace().getName();
+
+        journal = new ChangeJournal(new JcrSessionFactory() {
+            public Session createSession(String workspace) {
+                if (failingSessions.getAndDecrement() > 0) {
+                    throw new CannotOpenJcrSessionException(workspace, new RepositoryException("Simulated failure"));
+                }
+                try {
+                    return login(workspace);
+                } catch (RepositoryException e) {
+                    throw new CannotOpenJcrSessionException(workspace, e);
+                }
+            }
+
+            public Session getCurrentSession(String workspace) {
+                return createSession(workspace);
+            }
+        }, "/site");
+    }
+
+    @After
+    public void cleanupRepository() {
+        if (session != null) {
+            session.logout();
+        }
+        if (repo != null) {
+            ((JackrabbitRepository) repo).shutdown();
+        }
+        delete(home);
+    }
+
+    @Test
+    public void testEntriesAfterSequence() {
+        assertNull(journal.getJournalId(workspace));
+        assertEquals(0, journal.getSequence(workspace));
+        assertEquals(0, journal.getEntries(workspace, 0).size());
+
+        journal.append(workspace, Arrays.asList(new Entry(0, Type.CREATED, "/site/a", null),
+                new Entry(0, Type.MODIFIED, "/site", null)));
+        assertEquals(3, journal.append(workspace,
+                Arrays.asList(new Entry(0, Type.MOVED, "/site/b", "/site/a"))));
+
+        assertNotNull(journal.getJournalId(workspace));
+        assertEquals(3, journal.getSequence(workspace));
+        List<Entry> entries = journal.getEntries(workspace, 1);
+        assertEquals(2, entries.size());
+        assertEquals(2, entries.get(0).getSequence());
+        assertEquals(Type.MOVED, entries.get(1).getType());
+        assertEquals("/site/b", entries.get(1).getPath());
+        assertEquals("/site/a", entries.get(1).getSourcePath());
+        assertEquals(0, journal.getEntries(workspace, 3).size());
+    }
+
+    @Test
+    public void testTrimmedEntriesAreNotReturned() {
+        for (int i = 0; i < 5; ++i) {
+            journal.append(workspace, Arrays.asList(new Entry(0, Type.MODIFIED, "/site", null)));
+        }
+        journal.trim(workspace, 3);
+
+        assertNull(journal.getEntries(workspace, 0));
+        assertNull(journal.getEntries(workspace, 2));
+        assertEquals(2, journal.getEntries(workspace, 3).size());
+        assertEquals(5, journal.getSequence(workspace));
+    }
+
+    @Test
+    public void testRecorderJournalsSavedChanges() throws Exception {
+        JcrSession wrapped = JcrSession.Wrapper.wrap(session);
+        wrapped.addEventsListener(journal.newRecorder(name -> true));
+
+        wrapped.getNode("/site").addNode("new", "nt:unstructured");
+        wrapped.getNode("/site/section").setProperty("title", "Section");
+        wrapped.move("/site/section/page", "/site/page");
+        wrapped.getNode("/site/section2").remove();
+        wrapped.getNode("/outside").addNode("ignored", "nt:unstructured");
+        wrapped.save();
+
+        Set<String> changes = new HashSet<String>();
+        for (Entry entry : journal.getEntries(workspace, 0)) {
+            changes.add(entry.getType() + " " + (entry.getSourcePath() != null ? entry.getSourcePath() + " " : "") +
+                    entry.getPath());
+        }
+        assertEquals(new HashSet<String>(Arrays.asList("CREATED /site/new", "MODIFIED /site/section",
+                "MOVED /site/section/page /site/page", "DELETED /site/section2")), changes);
+    }
+
+    @Test
+    public void testRecorderSkipsFilteredWorkspaces() {
+        JcrSession wrapped = JcrSession.Wrapper.wrap(session);
+        wrapped.addEventsListener(journal.newRecorder(name -> false));
+
+        wrapped.getNode("/site").addNode("new", "nt:unstructured");
+        wrapped.save();
+
+        assertEquals(new ArrayList<Entry>(), journal.getEntries(workspace, 0));
+    }
+
+    @Test
+    public void testFailedAppendResetsJournal() throws Exception {
+        journal.append(workspace, Arrays.asList(new Entry(0, Type.MODIFIED, "/site", null)));
+        String journalId = journal.getJournalId(workspace);
+
+        JcrSession wrapped = JcrSession.Wrapper.wrap(session);
+        wrapped.addEventsListener(journal.newRecorder(name -> true));
+        // the pending marker is written before the save, appending the entries afterwards fails
+        wrapped.addEventsListener(new EventsListener() {
+            public void handleEventsBeforeSave(Session session, Item item, List<Event> events) {
+                failingSessions.set(1);
+            }
+
+            public void handleEventsAfterSave(Session session, Item item, List<Event> events) {
+            }
+        });
+        wrapped.getNode("/site").addNode("lost", "nt:unstructured");
+        wrapped.save();
+
+        assertNotEquals(journalId, journal.getJournalId(workspace));
+        assertEquals(0, journal.getEntries(workspace, 1).size());
+        assertFalse(session.getNode("/" + ChangeJournal.NODE_NAME).getNodes("p*").hasNext());
+    }
+
+    @Test
+    public void testStalePendingMarkerReportsGap() throws Exception {
+        journal.append(workspace, Arrays.asList(new Entry(0, Type.MODIFIED, "/site", null)));
+        String journalId = journal.getJournalId(workspace);
+
+        // marker of a save that crashed before its changes were journaled
+        Calendar started = Calendar.getInstance();
+        started.add(Calendar.MILLISECOND, (int) -ChangeJournal.PENDING_TIMEOUT.toMillis() - 1000);
+        session.getNode("/" + ChangeJournal.NODE_NAME).addNode("pcrashed", "nt:unstructured")
+                .setProperty(Brix.NS_PREFIX + "started", started);
+        session.save();
+
+        assertNull(journal.getEntries(workspace, 0));
+        assertEquals(2, journal.append(workspace, Arrays.asList(new Entry(0, Type.MODIFIED, "/site", null))));
+        assertNotEquals(journalId, journal.getJournalId(workspace));
+        assertFalse(session.nodeExists("/" + ChangeJournal.NODE_NAME + "/pcrashed"));
+    }
+
+    private Session login(String workspace) throws RepositoryException {
+        return repo.login(new SimpleCredentials("admin", "admin".toCharArray()), workspace);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
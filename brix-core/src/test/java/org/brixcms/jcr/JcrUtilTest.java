@@ -0,0 +1,173 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JcrUtilTest {
+    private Repository repo;
+    private File home;
+    private Session session;
+
+    @Before
+    public void setupRepository() throws Exception {
+        home = new File(System.getProperty("java.io.tmpdir"), getClass().getName());
+        delete(home);
+        try (InputStream config = getClass().getResourceAsStream("wrapper/repository.xml")) {
+            repo = RepositoryImpl.create(RepositoryConfig.create(config, home.getAbsolutePath()));
+        }
+
+        session = login(null);
+        Node outside = session.getRootNode().addNode("outside", "nt:unstructured");
+        outside.addMixin("mix:referenceable");
+
+        Node site = session.getRootNode().addNode("site", "nt:unstructured");
+        Node sibling = site.addNode("section2", "nt:unstructured");
+        sibling.addMixin("mix:referenceable");
+        Node section = site.addNode("section", "nt:unstructured");
+        section.addMixin("mix:referenceable");
+        section.setProperty("title", "Section");
+        Node page = section.addNode("page", "nt:unstructured");
+        page.addMixin("mix:referenceable");
+        page.setProperty("template", section);
+        page.setProperty("links", new javax.jcr.Value[]{
+                session.getValueFactory().createValue(outside, true), session.getValueFactory().createValue(section, true)});
+        page.setProperty("sibling", sibling);
+        page.addNode("content", "nt:unstructured").setProperty("body", "<p>hello</p>");
+        session.save();
+
+        ((org.apache.jackrabbit.core.WorkspaceImpl) session.getWorkspace()).createWorkspace("target");
+    }
+
+    @After
+    public void cleanupRepository() {
+        if (session != null) {
+            session.logout();
+        }
+        if (repo != null) {
+            ((JackrabbitRepository) repo).shutdown();
+        }
+        delete(home);
+    }
+
+    @Test
+    public void cloneIntoOtherWorkspaceKeepsIdentifiers() throws Exception {
+        JcrSession source = JcrSession.Wrapper.wrap(session);
+        Session targetSession = login("target");
+        try {
+            JcrSession target = JcrSession.Wrapper.wrap(targetSession);
+            JcrNode section = source.getNode("/site/section");
+            JcrNode page = source.getNode("/site/section/page");
+
+            // the page is part of the section subtree and must not be copied twice
+            JcrUtil.cloneNodes(Arrays.asList(page, section, source.getNode("/site/section2")), target.getRootNode());
+            target.save();
+
+            Node copy = targetSession.getNode("/site/section");
+            assertEquals(section.getIdentifier(), copy.getIdentifier());
+            assertEquals("Section", copy.getProperty("title").getString());
+            assertFalse(copy.hasNode("page[2]"));
+
+            Node pageCopy = copy.getNode("page");
+            assertEquals(page.getIdentifier(), pageCopy.getIdentifier());
+            assertEquals(copy.getIdentifier(), pageCopy.getProperty("template").getNode().getIdentifier());
+            assertEquals(2, pageCopy.getProperty("links").getValues().length);
+            assertEquals("<p>hello</p>", pageCopy.getNode("content").getProperty("body").getString());
+        } finally {
+            targetSession.logout();
+        }
+    }
+
+    @Test
+    public void cloneWithinWorkspaceRemapsIdentifiers() throws Exception {
+        JcrSession source = JcrSession.Wrapper.wrap(session);
+        JcrNode section = source.getNode("/site/section");
+        JcrNode copies = source.getRootNode().addNode("copies", "nt:unstructured");
+        source.save();
+
+        JcrUtil.cloneNodes(Arrays.asList(section), copies);
+        source.save();
+
+        Node copy = session.getNode("/copies/site/section");
+        Node pageCopy = copy.getNode("page");
+        assertNotEquals(section.getIdentifier(), copy.getIdentifier());
+        assertNotEquals(section.getNode("page").getIdentifier(), pageCopy.getIdentifier());
+
+        // references inside the cloned subtree point to the clones, other references are kept
+        assertEquals(copy.getIdentifier(), pageCopy.getProperty("template").getString());
+        assertEquals(session.getNode("/outside").getIdentifier(),
+                pageCopy.getProperty("links").getValues()[0].getString());
+        assertEquals(copy.getIdentifier(), pageCopy.getProperty("links").getValues()[1].getString());
+
+        // the original is untouched
+        assertEquals(section.getIdentifier(),
+                session.getNode("/site/section/page").getProperty("template").getString());
+    }
+
+    @Test
+    public void unsatisfiedDependenciesDoNotMatchPathPrefixes() throws Exception {
+        JcrSession source = JcrSession.Wrapper.wrap(session);
+        List<JcrNode> nodes = Arrays.asList(source.getNode("/site/section"));
+
+        // /site/section2 is not part of the /site/section subtree even though the path starts with it
+        Map<JcrNode, List<JcrNode>> dependencies = JcrUtil.getUnsatisfiedDependencies(nodes, null);
+        assertEquals(1, dependencies.size());
+        JcrNode dependent = dependencies.keySet().iterator().next();
+        assertEquals("/site/section/page", dependent.getPath());
+        assertEquals(Arrays.asList("/site/section2"), Arrays.asList(dependencies.get(dependent).get(0).getPath()));
+
+        nodes = Arrays.asList(source.getNode("/site/section"), source.getNode("/site/section2"));
+        assertTrue(JcrUtil.getUnsatisfiedDependencies(nodes, null).isEmpty());
+    }
+
+    private Session login(String workspace) throws RepositoryException {
+        return repo.login(new SimpleCredentials("admin", "admin".toCharArray()), workspace);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
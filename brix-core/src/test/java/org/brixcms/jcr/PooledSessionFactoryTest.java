@@ -0,0 +1,235 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.request.IExceptionMapper;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.cycle.RequestCycleContext;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Test;
+
+public class PooledSessionFactoryTest {
+    private final Credentials credentials = new SimpleCredentials("admin", "admin".toCharArray());
+
+    @After
+    public void detachThreadContext() {
+        ThreadContext.detach();
+    }
+
+    @Test
+    public void testSessionIsReusedWithinAndAcrossRequests() throws Exception {
+        Session session = EasyMock.createNiceMock(Session.class);
+        EasyMock.expect(session.isLive()).andStubReturn(true);
+        session.refresh(false);
+        EasyMock.expectLastCall().times(2);
+        EasyMock.replay(session);
+        PooledSessionFactory factory = new PooledSessionFactory(newRepository(session), credentials, 2);
+
+        RequestCycle first = bindRequestCycle();
+        assertSame(session, factory.getCurrentSession("ws"));
+        assertSame(session, factory.getCurrentSession("ws"));
+        assertEquals(1, factory.getActiveCount("ws"));
+        first.getListeners().onDetach(first);
+        assertEquals(0, factory.getActiveCount("ws"));
+        assertEquals(1, factory.getIdleCount("ws"));
+
+        ThreadContext.detach();
+        RequestCycle second = bindRequestCycle();
+        assertSame(session, factory.getCurrentSession("ws"));
+        second.getListeners().onDetach(second);
+
+        assertEquals(1, factory.getCreatedCount());
+        assertEquals(2, factory.getBorrowCount());
+        assertEquals(2, factory.getReturnCount());
+        EasyMock.verify(session);
+    }
+
+    @Test
+    public void testConcurrentRequestsGetDifferentSessions() throws Exception {
+        PooledSessionFactory factory = new PooledSessionFactory(newRepository(newSession(), newSession()),
+                credentials, 2);
+
+        Session first = factory.getCurrentSession("ws");
+        AtomicReference<Session> second = new AtomicReference<Session>();
+        Thread thread = new Thread(() -> {
+            second.set(factory.getCurrentSession("ws"));
+            factory.cleanup();
+        });
+        thread.start();
+        thread.join();
+
+        assertNotSame(first, second.get());
+        factory.cleanup();
+        assertEquals(2, factory.getIdleCount("ws"));
+    }
+
+    @Test
+    public void testBorrowTimesOutWhenPoolIsExhausted() throws Exception {
+        PooledSessionFactory factory = new PooledSessionFactory(newRepository(newSession()), credentials, 1)
+                .setBorrowTimeout(Duration.ofMillis(10));
+        factory.getCurrentSession("ws");
+
+        AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        Thread thread = new Thread(() -> {
+            try {
+                factory.getCurrentSession("ws");
+            } catch (RuntimeException e) {
+                failure.set(e);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        if (!(failure.get() instanceof CannotOpenJcrSessionException)) {
+            fail("Expected the borrow to time out");
+        }
+        assertEquals(1, factory.getTimeoutCount());
+        assertEquals(1, factory.getActiveCount("ws"));
+    }
+
+    @Test
+    public void testInvalidIdleSessionIsReplaced() throws Exception {
+        Session stale = newSession();
+        Session fresh = newSession();
+        PooledSessionFactory factory = new PooledSessionFactory(newRepository(stale, fresh), credentials, 1) {
+            @Override
+            protected boolean validate(Session session) {
+                return session != stale;
+            }
+        };
+        factory.getCurrentSession("ws");
+        factory.cleanup();
+
+        assertSame(fresh, factory.getCurrentSession("ws"));
+        assertEquals(1, factory.getValidationFailureCount());
+        assertEquals(1, factory.getDestroyedCount());
+    }
+
+    private static Session newSession() {
+        Session session = EasyMock.createNiceMock(Session.class);
+        EasyMock.expect(session.isLive()).andStubReturn(true);
+        EasyMock.replay(session);
+        return session;
+    }
+
+    private Repository newRepository(Session... sessions) throws RepositoryException {
+        Repository repository = EasyMock.createMock(Repository.class);
+        for (Session session : sessions) {
+            EasyMock.expect(repository.login(credentials, "ws")).andReturn(session);
+        }
+        EasyMock.replay(repository);
+        return repository;
+    }
+
+    private static RequestCycle bindRequestCycle() {
+        Request request = new Request() {
+            private final Url url = Url.parse("");
+
+            @Override
+            public Url getUrl() {
+                return url;
+            }
+
+            @Override
+            public Url getClientUrl() {
+                return url;
+            }
+
+            @Override
+            public Locale getLocale() {
+                return Locale.ROOT;
+            }
+
+            @Override
+            public Charset getCharset() {
+                return StandardCharsets.UTF_8;
+            }
+
+            @Override
+            public Object getContainerRequest() {
+                return null;
+            }
+        };
+        Response response = new Response() {
+            @Override
+            public void write(CharSequence sequence) {
+            }
+
+            @Override
+            public void write(byte[] array) {
+            }
+
+            @Override
+            public void write(byte[] array, int offset, int length) {
+            }
+
+            @Override
+            public String encodeURL(CharSequence url) {
+                return url.toString();
+            }
+
+            @Override
+            public Object getContainerResponse() {
+                return null;
+            }
+        };
+        IRequestMapper requestMapper = new IRequestMapper() {
+            @Override
+            public IRequestHandler mapRequest(Request request) {
+                return null;
+            }
+
+            @Override
+            public int getCompatibilityScore(Request request) {
+                return 0;
+            }
+
+            @Override
+            public Url mapHandler(IRequestHandler requestHandler) {
+                return null;
+            }
+        };
+        IExceptionMapper exceptionMapper = exception -> null;
+        RequestCycle requestCycle = new RequestCycle(
+                new RequestCycleContext(request, response, requestMapper, exceptionMapper));
+        ThreadContext.setRequestCycle(requestCycle);
+        return requestCycle;
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jcr.Node;
+import javax.jcr.PropertyType;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.brixcms.jcr.ReferenceIntegrityScanner.Checkpoint;
+import org.brixcms.jcr.ReferenceIntegrityScanner.Options;
+import org.brixcms.jcr.ReferenceIntegrityScanner.ReferenceEntry;
+import org.brixcms.jcr.ReferenceIntegrityScanner.ScanResult;
+import org.brixcms.jcr.ReferenceIntegrityScanner.ScanSummary;
+import org.brixcms.jcr.ReferenceIntegrityScanner.Sink;
+import org.brixcms.jcr.api.JcrSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReferenceIntegrityScannerTest {
+    private Repository repo;
+    private File home;
+    private String missing;
+
+    @Before
+    public void setupRepository() throws Exception {
+        home = new File(System.getProperty("java.io.tmpdir"), getClass().getName());
+        delete(home);
+        try (InputStream config = getClass().getResourceAsStream("wrapper/repository.xml")) {
+            repo = RepositoryImpl.create(RepositoryConfig.create(config, home.getAbsolutePath()));
+        }
+
+        Session session = login();
+        try {
+            Node targets = session.getRootNode().addNode("targets", "nt:unstructured");
+            Node target = targets.addNode("target", "nt:unstructured");
+            target.addMixin("mix:referenceable");
+            Node removed = targets.addNode("removed", "nt:unstructured");
+            removed.addMixin("mix:referenceable");
+            session.save();
+            missing = removed.getIdentifier();
+
+            Node scan = session.getRootNode().addNode("scan", "nt:unstructured");
+            scan.setProperty("root", target);
+            for (int i = 0; i < 4; i++) {
+                Node child = scan.addNode("child" + i, "nt:unstructured");
+                child.addNode("leaf", "nt:unstructured").setProperty("ref", target);
+                child.setProperty("weak", session.getValueFactory().createValue(removed, true));
+                child.setProperty("link", missing, PropertyType.STRING);
+                child.setProperty("title", "not a uuid");
+            }
+            session.save();
+            removed.remove();
+            session.save();
+        } finally {
+            session.logout();
+        }
+    }
+
+    @After
+    public void cleanupRepository() {
+        if (repo != null) {
+            ((JackrabbitRepository) repo).shutdown();
+        }
+        delete(home);
+    }
+
+    @Test
+    public void uuidShapesAreRecognizedWithoutRegex() {
+        assertTrue(ReferenceIntegrityScanner.looksLikeUuid("0b6a2a4e-8c5b-4b1e-9c1d-3f2a1b0c9d8e"));
+        assertTrue(ReferenceIntegrityScanner.looksLikeUuid("0B6A2A4E-8C5B-1B1E-AC1D-3F2A1B0C9D8E"));
+        assertFalse(ReferenceIntegrityScanner.looksLikeUuid("0b6a2a4e-8c5b-6b1e-9c1d-3f2a1b0c9d8e"));
+        assertFalse(ReferenceIntegrityScanner.looksLikeUuid("0b6a2a4e-8c5b-4b1e-7c1d-3f2a1b0c9d8e"));
+        assertFalse(ReferenceIntegrityScanner.looksLikeUuid("0b6a2a4e-8c5b-4b1e-9c1d-3f2a1b0c9d8g"));
+        assertFalse(ReferenceIntegrityScanner.looksLikeUuid("0b6a2a4e8c5b-4b1e-9c1d-3f2a1b0c9d8e0"));
+        assertFalse(ReferenceIntegrityScanner.looksLikeUuid(null));
+    }
+
+    @Test
+    public void parallelScanStreamsSameFindingsAsInMemoryScan() throws Exception {
+        Options options = new Options().setIncludeStringUuidCandidates(true).addStringReferencePropertyName("link");
+
+        Session session = login();
+        ScanResult expected;
+        try {
+            expected = new ReferenceIntegrityScanner().scan(JcrSession.Wrapper.wrap(session).getNode("/scan"), options);
+        } finally {
+            session.logout();
+        }
+
+        List<String> streamed = Collections.synchronizedList(new ArrayList<String>());
+        ScanSummary summary = new ReferenceIntegrityScanner().scan(new TestSessionFactory(), null, "/scan",
+                options.setThreads(3), entry -> streamed.add(describe(entry)));
+
+        List<String> collected = new ArrayList<String>();
+        for (ReferenceEntry entry : expected.getEntries()) {
+            collected.add(describe(entry));
+        }
+        Collections.sort(streamed);
+        Collections.sort(collected);
+        assertEquals(collected, streamed);
+        assertEquals(13, summary.getTotalCount());
+        assertEquals(expected.getMissingCount(), summary.getMissingCount());
+        assertEquals(8, summary.getMissingCount());
+        assertEquals(Integer.valueOf(8), summary.getMissingByTargetIdentifier().get(missing));
+        assertEquals(Integer.valueOf(4), summary.getMissingByPropertyName().get("weak"));
+    }
+
+    @Test
+    public void resumedScanSkipsCompletedSubtrees() throws Exception {
+        Path file = new File(home, "scan.checkpoint").toPath();
+        Files.write(file, List.of("/scan", "/scan/child0", "/scan/child2"));
+
+        List<String> streamed = new ArrayList<String>();
+        try (Checkpoint checkpoint = Checkpoint.open(file, true)) {
+            ScanSummary summary = new ReferenceIntegrityScanner().scan(new TestSessionFactory(), null, "/scan",
+                    new Options().setThreads(2).setCheckpoint(checkpoint), entry -> streamed.add(describe(entry)));
+
+            assertEquals(4, summary.getTotalCount());
+            assertEquals(5, checkpoint.getCompletedCount());
+        }
+        for (String entry : streamed) {
+            assertTrue(entry, entry.startsWith("/scan/child1") || entry.startsWith("/scan/child3"));
+        }
+        assertEquals(List.of("/scan", "/scan/child0", "/scan/child2", "/scan/child1", "/scan/child3").size(),
+                Files.readAllLines(file).size());
+
+        // starting over discards the recorded units
+        try (Checkpoint checkpoint = Checkpoint.open(file, false)) {
+            assertEquals(0, checkpoint.getCompletedCount());
+        }
+    }
+
+    @Test
+    public void splitScanRecordsUnitsAfterSinkCompletedThem() throws Exception {
+        Path file = new File(home, "split.checkpoint").toPath();
+        final List<String> streamed = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> units = Collections.synchronizedList(new ArrayList<String>());
+        try (final Checkpoint checkpoint = Checkpoint.open(file, false)) {
+            Sink sink = new Sink() {
+                @Override
+                public void accept(ReferenceEntry entry) {
+                    streamed.add(describe(entry));
+                }
+
+                @Override
+                public void unitCompleted(String unit) {
+                    assertFalse(unit, checkpoint.isCompleted(unit));
+                    units.add(unit);
+                }
+            };
+            ScanSummary summary = new ReferenceIntegrityScanner().scan(new TestSessionFactory(), null, "/scan",
+                    new Options().setThreads(4).setSplitDepth(2).setCheckpoint(checkpoint), sink);
+
+            assertEquals(9, summary.getTotalCount());
+            assertEquals(9, checkpoint.getCompletedCount());
+        }
+        assertEquals(9, streamed.size());
+        assertTrue(units.contains("/scan"));
+        assertTrue(units.contains("/scan/child2/"));
+        assertTrue(units.contains("/scan/child2/leaf"));
+        assertFalse(units.contains("/scan/child2"));
+
+        // properties of split nodes are not mistaken for their subtree when resuming
+        streamed.clear();
+        Files.write(file, List.of("/scan", "/scan/child0/", "/scan/child1/leaf"));
+        try (Checkpoint checkpoint = Checkpoint.open(file, true)) {
+            new ReferenceIntegrityScanner().scan(new TestSessionFactory(), null, "/scan",
+                    new Options().setSplitDepth(2).setCheckpoint(checkpoint), entry -> streamed.add(describe(entry)));
+        }
+        assertEquals(6, streamed.size());
+    }
+
+    private static String describe(ReferenceEntry entry) {
+        return entry.getSourceNodePath() + " " + entry.getPropertyName() + " " + entry.getTargetIdentifier() + " "
+                + entry.isExists() + " " + entry.getKind();
+    }
+
+    private Session login() throws RepositoryException {
+        return repo.login(new SimpleCredentials("admin", "admin".toCharArray()));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private class TestSessionFactory implements JcrSessionFactory {
+        @Override
+        public Session createSession(String workspace) {
+            try {
+                return repo.login(new SimpleCredentials("admin", "admin".toCharArray()), workspace);
+            } catch (RepositoryException e) {
+                throw new CannotOpenJcrSessionException(workspace, e);
+            }
+        }
+
+        @Override
+        public Session getCurrentSession(String workspace) {
+            return createSession(workspace);
+        }
+    }
+}
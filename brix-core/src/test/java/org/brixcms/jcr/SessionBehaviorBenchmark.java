@@ -0,0 +1,173 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.brixcms.Brix;
+import org.brixcms.auth.AuthorizationStrategy;
+import org.brixcms.config.BrixConfig;
+import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.api.wrapper.NodeWrapper;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.jcr.wrapper.ResourceNode;
+import org.brixcms.plugin.site.page.PageSiteNodePlugin;
+import org.brixcms.plugin.site.page.TemplateSiteNodePlugin;
+import org.brixcms.plugin.site.page.global.GlobalContainerNode;
+
+/**
+ * Measures node wraps per second of {@link SessionBehavior} against the linear factory probe it replaced. Not run as
+ * part of the test suite, start it with the test classpath:
+ * <p>
+ * <pre>
+ * java -cp ... org.brixcms.jcr.SessionBehaviorBenchmark [nodes] [wrapsPerNodeAndRequest] [requests]
+ * </pre>
+ * <p>
+ * Every simulated request uses a fresh session behavior and wraps each node several times, as rendering does.
+ */
+public class SessionBehaviorBenchmark {
+    private static final String[] TYPES = {PageSiteNodePlugin.TYPE, TemplateSiteNodePlugin.TYPE,
+            GlobalContainerNode.TYPE, null};
+
+    public static void main(String[] args) throws Exception {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int wrapsPerNode = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        File home = new File(System.getProperty("java.io.tmpdir"), SessionBehaviorBenchmark.class.getName());
+        delete(home);
+        JackrabbitRepository repository;
+        try (InputStream config = SessionBehaviorBenchmark.class.getResourceAsStream("wrapper/repository.xml")) {
+            repository = RepositoryImpl.create(RepositoryConfig.create(config, home.getAbsolutePath()));
+        }
+        try {
+            Session session = repository.login(new SimpleCredentials("admin", "admin".toCharArray()));
+            try {
+                List<Node> nodes = createNodes(session, nodeCount);
+                Brix brix = new BenchmarkBrix();
+                List<JcrNodeWrapperFactory> factories = new ArrayList<JcrNodeWrapperFactory>(
+                        brix.getConfig().getRegistry().lookupCollection(JcrNodeWrapperFactory.POINT));
+
+                // warm up both variants before measuring
+                run(brix, factories, session, nodes, wrapsPerNode, requests / 4, true);
+                run(brix, factories, session, nodes, wrapsPerNode, requests / 4, false);
+
+                report("linear probe", run(brix, factories, session, nodes, wrapsPerNode, requests, true));
+                report("session behavior", run(brix, factories, session, nodes, wrapsPerNode, requests, false));
+            } finally {
+                session.logout();
+            }
+        } finally {
+            repository.shutdown();
+            delete(home);
+        }
+    }
+
+    private static List<Node> createNodes(Session session, int count) throws RepositoryException {
+        try {
+            session.getWorkspace().getNamespaceRegistry().registerNamespace(Brix.NS, "http://brix-cms.googlecode.com");
+        } catch (RepositoryException ignore) {
+        }
+        Node parent = session.getRootNode().addNode("benchmark", "nt:unstructured");
+        List<Node> nodes = new ArrayList<Node>(count);
+        for (int i = 0; i < count; i++) {
+            Node node = parent.addNode("node" + i, "nt:unstructured");
+            String type = TYPES[i % TYPES.length];
+            if (type != null) {
+                node.setProperty(Brix.NS_PREFIX + "nodeType", type);
+            }
+            nodes.add(node);
+        }
+        session.save();
+        return nodes;
+    }
+
+    private static double run(Brix brix, List<JcrNodeWrapperFactory> factories, Session session, List<Node> nodes,
+                              int wrapsPerNode, int requests, boolean linear) {
+        long wraps = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < requests; r++) {
+            SessionBehavior behavior = new SessionBehavior(brix);
+            JcrSession jcrSession = JcrSession.Wrapper.wrap(session, behavior);
+            for (int w = 0; w < wrapsPerNode; w++) {
+                for (Node node : nodes) {
+                    JcrNode wrapped = linear
+                            ? linearWrap(brix, factories, node, jcrSession)
+                            : behavior.wrap(node, jcrSession);
+                    if (wrapped == null) {
+                        throw new IllegalStateException();
+                    }
+                    wraps++;
+                }
+            }
+        }
+        return wraps / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * The wrap implementation before node type dispatch was introduced
+     */
+    private static JcrNode linearWrap(Brix brix, List<JcrNodeWrapperFactory> factories, Node node,
+                                      JcrSession session) {
+        JcrNode n = new NodeWrapper(node, session);
+        for (JcrNodeWrapperFactory factory : factories) {
+            if (factory.canWrap(brix, n)) {
+                return factory.wrap(brix, node, session);
+            }
+        }
+        if (ResourceNode.FACTORY.canWrap(brix, n)) {
+            return ResourceNode.FACTORY.wrap(brix, node, session);
+        }
+        return new BrixNode(node, session);
+    }
+
+    private static void report(String name, double wrapsPerSecond) {
+        System.out.println(String.format(Locale.ROOT, "%-20s %,12.0f wraps/s", name, wrapsPerSecond));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static class BenchmarkBrix extends Brix {
+        private BenchmarkBrix() {
+            super(new BrixConfig(null, null, null));
+        }
+
+        @Override
+        public AuthorizationStrategy newAuthorizationStrategy() {
+            return null;
+        }
+    }
+}
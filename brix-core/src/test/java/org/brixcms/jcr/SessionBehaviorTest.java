@@ -0,0 +1,158 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.Session;
+
+import org.brixcms.Brix;
+import org.brixcms.auth.AuthorizationStrategy;
+import org.brixcms.config.BrixConfig;
+import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+public class SessionBehaviorTest {
+    private static final String TYPE = "test:typed";
+
+    @Test
+    public void typedFactoryIsSelectedByNodeType() throws Exception {
+        Brix brix = new TestBrix();
+        brix.getConfig().getRegistry().register(JcrNodeWrapperFactory.POINT, new TypedFactory());
+        SessionBehavior behavior = new SessionBehavior(brix);
+        JcrSession session = JcrSession.Wrapper.wrap(EasyMock.createNiceMock(Session.class), behavior);
+
+        JcrNode wrapped = behavior.wrap(typedNode("id", 1), session);
+
+        assertTrue(wrapped instanceof TypedNode);
+    }
+
+    @Test
+    public void nodeTypeIsResolvedOncePerNode() throws Exception {
+        Brix brix = new TestBrix();
+        brix.getConfig().getRegistry().register(JcrNodeWrapperFactory.POINT, new TypedFactory());
+        SessionBehavior behavior = new SessionBehavior(brix);
+        JcrSession session = JcrSession.Wrapper.wrap(EasyMock.createNiceMock(Session.class), behavior);
+        Node node = typedNode("id", 1);
+
+        behavior.wrap(node, session);
+        behavior.wrap(node, session);
+
+        EasyMock.verify(node);
+    }
+
+    @Test
+    public void invalidatedWrappersResolveNodeTypeAgain() throws Exception {
+        Brix brix = new TestBrix();
+        brix.getConfig().getRegistry().register(JcrNodeWrapperFactory.POINT, new TypedFactory());
+        SessionBehavior behavior = new SessionBehavior(brix);
+        JcrSession session = JcrSession.Wrapper.wrap(EasyMock.createNiceMock(Session.class), behavior);
+        Node node = typedNode("id", 2);
+
+        behavior.wrap(node, session);
+        session.clearIdentifierCache();
+        behavior.wrap(node, session);
+
+        EasyMock.verify(node);
+    }
+
+    @Test
+    public void untypedFactoryRegisteredFirstTakesPrecedence() throws Exception {
+        Brix brix = new TestBrix();
+        UntypedFactory untyped = new UntypedFactory();
+        brix.getConfig().getRegistry().register(JcrNodeWrapperFactory.POINT, untyped);
+        brix.getConfig().getRegistry().register(JcrNodeWrapperFactory.POINT, new TypedFactory());
+        SessionBehavior behavior = new SessionBehavior(brix);
+        JcrSession session = JcrSession.Wrapper.wrap(EasyMock.createNiceMock(Session.class), behavior);
+
+        JcrNode wrapped = behavior.wrap(typedNode("id", 1), session);
+
+        assertTrue(wrapped instanceof UntypedNode);
+        assertEquals(1, untyped.probes);
+    }
+
+    private static Node typedNode(String identifier, int resolutions) throws Exception {
+        Node node = EasyMock.createNiceMock(Node.class);
+        Property property = EasyMock.createNiceMock(Property.class);
+        EasyMock.expect(node.getIdentifier()).andReturn(identifier).anyTimes();
+        EasyMock.expect(node.getPath()).andReturn("/content/" + identifier).anyTimes();
+        EasyMock.expect(node.hasProperty("brix:nodeType")).andReturn(true).times(resolutions);
+        EasyMock.expect(node.getProperty("brix:nodeType")).andReturn(property).times(resolutions);
+        EasyMock.expect(property.getString()).andReturn(TYPE).anyTimes();
+        EasyMock.replay(node, property);
+        return node;
+    }
+
+    private static class TypedFactory extends JcrNodeWrapperFactory {
+        @Override
+        public boolean canWrap(Brix brix, JcrNode node) {
+            return TYPE.equals(BrixNode.getNodeType(node));
+        }
+
+        @Override
+        public String getNodeType() {
+            return TYPE;
+        }
+
+        @Override
+        public JcrNode wrap(Brix brix, Node node, JcrSession session) {
+            return new TypedNode(node, session);
+        }
+    }
+
+    private static class UntypedFactory extends JcrNodeWrapperFactory {
+        private int probes;
+
+        @Override
+        public boolean canWrap(Brix brix, JcrNode node) {
+            probes++;
+            return true;
+        }
+
+        @Override
+        public JcrNode wrap(Brix brix, Node node, JcrSession session) {
+            return new UntypedNode(node, session);
+        }
+    }
+
+    private static class TypedNode extends BrixNode {
+        private TypedNode(Node delegate, JcrSession session) {
+            super(delegate, session);
+        }
+    }
+
+    private static class UntypedNode extends BrixNode {
+        private UntypedNode(Node delegate, JcrSession session) {
+            super(delegate, session);
+        }
+    }
+
+    private static class TestBrix extends Brix {
+        private TestBrix() {
+            super(new BrixConfig(null, null, null));
+        }
+
+        @Override
+        public AuthorizationStrategy newAuthorizationStrategy() {
+            return null;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.SimpleCredentials;
 import javax.jcr.Workspace;
+import javax.jcr.observation.EventIterator;
 
 import org.apache.jackrabbit.api.JackrabbitRepository;
 import org.apache.jackrabbit.core.RepositoryImpl;
@@ -32,6 +33,8 @@ import org.brixcms.jcr.SessionBehavior;
 import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.jcr.base.EventUtil;
+import org.brixcms.jcr.base.SaveEvent;
+import org.brixcms.jcr.base.SaveEventListener;
 import org.junit.After;
 import org.junit.Test;
 
@@ -269,6 +272,48 @@ public class BrixFileNodeTest {
         assertEquals(file.calculateContentSha256(), recomputed);
     }
 
+    @Test
+    public void savingOnlyTheHashRaisesNoSaveEvent() throws IOException, RepositoryException {
+        setupRepository();
+
+        JcrSession session = login(new SessionBehavior(new TestBrix()));
+        JcrNode root = session.getRootNode().addNode("root", "nt:folder");
+        BrixFileNode file = BrixFileNode.initialize(root.addNode("asset.css", "nt:file"), "text/css");
+        file.setData("body");
+        root.save();
+
+        final List<String> saved = new ArrayList<String>();
+        SaveEventListener listener = new SaveEventListener() {
+            @Override
+            public void onEvent(EventIterator events) {
+                while (events.hasNext()) {
+                    try {
+                        saved.add(((SaveEvent) events.nextEvent()).getPath());
+                    } catch (RepositoryException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        };
+        EventUtil.registerSaveEventListener(listener);
+        try {
+            file.getProperty(Brix.NS_PREFIX + "contentSha256LastModified").remove();
+            session.save();
+
+            file.ensureContentSha256();
+            assertTrue(saved.isEmpty());
+            assertFalse(session.hasPendingChanges());
+
+            // saves that carry other changes are announced as usual
+            file.getProperty(Brix.NS_PREFIX + "contentSha256LastModified").remove();
+            file.getNode("jcr:content").setProperty("jcr:encoding", "UTF-8");
+            file.ensureContentSha256();
+            assertEquals(List.of("/root/asset.css"), saved);
+        } finally {
+            EventUtil.unregisterSaveEventListener(listener);
+        }
+    }
+
     private static void registerBrixNodeTypes(Workspace workspace) throws RepositoryException {
         try {
             workspace.getNamespaceRegistry().registerNamespace(Brix.NS, "http://brix-cms.googlecode.com");
@@ -143,6 +143,77 @@ public class MarkupCacheTest {
         assertEquals(2, markupSource.generatedMarkupCount);
     }
 
+    @Test
+    public void statsReportHitsMissesAndLoads() {
+        CountingMarkupCacheStats stats = new CountingMarkupCacheStats();
+        MarkupCache cache = new MarkupCache(MarkupCache.DEFAULT_MAX_WEIGHT, stats);
+        TestComponent component = new TestComponent(nodeInWorkspace("production", "page-id"), new TestMarkupSource());
+
+        cache.getMarkup(component);
+        cache.getMarkup(component);
+        cache.getMarkup(component);
+
+        assertEquals(2, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getLoadCount());
+        assertEquals(0, stats.getEvictionCount());
+        assertEquals(1, cache.size());
+        assertTrue(cache.getWeight() > 0);
+    }
+
+    @Test
+    public void boundedCacheKeepsFrequentlyUsedMarkupWhenScanned() {
+        CountingMarkupCacheStats stats = new CountingMarkupCacheStats();
+        // room for ten markup instances of the test sources
+        MarkupCache cache = new MarkupCache(640, stats);
+        TestMarkupSource hotSource = new TestMarkupSource();
+        TestComponent hot = new TestComponent(nodeInWorkspace("production", "hot"), hotSource);
+        for (int i = 0; i < 20; ++i) {
+            cache.getMarkup(hot);
+        }
+
+        // a crawler requesting many pages exactly once
+        for (int i = 0; i < 100; ++i) {
+            cache.getMarkup(new TestComponent(nodeInWorkspace("production", "page-" + i), new TestMarkupSource()));
+        }
+        cache.getMarkup(hot);
+
+        assertEquals(1, hotSource.generatedMarkupCount);
+        assertTrue(cache.getWeight() <= cache.getMaxWeight());
+        assertEquals(91, stats.getEvictionCount());
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void invalidatingTemplateDiscardsMarkupThatDependsOnIt() {
+        MarkupCache cache = new MarkupCache();
+        BrixNode template = nodeInWorkspace("production", "template-id");
+        TestMarkupSource pageSource = new TestMarkupSource() {
+            @Override
+            public Object getExpirationToken() {
+                MarkupCache.recordDependency(template);
+                return super.getExpirationToken();
+            }
+        };
+        TestMarkupSource otherSource = new TestMarkupSource();
+        TestComponent page = new TestComponent(nodeInWorkspace("production", "page-id"), pageSource);
+        TestComponent other = new TestComponent(nodeInWorkspace("production", "other-id"), otherSource);
+        cache.getMarkup(page);
+        cache.getMarkup(other);
+
+        cache.invalidate("production", "template-id");
+        cache.getMarkup(page);
+        cache.getMarkup(other);
+
+        assertEquals(2, pageSource.generatedMarkupCount);
+        assertEquals(1, otherSource.generatedMarkupCount);
+
+        // the markup itself is still indexed under its own node
+        cache.invalidate("production", "other-id");
+        cache.getMarkup(other);
+        assertEquals(2, otherSource.generatedMarkupCount);
+    }
+
     private static BrixNode nodeInWorkspace(String workspaceName, String identifier) {
         JcrSession session = EasyMock.createMock(JcrSession.class);
         JcrWorkspace workspace = EasyMock.createMock(JcrWorkspace.class);
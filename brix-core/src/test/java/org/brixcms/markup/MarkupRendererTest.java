@@ -0,0 +1,123 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.markup;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.brixcms.markup.tag.Item;
+import org.brixcms.markup.tag.Tag;
+import org.brixcms.markup.tag.Text;
+import org.brixcms.markup.tag.simple.SimpleComment;
+import org.brixcms.markup.tag.simple.SimpleTag;
+import org.brixcms.markup.tag.simple.SimpleText;
+import org.junit.Test;
+
+public class MarkupRendererTest {
+    @Test
+    public void staticItemsArePrecompiledBetweenDynamicSlots() {
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        attributes.put("class", "content");
+        GeneratedMarkup markup = new GeneratedMarkup(new ListMarkupSource("<!DOCTYPE html>",
+                new SimpleTag("div", Tag.Type.OPEN, attributes),
+                new SimpleText("Hello "),
+                new DynamicText("World"),
+                new SimpleComment("note"),
+                new SimpleTag("br", Tag.Type.OPEN_CLOSE, Collections.<String, String>emptyMap()),
+                new DynamicTag("span"),
+                new SimpleTag("div", Tag.Type.CLOSE, null)));
+
+        assertEquals(Arrays.asList("<!DOCTYPE html><div class=\"content\">Hello ", "<!-- note --><br />", "</div>"),
+                Arrays.asList(markup.staticSegments));
+        assertEquals(2, markup.slots.length);
+    }
+
+    @Test
+    public void renderedMarkupContainsPostprocessedDynamicTags() {
+        GeneratedMarkup markup = new GeneratedMarkup(new ListMarkupSource(null,
+                new SimpleTag("p", Tag.Type.OPEN, Collections.<String, String>emptyMap()),
+                new DynamicText("text"),
+                new DynamicTag("span"),
+                new SimpleTag("p", Tag.Type.CLOSE, null)));
+        final List<String> postprocessed = new ArrayList<String>();
+
+        String rendered = new MarkupRenderer(markup) {
+            @Override
+            void postprocessTagAttributes(Tag tag, Map<String, String> attributes) {
+                postprocessed.add(tag.getName());
+                attributes.put("wicket:id", "brix-1");
+            }
+        }.render();
+
+        assertEquals("<p>text<span wicket:id=\"brix-1\" /></p>", rendered);
+        assertEquals(Collections.singletonList("span"), postprocessed);
+    }
+
+    private static class DynamicText implements Text {
+        private final String text;
+
+        private DynamicText(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+    }
+
+    private static class DynamicTag extends SimpleTag {
+        private DynamicTag(String name) {
+            super(name, Type.OPEN_CLOSE, Collections.<String, String>emptyMap());
+        }
+    }
+
+    private static class ListMarkupSource implements MarkupSource {
+        private final String doctype;
+        private final Iterator<Item> items;
+
+        private ListMarkupSource(String doctype, Item... items) {
+            this.doctype = doctype;
+            this.items = Arrays.asList(items).iterator();
+        }
+
+        @Override
+        public String getDoctype() {
+            return doctype;
+        }
+
+        @Override
+        public Object getExpirationToken() {
+            return null;
+        }
+
+        @Override
+        public boolean isMarkupExpired(Object expirationToken) {
+            return false;
+        }
+
+        @Override
+        public Item nextMarkupItem() {
+            return items.hasNext() ? items.next() : null;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jcr.Item;
+import javax.jcr.Node;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.api.JackrabbitRepository;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.brixcms.jcr.ChangeJournal.Entry;
+import org.brixcms.jcr.ChangeJournal.Type;
+import org.brixcms.jcr.JcrUtil;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.base.event.Event;
+import org.brixcms.jcr.base.event.EventsListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeltaSitePublisherTest {
+    private Repository repo;
+    private File home;
+    private Session sourceSession;
+    private Session targetSession;
+    private JcrSession source;
+    private JcrSession target;
+    private final AtomicInteger saves = new AtomicInteger();
+
+    @Before
+    public void setupRepository() throws Exception {
+        home = new File(System.getProperty("java.io.tmpdir"), getClass().getName());
+        delete(home);
+        try (InputStream config = getClass().getResourceAsStream("/org/brixcms/jcr/wrapper/repository.xml")) {
+            repo = RepositoryImpl.create(RepositoryConfig.create(config, home.getAbsolutePath()));
+        }
+
+        sourceSession = login(null);
+        Node site = sourceSession.getRootNode().addNode("site", "nt:unstructured");
+        Node section = site.addNode("section", "nt:unstructured");
+        section.setProperty("title", "Section");
+        Node page = section.addNode("page", "nt:unstructured");
+        page.addMixin("mix:referenceable");
+        page.addNode("content", "nt:unstructured").setProperty("body", "<p>hello</p>");
+        site.addNode("obsolete", "nt:unstructured");
+        site.addNode("links", "nt:unstructured").setProperty("page", page);
+        sourceSession.save();
+
+        ((org.apache.jackrabbit.core.WorkspaceImpl) sourceSession.getWorkspace()).createWorkspace("target");
+        targetSession = login("target");
+        source = JcrSession.Wrapper.wrap(sourceSession);
+        target = JcrSession.Wrapper.wrap(targetSession);
+        JcrUtil.cloneNodes(Arrays.asList(source.getNode("/site")), target.getRootNode());
+        target.save();
+
+        target.addEventsListener(new EventsListener() {
+            public void handleEventsBeforeSave(Session session, Item item, List<Event> events) {
+            }
+
+            public void handleEventsAfterSave(Session session, Item item, List<Event> events) {
+                saves.incrementAndGet();
+            }
+        });
+    }
+
+    @After
+    public void cleanupRepository() {
+        if (targetSession != null) {
+            targetSession.logout();
+        }
+        if (sourceSession != null) {
+            sourceSession.logout();
+        }
+        if (repo != null) {
+            ((JackrabbitRepository) repo).shutdown();
+        }
+        delete(home);
+    }
+
+    @Test
+    public void deltaIsAppliedWithSingleSave() throws Exception {
+        String pageId = sourceSession.getNode("/site/section/page").getIdentifier();
+        sourceSession.getNode("/site").addNode("news", "nt:unstructured").setProperty("title", "News");
+        sourceSession.getNode("/site/section").setProperty("title", "Renamed");
+        sourceSession.move("/site/section/page", "/site/page");
+        sourceSession.getNode("/site/obsolete").remove();
+        sourceSession.save();
+
+        DeltaSitePublisher.apply(source, target, Arrays.asList(
+                new Entry(1, Type.CREATED, "/site/news", null),
+                new Entry(2, Type.MODIFIED, "/site/section", null),
+                new Entry(3, Type.MOVED, "/site/page", "/site/section/page"),
+                new Entry(4, Type.DELETED, "/site/obsolete", null)));
+
+        assertEquals(1, saves.get());
+        assertFalse(targetSession.hasPendingChanges());
+        assertEquals("News", targetSession.getNode("/site/news").getProperty("title").getString());
+        assertEquals("Renamed", targetSession.getNode("/site/section").getProperty("title").getString());
+        assertFalse(targetSession.nodeExists("/site/section/page"));
+        assertFalse(targetSession.nodeExists("/site/obsolete"));
+
+        // the moved page keeps its identifier, so the reference of the untouched node stays valid
+        Node page = targetSession.getNode("/site/page");
+        assertEquals(pageId, page.getIdentifier());
+        assertEquals("<p>hello</p>", page.getNode("content").getProperty("body").getString());
+        assertEquals(page.getPath(), targetSession.getNode("/site/links").getProperty("page").getNode().getPath());
+    }
+
+    @Test
+    public void failedDeltaLeavesTargetUntouched() throws Exception {
+        sourceSession.getNode("/site/obsolete").remove();
+        sourceSession.getNode("/site").addNode("news", "nt:unstructured");
+        sourceSession.save();
+
+        // reading the created node fails after the removal has been applied to the target
+        JcrSession failing = (JcrSession) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{JcrSession.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getNode") && "/site/news".equals(args[0])) {
+                            throw new IllegalStateException("Simulated failure");
+                        }
+                        try {
+                            return method.invoke(source, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+        try {
+            DeltaSitePublisher.apply(failing, target, Arrays.asList(
+                    new Entry(1, Type.DELETED, "/site/obsolete", null),
+                    new Entry(2, Type.CREATED, "/site/news", null)));
+            fail();
+        } catch (IllegalStateException expected) {
+            target.refresh(false);
+        }
+
+        assertEquals(0, saves.get());
+        assertTrue(targetSession.nodeExists("/site/obsolete"));
+        assertFalse(targetSession.nodeExists("/site/news"));
+    }
+
+    private Session login(String workspace) throws RepositoryException {
+        return repo.login(new SimpleCredentials("admin", "admin".toCharArray()), workspace);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
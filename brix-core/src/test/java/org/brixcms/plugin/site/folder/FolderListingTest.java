@@ -0,0 +1,122 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.folder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.inmethod.grid.IGridSortState.Direction;
+import com.inmethod.grid.IGridSortState.ISortStateColumn;
+import org.brixcms.plugin.site.folder.FolderListing.Child;
+import org.brixcms.util.WorkspacePartitionedCache.Partition;
+import org.junit.Test;
+
+public class FolderListingTest {
+    private final FolderListing listing = new FolderListing(Arrays.asList(
+            file("/site/b.png", "b.png", "image/png", 300L, "zoe", new Date(3000)),
+            folder("/site/images", "images", "bob", new Date(1000)),
+            file("/site/a.txt", "A.txt", "text/plain", 10L, null, new Date(2000)),
+            file("/site/c.css", "c.css", "text/css", 300L, "Adam", null)));
+
+    @Test
+    public void sortsByNameWithFoldersFirstByDefault() {
+        assertEquals(Arrays.asList("/site/images", "/site/a.txt", "/site/b.png", "/site/c.css"),
+                paths(listing.getSorted(Collections.<ISortStateColumn<String>>emptyList())));
+    }
+
+    @Test
+    public void sortsByLastModifiedBy() {
+        assertEquals(Arrays.asList("/site/c.css", "/site/images", "/site/b.png", "/site/a.txt"),
+                paths(listing.getSorted(columns(FolderDataSource.PROPERTY_LAST_MODIFIED_BY, Direction.ASC))));
+        assertEquals(Arrays.asList("/site/a.txt", "/site/b.png", "/site/images", "/site/c.css"),
+                paths(listing.getSorted(columns(FolderDataSource.PROPERTY_LAST_MODIFIED_BY, Direction.DESC))));
+    }
+
+    @Test
+    public void laterColumnsBreakTies() {
+        assertEquals(Arrays.asList("/site/images", "/site/a.txt", "/site/c.css", "/site/b.png"),
+                paths(listing.getSorted(columns(FolderDataSource.PROPERTY_SIZE, Direction.ASC,
+                        FolderDataSource.PROPERTY_NAME, Direction.DESC))));
+        assertEquals(Arrays.asList("/site/images", "/site/a.txt", "/site/b.png", "/site/c.css"),
+                paths(listing.getSorted(columns(FolderDataSource.PROPERTY_LAST_MODIFIED, Direction.ASC))));
+    }
+
+    @Test
+    public void sortedOrdersAreReused() {
+        List<ISortStateColumn<String>> columns = columns(FolderDataSource.PROPERTY_MIME_TYPE, Direction.ASC);
+        assertSame(listing.getSorted(columns), listing.getSorted(columns));
+        assertEquals(4, listing.size());
+    }
+
+    @Test
+    public void invalidateWorkspaceDetachesOnlyThatWorkspace() {
+        FolderListingCache cache = new FolderListingCache();
+        Partition<String, FolderListing> production = cache.getPartition("production");
+        Partition<String, FolderListing> development = cache.getPartition("development");
+        production.put("/site", listing);
+        development.put("/site", listing);
+
+        cache.invalidateWorkspace("production");
+
+        assertNotSame(production, cache.getPartition("production"));
+        assertNull(cache.getPartition("production").get("/site"));
+        assertSame(listing, development.get("/site"));
+        assertNull(cache.getPartition(null));
+    }
+
+    private static Child file(String path, String name, String mimeType, Long size, String lastModifiedBy,
+                              Date lastModified) {
+        return new Child(path, false, name, "File", null, null, lastModified, lastModifiedBy, mimeType, size);
+    }
+
+    private static Child folder(String path, String name, String lastModifiedBy, Date lastModified) {
+        return new Child(path, true, name, "Folder", null, null, lastModified, lastModifiedBy, null, null);
+    }
+
+    private static List<ISortStateColumn<String>> columns(Object... propertiesAndDirections) {
+        List<ISortStateColumn<String>> columns = new ArrayList<ISortStateColumn<String>>();
+        for (int i = 0; i < propertiesAndDirections.length; i += 2) {
+            final String property = (String) propertiesAndDirections[i];
+            final Direction direction = (Direction) propertiesAndDirections[i + 1];
+            columns.add(new ISortStateColumn<String>() {
+                public String getPropertyName() {
+                    return property;
+                }
+
+                public Direction getDirection() {
+                    return direction;
+                }
+            });
+        }
+        return columns;
+    }
+
+    private static List<String> paths(List<Child> children) {
+        List<String> paths = new ArrayList<String>(children.size());
+        for (Child child : children) {
+            paths.add(child.getPath());
+        }
+        return paths;
+    }
+}
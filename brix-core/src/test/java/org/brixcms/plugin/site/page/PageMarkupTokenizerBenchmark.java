@@ -0,0 +1,174 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.brixcms.markup.tag.Item;
+import org.brixcms.markup.tag.Tag;
+import org.brixcms.markup.tag.simple.SimpleComment;
+import org.brixcms.markup.tag.simple.SimpleTag;
+import org.brixcms.markup.tag.simple.SimpleText;
+import org.htmlparser.Attribute;
+import org.htmlparser.Node;
+import org.htmlparser.Remark;
+import org.htmlparser.Text;
+import org.htmlparser.lexer.Lexer;
+
+/**
+ * Compares throughput and allocation of {@link PageMarkupTokenizer} with the htmlparser {@link Lexer} pass it replaced
+ * in {@link PageMarkupSource}. Not run as part of the test suite, start it with the test classpath:
+ * <p>
+ * <pre>
+ * java -cp ... org.brixcms.plugin.site.page.PageMarkupTokenizerBenchmark [pages] [iterations]
+ * </pre>
+ * <p>
+ * The generated pages are between 50 and 200 KB and mix ordinary markup with tiles, variables, Wicket tags, comments
+ * and inline scripts.
+ */
+public class PageMarkupTokenizerBenchmark {
+    public static void main(String[] args) throws Exception {
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        Random random = new Random(42);
+        List<String> pages = new ArrayList<String>();
+        long characters = 0;
+        for (int i = 0; i < pageCount; i++) {
+            String page = generatePage(random, 50 * 1024 + random.nextInt(150 * 1024));
+            pages.add(page);
+            characters += page.length();
+        }
+        System.out.println(String.format(Locale.ROOT, "%d pages, %,d KB total", pageCount, characters / 1024));
+
+        // warm up both variants before measuring
+        run(pages, iterations / 2, true);
+        run(pages, iterations / 2, false);
+
+        report("htmlparser lexer", run(pages, iterations, true), characters * iterations, pageCount * iterations);
+        report("streaming tokenizer", run(pages, iterations, false), characters * iterations,
+                pageCount * iterations);
+    }
+
+    private static long[] run(List<String> pages, int iterations, boolean lexer) throws Exception {
+        long items = 0;
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (String page : pages) {
+                items += lexer ? lex(page).size() : ParsedMarkup.parse(page).getTokens().size();
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        return new long[]{nanos, allocatedBytes() - allocated, items};
+    }
+
+    private static void report(String name, long[] result, long characters, long pages) {
+        double seconds = result[0] / 1e9;
+        System.out.println(String.format(Locale.ROOT, "%-20s %,10.1f MB/s %,10.0f pages/s %,12d bytes/page %,8d items/page",
+                name, characters / seconds / (1024 * 1024), pages / seconds, result[1] / pages, result[2] / pages));
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * The tokenizing part of the previous {@link PageMarkupSource}, every node of the markup became an item.
+     */
+    private static List<Item> lex(String content) throws Exception {
+        List<Item> items = new ArrayList<Item>();
+        Lexer lexer = new Lexer(content);
+        Node cursor;
+        while ((cursor = lexer.nextNode()) != null) {
+            if (cursor instanceof Remark) {
+                items.add(new SimpleComment(cursor.getText()));
+            } else if (cursor instanceof Text) {
+                items.add(new SimpleText(cursor.toHtml()));
+            } else if (cursor instanceof org.htmlparser.Tag tag) {
+                Tag.Type type = tag.getRawTagName().startsWith("/") ? Tag.Type.CLOSE
+                        : tag.isEmptyXmlTag() ? Tag.Type.OPEN_CLOSE : Tag.Type.OPEN;
+                Map<String, String> attributes = new HashMap<String, String>();
+                List<?> original = tag.getAttributesEx();
+                for (Object o : original.subList(1, original.size())) {
+                    Attribute a = (Attribute) o;
+                    if (a.getName() != null && !a.getName().equals("/") && !a.isWhitespace()) {
+                        attributes.put(a.getName(), a.getValue());
+                    }
+                }
+                items.add(new SimpleTag(tag.getTagName().toLowerCase(), type, attributes));
+            }
+        }
+        return items;
+    }
+
+    private static String generatePage(Random random, int size) {
+        StringBuilder b = new StringBuilder(size + 4096);
+        b.append("<!DOCTYPE html>\n<html xmlns:wicket=\"http://wicket.apache.org\">\n<head>\n");
+        b.append("<title><brix:var key=\"title\"/></title>\n");
+        b.append("<meta charset=\"utf-8\"><link rel=\"stylesheet\" href=\"/css/site.css\">\n");
+        b.append("<style>body { font: 14px/1.4 sans-serif; } .nav > li { display: inline-block; }</style>\n");
+        b.append("</head>\n<body>\n<div id=\"header\"><brix:tile id=\"logo\"/>\n<ul class=\"nav\">\n");
+        for (int i = 0; i < 12; i++) {
+            b.append("  <li><a href=\"/section/").append(i).append("\" title=\"Section ").append(i)
+                    .append("\">Section ").append(i).append("</a></li>\n");
+        }
+        b.append("</ul></div>\n<div id=\"content\">\n<brix:content/>\n");
+        int tile = 0;
+        while (b.length() < size) {
+            switch (random.nextInt(8)) {
+                case 0:
+                    b.append("<h2 class=\"headline\">Lorem ipsum dolor sit amet</h2>\n");
+                    break;
+                case 1:
+                    b.append("<table class=\"data\"><tr><th>Name</th><th>Value</th></tr>");
+                    for (int i = 0; i < 5; i++) {
+                        b.append("<tr><td>Row ").append(i).append("</td><td align=right>").append(random.nextInt())
+                                .append("</td></tr>");
+                    }
+                    b.append("</table>\n");
+                    break;
+                case 2:
+                    b.append("<img src=\"/images/photo").append(random.nextInt(100))
+                            .append(".jpg\" alt=\"brix:var:photoAlt\" width=\"320\" height=\"200\"/>\n");
+                    break;
+                case 3:
+                    b.append("<!-- teaser ").append(random.nextInt(1000)).append(" -->\n");
+                    break;
+                case 4:
+                    b.append("<div class=\"tile\"><brix:tile id=\"tile").append(tile++).append("\"/></div>\n");
+                    break;
+                case 5:
+                    b.append("<script type=\"text/javascript\">var x = 1; if (x < 2) { x++; }</script>\n");
+                    break;
+                default:
+                    b.append("<p>Lorem ipsum <b>dolor</b> sit amet, <a href=\"http://example.com/page?id=")
+                            .append(random.nextInt(1000)).append("&amp;lang=en\">consectetur</a> adipiscing elit,")
+                            .append(" sed do <em>eiusmod</em> tempor incididunt ut labore et dolore magna aliqua.")
+                            .append("<br> Ut enim ad minim veniam, quis nostrud exercitation.</p>\n");
+            }
+        }
+        b.append("</div>\n<div id=\"footer\" wicket:id=\"footer\"><brix:var key=\"copyright\"/></div>\n");
+        b.append("</body>\n</html>\n");
+        return b.toString();
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.brixcms.markup.tag.Tag;
+import org.brixcms.markup.tag.simple.SimpleText;
+import org.junit.Test;
+
+public class PageMarkupTokenizerTest {
+    @Test
+    public void plainMarkupIsPassedThroughVerbatim() {
+        String markup = "<div class=content><p>Hello <b>World</b></p><!-- <brix:tile id='x'/> -->"
+                + "<script>if (a <b) { document.write('<brix:content/>'); }</script><img src=\"a.png\" alt></div>";
+        Recorder recorder = tokenize(markup);
+
+        assertEquals(Arrays.asList("text:" + markup), recorder.tokens);
+    }
+
+    @Test
+    public void brixAndWicketTagsAreParsed() {
+        Recorder recorder = tokenize("<HTML><head><title>T</title></head><body>"
+                + "<div wicket:id='list' class=\"a b\">x</div><brix:tile id=\"t1\"/><p>y</p></body></html>");
+
+        assertEquals(Arrays.asList("tag:html:OPEN:{}", "tag:head:OPEN:{}", "tag:title:OPEN:{}", "text:T",
+                "tag:title:CLOSE:{}", "tag:head:CLOSE:{}", "tag:body:OPEN:{}",
+                "tag:div:OPEN:{wicket:id=list, class=a b}", "text:x", "tag:div:CLOSE:{}",
+                "tag:brix:tile:OPEN_CLOSE:{id=t1}", "text:<p>y</p>", "tag:body:CLOSE:{}", "tag:html:CLOSE:{}"),
+                recorder.tokens);
+    }
+
+    @Test
+    public void colonsInOrdinaryAttributesDoNotForceParsing() {
+        String markup = "<a href=\"http://example.com\" style='color: red'>link</a>";
+        assertEquals(Arrays.asList("text:" + markup), tokenize(markup).tokens);
+
+        Recorder recorder = tokenize("<a title=\"brix:var:linkTitle\" checked>link</a>");
+        assertEquals(Arrays.asList("tag:a:OPEN:{title=brix:var:linkTitle, checked=}", "text:link", "tag:a:CLOSE:{}"),
+                recorder.tokens);
+    }
+
+    @Test
+    public void doctypeIsReportedSeparately() {
+        Recorder recorder = tokenize("<!DOCTYPE html>\n<p>text</p>");
+
+        assertEquals(Arrays.asList("doctype:<!DOCTYPE html>", "text:\n<p>text</p>"), recorder.tokens);
+    }
+
+    @Test
+    public void malformedMarkupIsKeptAsText() {
+        String markup = "a < b and <p unterminated";
+        assertEquals(Arrays.asList("text:" + markup), tokenize(markup).tokens);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void sharedTagAttributesAreReadOnly() {
+        ParsedMarkup markup = ParsedMarkup.parse("<wicket:enclosure child='a'><div wicket:id='a'></div></wicket:enclosure>");
+
+        ((Tag) markup.getTokens().get(0)).getAttributeMap().put("child", "b");
+    }
+
+    @Test
+    public void parsedMarkupCollectsTilesAndVariables() {
+        ParsedMarkup markup = ParsedMarkup.parse("<!DOCTYPE html><div><brix:tile id='menu'></brix:tile>"
+                + "<brix:content/><brix:fragment>f</brix:fragment><brix:var key=\"footer\"/>"
+                + "<img alt=\"brix:var:logo\" src=\"logo.png\"/></div>");
+
+        assertEquals("<!DOCTYPE html>", markup.getDoctype());
+        assertEquals(Arrays.asList("menu"), new ArrayList<String>(markup.getTileIds()));
+        assertEquals(Arrays.asList("footer", "logo"), new ArrayList<String>(markup.getVariableKeys()));
+
+        List<Object> tokens = markup.getTokens();
+        assertEquals(7, tokens.size());
+        assertEquals("<div>", ((SimpleText) tokens.get(0)).getText());
+        assertEquals("menu", ((ParsedMarkup.TilePlaceholder) tokens.get(1)).getId());
+        assertSame(ParsedMarkup.CONTENT, tokens.get(2));
+        assertEquals("f", ((SimpleText) tokens.get(3)).getText());
+        assertEquals("brix:var", ((Tag) tokens.get(4)).getName());
+        assertEquals("img", ((Tag) tokens.get(5)).getName());
+        assertEquals("</div>", ((SimpleText) tokens.get(6)).getText());
+    }
+
+    @Test
+    public void cacheReturnsSameParseForEqualMarkup() {
+        ParsedMarkupCache cache = new ParsedMarkupCache(20);
+        ParsedMarkup first = cache.get("<p>first</p>");
+        assertSame(first, cache.get(new String("<p>first</p>")));
+        assertEquals(12, cache.getWeight());
+
+        // exceeding the weight evicts the least recently used entry
+        cache.get("<p>second</p>");
+        assertEquals(1, cache.size());
+        assertTrue(first != cache.get("<p>first</p>"));
+
+        // markup larger than the cache is parsed but not kept
+        cache.clear();
+        assertNull(cache.get("<p>" + "x".repeat(20) + "</p>").getDoctype());
+        assertEquals(0, cache.size());
+    }
+
+    private static Recorder tokenize(String markup) {
+        Recorder recorder = new Recorder();
+        PageMarkupTokenizer.tokenize(markup, recorder);
+        return recorder;
+    }
+
+    private static class Recorder implements PageMarkupTokenizer.Handler {
+        private final List<String> tokens = new ArrayList<String>();
+
+        public void text(String text) {
+            tokens.add("text:" + text);
+        }
+
+        public void tag(String name, Tag.Type type, Map<String, String> attributes) {
+            tokens.add("tag:" + name + ":" + type + ":" + new LinkedHashMap<String, String>(attributes));
+        }
+
+        public void doctype(String doctype) {
+            tokens.add("doctype:" + doctype);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.brixcms.jcr.wrapper.BrixNode.Protocol;
+import org.brixcms.plugin.site.page.RequiredProtocolCache.Decision;
+import org.brixcms.util.WorkspacePartitionedCache.Partition;
+import org.junit.Test;
+
+public class RequiredProtocolCacheTest {
+    @Test
+    public void invalidateWorkspaceDetachesOnlyThatWorkspace() {
+        RequiredProtocolCache cache = new RequiredProtocolCache();
+        Partition<String, Protocol> production = cache.getPartition("production");
+        Partition<String, Protocol> development = cache.getPartition("development");
+        production.put("page", Protocol.HTTPS);
+        development.put("page", Protocol.HTTP);
+
+        cache.invalidateWorkspace("production");
+
+        // decisions completed against the detached partition are not visible anymore
+        production.put("other", Protocol.HTTP);
+        assertNotSame(production, cache.getPartition("production"));
+        assertNull(cache.getPartition("production").get("page"));
+        assertNull(cache.getPartition("production").get("other"));
+        assertSame(development, cache.getPartition("development"));
+        assertEquals(Protocol.HTTP, development.get("page"));
+    }
+
+    @Test
+    public void decisionIsCacheableUnlessMarked() {
+        Decision decision = RequiredProtocolCache.beginDecision();
+        assertTrue(decision.end());
+
+        decision = RequiredProtocolCache.beginDecision();
+        RequiredProtocolCache.markNotCacheable();
+        assertFalse(decision.end());
+
+        // marking outside of a decision has no effect on later ones
+        RequiredProtocolCache.markNotCacheable();
+        assertTrue(RequiredProtocolCache.beginDecision().end());
+    }
+
+    @Test
+    public void nestedDecisionPropagatesToOuterDecision() {
+        Decision outer = RequiredProtocolCache.beginDecision();
+        Decision inner = RequiredProtocolCache.beginDecision();
+        RequiredProtocolCache.markNotCacheable();
+        assertFalse(inner.end());
+        assertFalse(outer.end());
+
+        outer = RequiredProtocolCache.beginDecision();
+        assertTrue(RequiredProtocolCache.beginDecision().end());
+        assertTrue(outer.end());
+    }
+}
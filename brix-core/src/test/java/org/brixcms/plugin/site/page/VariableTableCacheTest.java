@@ -0,0 +1,62 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.brixcms.util.WorkspacePartitionedCache.Partition;
+import org.junit.Test;
+
+public class VariableTableCacheTest {
+    @Test
+    public void invalidateWorkspaceDetachesOnlyThatWorkspace() {
+        VariableTableCache cache = new VariableTableCache();
+        Partition<String, Map<String, String>> production = cache.getPartition("production");
+        Partition<String, Map<String, String>> development = cache.getPartition("development");
+        Map<String, String> variables = Collections.singletonMap("title", "Home");
+        production.put("page", variables);
+        development.put("page", variables);
+
+        cache.invalidateWorkspace("production");
+
+        // tables computed against the detached partition are not visible anymore
+        production.put("other", variables);
+        assertNotSame(production, cache.getPartition("production"));
+        assertNull(cache.getPartition("production").get("page"));
+        assertNull(cache.getPartition("production").get("other"));
+        assertSame(development, cache.getPartition("development"));
+        assertSame(variables, development.get("page"));
+        assertEquals(1, development.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullTablesAreRejected() {
+        new VariableTableCache().getPartition("production").put("page", null);
+    }
+
+    @Test
+    public void nullWorkspaceHasNoPartition() {
+        VariableTableCache cache = new VariableTableCache();
+        assertNull(cache.getPartition(null));
+        cache.invalidateWorkspace(null);
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.page.tile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.model.IModel;
+import org.brixcms.Brix;
+import org.brixcms.auth.AuthorizationStrategy;
+import org.brixcms.config.BrixConfig;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.site.SitePlugin;
+import org.brixcms.plugin.site.page.tile.admin.TileEditorPanel;
+import org.brixcms.web.tile.unknown.UnknownTile;
+import org.junit.Test;
+
+public class TileRegistryTest {
+    @Test
+    public void tilesAreLookedUpByTypeName() {
+        Brix brix = new TestBrix();
+        TestTile first = new TestTile("menu");
+        TestTile duplicate = new TestTile("menu");
+        brix.getConfig().getRegistry().register(Tile.POINT, first);
+        brix.getConfig().getRegistry().register(Tile.POINT, duplicate);
+
+        assertSame(first, Tile.Helper.getTileOfType("menu", brix));
+        assertSame(UnknownTile.INSTANCE, Tile.Helper.getTileOfType("missing", brix));
+        assertSame(UnknownTile.INSTANCE, Tile.Helper.getTileOfType(null, brix));
+    }
+
+    @Test
+    public void registeringTileRefreshesSnapshot() {
+        Brix brix = new TestBrix();
+        assertSame(UnknownTile.INSTANCE, Tile.Helper.getTileOfType("login", brix));
+        int registered = SitePlugin.get(brix).getTilesByType().size();
+
+        TestTile login = new TestTile("login");
+        brix.getConfig().getRegistry().register(Tile.POINT, login);
+
+        assertSame(login, Tile.Helper.getTileOfType("login", brix));
+        assertEquals(registered + 1, SitePlugin.get(brix).getTilesByType().size());
+    }
+
+    private static class TestBrix extends Brix {
+        private TestBrix() {
+            super(new BrixConfig(null, null, null));
+        }
+
+        @Override
+        public AuthorizationStrategy newAuthorizationStrategy() {
+            return null;
+        }
+    }
+
+    private static class TestTile implements Tile {
+        private final String typeName;
+
+        private TestTile(String typeName) {
+            this.typeName = typeName;
+        }
+
+        public String getDisplayName() {
+            return typeName;
+        }
+
+        public String getTypeName() {
+            return typeName;
+        }
+
+        public TileEditorPanel newEditor(String id, IModel<BrixNode> tileContainerNode) {
+            return null;
+        }
+
+        public Component newViewer(String id, IModel<BrixNode> tileNode) {
+            return null;
+        }
+
+        public boolean requiresSSL(IModel<BrixNode> tileNode) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.site.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.brixcms.Brix;
+import org.brixcms.auth.AuthorizationStrategy;
+import org.brixcms.config.BrixConfig;
+import org.junit.After;
+import org.junit.Test;
+
+public class ContentHashServiceTest {
+    private TestService service;
+
+    @After
+    public void tearDown() {
+        if (service != null) {
+            service.blocker.countDown();
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void requestsForQueuedResourceAreCoalesced() throws Exception {
+        service = new TestService(1, 10);
+        service.request("default", "busy", 1L);
+        assertTrue(service.started.await(5, TimeUnit.SECONDS));
+
+        // the only hashing thread is busy, so these wait in the queue
+        assertTrue(service.request("default", "file", 1L));
+        assertTrue(service.request("default", "file", 3L));
+        assertTrue(service.request("default", "file", 2L));
+        assertEquals(2, service.getCoalescedCount());
+        assertEquals(1, service.getQueueDepth());
+
+        service.blocker.countDown();
+        awaitHashed(2);
+
+        assertEquals(List.of("busy@1", "file@3"), service.calls);
+        assertEquals(0, service.getQueueDepth());
+        assertEquals(20, service.getHashedBytes());
+    }
+
+    @Test
+    public void requestsBeyondBoundAreRejected() throws Exception {
+        service = new TestService(1, 1);
+        service.request("default", "busy", null);
+        assertTrue(service.started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(service.request("default", "first", null));
+        assertFalse(service.request("default", "second", null));
+        assertTrue(service.request("default", "first", null));
+
+        assertEquals(1, service.getRejectedCount());
+        assertEquals(1, service.getCoalescedCount());
+    }
+
+    @Test
+    public void requestIsRetriedUntilRevisionIsVisible() throws Exception {
+        service = new TestService(1, 10);
+        service.blocker.countDown();
+        service.invisibleAttempts = 1;
+
+        service.request("default", "file", 5L);
+        awaitHashed(1);
+
+        assertEquals(1, service.getRetriedCount());
+        assertEquals(List.of("file@5", "file@5"), service.calls);
+    }
+
+    @Test
+    public void disabledServiceDoesNotQueue() {
+        service = new TestService(0, 10);
+
+        assertFalse(service.isEnabled());
+        assertFalse(service.request("default", "file", 1L));
+        assertEquals(0, service.getQueueDepth());
+    }
+
+    private void awaitHashed(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (service.getHashedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, service.getHashedCount());
+    }
+
+    private static class TestService extends ContentHashService {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch blocker = new CountDownLatch(1);
+        private final List<String> calls = new CopyOnWriteArrayList<String>();
+        private volatile int invisibleAttempts;
+
+        private TestService(int threads, int maxPending) {
+            super(new TestBrix(), threads, maxPending);
+        }
+
+        @Override
+        protected long hashContent(String workspace, String identifier, Long expectedRevision) {
+            calls.add(identifier + "@" + expectedRevision);
+            started.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (invisibleAttempts > 0) {
+                invisibleAttempts--;
+                return -1;
+            }
+            return 10;
+        }
+    }
+
+    private static class TestBrix extends Brix {
+        private TestBrix() {
+            super(new BrixConfig(null, null, null));
+        }
+
+        @Override
+        public AuthorizationStrategy newAuthorizationStrategy() {
+            return null;
+        }
+    }
+}
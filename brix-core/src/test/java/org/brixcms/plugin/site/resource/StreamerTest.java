@@ -8,20 +8,27 @@ import static org.junit.Assert.assertTrue;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.jcr.Binary;
+
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.apache.wicket.request.http.WebResponse;
+import org.easymock.EasyMock;
 import org.junit.Test;
 
 public class StreamerTest {
@@ -148,6 +155,78 @@ public class StreamerTest {
         throw new AssertionError("Expected EOFException wrapped in RuntimeException");
     }
 
+    @Test
+    public void multipleRangesAreServedAsMultipartByteranges() {
+        byte[] data = bytes("0123456789");
+        CapturingResponse response = new CapturingResponse();
+
+        long written = new Streamer(data.length, BinaryAccess.forStream(new ByteArrayInputStream(data)),
+                "text/plain", "asset.txt", false, request("bytes=7-8, 1-2"), response, true, true).stream();
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.status);
+        String contentType = response.headers.get("Content-Type");
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="));
+        String boundary = contentType.substring("multipart/byteranges; boundary=".length());
+        String expected = "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 1-2/10\r\n\r\n12"
+                + "\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 7-8/10\r\n\r\n78"
+                + "\r\n--" + boundary + "--\r\n";
+        assertEquals(expected, new String(response.body.toByteArray(), StandardCharsets.ISO_8859_1));
+        assertEquals(expected.length(), response.contentLength);
+        assertEquals(4, written);
+    }
+
+    @Test
+    public void overlappingRangesAreCoalesced() {
+        byte[] data = bytes("0123456789");
+        CapturingResponse response = new CapturingResponse();
+
+        new Streamer(data.length, new SlowSkipInputStream(data), "asset.txt", false,
+                request("bytes=4-6,2-4,7-7"), response).stream();
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.status);
+        assertEquals("bytes 2-7/10", response.headers.get("Content-Range"));
+        assertArrayEquals(bytes("234567"), response.body.toByteArray());
+    }
+
+    @Test
+    public void fileBackedContentIsReadAtArbitraryPositions() throws IOException {
+        File file = File.createTempFile("streamer", ".bin");
+        try {
+            Files.write(file.toPath(), bytes("0123456789"));
+            byte[] buffer = new byte[2];
+
+            try (BinaryAccess access = BinaryAccess.forStream(new FileInputStream(file))) {
+                assertTrue(access.isRandomAccess());
+                assertEquals(2, access.read(8, buffer, 2));
+                assertArrayEquals(bytes("89"), buffer);
+                assertEquals(2, access.read(0, buffer, 2));
+                assertArrayEquals(bytes("01"), buffer);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void binaryContentIsReadFromSingleStream() throws Exception {
+        byte[] data = new byte[200 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Binary binary = EasyMock.createMock(Binary.class);
+        EasyMock.expect(binary.getStream()).andReturn(new ByteArrayInputStream(data));
+        binary.dispose();
+        EasyMock.replay(binary);
+        CapturingResponse response = new CapturingResponse();
+
+        long written = new Streamer(data.length, BinaryAccess.forBinary(binary), "application/octet-stream",
+                "asset.bin", false, request("bytes=1000-"), response, true, true).stream();
+
+        assertEquals(data.length - 1000, written);
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, data.length), response.body.toByteArray());
+        EasyMock.verify(binary);
+    }
+
     private static byte[] bytes(String value) {
         return value.getBytes(StandardCharsets.UTF_8);
     }
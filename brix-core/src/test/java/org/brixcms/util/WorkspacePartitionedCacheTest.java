@@ -0,0 +1,54 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.brixcms.util.WorkspacePartitionedCache.Partition;
+import org.junit.Test;
+
+public class WorkspacePartitionedCacheTest {
+    @Test
+    public void fullPartitionIsClearedBeforeNewKeyIsAdded() {
+        Partition<String, String> partition = new WorkspacePartitionedCache<String, String>(2).getPartition("production");
+        partition.put("a", "1");
+        partition.put("b", "2");
+
+        // replacing an existing key keeps the partition
+        partition.put("b", "3");
+        assertEquals(2, partition.size());
+        assertEquals("3", partition.get("b"));
+
+        partition.put("c", "4");
+        assertEquals(1, partition.size());
+        assertNull(partition.get("a"));
+        assertEquals("4", partition.get("c"));
+    }
+
+    @Test
+    public void unboundedPartitionKeepsAllEntries() {
+        Partition<String, String> partition = new WorkspacePartitionedCache<String, String>().getPartition("production");
+        for (int i = 0; i < 1000; i++) {
+            partition.put(String.valueOf(i), "value");
+        }
+        assertEquals(1000, partition.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullKeysAreRejected() {
+        new WorkspacePartitionedCache<String, String>().getPartition("production").put(null, "value");
+    }
+}
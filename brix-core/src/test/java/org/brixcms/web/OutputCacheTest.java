@@ -0,0 +1,207 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.web;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.brixcms.plugin.site.page.tile.Tile;
+import org.brixcms.web.OutputCache.Capture;
+import org.brixcms.web.OutputCache.Entry;
+import org.brixcms.web.OutputCache.Partition;
+import org.junit.Test;
+
+public class OutputCacheTest {
+    private static final byte[] BODY = "<html>hello</html>".getBytes(StandardCharsets.UTF_8);
+    private static final Map<String, List<String>> NO_HEADERS = Collections.emptyMap();
+
+    @Test
+    public void disabledCacheHasNoPartitions() {
+        OutputCache cache = new OutputCache(0, false);
+        assertFalse(cache.isEnabled());
+        assertNull(cache.getPartition("production"));
+    }
+
+    @Test
+    public void keyIgnoresNamedParameterOrder() {
+        PageParameters first = new PageParameters().set(0, "a").add("x", "1").add("y", "2");
+        PageParameters second = new PageParameters().set(0, "a").add("y", "2").add("x", "1");
+        assertEquals(OutputCache.createKey("id", first, "http", Locale.ENGLISH),
+                OutputCache.createKey("id", second, "http", Locale.ENGLISH));
+
+        assertNotEquals(OutputCache.createKey("id", first, "http", Locale.ENGLISH),
+                OutputCache.createKey("id", first, "https", Locale.ENGLISH));
+        assertNotEquals(OutputCache.createKey("id", first, "http", Locale.ENGLISH),
+                OutputCache.createKey("id", first, "http", Locale.GERMAN));
+        // values must not be able to spoof a different parameter list
+        assertNotEquals(OutputCache.createKey("id", new PageParameters().add("x", "1y2"), "http", null),
+                OutputCache.createKey("id", new PageParameters().add("x", "1").add("y", "2"), "http", null));
+    }
+
+    @Test
+    public void storedResponseIsServedUntilDependencyIsInvalidated() throws IOException {
+        OutputCache cache = new OutputCache(10, true);
+        Partition partition = cache.getPartition("production");
+        Capture capture = partition.newCapture("key", true);
+        capture.addDependency("page");
+        capture.addDependency("template");
+        renderCacheableTile(capture);
+        assertTrue(capture.store(BODY, "text/html", NO_HEADERS, 0));
+
+        Entry entry = partition.get("key", 0);
+        assertNotNull(entry);
+        assertArrayEquals(BODY, entry.getBody());
+        assertArrayEquals(BODY, gunzip(entry.getGzippedBody()));
+        assertEquals("text/html", entry.getContentType());
+        assertTrue(entry.getETag().startsWith("\""));
+
+        cache.invalidate("production", "other");
+        assertSame(entry, partition.get("key", 0));
+
+        cache.invalidate("production", "template");
+        assertNull(partition.get("key", 0));
+        assertEquals(0, partition.size());
+    }
+
+    @Test
+    public void responseRenderedDuringInvalidationIsNotStored() {
+        OutputCache cache = new OutputCache(10, false);
+        Partition partition = cache.getPartition("production");
+        Capture capture = partition.newCapture("key", false);
+        capture.addDependency("page");
+        renderCacheableTile(capture);
+
+        cache.invalidate("production", "unrelated");
+
+        assertFalse(capture.store(BODY, "text/html", NO_HEADERS, 0));
+        assertNull(partition.get("key", 0));
+    }
+
+    @Test
+    public void tilesDecideCacheabilityAndLifetime() {
+        OutputCache cache = new OutputCache(10, false);
+        Partition partition = cache.getPartition("production");
+
+        Capture capture = partition.newCapture("short", false);
+        capture.begin();
+        try {
+            OutputCache.recordTile(tile(true, Duration.ofSeconds(60)), null, null);
+            OutputCache.recordTile(tile(true, Duration.ofSeconds(10)), null, null);
+            OutputCache.recordTile(tile(true, null), null, null);
+        } finally {
+            capture.end();
+        }
+        assertTrue(capture.store(BODY, "text/html", NO_HEADERS, 1000));
+        assertNotNull(partition.get("short", 10999));
+        assertNull(partition.get("short", 11000));
+
+        capture = partition.newCapture("uncacheable", false);
+        capture.begin();
+        try {
+            OutputCache.recordTile(tile(true, null), null, null);
+            OutputCache.recordTile(tile(false, null), null, null);
+        } finally {
+            capture.end();
+        }
+        assertFalse(capture.isCacheable());
+        assertFalse(capture.store(BODY, "text/html", NO_HEADERS, 0));
+
+        // tiles rendered outside of a capture are not recorded
+        OutputCache.recordTile(tile(false, null), null, null);
+        capture = partition.newCapture("static", false);
+        renderCacheableTile(capture);
+        assertTrue(capture.store(BODY, "text/html", NO_HEADERS, 0));
+
+        // pages without tiles are not cached
+        capture = partition.newCapture("plain", false);
+        assertFalse(capture.isCacheable());
+        assertFalse(capture.store(BODY, "text/html", NO_HEADERS, 0));
+    }
+
+    @Test
+    public void evictionKeepsDependencyIndexConsistent() {
+        OutputCache cache = new OutputCache(2, false);
+        Partition partition = cache.getPartition("production");
+        for (String key : new String[]{"a", "b", "c"}) {
+            Capture capture = partition.newCapture(key, false);
+            capture.addDependency("page");
+            renderCacheableTile(capture);
+            assertTrue(capture.store(BODY, "text/html", NO_HEADERS, 0));
+        }
+        assertEquals(2, partition.size());
+        assertNull(partition.get("a", 0));
+
+        cache.invalidate("production", "page");
+        assertEquals(0, partition.size());
+    }
+
+    @Test
+    public void invalidateWorkspaceDetachesPartition() {
+        OutputCache cache = new OutputCache(10, false);
+        Partition production = cache.getPartition("production");
+        Capture capture = production.newCapture("key", false);
+        renderCacheableTile(capture);
+
+        cache.invalidateWorkspace("production");
+
+        // responses completed against the detached partition are not visible anymore
+        assertTrue(capture.store(BODY, "text/html", NO_HEADERS, 0));
+        assertNull(cache.getPartition("production").get("key", 0));
+    }
+
+    private static void renderCacheableTile(Capture capture) {
+        capture.begin();
+        try {
+            OutputCache.recordTile(tile(true, null), null, null);
+        } finally {
+            capture.end();
+        }
+    }
+
+    private static Tile tile(boolean cacheable, Duration ttl) {
+        Tile tile = createMock(Tile.class);
+        expect(tile.isOutputCacheable(null)).andReturn(cacheable).anyTimes();
+        expect(tile.getOutputCacheTtl(null)).andReturn(ttl).anyTimes();
+        replay(tile);
+        return tile;
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readAllBytes();
+        }
+    }
+}
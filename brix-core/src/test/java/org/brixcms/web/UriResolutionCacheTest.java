@@ -0,0 +1,129 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import javax.jcr.Node;
+
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.web.UriResolutionCache.Partition;
+import org.brixcms.web.UriResolutionCache.Resolution;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+public class UriResolutionCacheTest {
+    @Test
+    public void partitionEvictsLeastRecentlyUsedResolution() {
+        Partition partition = new UriResolutionCache(2).getPartition("production");
+
+        partition.put("/a", Resolution.NONE);
+        partition.put("/b", Resolution.NONE);
+        partition.get("/a");
+        partition.put("/c", Resolution.NONE);
+
+        assertEquals(2, partition.size());
+        assertSame(Resolution.NONE, partition.get("/a"));
+        assertNull(partition.get("/b"));
+        assertSame(Resolution.NONE, partition.get("/c"));
+    }
+
+    @Test
+    public void missingNodeIsCachedAsUnresolved() {
+        Resolution resolution = Resolution.of(null, 0);
+
+        assertSame(Resolution.NONE, resolution);
+        assertFalse(resolution.isResolved());
+        assertFalse(resolution.isExact());
+    }
+
+    @Test
+    public void resolutionRemembersNodeAndConsumedSegments() {
+        Resolution exact = Resolution.of(new TestNode("id", "/brix:root/brix:site/page", "page"), 0);
+        Resolution ancestor = Resolution.of(new TestNode("id", "/brix:root/brix:site/page", "page"), 2);
+
+        assertTrue(exact.isExact());
+        assertEquals("id", exact.getNodeIdentifier());
+        assertEquals("/brix:root/brix:site/page", exact.getNodePath());
+        assertEquals("page", exact.getNodeType());
+        assertTrue(ancestor.isResolved());
+        assertFalse(ancestor.isExact());
+        assertEquals(2, ancestor.getConsumedSegments());
+    }
+
+    @Test
+    public void invalidateWorkspaceDetachesOnlyThatWorkspace() {
+        UriResolutionCache cache = new UriResolutionCache();
+        Partition production = cache.getPartition("production");
+        Partition development = cache.getPartition("development");
+        production.put("/a", Resolution.NONE);
+        development.put("/a", Resolution.NONE);
+
+        cache.invalidateWorkspace("production");
+        production.put("/b", Resolution.NONE);
+
+        assertNotSame(production, cache.getPartition("production"));
+        assertEquals(0, cache.getPartition("production").size());
+        assertSame(development, cache.getPartition("development"));
+        assertSame(Resolution.NONE, development.get("/a"));
+    }
+
+    @Test
+    public void zeroSizeDisablesCache() {
+        UriResolutionCache cache = new UriResolutionCache(0);
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.getPartition("production"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSizeIsRejected() {
+        new UriResolutionCache(-1);
+    }
+
+    private static class TestNode extends BrixNode {
+        private final String identifier;
+        private final String path;
+        private final String type;
+
+        private TestNode(String identifier, String path, String type) {
+            super(EasyMock.createNiceMock(Node.class), EasyMock.createNiceMock(JcrSession.class));
+            this.identifier = identifier;
+            this.path = path;
+            this.type = type;
+        }
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String getNodeType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.web.nodepage;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.mock.MockWebResponse;
+import org.apache.wicket.request.IRequestCycle;
+import org.apache.wicket.request.Url;
+import org.brixcms.plugin.site.page.tile.Tile;
+import org.brixcms.web.CachedOutputRequestHandler;
+import org.brixcms.web.OutputCache;
+import org.brixcms.web.OutputCache.Capture;
+import org.brixcms.web.OutputCache.Entry;
+import org.brixcms.web.OutputCache.Partition;
+import org.junit.Test;
+
+public class OutputCapturingWebResponseTest {
+    private static final String BODY = "<html>hello</html>";
+
+    @Test
+    public void cachedResponseReplaysHeadersSetByPage() {
+        OutputCache cache = new OutputCache(10, false);
+        Partition partition = cache.getPartition("production");
+        Capture capture = partition.newCapture("key", false);
+
+        MockWebResponse original = new MockWebResponse();
+        OutputCapturingWebResponse capturing = render(capture, original);
+        capturing.setHeader("X-Frame-Options", "SAMEORIGIN");
+        capturing.setHeader("Content-Security-Policy", "default-src 'self'");
+        capturing.setHeader("Cache-Control", "no-cache, no-store");
+        capturing.setDateHeader("Expires", Instant.EPOCH);
+        capturing.setContentType("text/html; charset=UTF-8");
+        capturing.write(BODY);
+        assertEquals("SAMEORIGIN", original.getHeader("X-Frame-Options"));
+        assertTrue(capturing.isCacheable());
+        assertTrue(capture.store(capturing.getBody(), capturing.getContentType(), capturing.getHeaders(), 0));
+
+        Entry entry = partition.get("key", 0);
+        assertNotNull(entry);
+        MockWebResponse replayed = new MockWebResponse();
+        new CachedOutputRequestHandler(entry).respond(requestCycle(replayed));
+
+        assertArrayEquals(BODY.getBytes(StandardCharsets.UTF_8), replayed.getBinaryResponse());
+        assertEquals("text/html; charset=UTF-8", replayed.getContentType());
+        assertEquals("SAMEORIGIN", replayed.getHeader("X-Frame-Options"));
+        assertEquals("default-src 'self'", replayed.getHeader("Content-Security-Policy"));
+        // caching headers describe the copy being served, not the render
+        assertEquals("no-cache", replayed.getHeader("Cache-Control"));
+        assertEquals(entry.getETag(), replayed.getHeader("ETag"));
+        assertFalse(replayed.hasHeader("Expires"));
+    }
+
+    @Test
+    public void responseWithPolicyNonceIsNotCached() {
+        OutputCache cache = new OutputCache(10, false);
+        Partition partition = cache.getPartition("production");
+        Capture capture = partition.newCapture("key", false);
+
+        OutputCapturingWebResponse capturing = render(capture, new MockWebResponse());
+        capturing.setHeader("Content-Security-Policy", "script-src 'nonce-abc123' 'strict-dynamic'");
+        capturing.write(BODY);
+
+        assertFalse(capturing.isCacheable());
+    }
+
+    @Test
+    public void cookieHeaderMakesResponseUncacheable() {
+        OutputCapturingWebResponse capturing = new OutputCapturingWebResponse(new MockWebResponse(),
+                StandardCharsets.UTF_8);
+        capturing.addHeader("Set-Cookie", "visitor=1");
+        assertFalse(capturing.isCacheable());
+    }
+
+    private static OutputCapturingWebResponse render(Capture capture, MockWebResponse original) {
+        capture.begin();
+        try {
+            OutputCache.recordTile(cacheableTile(), null, null);
+        } finally {
+            capture.end();
+        }
+        return new OutputCapturingWebResponse(original, StandardCharsets.UTF_8);
+    }
+
+    private static Tile cacheableTile() {
+        Tile tile = createMock(Tile.class);
+        expect(tile.isOutputCacheable(null)).andReturn(true).anyTimes();
+        expect(tile.getOutputCacheTtl(null)).andReturn(null).anyTimes();
+        replay(tile);
+        return tile;
+    }
+
+    private static IRequestCycle requestCycle(MockWebResponse response) {
+        final HttpServletRequest servletRequest = createNiceMock(HttpServletRequest.class);
+        expect(servletRequest.getMethod()).andReturn("GET").anyTimes();
+        replay(servletRequest);
+        MockWebRequest request = new MockWebRequest(Url.parse("page")) {
+            @Override
+            public Object getContainerRequest() {
+                return servletRequest;
+            }
+        };
+        IRequestCycle requestCycle = createMock(IRequestCycle.class);
+        expect(requestCycle.getRequest()).andReturn(request).anyTimes();
+        expect(requestCycle.getResponse()).andReturn(response).anyTimes();
+        replay(requestCycle);
+        return requestCycle;
+    }
+}
@@ -14,10 +14,16 @@
 
 package org.brixcms.demo.tools;
 
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 
 import javax.jcr.Repository;
@@ -25,16 +31,20 @@ import javax.jcr.Repository;
 import org.apache.jackrabbit.core.RepositoryImpl;
 import org.brixcms.demo.ApplicationProperties;
 import org.brixcms.jcr.ReferenceIntegrityScanner;
+import org.brixcms.jcr.ReferenceIntegrityScanner.Checkpoint;
 import org.brixcms.jcr.ReferenceIntegrityScanner.Options;
 import org.brixcms.jcr.ReferenceIntegrityScanner.ReferenceEntry;
-import org.brixcms.jcr.ReferenceIntegrityScanner.ScanResult;
+import org.brixcms.jcr.ReferenceIntegrityScanner.ScanSummary;
+import org.brixcms.jcr.ReferenceIntegrityScanner.Sink;
 import org.brixcms.jcr.ThreadLocalSessionFactory;
-import org.brixcms.jcr.api.JcrNode;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.util.JcrUtils;
 
 /**
- * CLI scanner for broken JCR references.
+ * CLI scanner for broken JCR references. Findings are written to the report as they are found; when writing to a file,
+ * finished subtrees are recorded in <code>&lt;output&gt;.checkpoint</code> once their findings have been flushed, so that
+ * an interrupted scan can be continued with <code>--resume</code>. Findings of subtrees that were interrupted half way
+ * are reported again by the resumed scan.
  */
 public final class ReferenceIntegrityScanCli {
     private static final int TOP_N = 20;
@@ -66,37 +76,54 @@ public final class ReferenceIntegrityScanCli {
     private static int run(CliOptions options) {
         ApplicationProperties properties = new ApplicationProperties(options.prefix);
         Repository repository = null;
-        ThreadLocalSessionFactory sessionFactory = null;
+        Checkpoint checkpoint = null;
+        ReportWriter report = null;
         try {
             repository = JcrUtils.createRepository(properties.getJcrRepositoryUrl());
-            sessionFactory = new ThreadLocalSessionFactory(repository, properties.buildSimpleCredentials());
+            ThreadLocalSessionFactory sessionFactory = new ThreadLocalSessionFactory(repository,
+                    properties.buildSimpleCredentials());
             String workspace = options.workspace != null ? options.workspace : properties.getJcrDefaultWorkspace();
 
-            JcrSession session = JcrSession.Wrapper.wrap(sessionFactory.getCurrentSession(workspace));
-            if (!session.nodeExists(options.path)) {
-                System.err.println("Path does not exist: " + options.path);
-                return 2;
+            JcrSession session = JcrSession.Wrapper.wrap(sessionFactory.createSession(workspace));
+            try {
+                if (!session.nodeExists(options.path)) {
+                    System.err.println("Path does not exist: " + options.path);
+                    return 2;
+                }
+            } finally {
+                session.logout();
             }
 
-            JcrNode root = session.getNode(options.path);
-            ReferenceIntegrityScanner scanner = new ReferenceIntegrityScanner();
             Options scannerOptions = new Options()
-                    .setIncludeStringUuidCandidates(options.includeStringUuidCandidates);
+                    .setIncludeStringUuidCandidates(options.includeStringUuidCandidates)
+                    .setThreads(options.threads)
+                    .setSplitDepth(options.splitDepth);
             for (String field : options.stringFields.split(",")) {
                 scannerOptions.addStringReferencePropertyName(field);
             }
 
-            ScanResult result = scanner.scan(root, scannerOptions);
-            String report = "json".equals(options.format) ? toJson(result) : toCsv(result);
+            Path target = options.output != null ? Path.of(options.output) : null;
+            Path checkpointFile = target != null ? Path.of(options.output + ".checkpoint") : null;
+            boolean append = options.resume && target != null && Files.exists(target) && Files.exists(checkpointFile);
+            if (checkpointFile != null) {
+                checkpoint = Checkpoint.open(checkpointFile, append);
+                scannerOptions.setCheckpoint(checkpoint);
+            }
+            report = "json".equals(options.format) ? new JsonReportWriter(target, append)
+                    : new CsvReportWriter(target, append);
+
+            ScanSummary result = new ReferenceIntegrityScanner().scan(sessionFactory, workspace, options.path,
+                    scannerOptions, report);
+            report.finish(result);
             String summary = buildSummary(result);
 
-            if (options.output != null) {
-                Path target = Path.of(options.output);
-                Files.write(target, report.getBytes(StandardCharsets.UTF_8));
+            if (target != null) {
+                checkpoint.close();
+                checkpoint = null;
+                Files.deleteIfExists(checkpointFile);
                 System.out.println(summary);
                 System.out.println("Report written to: " + target.toAbsolutePath());
             } else {
-                System.out.println(report);
                 System.err.println(summary);
             }
 
@@ -104,18 +131,30 @@ public final class ReferenceIntegrityScanCli {
         } catch (Exception e) {
             System.err.println("Reference scan failed: " + e.getMessage());
             e.printStackTrace(System.err);
+            if (checkpoint != null) {
+                System.err.println("Run again with --resume to continue the scan.");
+            }
             return 1;
         } finally {
-            if (sessionFactory != null) {
-                sessionFactory.cleanup();
-            }
+            closeQuietly(report);
+            closeQuietly(checkpoint);
             if (repository instanceof RepositoryImpl impl) {
                 impl.shutdown();
             }
         }
     }
 
-    private static String buildSummary(ScanResult result) {
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                System.err.println("Could not close: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String buildSummary(ScanSummary result) {
         StringBuilder sb = new StringBuilder();
         sb.append("Summary\n");
         sb.append("-------\n");
@@ -142,40 +181,97 @@ public final class ReferenceIntegrityScanCli {
         }
     }
 
-    private static String toCsv(ScanResult result) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("sourceNodePath,propertyName,targetIdentifier,exists,kind\n");
-        for (ReferenceEntry entry : result.getEntries()) {
-            sb.append(csv(entry.getSourceNodePath())).append(',');
-            sb.append(csv(entry.getPropertyName())).append(',');
-            sb.append(csv(entry.getTargetIdentifier())).append(',');
-            sb.append(entry.isExists()).append(',');
-            sb.append(entry.getKind().name()).append('\n');
+    /**
+     * Writes findings to the report as the scanner discovers them.
+     */
+    private abstract static class ReportWriter implements Sink, Closeable {
+        protected final Writer writer;
+
+        ReportWriter(Path target, boolean append) throws IOException {
+            if (target == null) {
+                writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            } else if (append) {
+                writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            } else {
+                writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8);
+            }
+        }
+
+        @Override
+        public void accept(ReferenceEntry entry) {
+            try {
+                write(entry);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write report", e);
+            }
+        }
+
+        /**
+         * Flushes the report before the scanner records the unit in the checkpoint.
+         */
+        @Override
+        public void unitCompleted(String unit) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write report", e);
+            }
+        }
+
+        protected abstract void write(ReferenceEntry entry) throws IOException;
+
+        void finish(ScanSummary summary) throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
         }
-        return sb.toString();
     }
 
-    private static String csv(String value) {
-        if (value == null) {
-            return "";
+    private static final class CsvReportWriter extends ReportWriter {
+        CsvReportWriter(Path target, boolean append) throws IOException {
+            super(target, append);
+            if (!append) {
+                writer.write("sourceNodePath,propertyName,targetIdentifier,exists,kind\n");
+            }
+        }
+
+        @Override
+        protected void write(ReferenceEntry entry) throws IOException {
+            writer.write(csv(entry.getSourceNodePath()) + ',' + csv(entry.getPropertyName()) + ','
+                    + csv(entry.getTargetIdentifier()) + ',' + entry.isExists() + ',' + entry.getKind().name()
+                    + '\n');
         }
-        boolean quote = value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r");
-        String escaped = value.replace("\"", "\"\"");
-        return quote ? "\"" + escaped + "\"" : escaped;
     }
 
-    private static String toJson(ScanResult result) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("{\n");
-        sb.append("  \"summary\": {\n");
-        sb.append("    \"totalReferences\": ").append(result.getTotalCount()).append(",\n");
-        sb.append("    \"missingReferences\": ").append(result.getMissingCount()).append(",\n");
-        sb.append("    \"missingByTargetIdentifier\": ").append(jsonMap(result.getMissingByTargetIdentifier())).append(",\n");
-        sb.append("    \"missingByPropertyName\": ").append(jsonMap(result.getMissingByPropertyName())).append('\n');
-        sb.append("  },\n");
-        sb.append("  \"entries\": [\n");
-        for (int i = 0; i < result.getEntries().size(); i++) {
-            ReferenceEntry entry = result.getEntries().get(i);
+    /**
+     * Streams the entries first and appends the summary once the scan is complete. A resumed scan appends to the
+     * unterminated entry array of the interrupted run.
+     */
+    private static final class JsonReportWriter extends ReportWriter {
+        private static final String HEADER = "{\n  \"entries\": [\n";
+
+        private boolean first;
+
+        JsonReportWriter(Path target, boolean append) throws IOException {
+            super(target, append);
+            if (append) {
+                first = Files.size(target) <= HEADER.length();
+            } else {
+                writer.write(HEADER);
+                first = true;
+            }
+        }
+
+        @Override
+        protected void write(ReferenceEntry entry) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            if (!first) {
+                sb.append(",\n");
+            }
+            first = false;
             sb.append("    {");
             sb.append("\"sourceNodePath\": ").append(json(entry.getSourceNodePath())).append(", ");
             sb.append("\"propertyName\": ").append(json(entry.getPropertyName())).append(", ");
@@ -183,14 +279,34 @@ public final class ReferenceIntegrityScanCli {
             sb.append("\"exists\": ").append(entry.isExists()).append(", ");
             sb.append("\"kind\": ").append(json(entry.getKind().name()));
             sb.append("}");
-            if (i < result.getEntries().size() - 1) {
-                sb.append(',');
-            }
-            sb.append('\n');
+            writer.write(sb.toString());
+        }
+
+        @Override
+        void finish(ScanSummary summary) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            sb.append("\n  ],\n");
+            sb.append("  \"summary\": {\n");
+            sb.append("    \"totalReferences\": ").append(summary.getTotalCount()).append(",\n");
+            sb.append("    \"missingReferences\": ").append(summary.getMissingCount()).append(",\n");
+            sb.append("    \"missingByTargetIdentifier\": ").append(jsonMap(summary.getMissingByTargetIdentifier()))
+                    .append(",\n");
+            sb.append("    \"missingByPropertyName\": ").append(jsonMap(summary.getMissingByPropertyName()))
+                    .append('\n');
+            sb.append("  }\n");
+            sb.append("}\n");
+            writer.write(sb.toString());
+            super.finish(summary);
         }
-        sb.append("  ]\n");
-        sb.append("}\n");
-        return sb.toString();
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        boolean quote = value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r");
+        String escaped = value.replace("\"", "\"\"");
+        return quote ? "\"" + escaped + "\"" : escaped;
     }
 
     private static String jsonMap(Map<String, Integer> map) {
@@ -230,6 +346,14 @@ public final class ReferenceIntegrityScanCli {
         System.out.println("  --prefix <prefix>       Application property prefix (default: brix.demo)");
         System.out.println("  --include-string-uuid   Also scan STRING values that look like UUID");
         System.out.println("  --string-fields <list>  Comma-separated property names for STRING UUID scan");
+        System.out.println("  --threads <n>           Scan subtrees with n parallel sessions (default: 1); only the");
+        System.out.println("                          subtrees at --split-depth below --path run in parallel");
+        System.out.println("  --split-depth <n>       Levels below --path split into parallel subtrees (default: 1);");
+        System.out.println("                          use 3 or more for / of a Brix workspace, which has a single");
+        System.out.println("                          brix:root child");
+        System.out.println("  --resume                Continue an interrupted scan into the same --output file;");
+        System.out.println("                          the summary then covers the resumed part only and findings");
+        System.out.println("                          of subtrees that were interrupted are reported again");
         System.out.println("  --help                  Show usage");
     }
 
@@ -241,6 +365,9 @@ public final class ReferenceIntegrityScanCli {
         private String prefix = "brix.demo";
         private boolean includeStringUuidCandidates;
         private String stringFields = "";
+        private int threads = 1;
+        private int splitDepth = 1;
+        private boolean resume;
         private boolean help;
 
         static CliOptions parse(String[] args) {
@@ -259,6 +386,12 @@ public final class ReferenceIntegrityScanCli {
                     options.prefix = args[++i];
                 } else if ("--string-fields".equals(arg) && i + 1 < args.length) {
                     options.stringFields = args[++i];
+                } else if ("--threads".equals(arg) && i + 1 < args.length) {
+                    options.threads = parsePositive(args[++i], "Invalid thread count: ");
+                } else if ("--split-depth".equals(arg) && i + 1 < args.length) {
+                    options.splitDepth = parsePositive(args[++i], "Invalid split depth: ");
+                } else if ("--resume".equals(arg)) {
+                    options.resume = true;
                 } else if ("--include-string-uuid".equals(arg)) {
                     options.includeStringUuidCandidates = true;
                 } else if ("--help".equals(arg) || "-h".equals(arg)) {
@@ -271,7 +404,22 @@ public final class ReferenceIntegrityScanCli {
             if (!"csv".equals(options.format) && !"json".equals(options.format)) {
                 throw new IllegalArgumentException("Unsupported format: " + options.format);
             }
+            if (options.resume && options.output == null) {
+                throw new IllegalArgumentException("--resume requires --output");
+            }
             return options;
         }
+
+        private static int parsePositive(String value, String message) {
+            try {
+                int number = Integer.parseInt(value);
+                if (number >= 1) {
+                    return number;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new IllegalArgumentException(message + value);
+        }
     }
 }
@@ -17,7 +17,7 @@ package org.brixcms.demo.web;
 import org.apache.jackrabbit.core.RepositoryImpl;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.brixcms.demo.ApplicationProperties;
-import org.brixcms.jcr.ThreadLocalSessionFactory;
+import org.brixcms.jcr.PooledSessionFactory;
 import org.brixcms.util.JcrUtils;
 import org.brixcms.workspace.WorkspaceManager;
 import org.slf4j.Logger;
@@ -37,6 +37,11 @@ public abstract class AbstractWicketApplication extends WebApplication {
      */
     private static final Logger logger = LoggerFactory.getLogger(AbstractWicketApplication.class);
 
+    /**
+     * upper bound of jcr sessions open for one workspace, i.e. of concurrent requests accessing it
+     */
+    private static final int MAX_SESSIONS_PER_WORKSPACE = 50;
+
     /**
      * application properties
      */
@@ -47,9 +52,9 @@ public abstract class AbstractWicketApplication extends WebApplication {
     private Repository repository;
 
     /**
-     * jcr session factory. sessions created by this factory are cleaned up by {@link WicketRequestCycleListener}
+     * jcr session factory. sessions borrowed outside of requests are returned by {@link #cleanupSessionFactory()}
      */
-    private ThreadLocalSessionFactory sessionFactory;
+    private PooledSessionFactory sessionFactory;
 
     /**
      * workspace manager to be used by brix
@@ -87,7 +92,7 @@ public abstract class AbstractWicketApplication extends WebApplication {
     /**
      * @return jcr session factory
      */
-    public final ThreadLocalSessionFactory getJcrSessionFactory() {
+    public final PooledSessionFactory getJcrSessionFactory() {
         return sessionFactory;
     }
 
@@ -103,8 +108,8 @@ public abstract class AbstractWicketApplication extends WebApplication {
         repository = JcrUtils.createRepository(properties.getJcrRepositoryUrl());
 
         // create session factory that will be used to feed brix jcr sessions
-        sessionFactory = new ThreadLocalSessionFactory(repository, properties
-                .buildSimpleCredentials());
+        sessionFactory = new PooledSessionFactory(repository, properties.buildSimpleCredentials(),
+                MAX_SESSIONS_PER_WORKSPACE);
 
         try {
             // create workspace manager brix will use to access workspace-related functionality
@@ -140,6 +145,9 @@ public abstract class AbstractWicketApplication extends WebApplication {
      */
     @Override
     protected void onDestroy() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
         // shutdown the repository cleanly
         if (repository instanceof RepositoryImpl impl) {
             logger.info("Shutting down JackRabbit repository...");
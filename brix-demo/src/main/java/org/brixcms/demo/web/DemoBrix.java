@@ -17,6 +17,7 @@ package org.brixcms.demo.web;
 import org.brixcms.Brix;
 import org.brixcms.Plugin;
 import org.brixcms.auth.AuthorizationStrategy;
+import org.brixcms.auth.CachingAuthorizationStrategy;
 import org.brixcms.config.BrixConfig;
 import org.brixcms.demo.web.tile.ajax.AjaxDemoTile;
 import org.brixcms.demo.web.tile.guestbook.GuestBookTile;
@@ -65,6 +66,6 @@ public class DemoBrix extends Brix {
     @Override
     public AuthorizationStrategy newAuthorizationStrategy() {
         // register our simple demo auth strategy
-        return new DemoAuthorizationStrategy();
+        return new CachingAuthorizationStrategy(new DemoAuthorizationStrategy());
     }
 }
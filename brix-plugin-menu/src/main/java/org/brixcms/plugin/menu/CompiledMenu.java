@@ -0,0 +1,398 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.menu;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.wicket.util.string.Strings;
+import org.brixcms.BrixNodeModel;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.menu.Menu.ChildEntry;
+import org.brixcms.plugin.menu.Menu.ChildEntry.MenuType;
+import org.brixcms.web.nodepage.BrixPageParameters;
+import org.brixcms.web.reference.Reference;
+import org.brixcms.web.reference.Reference.Type;
+
+/**
+ * Immutable, render ready form of a {@link Menu}. The entries are flattened into {@link Item}s that know what they link
+ * to and the node that decides their visibility, and the items are indexed by the node they reference so that the
+ * selected items of a page can be looked up without walking the menu. Urls of references without a protocol depend on
+ * the request they are rendered in and are not part of the compiled form.
+ * <p>
+ * Compiled menus are shared by all requests and are kept by {@link MenuCache} until the menu node or one of the
+ * referenced nodes is saved.
+ */
+public final class CompiledMenu {
+    private final String workspace;
+    private final String menuIdentifier;
+    private final String menuPath;
+    private final String name;
+    private final List<Item> roots;
+    private final List<Item> items;
+    private final Map<String, List<Item>> itemsByTargetNode;
+    private final List<Item> urlItems;
+    private final Set<String> dependencyPaths;
+
+    private CompiledMenu(String workspace, String menuIdentifier, String menuPath, Menu menu) {
+        this.workspace = workspace;
+        this.menuIdentifier = menuIdentifier;
+        this.menuPath = menuPath;
+        this.name = menu.getName();
+
+        List<Item> items = new ArrayList<Item>();
+        Map<String, List<Item>> itemsByTargetNode = new HashMap<String, List<Item>>();
+        List<Item> urlItems = new ArrayList<Item>();
+        Set<String> dependencyPaths = new HashSet<String>();
+        dependencyPaths.add(menuPath);
+
+        this.roots = compile(menu.getRoot().getChildren(), null, items, itemsByTargetNode, urlItems, dependencyPaths);
+
+        for (Map.Entry<String, List<Item>> e : itemsByTargetNode.entrySet()) {
+            e.setValue(Collections.unmodifiableList(e.getValue()));
+        }
+        this.items = Collections.unmodifiableList(items);
+        this.itemsByTargetNode = Collections.unmodifiableMap(itemsByTargetNode);
+        this.urlItems = Collections.unmodifiableList(urlItems);
+        this.dependencyPaths = Collections.unmodifiableSet(dependencyPaths);
+    }
+
+    /**
+     * Loads and compiles the menu stored in the given node.
+     *
+     * @param menuNode menu node
+     * @return compiled menu
+     */
+    public static CompiledMenu compile(BrixNode menuNode) {
+        if (menuNode == null) {
+            throw new IllegalArgumentException("Argument 'menuNode' may not be null");
+        }
+        Menu menu = new Menu();
+        menu.load(menuNode);
+        try {
+            return compile(menuNode.getSession().getWorkspace().getName(), menuNode.getIdentifier(),
+                    menuNode.getPath(), menu);
+        } finally {
+            menu.detach();
+        }
+    }
+
+    /**
+     * Compiles a menu that has already been loaded.
+     *
+     * @param workspace      workspace of the menu node
+     * @param menuIdentifier identifier of the menu node
+     * @param menuPath       path of the menu node
+     * @param menu           loaded menu
+     * @return compiled menu
+     */
+    static CompiledMenu compile(String workspace, String menuIdentifier, String menuPath, Menu menu) {
+        return new CompiledMenu(workspace, menuIdentifier, menuPath, menu);
+    }
+
+    private static List<Item> compile(List<ChildEntry> entries, Item parent, List<Item> items,
+                                      Map<String, List<Item>> itemsByTargetNode, List<Item> urlItems,
+                                      Set<String> dependencyPaths) {
+        if (entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Item> result = new ArrayList<Item>(entries.size());
+        for (ChildEntry entry : entries) {
+            Item item = new Item(items.size(), parent, entry);
+            items.add(item);
+            result.add(item);
+
+            Reference reference = entry.getReference();
+            if (reference != null) {
+                if (reference.getType() == Type.NODE) {
+                    BrixNode target = reference.getNodeTarget();
+                    if (target != null) {
+                        // keep the identifier the reference was stored with, pages are matched against it
+                        item.targetNode = reference.getNodeModel() instanceof BrixNodeModel<?> model &&
+                                model.getId() != null ? model.getId() : target.getIdentifier();
+                        dependencyPaths.add(target.getPath());
+                        itemsByTargetNode.computeIfAbsent(item.targetNode, k -> new ArrayList<Item>()).add(item);
+                    }
+                } else if (reference.getType() == Type.URL) {
+                    urlItems.add(item);
+                }
+                if (!reference.isEmpty()) {
+                    item.linked = true;
+                    if (reference.getType() == Type.URL && reference.getUrl().indexOf("://") > 0) {
+                        item.absoluteUrl = reference.getUrl();
+                    }
+                }
+            }
+
+            item.children = Collections.unmodifiableList(compile(entry.getChildren(), item, items,
+                    itemsByTargetNode, urlItems, dependencyPaths));
+        }
+        return result;
+    }
+
+    public String getWorkspace() {
+        return workspace;
+    }
+
+    public String getMenuIdentifier() {
+        return menuIdentifier;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return top level items
+     */
+    public List<Item> getRoots() {
+        return roots;
+    }
+
+    /**
+     * @return all items in depth first order, {@link Item#getIndex()} is the position in this list
+     */
+    public List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * @param identifier node identifier
+     * @return items referencing the node
+     */
+    public List<Item> getItemsTargeting(String identifier) {
+        List<Item> result = identifier != null ? itemsByTargetNode.get(identifier) : null;
+        return result != null ? result : Collections.<Item>emptyList();
+    }
+
+    /**
+     * @return items referencing an url
+     */
+    public List<Item> getUrlItems() {
+        return urlItems;
+    }
+
+    /**
+     * Returns whether saving the node at the given path can change this menu, which is the case if the path is the
+     * menu node, one of its descendants or ancestors, or an ancestor of a referenced node.
+     *
+     * @param path path of the saved node
+     * @return <code>true</code> if the menu must be compiled again
+     */
+    public boolean dependsOn(String path) {
+        if (path == null) {
+            return false;
+        }
+        if (isSameOrDescendant(path, menuPath)) {
+            return true;
+        }
+        for (String dependency : dependencyPaths) {
+            if (isSameOrDescendant(dependency, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameOrDescendant(String path, String ancestor) {
+        if (ancestor.equals("/")) {
+            return true;
+        }
+        return path.startsWith(ancestor) &&
+                (path.length() == ancestor.length() || path.charAt(ancestor.length()) == '/');
+    }
+
+    /**
+     * Immutable counterpart of {@link ChildEntry}.
+     */
+    public static final class Item {
+        private final int index;
+        private final Item parent;
+        private final String title;
+        private final String cssClass;
+        private final String labelOrCode;
+        private final String additionalTags;
+        private final MenuType menuType;
+        private final Type referenceType;
+        private final String referenceWorkspace;
+        private final String url;
+        private final BrixPageParameters parameters;
+        private List<Item> children;
+        private String targetNode;
+        private boolean linked;
+        private String absoluteUrl;
+
+        private Item(int index, Item parent, ChildEntry entry) {
+            this.index = index;
+            this.parent = parent;
+            this.title = entry.getTitle();
+            this.cssClass = entry.getCssClass();
+            this.labelOrCode = entry.getLabelOrCode();
+            this.additionalTags = entry.getAdditionalTags();
+            this.menuType = entry.getMenuType();
+
+            Reference reference = entry.getReference();
+            if (reference != null) {
+                this.referenceType = reference.getType();
+                this.url = reference.getUrl();
+                this.parameters = reference.hasParameters() ? new BrixPageParameters(reference.getParameters()) : null;
+                this.referenceWorkspace = reference.getNodeModel() instanceof BrixNodeModel<?> model
+                        ? model.getWorkspaceName() : null;
+            } else {
+                this.referenceType = null;
+                this.url = null;
+                this.parameters = null;
+                this.referenceWorkspace = null;
+            }
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return parent item or <code>null</code> for top level items
+         */
+        public Item getParent() {
+            return parent;
+        }
+
+        public List<Item> getChildren() {
+            return children;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getCssClass() {
+            return cssClass;
+        }
+
+        public String getLabelOrCode() {
+            return labelOrCode;
+        }
+
+        public String getAdditionalTags() {
+            return additionalTags;
+        }
+
+        public MenuType getMenuType() {
+            return menuType;
+        }
+
+        /**
+         * @return type of the reference or <code>null</code> if the item has no reference
+         */
+        public Type getReferenceType() {
+            return referenceType;
+        }
+
+        /**
+         * @return url of an url reference
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return identifier of the referenced node or <code>null</code>
+         */
+        public String getTargetNode() {
+            return targetNode;
+        }
+
+        /**
+         * @return <code>true</code> if the item has a non empty reference
+         */
+        public boolean isLinked() {
+            return linked;
+        }
+
+        /**
+         * @return absolute url of an url reference that includes the protocol
+         */
+        public String getAbsoluteUrl() {
+            return absoluteUrl;
+        }
+
+        /**
+         * @return copy of the reference parameters or <code>null</code> if there are none
+         */
+        public BrixPageParameters getParameters() {
+            return parameters != null ? new BrixPageParameters(parameters) : null;
+        }
+
+        /**
+         * @return a new mutable reference equivalent to the one of the menu entry
+         */
+        public Reference newReference() {
+            if (referenceType == null) {
+                return null;
+            }
+            Reference reference = new Reference();
+            reference.setType(referenceType);
+            reference.setUrl(url);
+            if (targetNode != null) {
+                reference.setNodeModel(new BrixNodeModel<BrixNode>(targetNode, referenceWorkspace));
+            }
+            if (parameters != null) {
+                reference.setParameters(new BrixPageParameters(parameters));
+            }
+            return reference;
+        }
+
+        /**
+         * Returns the item whose link is used for this item. Items without a reference link to their first child.
+         *
+         * @return linked item or <code>null</code> if neither the item nor its first descendants are linked
+         */
+        public Item getLinkedItem() {
+            Item item = this;
+            while (item != null && !item.linked) {
+                item = item.children.isEmpty() ? null : item.children.get(0);
+            }
+            return item;
+        }
+
+        /**
+         * Returns the node that decides whether the item is visible. Items that do not reference a node use the node of
+         * their first child.
+         *
+         * @return node identifier or <code>null</code> if the item is always visible
+         */
+        public String getVisibilityNode() {
+            Item item = this;
+            while (item != null) {
+                if (item.referenceType == Type.NODE && item.targetNode != null) {
+                    return item.targetNode;
+                }
+                item = item.children.isEmpty() ? null : item.children.get(0);
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return Strings.isEmpty(title) ? "Item " + index : title;
+        }
+    }
+}
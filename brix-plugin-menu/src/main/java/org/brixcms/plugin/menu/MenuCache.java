@@ -0,0 +1,94 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.menu;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.brixcms.jcr.wrapper.BrixNode;
+
+/**
+ * Application scoped cache of {@link CompiledMenu}s partitioned by workspace. A menu is compiled on first use and
+ * discarded when a save touches the menu node or a node it references (see {@link CompiledMenu#dependsOn(String)}),
+ * and together with its workspace when the workspace content is replaced.
+ */
+public class MenuCache {
+    private final ConcurrentMap<String, Partition> partitions = new ConcurrentHashMap<String, Partition>();
+
+    /**
+     * Returns the compiled form of the given menu node, compiling it if necessary. Menus read through a session with
+     * unsaved changes are compiled but not cached.
+     *
+     * @param menuNode menu node
+     * @return compiled menu
+     */
+    public CompiledMenu getMenu(BrixNode menuNode) {
+        if (menuNode.getSession().hasPendingChanges()) {
+            return CompiledMenu.compile(menuNode);
+        }
+        String workspace = menuNode.getSession().getWorkspace().getName();
+        Partition partition = partitions.computeIfAbsent(workspace, ignored -> new Partition());
+        String identifier = menuNode.getIdentifier();
+
+        CompiledMenu menu = partition.menus.get(identifier);
+        if (menu == null) {
+            long generation = partition.generation.get();
+            menu = CompiledMenu.compile(menuNode);
+            partition.menus.putIfAbsent(identifier, menu);
+            if (partition.generation.get() != generation) {
+                // a save raced with the compilation, the result may already be stale
+                partition.menus.remove(identifier, menu);
+            }
+        }
+        return menu;
+    }
+
+    /**
+     * Discards compiled menus that depend on the node at the given path.
+     *
+     * @param workspace workspace of the saved node
+     * @param path      path of the saved node
+     */
+    public void invalidate(String workspace, String path) {
+        Partition partition = workspace != null ? partitions.get(workspace) : null;
+        if (partition == null) {
+            return;
+        }
+        partition.generation.incrementAndGet();
+        partition.menus.values().removeIf(menu -> menu.dependsOn(path));
+    }
+
+    /**
+     * Discards all compiled menus of the specified workspace.
+     *
+     * @param workspace workspace whose menus should be discarded
+     */
+    public void invalidateWorkspace(String workspace) {
+        if (workspace == null) {
+            return;
+        }
+        Partition partition = partitions.remove(workspace);
+        if (partition != null) {
+            partition.generation.incrementAndGet();
+        }
+    }
+
+    private static final class Partition {
+        private final ConcurrentMap<String, CompiledMenu> menus = new ConcurrentHashMap<String, CompiledMenu>();
+        private final AtomicLong generation = new AtomicLong();
+    }
+}
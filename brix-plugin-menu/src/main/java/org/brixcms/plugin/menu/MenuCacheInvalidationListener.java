@@ -0,0 +1,60 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.plugin.menu;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import org.brixcms.jcr.base.BatchedSaveEventListener;
+import org.brixcms.jcr.base.SaveEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Discards compiled menus affected by saved nodes, see {@link MenuCache#invalidate(String, String)}.
+ */
+public class MenuCacheInvalidationListener implements BatchedSaveEventListener {
+    private static final Logger log = LoggerFactory.getLogger(MenuCacheInvalidationListener.class);
+
+    private final MenuCache cache;
+
+    public MenuCacheInvalidationListener(MenuCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("cache may not be null");
+        }
+        this.cache = cache;
+    }
+
+    @Override
+    public void onEvent(EventIterator events) {
+        while (events.hasNext()) {
+            Event event = events.nextEvent();
+            if (event instanceof SaveEvent saveEvent) {
+                invalidate(saveEvent);
+            }
+        }
+    }
+
+    private void invalidate(SaveEvent event) {
+        try {
+            cache.invalidate(event.getWorkspaceName(), event.getPath());
+        } catch (RepositoryException | RuntimeException e) {
+            log.debug("Failed to invalidate compiled menus after save", e);
+            cache.invalidateWorkspace(event.getWorkspaceName());
+        }
+    }
+}
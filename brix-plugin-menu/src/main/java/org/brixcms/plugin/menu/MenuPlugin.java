@@ -23,6 +23,7 @@ import org.brixcms.auth.Action;
 import org.brixcms.jcr.JcrNodeWrapperFactory;
 import org.brixcms.jcr.api.JcrNodeIterator;
 import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.base.EventUtil;
 import org.brixcms.jcr.wrapper.BrixNode;
 import org.brixcms.plugin.menu.auth.AccessMenuPluginAction;
 import org.brixcms.plugin.menu.tile.fulltree.FullTreeMenuTile;
@@ -41,6 +42,7 @@ public class MenuPlugin implements Plugin {
     private static final String ID = MenuPlugin.class.getName();
     private static String ROOT_NODE_NAME = Brix.NS_PREFIX + "menu";
     private final Brix brix;
+    private final MenuCache menuCache = new MenuCache();
 
     public static MenuPlugin get() {
         return get(Brix.get());
@@ -57,6 +59,16 @@ public class MenuPlugin implements Plugin {
         brix.getConfig().getRegistry().register(JcrNodeWrapperFactory.POINT, MenuNode.FACTORY);
         brix.getConfig().getRegistry().register(Tile.POINT, new SubTreeMenuTile());
         brix.getConfig().getRegistry().register(Tile.POINT, new FullTreeMenuTile());
+
+        EventUtil.registerSaveEventListener(new MenuCacheInvalidationListener(menuCache));
+        brix.addCacheInvalidationListener(menuCache::invalidateWorkspace);
+    }
+
+    /**
+     * @return cache of compiled menus used by the menu tiles
+     */
+    public MenuCache getMenuCache() {
+        return menuCache;
     }
 
 
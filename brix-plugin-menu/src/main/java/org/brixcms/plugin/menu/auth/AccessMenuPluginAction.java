@@ -1,5 +1,7 @@
 package org.brixcms.plugin.menu.auth;
 
+import java.util.Objects;
+
 import org.brixcms.auth.Action;
 import org.brixcms.workspace.Workspace;
 
@@ -14,6 +16,25 @@ public class AccessMenuPluginAction implements Action {
         return workspace;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        AccessMenuPluginAction that = (AccessMenuPluginAction) obj;
+        return Objects.equals(workspace, that.workspace);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getClass().getName().hashCode();
+        result = 31 * result + Objects.hashCode(workspace);
+        return result;
+    }
+
     @Override
     public String toString() {
         return "AccessMenuPluginAction{" + "workspace=" + workspace + '}';
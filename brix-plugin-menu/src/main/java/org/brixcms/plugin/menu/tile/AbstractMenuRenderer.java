@@ -14,17 +14,24 @@
 
 package org.brixcms.plugin.menu.tile;
 
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.apache.wicket.markup.html.WebComponent;
 import org.apache.wicket.model.IModel;
+import org.brixcms.Brix;
+import org.brixcms.BrixNodeModel;
 import org.brixcms.auth.Action.Context;
+import org.brixcms.jcr.JcrUtil;
 import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.menu.CompiledMenu;
+import org.brixcms.plugin.menu.CompiledMenu.Item;
 import org.brixcms.plugin.menu.Menu;
 import org.brixcms.plugin.menu.Menu.ChildEntry;
 import org.brixcms.plugin.menu.Menu.Entry;
+import org.brixcms.plugin.menu.MenuPlugin;
 import org.brixcms.plugin.site.SitePlugin;
 import org.brixcms.web.generic.IGenericComponent;
 import org.brixcms.web.nodepage.BrixNodeWebPage;
@@ -170,4 +177,148 @@ public abstract class AbstractMenuRenderer extends WebComponent implements IGene
             return BrixPageParameters.equals(page, fromReference);
         }
     }
+
+    /**
+     * Returns the compiled form of the menu stored in the given node. Compiled menus are shared between requests.
+     *
+     * @param menuNode menu node
+     * @return compiled menu
+     */
+    protected CompiledMenu getCompiledMenu(BrixNode menuNode) {
+        MenuPlugin plugin = MenuPlugin.get();
+        return plugin != null ? plugin.getMenuCache().getMenu(menuNode) : CompiledMenu.compile(menuNode);
+    }
+
+    /**
+     * Creates the per render state of the compiled menu, selecting items that reference the current page.
+     *
+     * @param menu compiled menu
+     * @return render state
+     */
+    protected RenderState newRenderState(CompiledMenu menu) {
+        RenderState state = new RenderState(menu);
+        if (getPage() instanceof BrixNodeWebPage page) {
+            BrixNodeModel<?> pageModel = page.getModel() instanceof BrixNodeModel<?> model ? model : null;
+            String url = menu.getUrlItems().isEmpty() ? null : "/" + getRequest().getContextPath();
+            state.selectPage(pageModel != null ? pageModel.getWorkspaceName() : null,
+                    pageModel != null ? pageModel.getId() : null, url, page.getBrixPageParameters());
+        }
+        return state;
+    }
+
+    /**
+     * Returns the url of the compiled menu item. Urls that include a protocol are kept by the compiled menu, all other
+     * urls depend on the current request and are generated here.
+     *
+     * @param item menu item
+     * @return url
+     */
+    protected String getUrl(Item item) {
+        Item linked = item.getLinkedItem();
+        if (linked == null) {
+            return "#";
+        } else if (linked.getAbsoluteUrl() != null) {
+            return linked.getAbsoluteUrl();
+        }
+        Reference reference = linked.newReference();
+        return reference != null ? reference.generateUrl() : "#";
+    }
+
+    /**
+     * Selection and visibility of compiled menu items for a single render.
+     */
+    protected class RenderState {
+        private final CompiledMenu menu;
+        private final BitSet selected = new BitSet();
+        private final BitSet selectedPath = new BitSet();
+        private final Boolean[] visible;
+
+        protected RenderState(CompiledMenu menu) {
+            this.menu = menu;
+            this.visible = new Boolean[menu.getItems().size()];
+        }
+
+        public CompiledMenu getMenu() {
+            return menu;
+        }
+
+        /**
+         * Selects the items that reference the page node or url, taking the reference parameters into account.
+         *
+         * @param workspace      workspace of the page node
+         * @param identifier     identifier of the page node or <code>null</code>
+         * @param url            url of the page or <code>null</code> if url references need not be matched
+         * @param pageParameters parameters of the page
+         */
+        void selectPage(String workspace, String identifier, String url, BrixPageParameters pageParameters) {
+            if (identifier != null && menu.getWorkspace().equals(workspace)) {
+                for (Item item : menu.getItemsTargeting(identifier)) {
+                    if (comparePageParameters(pageParameters, item.getParameters())) {
+                        select(item);
+                    }
+                }
+            }
+            if (url != null) {
+                for (Item item : menu.getUrlItems()) {
+                    if (url.equals(item.getUrl()) && comparePageParameters(pageParameters, item.getParameters())) {
+                        select(item);
+                    }
+                }
+            }
+        }
+
+        void select(Item item) {
+            selected.set(item.getIndex());
+            for (Item i = item; i != null; i = i.getParent()) {
+                selectedPath.set(i.getIndex());
+            }
+        }
+
+        /**
+         * @return <code>true</code> if the item references the current page
+         */
+        public boolean isSelected(Item item) {
+            return selected.get(item.getIndex());
+        }
+
+        /**
+         * @return <code>true</code> if the item or one of its descendants references the current page
+         */
+        public boolean isOnSelectedPath(Item item) {
+            return selectedPath.get(item.getIndex());
+        }
+
+        public boolean anyChildOnSelectedPath(Item item) {
+            for (Item child : item.getChildren()) {
+                if (isOnSelectedPath(child)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return <code>true</code> if the current user may view the node that decides the visibility of the item
+         */
+        public boolean isVisible(Item item) {
+            Boolean result = visible[item.getIndex()];
+            if (result == null) {
+                String identifier = item.getVisibilityNode();
+                BrixNode node = identifier != null ? JcrUtil.getNodeByUUID(
+                        Brix.get().getCurrentSession(menu.getWorkspace()), identifier) : null;
+                result = node == null || SitePlugin.get().canViewNode(node, Context.PRESENTATION);
+                visible[item.getIndex()] = result;
+            }
+            return result;
+        }
+
+        public boolean anyVisibleChildren(Item item) {
+            for (Item child : item.getChildren()) {
+                if (isVisible(child)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
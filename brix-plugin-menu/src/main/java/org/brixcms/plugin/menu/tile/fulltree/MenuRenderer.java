@@ -19,16 +19,13 @@ import org.apache.wicket.markup.MarkupStream;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.request.Response;
 import org.apache.wicket.util.string.Strings;
-import org.brixcms.auth.Action.Context;
 import org.brixcms.jcr.wrapper.BrixNode;
-import org.brixcms.plugin.menu.Menu;
+import org.brixcms.plugin.menu.CompiledMenu.Item;
 import org.brixcms.plugin.menu.Menu.ChildEntry;
 import org.brixcms.plugin.menu.tile.AbstractMenuRenderer;
-import org.brixcms.plugin.site.SitePlugin;
 
 import java.io.Serial;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Component used to render the menu
@@ -55,8 +52,11 @@ public class MenuRenderer extends AbstractMenuRenderer {
     @Override
     public void onComponentTagBody(MarkupStream markupStream, ComponentTag openTag) {
         NodeAdapter adapter = new NodeAdapter(getModelObject());
-        Menu menu = new Menu();
-        menu.load(adapter.getMenuNode());
+        BrixNode menuNode = adapter.getMenuNode();
+        if (menuNode == null) {
+            return;
+        }
+        RenderState state = newRenderState(getCompiledMenu(menuNode));
 
         final Response response = getResponse();
         response.write("<ul");
@@ -66,20 +66,22 @@ public class MenuRenderer extends AbstractMenuRenderer {
             response.write("\"");
         }
         response.write(">");
-        List<ChildEntry> childEntryList = menu.getRoot().getChildren();
-        ChildEntry firstEntry = childEntryList.get(0);
-        ChildEntry lastEntry = childEntryList.get(childEntryList.size() - 1);
-        for (ChildEntry entry : childEntryList) {
-            renderEntry(entry, adapter, response, getSelectedItems(menu), firstEntry.equals(entry), lastEntry.equals(entry));
+        List<Item> items = state.getMenu().getRoots();
+        if (!items.isEmpty()) {
+            Item firstItem = items.get(0);
+            Item lastItem = items.get(items.size() - 1);
+            for (Item item : items) {
+                renderEntry(item, adapter, response, state, item == firstItem, item == lastItem);
+            }
         }
         response.write("</ul>");
     }
 
-    private void renderEntry(ChildEntry entry, NodeAdapter adapter, Response response, Set<ChildEntry> selectedItems, boolean isFirst, boolean isLast) {
+    private void renderEntry(Item entry, NodeAdapter adapter, Response response, RenderState state, boolean isFirst, boolean isLast) {
         // build css classes string
         StringBuilder cssClasses = new StringBuilder();
-        if ((!Strings.isEmpty(adapter.getSelectedLiCssClass()) && isSelected(entry)) ||
-                (adapter.getSelectAllParentLi() && anyChildSelected(entry, selectedItems))) {
+        if ((!Strings.isEmpty(adapter.getSelectedLiCssClass()) && state.isSelected(entry)) ||
+                (adapter.getSelectAllParentLi() && state.anyChildOnSelectedPath(entry))) {
             cssClasses.append(adapter.getSelectedLiCssClass()).append(" ");
         }
         if (isFirst && !Strings.isEmpty(adapter.getFirstLiCssClass())) {
@@ -136,7 +138,7 @@ public class MenuRenderer extends AbstractMenuRenderer {
         }
 
 
-        if (anyChildren(entry)) {
+        if (state.anyVisibleChildren(entry)) {
             response.write("<ul");
             if (!Strings.isEmpty(adapter.getInnerUlCssClass())) {
                 response.write(" class=\"");
@@ -144,13 +146,12 @@ public class MenuRenderer extends AbstractMenuRenderer {
                 response.write("\"");
             }
             response.write(">");
-            List<ChildEntry> childEntryList = entry.getChildren();
-            ChildEntry firstEntry = childEntryList.get(0);
-            ChildEntry lastEntry = childEntryList.get(childEntryList.size() - 1);
-            for (ChildEntry e : childEntryList) {
-                BrixNode node = getNode(e);
-                if (node == null || SitePlugin.get().canViewNode(node, Context.PRESENTATION)) {
-                    renderEntry(e, adapter, response, selectedItems, firstEntry.equals(e), lastEntry.equals(e));
+            List<Item> items = entry.getChildren();
+            Item firstItem = items.get(0);
+            Item lastItem = items.get(items.size() - 1);
+            for (Item e : items) {
+                if (state.isVisible(e)) {
+                    renderEntry(e, adapter, response, state, e == firstItem, e == lastItem);
                 }
             }
             response.write("</ul>");
@@ -19,15 +19,13 @@ import org.apache.wicket.markup.MarkupStream;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.request.Response;
 import org.apache.wicket.util.string.Strings;
-import org.brixcms.auth.Action.Context;
 import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.menu.CompiledMenu.Item;
 import org.brixcms.plugin.menu.Menu.ChildEntry;
-import org.brixcms.plugin.menu.Menu.Entry;
 import org.brixcms.plugin.menu.tile.AbstractMenuRenderer;
-import org.brixcms.plugin.site.SitePlugin;
 
 import java.io.Serial;
-import java.util.Set;
+import java.util.List;
 
 /**
  * Component used to render the menu
@@ -56,7 +54,11 @@ class MenuRenderer extends AbstractMenuRenderer {
         MenuContainer container = new MenuContainer();
         container.load(getModelObject());
 
-        Set<ChildEntry> selected = getSelectedItems(container.getMenu());
+        BrixNode menuNode = container.getMenuNode();
+        if (menuNode == null) {
+            return;
+        }
+        RenderState state = newRenderState(getCompiledMenu(menuNode));
 
         // how many levels to skip to start rendering
         int skipLevels = container.getStartAtLevel() != null ? container.getStartAtLevel() : 0;
@@ -67,12 +69,12 @@ class MenuRenderer extends AbstractMenuRenderer {
                 : Integer.MAX_VALUE;
 
         Response response = getResponse();
-        renderEntry(container, container.getMenu().getRoot(), response, selected, skipLevels,
+        renderEntry(container, state.getMenu().getRoots(), response, state, skipLevels,
                 renderLevels);
     }
 
-    private void renderEntry(MenuContainer container, Entry entry, Response response,
-                             Set<ChildEntry> selected, int skipLevels, int renderLevels) {
+    private void renderEntry(MenuContainer container, List<Item> items, Response response,
+                             RenderState state, int skipLevels, int renderLevels) {
         if (renderLevels <= 0) {
             return;
         }
@@ -90,10 +92,9 @@ class MenuRenderer extends AbstractMenuRenderer {
             response.write(">\n");
         }
 
-        for (ChildEntry e : entry.getChildren()) {
-            BrixNode node = getNode(e);
-            if (node == null || SitePlugin.get().canViewNode(node, Context.PRESENTATION)) {
-                renderChild(container, e, response, selected, skipLevels, renderLevels);
+        for (Item e : items) {
+            if (state.isVisible(e)) {
+                renderChild(container, e, response, state, skipLevels, renderLevels);
             }
         }
 
@@ -102,11 +103,11 @@ class MenuRenderer extends AbstractMenuRenderer {
         }
     }
 
-    private void renderChild(MenuContainer container, ChildEntry entry, Response response,
-                             Set<ChildEntry> selectedSet, int skipLevels, int renderLevels) {
-        boolean selected = selectedSet.contains(entry);
+    private void renderChild(MenuContainer container, Item entry, Response response,
+                             RenderState state, int skipLevels, int renderLevels) {
+        boolean selected = state.isOnSelectedPath(entry);
 
-        boolean anyChildren = selected && anyChildren(entry);
+        boolean anyChildren = selected && state.anyVisibleChildren(entry);
 
         if (skipLevels <= 0) {
             String listItemCssClass = "";
@@ -120,7 +121,7 @@ class MenuRenderer extends AbstractMenuRenderer {
                 anchorCssClass = container.getSelectedItemStyleClass();
             }
 
-            if (anyChildren && selected && anyChildSelected(entry, selectedSet)
+            if (anyChildren && selected && state.anyChildOnSelectedPath(entry)
                     && !Strings.isEmpty(container.getItemWithSelectedChildStyleClass())) {
                 listItemCssClass = container.getItemWithSelectedChildStyleClass();
             }
@@ -182,7 +183,7 @@ class MenuRenderer extends AbstractMenuRenderer {
         int childRenderLevels = skipLevels <= 0 ? renderLevels - 1 : renderLevels;
 
         if (anyChildren) {
-            renderEntry(container, entry, response, selectedSet, childSkipLevels, childRenderLevels);
+            renderEntry(container, entry.getChildren(), response, state, childSkipLevels, childRenderLevels);
         }
 
         if (skipLevels == 0) {
@@ -0,0 +1,101 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.menu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.brixcms.BrixNodeModel;
+import org.brixcms.plugin.menu.CompiledMenu.Item;
+import org.brixcms.web.reference.Reference;
+import org.brixcms.web.reference.Reference.Type;
+import org.junit.Test;
+
+public class CompiledMenuTest {
+    private final CompiledMenu menu = MenuFixtures.compileMenu();
+
+    @Test
+    public void itemsAreFlattenedInDepthFirstOrder() {
+        List<Item> items = menu.getItems();
+        assertEquals("[Home, About, Products, Shoes, External]", items.toString());
+        for (int i = 0; i < items.size(); ++i) {
+            assertEquals(i, items.get(i).getIndex());
+        }
+        assertEquals(Arrays.asList(items.get(0), items.get(2), items.get(4)), menu.getRoots());
+        assertSame(items.get(0), items.get(1).getParent());
+        assertNull(items.get(0).getParent());
+        assertEquals("main", menu.getName());
+        assertEquals(MenuFixtures.WORKSPACE, menu.getWorkspace());
+    }
+
+    @Test
+    public void itemsAreIndexedByReference() {
+        List<Item> items = menu.getItems();
+        assertEquals(Collections.singletonList(items.get(0)), menu.getItemsTargeting("home"));
+        assertEquals(Collections.singletonList(items.get(3)), menu.getItemsTargeting("shoes"));
+        assertTrue(menu.getItemsTargeting("missing").isEmpty());
+        assertTrue(menu.getItemsTargeting(null).isEmpty());
+        assertEquals(Arrays.asList(items.get(1), items.get(4)), menu.getUrlItems());
+    }
+
+    @Test
+    public void itemsWithoutReferenceUseTheirFirstChild() {
+        Item products = menu.getItems().get(2);
+        Item shoes = menu.getItems().get(3);
+        assertFalse(products.isLinked());
+        assertSame(shoes, products.getLinkedItem());
+        assertEquals("shoes", products.getVisibilityNode());
+        assertNull(menu.getItems().get(1).getVisibilityNode());
+    }
+
+    @Test
+    public void onlyUrlsWithProtocolAreKept() {
+        Item about = menu.getItems().get(1);
+        Item external = menu.getItems().get(4);
+        assertTrue(about.isLinked());
+        assertNull(about.getAbsoluteUrl());
+        assertEquals("http://example.com", external.getAbsoluteUrl());
+    }
+
+    @Test
+    public void newReferenceLoadsTheTargetNodeOnDemand() {
+        Reference reference = menu.getItems().get(3).newReference();
+        assertEquals(Type.NODE, reference.getType());
+        assertEquals("shoes", ((BrixNodeModel<?>) reference.getNodeModel()).getId());
+        assertNull(menu.getItems().get(2).newReference());
+    }
+
+    @Test
+    public void dependsOnMenuNodeAndAncestorsOfReferencedNodes() {
+        assertTrue(menu.dependsOn("/menus/main"));
+        assertTrue(menu.dependsOn("/menus/main/menu/child"));
+        assertTrue(menu.dependsOn("/menus"));
+        assertTrue(menu.dependsOn("/"));
+        assertTrue(menu.dependsOn("/site/home"));
+        assertTrue(menu.dependsOn("/site/products"));
+
+        assertFalse(menu.dependsOn("/menus/main2"));
+        assertFalse(menu.dependsOn("/site/home/child"));
+        assertFalse(menu.dependsOn("/site/other"));
+        assertFalse(menu.dependsOn(null));
+    }
+}
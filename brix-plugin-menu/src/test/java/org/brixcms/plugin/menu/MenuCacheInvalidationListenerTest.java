@@ -0,0 +1,80 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.menu;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import org.brixcms.jcr.base.SaveEvent;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+public class MenuCacheInvalidationListenerTest {
+    private final MenuCache cache = new MenuCache();
+
+    private final MenuCacheInvalidationListener listener = new MenuCacheInvalidationListener(cache);
+
+    private final BrixNode menuNode = MenuFixtures.node("/menus/main", "main");
+
+    @Test
+    public void saveDiscardsOnlyDependentMenus() throws RepositoryException {
+        CompiledMenu menu = cache.getMenu(menuNode);
+
+        Event added = EasyMock.createNiceMock(Event.class);
+        EasyMock.replay(added);
+        listener.onEvent(events(save("/site/unrelated"), added));
+        assertSame(menu, cache.getMenu(menuNode));
+
+        listener.onEvent(events(save("/site/unrelated"), save("/menus")));
+        assertNotSame(menu, cache.getMenu(menuNode));
+    }
+
+    @Test
+    public void unreadableSaveDiscardsTheWorkspace() throws RepositoryException {
+        CompiledMenu menu = cache.getMenu(menuNode);
+
+        SaveEvent event = EasyMock.createNiceMock(SaveEvent.class);
+        EasyMock.expect(event.getWorkspaceName()).andReturn(MenuFixtures.WORKSPACE).anyTimes();
+        EasyMock.expect(event.getPath()).andThrow(new RepositoryException("removed"));
+        EasyMock.replay(event);
+        listener.onEvent(events(event));
+
+        assertNotSame(menu, cache.getMenu(menuNode));
+    }
+
+    private static SaveEvent save(String path) throws RepositoryException {
+        SaveEvent event = EasyMock.createNiceMock(SaveEvent.class);
+        EasyMock.expect(event.getWorkspaceName()).andReturn(MenuFixtures.WORKSPACE).anyTimes();
+        EasyMock.expect(event.getPath()).andReturn(path).anyTimes();
+        EasyMock.replay(event);
+        return event;
+    }
+
+    private static EventIterator events(Event... events) {
+        EventIterator iterator = EasyMock.createMock(EventIterator.class);
+        for (Event event : events) {
+            EasyMock.expect(iterator.hasNext()).andReturn(true);
+            EasyMock.expect(iterator.nextEvent()).andReturn(event);
+        }
+        EasyMock.expect(iterator.hasNext()).andReturn(false);
+        EasyMock.replay(iterator);
+        return iterator;
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.menu;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+public class MenuCacheTest {
+    private final MenuCache cache = new MenuCache();
+
+    private final BrixNode menuNode = MenuFixtures.node("/menus/main", "main");
+
+    @Test
+    public void menuIsCachedUntilADependencyIsSaved() {
+        CompiledMenu menu = cache.getMenu(menuNode);
+        assertSame(menu, cache.getMenu(menuNode));
+
+        cache.invalidate(MenuFixtures.WORKSPACE, "/menus/other");
+        cache.invalidate("other", "/menus/main");
+        assertSame(menu, cache.getMenu(menuNode));
+
+        cache.invalidate(MenuFixtures.WORKSPACE, "/menus/main");
+        CompiledMenu compiled = cache.getMenu(menuNode);
+        assertNotSame(menu, compiled);
+        assertSame(compiled, cache.getMenu(menuNode));
+
+        cache.invalidateWorkspace(MenuFixtures.WORKSPACE);
+        assertNotSame(compiled, cache.getMenu(menuNode));
+    }
+
+    @Test
+    public void menuCompiledWhileASaveHappensIsNotCached() throws RepositoryException {
+        Node delegate = MenuFixtures.delegate("/menus/main", "main");
+        EasyMock.expect(delegate.hasProperty("name")).andAnswer(new IAnswer<Boolean>() {
+            private boolean saved;
+
+            public Boolean answer() {
+                if (!saved) {
+                    // any save in the workspace may be one the compilation has not seen
+                    saved = true;
+                    cache.invalidate(MenuFixtures.WORKSPACE, "/site/unrelated");
+                }
+                return false;
+            }
+        }).anyTimes();
+        EasyMock.replay(delegate);
+        BrixNode node = new BrixNode(delegate, MenuFixtures.session(false));
+
+        CompiledMenu raced = cache.getMenu(node);
+        CompiledMenu menu = cache.getMenu(node);
+        assertNotSame(raced, menu);
+        assertSame(menu, cache.getMenu(node));
+    }
+
+    @Test
+    public void menuReadWithPendingChangesIsNotCached() {
+        Node delegate = MenuFixtures.delegate("/menus/main", "main");
+        EasyMock.replay(delegate);
+        BrixNode node = new BrixNode(delegate, MenuFixtures.session(true));
+
+        assertNotSame(cache.getMenu(node), cache.getMenu(node));
+        assertNotSame(cache.getMenu(node), cache.getMenu(menuNode));
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.menu;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.api.JcrWorkspace;
+import org.brixcms.jcr.wrapper.BrixNode;
+import org.brixcms.plugin.menu.Menu.ChildEntry;
+import org.brixcms.plugin.menu.Menu.Entry;
+import org.brixcms.web.reference.Reference;
+import org.brixcms.web.reference.Reference.Type;
+import org.easymock.EasyMock;
+
+/**
+ * Menus and nodes for tests that do not need a repository.
+ */
+public final class MenuFixtures {
+    public static final String WORKSPACE = "default";
+
+    private MenuFixtures() {
+    }
+
+    /**
+     * @return node of an empty menu, or a referenced node
+     */
+    public static BrixNode node(String path, String identifier) {
+        Node delegate = delegate(path, identifier);
+        EasyMock.replay(delegate);
+        return new BrixNode(delegate, session(false));
+    }
+
+    /**
+     * @return nice mock of a node that is not replayed yet, so that further expectations can be added
+     */
+    public static Node delegate(String path, String identifier) {
+        Node delegate = EasyMock.createNiceMock(Node.class);
+        try {
+            EasyMock.expect(delegate.getPath()).andReturn(path).anyTimes();
+            EasyMock.expect(delegate.getIdentifier()).andReturn(identifier).anyTimes();
+        } catch (RepositoryException e) {
+            throw new AssertionError(e);
+        }
+        return delegate;
+    }
+
+    /**
+     * @return session of the {@link #WORKSPACE} workspace
+     */
+    public static JcrSession session(boolean pendingChanges) {
+        JcrWorkspace workspace = EasyMock.createNiceMock(JcrWorkspace.class);
+        EasyMock.expect(workspace.getName()).andReturn(WORKSPACE).anyTimes();
+        JcrSession session = EasyMock.createNiceMock(JcrSession.class);
+        EasyMock.expect(session.getWorkspace()).andReturn(workspace).anyTimes();
+        EasyMock.expect(session.hasPendingChanges()).andReturn(pendingChanges).anyTimes();
+        EasyMock.replay(workspace, session);
+        return session;
+    }
+
+    public static ChildEntry entry(Entry parent, String title, Reference reference) {
+        ChildEntry entry = new ChildEntry(parent);
+        entry.setTitle(title);
+        entry.setReference(reference);
+        parent.getChildren().add(entry);
+        return entry;
+    }
+
+    public static Reference nodeReference(String path, String identifier) {
+        Node delegate = delegate(path, identifier);
+        EasyMock.replay(delegate);
+        final BrixNode target = new BrixNode(delegate, session(false));
+        Reference reference = new Reference();
+        reference.setType(Type.NODE);
+        reference.setNodeModel(() -> target);
+        return reference;
+    }
+
+    public static Reference urlReference(String url) {
+        Reference reference = new Reference();
+        reference.setType(Type.URL);
+        reference.setUrl(url);
+        return reference;
+    }
+
+    /**
+     * Compiles the menu
+     * <pre>
+     * Home        -> /site/home
+     *   About     -> /about
+     * Products
+     *   Shoes     -> /site/products/shoes
+     * External    -> http://example.com
+     * </pre>
+     * stored at <code>/menus/main</code>.
+     */
+    public static CompiledMenu compileMenu() {
+        Menu menu = new Menu();
+        menu.setName("main");
+        ChildEntry home = entry(menu.getRoot(), "Home", nodeReference("/site/home", "home"));
+        entry(home, "About", urlReference("/about"));
+        ChildEntry products = entry(menu.getRoot(), "Products", null);
+        entry(products, "Shoes", nodeReference("/site/products/shoes", "shoes"));
+        entry(menu.getRoot(), "External", urlReference("http://example.com"));
+        return CompiledMenu.compile(WORKSPACE, "main", "/menus/main", menu);
+    }
+}
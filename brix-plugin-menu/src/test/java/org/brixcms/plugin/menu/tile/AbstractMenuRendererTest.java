@@ -0,0 +1,114 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.brixcms.plugin.menu.tile;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.protocol.http.WebSession;
+import org.apache.wicket.protocol.http.mock.MockServletContext;
+import org.apache.wicket.request.Url;
+import org.brixcms.plugin.menu.CompiledMenu;
+import org.brixcms.plugin.menu.CompiledMenu.Item;
+import org.brixcms.plugin.menu.MenuFixtures;
+import org.brixcms.plugin.menu.tile.AbstractMenuRenderer.RenderState;
+import org.brixcms.web.nodepage.BrixPageParameters;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AbstractMenuRendererTest {
+    private final CompiledMenu menu = MenuFixtures.compileMenu();
+
+    private final List<Item> items = menu.getItems();
+
+    private AbstractMenuRenderer renderer;
+
+    @Before
+    public void createRenderer() {
+        MockApplication application = new MockApplication();
+        application.setName(getClass().getName());
+        application.setServletContext(new MockServletContext(application, null));
+        ThreadContext.setApplication(application);
+        application.initApplication();
+        ThreadContext.setSession(new WebSession(new MockWebRequest(Url.parse(""))));
+        renderer = new AbstractMenuRenderer("menu", null) {
+        };
+    }
+
+    @After
+    public void destroyApplication() {
+        Application.get().internalDestroy();
+        ThreadContext.detach();
+    }
+
+    @Test
+    public void selectingANodeMarksThePathToTheRoot() {
+        RenderState state = renderer.new RenderState(menu);
+        state.selectPage(MenuFixtures.WORKSPACE, "shoes", null, new BrixPageParameters());
+
+        Item home = items.get(0);
+        Item products = items.get(2);
+        Item shoes = items.get(3);
+        assertTrue(state.isSelected(shoes));
+        assertTrue(state.isOnSelectedPath(shoes));
+        assertFalse(state.isSelected(products));
+        assertTrue(state.isOnSelectedPath(products));
+        assertTrue(state.anyChildOnSelectedPath(products));
+        assertFalse(state.isOnSelectedPath(home));
+        assertFalse(state.anyChildOnSelectedPath(home));
+    }
+
+    @Test
+    public void nodesOfOtherWorkspacesAreNotSelected() {
+        RenderState state = renderer.new RenderState(menu);
+        state.selectPage("other", "shoes", "/site/products/shoes", new BrixPageParameters());
+
+        for (Item item : items) {
+            assertFalse(state.isOnSelectedPath(item));
+        }
+    }
+
+    @Test
+    public void urlReferencesAreSelectedByUrl() {
+        RenderState state = renderer.new RenderState(menu);
+        state.selectPage(MenuFixtures.WORKSPACE, null, "/about", new BrixPageParameters());
+
+        assertTrue(state.isSelected(items.get(1)));
+        assertFalse(state.isSelected(items.get(0)));
+        assertTrue(state.isOnSelectedPath(items.get(0)));
+        assertFalse(state.isSelected(items.get(4)));
+    }
+
+    @Test
+    public void referenceParametersMustMatchThePage() {
+        BrixPageParameters page = new BrixPageParameters();
+        page.set("id", "1");
+        BrixPageParameters reference = new BrixPageParameters();
+
+        assertTrue(renderer.comparePageParameters(page, null));
+        assertTrue(renderer.comparePageParameters(page, reference));
+        reference.set("id", "2");
+        assertFalse(renderer.comparePageParameters(page, reference));
+        reference.set("id", "1");
+        assertTrue(renderer.comparePageParameters(page, reference));
+    }
+}
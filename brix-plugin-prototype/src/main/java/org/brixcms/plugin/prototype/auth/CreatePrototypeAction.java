@@ -21,4 +21,14 @@ public class CreatePrototypeAction extends AbstractWorkspaceAction {
     public CreatePrototypeAction(Context context, Workspace workspace) {
         super(context, workspace);
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || valueEquals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return valueHashCode();
+    }
 }
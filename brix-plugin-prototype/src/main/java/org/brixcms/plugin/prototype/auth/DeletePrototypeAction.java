@@ -21,4 +21,14 @@ public class DeletePrototypeAction extends AbstractWorkspaceAction {
     public DeletePrototypeAction(Context context, Workspace workspace) {
         super(context, workspace);
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || valueEquals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return valueHashCode();
+    }
 }
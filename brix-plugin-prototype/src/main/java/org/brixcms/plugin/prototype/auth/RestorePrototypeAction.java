@@ -14,6 +14,8 @@
 
 package org.brixcms.plugin.prototype.auth;
 
+import java.util.Objects;
+
 import org.brixcms.auth.AbstractWorkspaceAction;
 import org.brixcms.workspace.Workspace;
 
@@ -29,6 +31,25 @@ public class RestorePrototypeAction extends AbstractWorkspaceAction {
         return templateWorkspace;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!valueEquals(obj)) {
+            return false;
+        }
+        RestorePrototypeAction that = (RestorePrototypeAction) obj;
+        return Objects.equals(templateWorkspace, that.templateWorkspace);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = valueHashCode();
+        result = 31 * result + Objects.hashCode(templateWorkspace);
+        return result;
+    }
+
     @Override
     public String toString() {
         return "RestorePrototypeAction{" + "templateWorkspace=" + templateWorkspace + "} " + super.toString();
@@ -53,7 +53,7 @@ public class PublishingPanel extends BrixGenericPanel<Workspace> {
         @Override
         public void onClick() {
             Workspace workspace = PublishingPanel.this.getModelObject();
-            PublishingPlugin.get().publish(workspace, targetState);
+            PublishingPlugin.get().publishDelta(workspace, targetState);
             Map<String, String> map = new HashMap<String, String>();
             map.put("targetState", targetState);
             getSession().info(getString("published", new Model<Serializable>((Serializable) map)));
@@ -19,8 +19,11 @@ import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.ResourceModel;
 import org.brixcms.Brix;
 import org.brixcms.Plugin;
+import org.brixcms.jcr.ChangeJournal;
 import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.plugin.site.DeltaSitePublisher;
 import org.brixcms.plugin.site.SitePlugin;
+import org.brixcms.plugin.site.StagedSitePublisher;
 import org.brixcms.web.tab.AbstractWorkspaceTab;
 import org.brixcms.web.tab.IBrixTab;
 import org.brixcms.workspace.Workspace;
@@ -39,6 +42,10 @@ public class PublishingPlugin implements Plugin {
 
     private final Brix brix;
 
+    private final StagedSitePublisher publisher;
+
+    private final DeltaSitePublisher deltaPublisher;
+
     public static PublishingPlugin get() {
         return get(Brix.get());
     }
@@ -49,12 +56,37 @@ public class PublishingPlugin implements Plugin {
 
     public PublishingPlugin(Brix brix) {
         this.brix = brix;
+        this.publisher = new StagedSitePublisher(brix);
+        ChangeJournal journal = new ChangeJournal(brix.getConfig().getSessionFactory(), brix.getRootPath());
+        this.deltaPublisher = new DeltaSitePublisher(brix, journal);
+        brix.addEventsListener(journal.newRecorder(id -> {
+            Workspace workspace = brix.getWorkspaceManager().getWorkspace(id);
+            return workspace != null && SitePlugin.get(brix).isSiteWorkspace(workspace);
+        }));
     }
 
     public StateComparator getStateComparator() {
         return stateComparator;
     }
 
+    /**
+     * Returns the publisher used to replace the target workspace, e.g. to add verifiers.
+     *
+     * @return publisher
+     */
+    public StagedSitePublisher getPublisher() {
+        return publisher;
+    }
+
+    /**
+     * Returns the publisher used to apply journaled changes to the target workspace.
+     *
+     * @return publisher
+     */
+    public DeltaSitePublisher getDeltaPublisher() {
+        return deltaPublisher;
+    }
+
 
     public String getId() {
         return ID;
@@ -82,6 +114,49 @@ public class PublishingPlugin implements Plugin {
     }
 
     public void publish(Workspace workspace, String targetState) {
+        SitePlugin sitePlugin = checkPublishable(workspace, targetState);
+        String name = sitePlugin.getWorkspaceName(workspace);
+        JcrSession sourceSession = brix.getCurrentSession(workspace.getId());
+
+        publishFull(sourceSession, name, targetState);
+    }
+
+    /**
+     * Publishes only the changes made in the workspace since it was last published to the target state. Falls back to
+     * {@link #publish(Workspace, String)} if there is no target workspace yet, if it was published from another
+     * workspace or if the changes are no longer journaled.
+     *
+     * @param workspace   site workspace
+     * @param targetState state to publish to
+     * @return <code>true</code> if only the changes have been published
+     */
+    public boolean publishDelta(Workspace workspace, String targetState) {
+        SitePlugin sitePlugin = checkPublishable(workspace, targetState);
+        String name = sitePlugin.getWorkspaceName(workspace);
+        JcrSession sourceSession = brix.getCurrentSession(workspace.getId());
+
+        Workspace target = sitePlugin.getSiteWorkspace(name, targetState);
+        if (target != null && deltaPublisher.publish(sourceSession, target)) {
+            return true;
+        }
+        publishFull(sourceSession, name, targetState);
+        return false;
+    }
+
+    private void publishFull(JcrSession sourceSession, String name, String targetState) {
+        // changes saved while the content is being cloned are applied again by the next delta, which is harmless
+        ChangeJournal journal = deltaPublisher.getJournal();
+        String sourceWorkspace = sourceSession.getWorkspace().getName();
+        long sequence = journal.getSequence(sourceWorkspace);
+        String journalId = journal.getJournalId(sourceWorkspace);
+
+        Workspace published = publisher.publish(sourceSession, name, targetState);
+        if (journalId != null) {
+            deltaPublisher.markPublished(published, journalId, sequence);
+        }
+    }
+
+    private SitePlugin checkPublishable(Workspace workspace, String targetState) {
         if (workspace == null) {
             throw new IllegalArgumentException("Argument 'workspace' may not be null.");
         }
@@ -97,17 +172,18 @@ public class PublishingPlugin implements Plugin {
         if (targetState.equals(sitePlugin.getWorkspaceState(workspace))) {
             throw new IllegalStateException("Cannot publish workspace to same state it is already.");
         }
+        return sitePlugin;
+    }
 
-        String name = sitePlugin.getWorkspaceName(workspace);
-        Workspace target = sitePlugin.getSiteWorkspace(name, targetState);
-        if (target == null) {
-            target = sitePlugin.createSite(name, targetState);
-        }
-
-        JcrSession sourceSession = brix.getCurrentSession(workspace.getId());
-        JcrSession targetSession = brix.getCurrentSession(target.getId());
-
-        brix.clone(sourceSession, targetSession);
+    /**
+     * Makes the workspace that was in the state of given workspace before the last publishing current again.
+     *
+     * @param workspace site workspace
+     * @return the restored workspace
+     */
+    public Workspace rollback(Workspace workspace) {
+        SitePlugin sitePlugin = SitePlugin.get();
+        return publisher.rollback(sitePlugin.getWorkspaceName(workspace), sitePlugin.getWorkspaceState(workspace));
     }
 
     private class StateComparator implements Comparator<String> {
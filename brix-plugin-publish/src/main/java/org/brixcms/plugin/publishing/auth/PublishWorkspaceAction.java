@@ -14,6 +14,8 @@
 
 package org.brixcms.plugin.publishing.auth;
 
+import java.util.Objects;
+
 import org.brixcms.auth.AbstractWorkspaceAction;
 import org.brixcms.workspace.Workspace;
 
@@ -29,6 +31,25 @@ public class PublishWorkspaceAction extends AbstractWorkspaceAction {
         return targetState;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!valueEquals(obj)) {
+            return false;
+        }
+        PublishWorkspaceAction that = (PublishWorkspaceAction) obj;
+        return Objects.equals(targetState, that.targetState);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = valueHashCode();
+        result = 31 * result + Objects.hashCode(targetState);
+        return result;
+    }
+
     @Override
     public String toString() {
         return "PublishWorkspaceAction{" + "targetState='" + targetState + '\'' + "} " + super.toString();
@@ -96,7 +96,11 @@ public class ManageSnapshotsPanel extends BrixGenericPanel<Workspace> {
                     @Override
                     public void onClick() {
                         Workspace target = ManageSnapshotsPanel.this.getModelObject();
-                        SnapshotPlugin.get().restoreSnapshot(item.getModelObject(), target);
+                        Workspace restored = SnapshotPlugin.get().restoreSnapshot(item.getModelObject(), target);
+                        if (!restored.equals(target)) {
+                            // the restored content lives in a new workspace now
+                            ManageSnapshotsPanel.this.setModelObject(restored);
+                        }
                         getSession().info(ManageSnapshotsPanel.this.getString("restoreSuccessful"));
                     }
 
@@ -27,6 +27,7 @@ import org.brixcms.Plugin;
 import org.brixcms.auth.Action;
 import org.brixcms.jcr.api.JcrSession;
 import org.brixcms.plugin.site.SitePlugin;
+import org.brixcms.plugin.site.StagedSitePublisher;
 import org.brixcms.plugin.snapshot.auth.AccessSnapshotPluginAction;
 import org.brixcms.web.tab.AbstractWorkspaceTab;
 import org.brixcms.web.tab.IBrixTab;
@@ -35,7 +36,7 @@ import org.brixcms.workspace.Workspace;
 public class SnapshotPlugin implements Plugin {
     private static final String ID = SnapshotPlugin.class.getName();
 
-    private static final String WORKSPACE_TYPE = "brix:snapshot";
+    public static final String WORKSPACE_TYPE = "brix:snapshot";
 
     private static final String WORKSPACE_ATTRIBUTE_SITE_NAME = "brix:snapshot-site-name";
 
@@ -45,6 +46,8 @@ public class SnapshotPlugin implements Plugin {
 
     private final Brix brix;
 
+    private final StagedSitePublisher publisher;
+
     public static SnapshotPlugin get() {
         return get(Brix.get());
     }
@@ -55,6 +58,7 @@ public class SnapshotPlugin implements Plugin {
 
     public SnapshotPlugin(Brix brix) {
         this.brix = brix;
+        this.publisher = new StagedSitePublisher(brix);
     }
 
 
@@ -170,11 +174,36 @@ public class SnapshotPlugin implements Plugin {
         return workspace.getAttribute(WORKSPACE_ATTRIBUTE_SITE_NAME);
     }
 
-    public void restoreSnapshot(Workspace snapshotWorkspace, Workspace targetWorkspace) {
+    /**
+     * Restores the content of the snapshot. Site workspaces are not modified, the snapshot is published to a new
+     * workspace that takes over the name and state of the site, the target workspace is kept as rollback target.
+     *
+     * @param snapshotWorkspace snapshot to restore
+     * @param targetWorkspace   workspace to restore the snapshot to
+     * @return the workspace that contains the restored content
+     * @see StagedSitePublisher
+     */
+    public Workspace restoreSnapshot(Workspace snapshotWorkspace, Workspace targetWorkspace) {
         JcrSession sourceSession = brix.getCurrentSession(snapshotWorkspace.getId());
+        SitePlugin sitePlugin = SitePlugin.get(brix);
+        String state = sitePlugin.getWorkspaceState(targetWorkspace);
+        if (sitePlugin.isSiteWorkspace(targetWorkspace) && state != null) {
+            return publisher.publish(sourceSession, sitePlugin.getWorkspaceName(targetWorkspace), state);
+        }
+
         JcrSession targetSession = brix.getCurrentSession(targetWorkspace.getId());
         brix.clone(sourceSession, targetSession);
         brix.initWorkspace(targetWorkspace, brix.getCurrentSession(targetWorkspace.getId()));
+        return targetWorkspace;
+    }
+
+    /**
+     * Returns the publisher used to restore snapshots of site workspaces, e.g. to add verifiers.
+     *
+     * @return publisher
+     */
+    public StagedSitePublisher getPublisher() {
+        return publisher;
     }
 
     /**
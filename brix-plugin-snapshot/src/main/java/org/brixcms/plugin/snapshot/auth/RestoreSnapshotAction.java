@@ -14,6 +14,8 @@
 
 package org.brixcms.plugin.snapshot.auth;
 
+import java.util.Objects;
+
 import org.brixcms.auth.AbstractWorkspaceAction;
 import org.brixcms.workspace.Workspace;
 
@@ -41,4 +43,23 @@ public class RestoreSnapshotAction extends AbstractWorkspaceAction {
     public boolean isFromXML() {
         return snapshotWorkspace == null;
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!valueEquals(obj)) {
+            return false;
+        }
+        RestoreSnapshotAction that = (RestoreSnapshotAction) obj;
+        return Objects.equals(snapshotWorkspace, that.snapshotWorkspace);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = valueHashCode();
+        result = 31 * result + Objects.hashCode(snapshotWorkspace);
+        return result;
+    }
 }
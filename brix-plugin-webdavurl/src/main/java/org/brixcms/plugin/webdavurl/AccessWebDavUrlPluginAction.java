@@ -14,6 +14,8 @@
 
 package org.brixcms.plugin.webdavurl;
 
+import java.util.Objects;
+
 import org.brixcms.auth.Action;
 import org.brixcms.workspace.Workspace;
 
@@ -28,6 +30,25 @@ public class AccessWebDavUrlPluginAction implements Action {
         return workspace;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        AccessWebDavUrlPluginAction that = (AccessWebDavUrlPluginAction) obj;
+        return Objects.equals(workspace, that.workspace);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getClass().getName().hashCode();
+        result = 31 * result + Objects.hashCode(workspace);
+        return result;
+    }
+
     @Override
     public String toString() {
         return "AccessWebDavUrlPluginAction{" + "workspace=" + workspace + '}';
@@ -47,8 +47,6 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
     // deleted
     // such workspace can only be deleted manually when all nodes are down
     private final String PROPERTY_DO_NOT_USE = "doNotUse";
-    private final Set<String> availableWorkspaceNames = new HashSet<String>();
-
     private final Set<String> deletedWorkspaceNames = new HashSet<String>();
 
     private final Map<String, Session> workspaceToSessionMap = new HashMap<String, Session>();
@@ -66,14 +64,6 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
     }
 
 
-    public synchronized List<Workspace> getWorkspaces() {
-        List<Workspace> result = new ArrayList<Workspace>();
-        for (String s : availableWorkspaceNames) {
-            result.add(getWorkspace(s));
-        }
-        return result;
-    }
-
     public synchronized Workspace createWorkspace() {
         try {
             // either try to restore deleted workspace
@@ -90,7 +80,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
             Node node = session.getRootNode().addNode(NODE_NAME, "nt:unstructured");
             node.addMixin("mix:lockable");
             node.addNode(PROPERTIES_NODE, "nt:unstructured");
-            availableWorkspaceNames.add(id);
+            addCachedWorkspace(id);
             session.save();
 
             return getWorkspace(id);
@@ -99,19 +89,13 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
         }
     }
 
-    public synchronized boolean workspaceExists(String workspaceId) {
-        return availableWorkspaceNames.contains(workspaceId);
-    }
-
     abstract protected void createWorkspace(String workspaceId);
 
     @Override
     protected void delete(String workspaceId) throws RepositoryException {
-        synchronized (this) {
-            if (!availableWorkspaceNames.contains(workspaceId)) {
-                throw new IllegalStateException("Workspace " + workspaceId
-                        + " either does not exist or was already deleted.");
-            }
+        if (!isCachedWorkspace(workspaceId)) {
+            throw new IllegalStateException("Workspace " + workspaceId
+                    + " either does not exist or was already deleted.");
         }
 
         Session session = getSession(workspaceId);
@@ -119,8 +103,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
         tryLockNode(node);
         try {
             synchronized (this) {
-                availableWorkspaceNames.remove(workspaceId);
-                removeCachedWorkspaceAttributes(workspaceId);
+                removeCachedWorkspace(workspaceId);
 
                 node.setProperty(DELETED_PROPERTY, true);
                 if (node.hasNode(PROPERTIES_NODE)) {
@@ -178,8 +161,8 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
     }
 
     @Override
-    protected synchronized String getAttribute(String workspaceId, String key) {
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+    protected String getAttribute(String workspaceId, String key) {
+        if (!isCachedWorkspace(workspaceId)) {
             throw new IllegalStateException("Trying to get attribute of workspace " + workspaceId
                     + " that doesn't exist or was removed.");
         }
@@ -188,7 +171,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
 
     @Override
     protected Iterator<String> getAttributeKeys(String workspaceId) {
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+        if (!isCachedWorkspace(workspaceId)) {
             throw new IllegalStateException("Trying to get attribute keys of workspace " + workspaceId
                     + " that doesn't exist or was removed.");
         }
@@ -196,6 +179,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
     }
 
     public synchronized AbstractClusteredWorkspaceManager initialize() {
+        beginUpdate();
         try {
             List<String> accessibleWorkspaces = new ArrayList<String>(getAccessibleWorkspaceIds());
 
@@ -221,6 +205,8 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
             return this;
         } catch (RepositoryException e) {
             throw new JcrException(e);
+        } finally {
+            endUpdate();
         }
     }
 
@@ -268,7 +254,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
                             deletedWorkspaceNames.add(workspace);
                         } else {
                             // for available workspaces read the properties
-                            availableWorkspaceNames.add(workspace);
+                            addCachedWorkspace(workspace);
                             if (node.hasNode(PROPERTIES_NODE)) {
                                 Node properties = node.getNode(PROPERTIES_NODE);
                                 PropertyIterator iterator = properties.getProperties();
@@ -330,7 +316,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
                         && (!node.hasProperty(PROPERTY_DO_NOT_USE) || node.getProperty(PROPERTY_DO_NOT_USE)
                         .getBoolean() == false)) {
                     node.setProperty(DELETED_PROPERTY, (String) null);
-                    availableWorkspaceNames.add(workspaceId);
+                    addCachedWorkspace(workspaceId);
                     deletedWorkspaceNames.remove(workspaceId);
 
                     // clear properties if there are any
@@ -356,7 +342,7 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
     @Override
     protected synchronized void setAttribute(String workspaceId, String attributeKey, String attributeValue)
             throws RepositoryException {
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+        if (!isCachedWorkspace(workspaceId)) {
             throw new IllegalStateException("Trying to set attribute of workspace " + workspaceId
                     + " that doesn't exist or was removed.");
         }
@@ -394,15 +380,14 @@ public abstract class AbstractClusteredWorkspaceManager extends AbstractWorkspac
 
         private void workspaceCreated() {
             String name = session.getWorkspace().getName();
-            availableWorkspaceNames.add(name);
+            addCachedWorkspace(name);
             deletedWorkspaceNames.remove(name);
         }
 
         private void workspaceRemoved() {
             String name = session.getWorkspace().getName();
-            availableWorkspaceNames.remove(name);
+            removeCachedWorkspace(name);
             deletedWorkspaceNames.add(name);
-            removeCachedWorkspaceAttributes(name);
         }
 
         private void attributeChanged(String key, String value) {
@@ -23,11 +23,23 @@ import javax.jcr.Session;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Simple workspace manager. This class will not work properly in clustered JCR environment.
@@ -38,21 +50,19 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
     private static final Collection<String> NODES_TO_LEAVE_WHEN_CLEANING = Arrays
             .asList(NODE_NAME, "jcr:system", "rep:policy");
 
-    private Set<String> availableWorkspaceNames;
-
-    private List<String> deletedWorkspaceNames;
+    private static final Logger log = LoggerFactory.getLogger(AbstractSimpleWorkspaceManager.class);
 
+    /**
+     * Default number of threads reading workspaces during {@link #initialize()}
+     */
+    public static final int DEFAULT_INITIALIZATION_THREADS = Math.min(8, Runtime.getRuntime().availableProcessors());
 
+    private List<String> deletedWorkspaceNames;
 
-    public synchronized List<Workspace> getWorkspaces() {
-        List<Workspace> result = new ArrayList<Workspace>(availableWorkspaceNames.size());
+    private int initializationThreads = DEFAULT_INITIALIZATION_THREADS;
 
-        for (String s : availableWorkspaceNames) {
-            result.add(new WorkspaceImpl(s));
-        }
+    private Map<String, Exception> initializationFailures = Collections.emptyMap();
 
-        return result;
-    }
 
     public Workspace createWorkspace() {
         Session session = null;
@@ -61,7 +71,7 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
                 if (deletedWorkspaceNames.size() > 0) {
                     String id = deletedWorkspaceNames.get(deletedWorkspaceNames.size() - 1);
                     deletedWorkspaceNames.remove(id);
-                    availableWorkspaceNames.add(id);
+                    addCachedWorkspace(id);
                     session = createSession(id);
                     Node node = (Node) session.getItem(NODE_PATH);
                     node.setProperty(DELETED_PROPERTY, (String) null);
@@ -81,7 +91,7 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
                 node.addNode(PROPERTIES_NODE, "nt:unstructured");
                 closeSession(session, true);
                 session = null;
-                availableWorkspaceNames.add(id);
+                addCachedWorkspace(id);
             }
 
             return new WorkspaceImpl(id);
@@ -91,18 +101,12 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
         }
     }
 
-    public synchronized boolean workspaceExists(String workspaceId) {
-        return availableWorkspaceNames.contains(workspaceId);
-    }
-
     abstract protected void createWorkspace(String workspaceName);
 
     protected void delete(String workspaceId) throws RepositoryException {
-        synchronized (this) {
-            if (!availableWorkspaceNames.contains(workspaceId)) {
-                throw new IllegalStateException("Workspace " + workspaceId +
-                        " either does not exist or was already deleted.");
-            }
+        if (!isCachedWorkspace(workspaceId)) {
+            throw new IllegalStateException("Workspace " + workspaceId +
+                    " either does not exist or was already deleted.");
         }
         Session session = createSession(workspaceId);
         boolean saveSession = true;
@@ -118,9 +122,8 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
             node.getSession().save();
 
             synchronized (this) {
-                availableWorkspaceNames.remove(workspaceId);
+                removeCachedWorkspace(workspaceId);
                 deletedWorkspaceNames.add(workspaceId);
-                removeCachedWorkspaceAttributes(workspaceId);
             }
         } catch (RepositoryException e) {
             saveSession = false;
@@ -142,8 +145,8 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
     }
 
     @Override
-    protected synchronized String getAttribute(String workspaceId, String key) {
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+    protected String getAttribute(String workspaceId, String key) {
+        if (!isCachedWorkspace(workspaceId)) {
             throw new IllegalStateException("Trying to get attribute of workspace " + workspaceId +
                     " that doesn't exist or was removed.");
         }
@@ -152,53 +155,158 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
 
     @Override
     protected Iterator<String> getAttributeKeys(String workspaceId) {
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+        if (!isCachedWorkspace(workspaceId)) {
             throw new IllegalStateException("Trying to get attribute keys of workspace " +
                     workspaceId + " that doesn't exist or was removed.");
         }
         return getCachedAttributeKeys(workspaceId);
     }
 
+    /**
+     * Sets the number of threads reading the workspaces in {@link #initialize()}, each of them with its own session.
+     *
+     * @param initializationThreads number of threads, <code>1</code> reads the workspaces on the calling thread
+     */
+    public void setInitializationThreads(int initializationThreads) {
+        if (initializationThreads < 1) {
+            throw new IllegalArgumentException("Argument 'initializationThreads' must be positive");
+        }
+        this.initializationThreads = initializationThreads;
+    }
+
+    /**
+     * Returns the workspaces that could not be read by the last {@link #initialize()}. They are neither available nor
+     * reused for new workspaces until the manager is initialized again.
+     *
+     * @return map of workspace name to the failure
+     */
+    public Map<String, Exception> getInitializationFailures() {
+        return initializationFailures;
+    }
+
     public AbstractSimpleWorkspaceManager initialize() {
         super.initialize();
 
-        Session session = null;
+        long start = System.nanoTime();
+        List<String> workspaces = new ArrayList<String>();
+        for (String workspace : getAccessibleWorkspaceNames()) {
+            if (isBrixWorkspace(workspace)) {
+                workspaces.add(workspace);
+            }
+        }
+
+        Map<String, Exception> failures = new ConcurrentHashMap<String, Exception>();
+        List<WorkspaceState> states = readWorkspaces(workspaces, failures);
 
+        beginUpdate();
         try {
-            availableWorkspaceNames = new HashSet<String>();
-            deletedWorkspaceNames = new ArrayList<String>();
-
-            List<String> accessibleWorkspaces = getAccessibleWorkspaceNames();
-            for (String workspace : accessibleWorkspaces) {
-                if (isBrixWorkspace(workspace)) {
-                    session = createSession(workspace);
-                    if (session.itemExists(NODE_PATH)) {
-                        Node node = (Node) session.getItem(NODE_PATH);
-
-                        if (node.hasProperty(DELETED_PROPERTY) &&
-                                node.getProperty(DELETED_PROPERTY).getBoolean() == true) {
-                            deletedWorkspaceNames.add(workspace);
-                        } else {
-                            availableWorkspaceNames.add(workspace);
-                            if (node.hasNode(PROPERTIES_NODE)) {
-                                Node properties = node.getNode(PROPERTIES_NODE);
-                                PropertyIterator iterator = properties.getProperties();
-                                while (iterator.hasNext()) {
-                                    Property property = iterator.nextProperty();
-                                    setCachedAttribute(workspace, property.getName(), property
-                                            .getValue().getString());
-                                }
-                            }
-                        }
+            List<String> deleted = new ArrayList<String>();
+            for (WorkspaceState state : states) {
+                if (state == null) {
+                    continue;
+                }
+                if (state.deleted) {
+                    deleted.add(state.workspace);
+                } else {
+                    addCachedWorkspace(state.workspace);
+                    for (Map.Entry<String, String> attribute : state.attributes.entrySet()) {
+                        setCachedAttribute(state.workspace, attribute.getKey(), attribute.getValue());
                     }
-                    closeSession(session, true);
-                    session = null;
                 }
             }
-            return this;
-        } catch (RepositoryException e) {
+            synchronized (this) {
+                deletedWorkspaceNames = deleted;
+                initializationFailures = Collections.unmodifiableMap(new TreeMap<String, Exception>(failures));
+            }
+        } finally {
+            endUpdate();
+        }
+
+        log.info("Read {} workspaces in {} ms ({} failed)", workspaces.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures.size());
+        return this;
+    }
+
+    /**
+     * Reads the given workspaces on up to {@link #setInitializationThreads(int) initializationThreads} threads.
+     *
+     * @return state of every workspace in the order of the list, <code>null</code> for workspaces without the
+     *         workspace node or that failed
+     */
+    private List<WorkspaceState> readWorkspaces(final List<String> workspaces, final Map<String, Exception> failures) {
+        final WorkspaceState[] states = new WorkspaceState[workspaces.size()];
+        final AtomicInteger next = new AtomicInteger();
+        Runnable worker = new Runnable() {
+            public void run() {
+                int index;
+                while ((index = next.getAndIncrement()) < states.length) {
+                    String workspace = workspaces.get(index);
+                    try {
+                        states[index] = readWorkspace(workspace);
+                    } catch (Exception e) {
+                        log.warn("Could not read workspace {}", workspace, e);
+                        failures.put(workspace, e);
+                    }
+                }
+            }
+        };
+
+        int threads = Math.min(initializationThreads, workspaces.size());
+        if (threads <= 1) {
+            worker.run();
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+                for (int i = 0; i < threads; ++i) {
+                    futures.add(executor.submit(worker));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Reading workspaces was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Reading workspaces failed", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        return Arrays.asList(states);
+    }
+
+    private WorkspaceState readWorkspace(String workspace) throws RepositoryException {
+        Session session = createSession(workspace);
+        try {
+            if (!session.itemExists(NODE_PATH)) {
+                return null;
+            }
+            Node node = (Node) session.getItem(NODE_PATH);
+            WorkspaceState state = new WorkspaceState(workspace);
+            if (node.hasProperty(DELETED_PROPERTY) && node.getProperty(DELETED_PROPERTY).getBoolean() == true) {
+                state.deleted = true;
+            } else if (node.hasNode(PROPERTIES_NODE)) {
+                Node properties = node.getNode(PROPERTIES_NODE);
+                PropertyIterator iterator = properties.getProperties();
+                while (iterator.hasNext()) {
+                    Property property = iterator.nextProperty();
+                    state.attributes.put(property.getName(), property.getValue().getString());
+                }
+            }
+            return state;
+        } finally {
             closeSession(session, false);
-            throw new JcrException(e);
+        }
+    }
+
+    private static final class WorkspaceState {
+        private final String workspace;
+        private final Map<String, String> attributes = new LinkedHashMap<String, String>();
+        private boolean deleted;
+
+        private WorkspaceState(String workspace) {
+            this.workspace = workspace;
         }
     }
 
@@ -231,7 +339,7 @@ public abstract class AbstractSimpleWorkspaceManager extends AbstractWorkspaceMa
     protected synchronized void setAttribute(String workspaceId, String key, String value) {
         Session session = null;
         boolean saveSession = true;
-        if (!availableWorkspaceNames.contains(workspaceId)) {
+        if (!isCachedWorkspace(workspaceId)) {
             throw new IllegalStateException("Can not set attribute '" + key +
                     "' on deleted or non-existing workspace '" + workspaceId + "'.");
         }
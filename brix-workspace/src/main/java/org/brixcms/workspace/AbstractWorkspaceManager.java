@@ -21,11 +21,14 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
@@ -53,9 +56,22 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
 
     protected final String WORKSPACE_PREFIX = "bx_";
 
-    private Map<AttributeKeyAndValue, Set<String>> attributeToWorkspaceListMap = new HashMap<AttributeKeyAndValue, Set<String>>();
+    /**
+     * Maximum number of distinct attribute filters whose results are kept by a single snapshot
+     */
+    private static final int MAX_CACHED_FILTERS = 1024;
 
-    private Map<String, Map<String, String>> workspaceToWorkspaceAttributesMap = new HashMap<String, Map<String, String>>();
+    // authoritative state, only accessed while holding the monitor of this manager
+    private final Set<String> availableWorkspaceIds = new HashSet<String>();
+
+    private final Map<AttributeKeyAndValue, Set<String>> attributeToWorkspaceListMap = new HashMap<AttributeKeyAndValue, Set<String>>();
+
+    private final Map<String, Map<String, String>> workspaceToWorkspaceAttributesMap = new HashMap<String, Map<String, String>>();
+
+    private int updateDepth = 0;
+
+    // immutable copy of the state above, read without locking
+    private volatile Snapshot snapshot = new Snapshot();
 
     private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
 
@@ -83,39 +99,53 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
     }
 
 
-    public synchronized List<Workspace> getWorkspacesFiltered(
-            Map<String, String> workspaceAttributes) {
-        if (workspaceAttributes.isEmpty()) {
-            return getWorkspaces();
-        } else {
-            List<Set<String>> workspaces = new ArrayList<Set<String>>();
-            for (Entry<String, String> entry : workspaceAttributes.entrySet()) {
-                AttributeKeyAndValue keyAndValue = new AttributeKeyAndValue(entry.getKey(), entry
-                        .getValue());
-                Set<String> w = attributeToWorkspaceListMap.get(keyAndValue);
-                if (w == null || w.isEmpty()) {
-                    return Collections.emptyList();
-                } else {
-                    workspaces.add(w);
-                }
-            }
+    public List<Workspace> getWorkspaces() {
+        return new ArrayList<Workspace>(snapshot.workspaces.values());
+    }
 
-            Set<String> intersection = intersect(workspaces);
-            List<Workspace> result = new ArrayList<Workspace>(intersection.size());
+    public boolean workspaceExists(String workspaceId) {
+        return snapshot.workspaces.containsKey(workspaceId);
+    }
 
-            for (String s : intersection) {
-                result.add(getWorkspace(s));
+    /**
+     * Returns workspaces that have all of the specified attributes. The result of every distinct filter is computed
+     * once per snapshot, so repeated lookups such as the site workspace for a name and state do not intersect the
+     * attribute sets again until a workspace or an attribute changes.
+     */
+    public List<Workspace> getWorkspacesFiltered(Map<String, String> workspaceAttributes) {
+        if (workspaceAttributes.isEmpty()) {
+            return getWorkspaces();
+        }
+        final Snapshot current = snapshot;
+        List<Workspace> result = current.filtered.get(workspaceAttributes);
+        if (result == null) {
+            result = current.filter(workspaceAttributes);
+            if (current.filtered.size() < MAX_CACHED_FILTERS) {
+                current.filtered.putIfAbsent(new HashMap<String, String>(workspaceAttributes), result);
             }
-
-            return result;
         }
+        return new ArrayList<Workspace>(result);
     }
 
     public Workspace getWorkspace(String workspaceId) {
-        if (workspaceExists(workspaceId)) {
-            return new WorkspaceImpl(workspaceId);
-        } else {
-            return null;
+        return snapshot.workspaces.get(workspaceId);
+    }
+
+    /**
+     * Sets the attributes while publishing of the snapshot is deferred, readers therefore observe either none or all
+     * of the changes.
+     */
+    @Override
+    public synchronized void setAttributes(String attributeKey, Map<String, String> attributeValues) {
+        beginUpdate();
+        try {
+            for (Entry<String, String> entry : attributeValues.entrySet()) {
+                setAttribute(entry.getKey(), attributeKey, entry.getValue());
+            }
+        } catch (RepositoryException e) {
+            throw new JcrException(e);
+        } finally {
+            endUpdate();
         }
     }
 
@@ -125,13 +155,13 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
 
     abstract protected Iterator<String> getAttributeKeys(String workspaceId);
 
-    protected synchronized Iterator<String> getCachedAttributeKeys(String workspaceId) {
-        Map<String, String> attributes = workspaceToWorkspaceAttributesMap.get(workspaceId);
-        if (attributes == null || attributes.isEmpty()) {
+    protected Iterator<String> getCachedAttributeKeys(String workspaceId) {
+        Map<String, String> attributes = snapshot.attributes.get(workspaceId);
+        if (attributes == null) {
             List<String> empty = Collections.emptyList();
             return empty.iterator();
         } else {
-            return new ArrayList<String>(attributes.keySet()).iterator();
+            return attributes.keySet().iterator();
         }
     }
 
@@ -143,13 +173,42 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
         return WORKSPACE_PREFIX + smost + sleast;
     }
 
-    protected AbstractWorkspaceManager initialize() {
+    protected synchronized AbstractWorkspaceManager initialize() {
+        availableWorkspaceIds.clear();
         attributeToWorkspaceListMap.clear();
         workspaceToWorkspaceAttributesMap.clear();
+        publishSnapshot();
         return this;
     }
 
-    private Set<String> intersect(List<Set<String>> sets) {
+    /**
+     * Defers publishing of changes made to the cached workspaces and attributes until the matching
+     * {@link #endUpdate()}, so that populating the cache does not copy the snapshot for every attribute. Calls may be
+     * nested.
+     */
+    protected synchronized void beginUpdate() {
+        ++updateDepth;
+    }
+
+    /**
+     * Publishes the changes made since the outermost {@link #beginUpdate()}.
+     */
+    protected synchronized void endUpdate() {
+        if (updateDepth <= 0) {
+            throw new IllegalStateException("endUpdate() called without matching beginUpdate()");
+        }
+        if (--updateDepth == 0) {
+            publishSnapshot();
+        }
+    }
+
+    private void publishSnapshot() {
+        if (updateDepth == 0) {
+            snapshot = new Snapshot(this);
+        }
+    }
+
+    private static Set<String> intersect(List<Set<String>> sets) {
         if (sets.isEmpty()) {
             return Collections.emptySet();
         } else if (sets.size() == 1) {
@@ -171,7 +230,7 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
         return current;
     }
 
-    private Set<String> intersect(Set<String> s1, Set<String> s2) {
+    private static Set<String> intersect(Set<String> s1, Set<String> s2) {
         Set<String> result = new HashSet<String>(s1.size());
         for (String s : s1) {
             if (s2.contains(s)) {
@@ -193,6 +252,27 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
         return false;
     }
 
+    /**
+     * @return <code>true</code> if the workspace is known to be available, evaluated without locking
+     */
+    protected boolean isCachedWorkspace(String workspaceId) {
+        return snapshot.workspaces.containsKey(workspaceId);
+    }
+
+    protected synchronized void addCachedWorkspace(String workspaceId) {
+        if (availableWorkspaceIds.add(workspaceId)) {
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Removes the workspace together with its cached attributes.
+     */
+    protected synchronized void removeCachedWorkspace(String workspaceId) {
+        availableWorkspaceIds.remove(workspaceId);
+        removeCachedWorkspaceAttributes(workspaceId);
+    }
+
     protected synchronized void removeCachedWorkspaceAttributes(String workspaceId) {
         workspaceToWorkspaceAttributesMap.remove(workspaceId);
         for (Iterator<Entry<AttributeKeyAndValue, Set<String>>> i = attributeToWorkspaceListMap
@@ -205,13 +285,14 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
                 }
             }
         }
+        publishSnapshot();
     }
 
     abstract protected void setAttribute(String workspaceId, String attributeKey,
                                          String attributeValue) throws RepositoryException;
 
-    protected void setCachedAttribute(String workspaceId, String key, String value) {
-        removeCachedAttribute(workspaceId, key);
+    protected synchronized void setCachedAttribute(String workspaceId, String key, String value) {
+        removeAttribute(workspaceId, key);
         if (value != null) {
             Map<String, String> workspaceAttributes = workspaceToWorkspaceAttributesMap
                     .get(workspaceId);
@@ -227,27 +308,39 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
                 workspaces = new HashSet<String>();
                 attributeToWorkspaceListMap.put(keyAndValue, workspaces);
             }
-            if (!workspaces.contains(workspaceId)) {
-                workspaces.add(workspaceId);
-            }
+            workspaces.add(workspaceId);
         }
+        publishSnapshot();
     }
 
-    protected void removeCachedAttribute(String workspaceId, String key) {
-        String value = getCachedAttribute(workspaceId, key);
-        if (value != null) {
-            Map<String, String> attributes = workspaceToWorkspaceAttributesMap.get(workspaceId);
-            attributes.remove(key);
-            AttributeKeyAndValue keyAndValue = new AttributeKeyAndValue(key, value);
-            Set<String> workspaces = attributeToWorkspaceListMap.get(keyAndValue);
-            if (workspaces != null) {
-                workspaces.remove(workspaceId);
+    protected synchronized void removeCachedAttribute(String workspaceId, String key) {
+        if (removeAttribute(workspaceId, key)) {
+            publishSnapshot();
+        }
+    }
+
+    private boolean removeAttribute(String workspaceId, String key) {
+        Map<String, String> attributes = workspaceToWorkspaceAttributesMap.get(workspaceId);
+        String value = attributes != null ? attributes.remove(key) : null;
+        if (value == null) {
+            return false;
+        }
+        if (attributes.isEmpty()) {
+            workspaceToWorkspaceAttributesMap.remove(workspaceId);
+        }
+        AttributeKeyAndValue keyAndValue = new AttributeKeyAndValue(key, value);
+        Set<String> workspaces = attributeToWorkspaceListMap.get(keyAndValue);
+        if (workspaces != null) {
+            workspaces.remove(workspaceId);
+            if (workspaces.isEmpty()) {
+                attributeToWorkspaceListMap.remove(keyAndValue);
             }
         }
+        return true;
     }
 
     protected String getCachedAttribute(String workspaceId, String key) {
-        Map<String, String> attributes = workspaceToWorkspaceAttributesMap.get(workspaceId);
+        Map<String, String> attributes = snapshot.attributes.get(workspaceId);
         if (attributes != null) {
             return attributes.get(key);
         } else {
@@ -255,7 +348,67 @@ public abstract class AbstractWorkspaceManager implements WorkspaceManager {
         }
     }
 
-    private class AttributeKeyAndValue {
+    /**
+     * Immutable view of the available workspaces and their attributes. A new snapshot replaces the current one
+     * whenever the cached state changes, readers therefore never need to lock the manager.
+     */
+    private static final class Snapshot {
+        private final Map<String, Workspace> workspaces;
+        private final Map<String, Map<String, String>> attributes;
+        private final Map<AttributeKeyAndValue, Set<String>> attributeToWorkspaces;
+        private final ConcurrentMap<Map<String, String>, List<Workspace>> filtered =
+                new ConcurrentHashMap<Map<String, String>, List<Workspace>>();
+
+        private Snapshot() {
+            workspaces = Collections.emptyMap();
+            attributes = Collections.emptyMap();
+            attributeToWorkspaces = Collections.emptyMap();
+        }
+
+        private Snapshot(AbstractWorkspaceManager manager) {
+            Map<String, Workspace> workspaces = new LinkedHashMap<String, Workspace>();
+            for (String id : manager.availableWorkspaceIds) {
+                workspaces.put(id, manager.new WorkspaceImpl(id));
+            }
+            this.workspaces = Collections.unmodifiableMap(workspaces);
+
+            Map<String, Map<String, String>> attributes = new HashMap<String, Map<String, String>>();
+            for (Entry<String, Map<String, String>> e : manager.workspaceToWorkspaceAttributesMap.entrySet()) {
+                attributes.put(e.getKey(), Collections.unmodifiableMap(new HashMap<String, String>(e.getValue())));
+            }
+            this.attributes = Collections.unmodifiableMap(attributes);
+
+            Map<AttributeKeyAndValue, Set<String>> index = new HashMap<AttributeKeyAndValue, Set<String>>();
+            for (Entry<AttributeKeyAndValue, Set<String>> e : manager.attributeToWorkspaceListMap.entrySet()) {
+                index.put(e.getKey(), Collections.unmodifiableSet(new HashSet<String>(e.getValue())));
+            }
+            this.attributeToWorkspaces = Collections.unmodifiableMap(index);
+        }
+
+        private List<Workspace> filter(Map<String, String> workspaceAttributes) {
+            List<Set<String>> sets = new ArrayList<Set<String>>(workspaceAttributes.size());
+            for (Entry<String, String> entry : workspaceAttributes.entrySet()) {
+                Set<String> w = attributeToWorkspaces.get(new AttributeKeyAndValue(entry.getKey(), entry
+                        .getValue()));
+                if (w == null || w.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                sets.add(w);
+            }
+
+            Set<String> intersection = intersect(sets);
+            List<Workspace> result = new ArrayList<Workspace>(intersection.size());
+            for (String s : intersection) {
+                Workspace workspace = workspaces.get(s);
+                if (workspace != null) {
+                    result.add(workspace);
+                }
+            }
+            return Collections.unmodifiableList(result);
+        }
+    }
+
+    private static class AttributeKeyAndValue {
         private final String key;
         private final String value;
 
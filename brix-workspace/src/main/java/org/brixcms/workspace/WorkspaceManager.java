@@ -79,6 +79,25 @@ public interface WorkspaceManager {
      */
     public List<Workspace> getWorkspacesFiltered(Map<String, String> workspaceAttributes);
 
+    /**
+     * Sets the attribute with specified key on several workspaces. Managers that keep the attributes in memory make all
+     * changes visible to {@link #getWorkspacesFiltered(Map)} at once, so that e.g. two workspaces can swap an attribute
+     * value without a moment in which both or neither of them match. The default implementation sets the attributes
+     * one after another.
+     *
+     * @param attributeKey
+     * @param attributeValues map of workspace id to the new attribute value, <code>null</code> removes the attribute
+     */
+    default void setAttributes(String attributeKey, Map<String, String> attributeValues) {
+        for (Map.Entry<String, String> entry : attributeValues.entrySet()) {
+            Workspace workspace = getWorkspace(entry.getKey());
+            if (workspace == null) {
+                throw new IllegalStateException("Workspace " + entry.getKey() + " does not exist.");
+            }
+            workspace.setAttribute(attributeKey, entry.getValue());
+        }
+    }
+
     /**
      * Returns whether a workspace with given id exists.
      *
@@ -19,36 +19,44 @@ import org.brixcms.workspace.Workspace;
 import java.rmi.RemoteException;
 import java.util.Iterator;
 
-// TODO: Make it a bit smarter. The RMI communication should be much coarser grained
-// Workspaces objects are short lived, we don't need fresh property values every time
-// we query for them. All properties should be copied from server on workspace initialization
-// (in 1 rmi call)
+/**
+ * Workspace of a {@link ClientWorkspaceManager}. Attributes are read from the snapshot of the manager, the remote
+ * workspace is only looked up when the workspace is modified. Without a manager every call is delegated to the
+ * remote workspace.
+ */
 class ClientWorkspace implements Workspace {
     private RemoteWorkspace delegate;
 
     private String id;
-    private RemoteWorkspaceManager remoteWorkspaceManager;
+    private ClientWorkspaceManager manager;
 
     public ClientWorkspace(RemoteWorkspace delegate) {
         this.delegate = delegate;
     }
 
-    public ClientWorkspace(String id, RemoteWorkspaceManager manager) {
+    public ClientWorkspace(RemoteWorkspace delegate, ClientWorkspaceManager manager) {
+        this.delegate = delegate;
+        this.manager = manager;
+    }
+
+    public ClientWorkspace(String id, ClientWorkspaceManager manager) {
         this.id = id;
-        this.remoteWorkspaceManager = manager;
+        this.manager = manager;
     }
 
     public RemoteWorkspace getDelegate() {
         if (delegate == null) {
-            try {
-                delegate = remoteWorkspaceManager.getWorkspace(id);
-            } catch (RemoteException e) {
-                throw new CommunicationException(e);
-            }
+            delegate = manager.getRemoteWorkspace(id);
         }
         return delegate;
     }
 
+    private void changed() {
+        if (manager != null) {
+            manager.invalidate();
+        }
+    }
+
     public String getId() {
         if (id == null) {
             try {
@@ -90,10 +98,15 @@ class ClientWorkspace implements Workspace {
             getDelegate().setAttribute(attributeKey, attributeValue);
         } catch (RemoteException e) {
             throw new CommunicationException(e);
+        } finally {
+            changed();
         }
     }
 
     public String getAttribute(String attributeKey) {
+        if (manager != null) {
+            return manager.getSnapshot().getAttributes(getId()).get(attributeKey);
+        }
         try {
             return getDelegate().getAttribute(attributeKey);
         } catch (RemoteException e) {
@@ -102,6 +115,9 @@ class ClientWorkspace implements Workspace {
     }
 
     public Iterator<String> getAttributeKeys() {
+        if (manager != null) {
+            return manager.getSnapshot().getAttributes(getId()).keySet().iterator();
+        }
         try {
             return getDelegate().getAttributeKeys();
         } catch (RemoteException e) {
@@ -114,6 +130,8 @@ class ClientWorkspace implements Workspace {
             getDelegate().delete();
         } catch (RemoteException e) {
             throw new CommunicationException(e);
+        } finally {
+            changed();
         }
     }
 }
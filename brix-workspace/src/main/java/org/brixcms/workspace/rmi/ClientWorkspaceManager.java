@@ -19,21 +19,32 @@ import org.brixcms.workspace.WorkspaceManager;
 
 import java.rmi.Naming;
 import java.rmi.RemoteException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Workspace manager that delegates to a {@link ServerWorkspaceManager} over RMI. Reads are answered from a local
+ * {@link WorkspaceSnapshot} of all workspaces and their attributes. The snapshot is checked against the server version
+ * at most once per {@link #setMaxStaleness(Duration) staleness interval} and only transferred again when the server
+ * state changed, so a check costs a single round trip. Changes made through this manager invalidate the local
+ * snapshot immediately, changes made by other clients of the same server become visible after the staleness interval.
+ * Changes the server does not know about only become visible once the server is invalidated, see
+ * {@link ServerWorkspaceManager}.
+ */
 public class ClientWorkspaceManager implements WorkspaceManager {
+    public static final Duration DEFAULT_MAX_STALENESS = Duration.ofSeconds(1);
+
     private RemoteWorkspaceManager delegate;
     private String url;
 
-    private static List<Workspace> remoteToLocal(List<RemoteWorkspace> remote) {
-        ArrayList<Workspace> local = new ArrayList<Workspace>(remote.size());
-        for (RemoteWorkspace workspace : remote) {
-            local.add(new ClientWorkspace(workspace));
-        }
-        return local;
-    }
+    private volatile Duration maxStaleness = DEFAULT_MAX_STALENESS;
+
+    // guarded by this
+    private WorkspaceSnapshot snapshot;
+    private long checkedAt;
+    private long invalidations;
 
     public ClientWorkspaceManager(String url) {
         this.url = url;
@@ -58,42 +69,111 @@ public class ClientWorkspaceManager implements WorkspaceManager {
         }
     }
 
+    /**
+     * Sets how long the local snapshot is used without asking the server whether it is still current.
+     * {@link Duration#ZERO} checks the version on every read.
+     *
+     * @param maxStaleness
+     */
+    public void setMaxStaleness(Duration maxStaleness) {
+        if (maxStaleness == null || maxStaleness.isNegative()) {
+            throw new IllegalArgumentException("maxStaleness must be zero or positive");
+        }
+        this.maxStaleness = maxStaleness;
+    }
+
+    public Duration getMaxStaleness() {
+        return maxStaleness;
+    }
 
+    /**
+     * Discards the local snapshot, the next read fetches the current state from the server.
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+        invalidations++;
+    }
 
-    public List<Workspace> getWorkspaces() {
+    WorkspaceSnapshot getSnapshot() {
+        final String knownEpoch;
+        final long known;
+        final long generation;
+        synchronized (this) {
+            if (snapshot != null && System.nanoTime() - checkedAt < maxStaleness.toNanos()) {
+                return snapshot;
+            }
+            knownEpoch = snapshot != null ? snapshot.getEpoch() : null;
+            known = snapshot != null ? snapshot.getVersion() : -1;
+            generation = invalidations;
+        }
+
+        final WorkspaceSnapshot fetched;
         try {
-            return remoteToLocal(getDelegate().getWorkspaces());
+            fetched = getDelegate().getSnapshot(knownEpoch, known);
         } catch (RemoteException e) {
             delegate = null;
+            invalidate();
             throw new CommunicationException(e);
         }
+
+        synchronized (this) {
+            WorkspaceSnapshot result = fetched != null ? fetched : snapshot;
+            if (result == null) {
+                // invalidated while the server was asked whether the old snapshot was current
+                return getSnapshot();
+            }
+            // do not keep a snapshot requested before a local change was made
+            if (generation == invalidations) {
+                snapshot = result;
+                checkedAt = System.nanoTime();
+            }
+            return result;
+        }
+    }
+
+
+    public List<Workspace> getWorkspaces() {
+        WorkspaceSnapshot current = getSnapshot();
+        List<Workspace> result = new ArrayList<Workspace>(current.getWorkspaceIds().size());
+        for (String id : current.getWorkspaceIds()) {
+            result.add(new ClientWorkspace(id, this));
+        }
+        return result;
     }
 
     public List<Workspace> getWorkspacesFiltered(Map<String, String> workspaceAttributes) {
-        try {
-            return remoteToLocal(getDelegate().getWorkspacesFiltered(workspaceAttributes));
-        } catch (RemoteException e) {
-            delegate = null;
-            throw new CommunicationException(e);
+        WorkspaceSnapshot current = getSnapshot();
+        List<Workspace> result = new ArrayList<Workspace>();
+        for (String id : current.getWorkspaceIds()) {
+            if (current.matches(id, workspaceAttributes)) {
+                result.add(new ClientWorkspace(id, this));
+            }
         }
+        return result;
     }
 
     public Workspace createWorkspace() {
         try {
-            return new ClientWorkspace(getDelegate().createWorkspace());
+            return new ClientWorkspace(getDelegate().createWorkspace(), this);
         } catch (RemoteException e) {
             delegate = null;
             throw new CommunicationException(e);
+        } finally {
+            invalidate();
         }
     }
 
     public Workspace getWorkspace(String workspaceId) {
-        return new ClientWorkspace(workspaceId, getDelegate());
+        return new ClientWorkspace(workspaceId, this);
     }
 
     public boolean workspaceExists(String workspaceId) {
+        return getSnapshot().contains(workspaceId);
+    }
+
+    RemoteWorkspace getRemoteWorkspace(String workspaceId) {
         try {
-            return getDelegate().workspaceExists(workspaceId);
+            return getDelegate().getWorkspace(workspaceId);
         } catch (RemoteException e) {
             delegate = null;
             throw new CommunicationException(e);
@@ -26,6 +26,17 @@ interface RemoteWorkspaceManager extends Remote {
 
     public List<RemoteWorkspace> getWorkspaces() throws RemoteException;
 
+    /**
+     * Returns all workspaces and their attributes in a single call.
+     *
+     * @param knownEpoch epoch of the snapshot the caller already has or <code>null</code>
+     * @param knownVersion version of the snapshot the caller already has or <code>-1</code>
+     * @return current snapshot or <code>null</code> if the state has not changed since <code>knownVersion</code> of
+     *         <code>knownEpoch</code>
+     * @throws RemoteException
+     */
+    public WorkspaceSnapshot getSnapshot(String knownEpoch, long knownVersion) throws RemoteException;
+
     public List<RemoteWorkspace> getWorkspacesFiltered(Map<String, String> workspaceAttributes)
             throws RemoteException;
 
@@ -22,14 +22,30 @@ import java.util.Iterator;
 
 class ServerWorkspace extends UnicastRemoteObject implements RemoteWorkspace {
     private final Workspace delegate;
+    private final ServerWorkspaceManager manager;
 
     public ServerWorkspace(Workspace delegate) throws RemoteException {
+        this(delegate, null);
+    }
+
+    public ServerWorkspace(Workspace delegate, ServerWorkspaceManager manager) throws RemoteException {
         this.delegate = delegate;
+        this.manager = manager;
+    }
+
+    private void changed() {
+        if (manager != null) {
+            manager.invalidate();
+        }
     }
 
 
     public void delete() throws RemoteException {
-        delegate.delete();
+        try {
+            delegate.delete();
+        } finally {
+            changed();
+        }
     }
 
     public String getAttribute(String attributeKey) throws RemoteException {
@@ -45,6 +61,10 @@ class ServerWorkspace extends UnicastRemoteObject implements RemoteWorkspace {
     }
 
     public void setAttribute(String attributeKey, String attributeValue) throws RemoteException {
-        delegate.setAttribute(attributeKey, attributeValue);
+        try {
+            delegate.setAttribute(attributeKey, attributeValue);
+        } finally {
+            changed();
+        }
     }
 }
@@ -19,38 +19,108 @@ import org.brixcms.workspace.WorkspaceManager;
 
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Exposes a {@link WorkspaceManager} over RMI. Every change made through this manager or its workspaces increments
+ * the version returned with {@link #getSnapshot(String, long)}, which lets {@link ClientWorkspaceManager} keep a local
+ * copy of all workspace attributes and only fetch it again after something changed. Versions are qualified by an
+ * epoch that is new for every instance, so clients of a restarted server never mistake its versions for the ones they
+ * have seen before.
+ * <p>
+ * Only workspace deletions are picked up from the wrapped manager, through {@link WorkspaceManager.Listener}. Other
+ * changes made to the wrapped manager directly, or to the same repository by another cluster node, do not change the
+ * version: clients keep reading the old attributes until {@link #invalidate()} is called, however short their
+ * staleness interval is.
+ */
 public class ServerWorkspaceManager implements RemoteWorkspaceManager {
     private final WorkspaceManager delegate;
 
-    private static List<RemoteWorkspace> localToRemote(List<Workspace> local)
+    private final String epoch = UUID.randomUUID().toString();
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile WorkspaceSnapshot snapshot;
+
+    private List<RemoteWorkspace> localToRemote(List<Workspace> local)
             throws RemoteException {
         ArrayList<RemoteWorkspace> remote = new ArrayList<RemoteWorkspace>(local.size());
         for (Workspace workspace : local) {
-            remote.add(new ServerWorkspace(workspace));
+            remote.add(new ServerWorkspace(workspace, this));
         }
         return remote;
     }
 
     public ServerWorkspaceManager(WorkspaceManager delegate) {
         this.delegate = delegate;
+        delegate.addListener(new WorkspaceManager.Listener() {
+            public void workspaceDeleted(String workspaceId) {
+                invalidate();
+            }
+        });
+    }
+
+    /**
+     * Marks the state as changed so that clients fetch a new snapshot on their next check.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return version of the workspace state, incremented on every change
+     */
+    public long getVersion() {
+        return version.get();
     }
 
 
     public RemoteWorkspace createWorkspace() throws RemoteException {
-        return new ServerWorkspace(delegate.createWorkspace());
+        try {
+            return new ServerWorkspace(delegate.createWorkspace(), this);
+        } finally {
+            invalidate();
+        }
     }
 
     public RemoteWorkspace getWorkspace(String workspaceId) throws RemoteException {
-        return new ServerWorkspace(delegate.getWorkspace(workspaceId));
+        return new ServerWorkspace(delegate.getWorkspace(workspaceId), this);
     }
 
     public List<RemoteWorkspace> getWorkspaces() throws RemoteException {
         return localToRemote(delegate.getWorkspaces());
     }
 
+    public WorkspaceSnapshot getSnapshot(String knownEpoch, long knownVersion) throws RemoteException {
+        long current = version.get();
+        if (current == knownVersion && epoch.equals(knownEpoch)) {
+            return null;
+        }
+        WorkspaceSnapshot cached = snapshot;
+        if (cached != null && cached.getVersion() == current) {
+            return cached;
+        }
+        Map<String, Map<String, String>> workspaces = new LinkedHashMap<String, Map<String, String>>();
+        for (Workspace workspace : delegate.getWorkspaces()) {
+            Map<String, String> attributes = new LinkedHashMap<String, String>();
+            for (Iterator<String> keys = workspace.getAttributeKeys(); keys.hasNext();) {
+                String key = keys.next();
+                attributes.put(key, workspace.getAttribute(key));
+            }
+            workspaces.put(workspace.getId(), attributes);
+        }
+        // a change made while the attributes were read leaves the snapshot tagged with the older version, so that
+        // clients pick up the change on their next check
+        WorkspaceSnapshot result = new WorkspaceSnapshot(epoch, current, workspaces);
+        snapshot = result;
+        return result;
+    }
+
     public List<RemoteWorkspace> getWorkspacesFiltered(Map<String, String> workspaceAttributes)
             throws RemoteException {
         return localToRemote(delegate.getWorkspacesFiltered(workspaceAttributes));
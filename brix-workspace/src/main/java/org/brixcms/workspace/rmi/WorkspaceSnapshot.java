@@ -0,0 +1,93 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.workspace.rmi;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serializable copy of all workspaces and their attributes known to a {@link ServerWorkspaceManager}, tagged with
+ * the epoch of the server instance and the version of the server state it was taken from. Clients answer read calls
+ * from the snapshot instead of issuing a remote call per attribute.
+ */
+final class WorkspaceSnapshot implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private final String epoch;
+
+    private final long version;
+
+    private final Map<String, Map<String, String>> workspaces;
+
+    public WorkspaceSnapshot(String epoch, long version, Map<String, Map<String, String>> workspaces) {
+        this.epoch = epoch;
+        this.version = version;
+        Map<String, Map<String, String>> copy = new LinkedHashMap<String, Map<String, String>>(workspaces.size());
+        for (Map.Entry<String, Map<String, String>> entry : workspaces.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableMap(new LinkedHashMap<String, String>(entry.getValue())));
+        }
+        this.workspaces = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * @return identifier of the server instance that took the snapshot, versions of different instances are unrelated
+     */
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Set<String> getWorkspaceIds() {
+        return workspaces.keySet();
+    }
+
+    public boolean contains(String workspaceId) {
+        return workspaces.containsKey(workspaceId);
+    }
+
+    /**
+     * @param workspaceId
+     * @return attributes of the workspace or an empty map if the workspace does not exist
+     */
+    public Map<String, String> getAttributes(String workspaceId) {
+        Map<String, String> attributes = workspaces.get(workspaceId);
+        return attributes != null ? attributes : Collections.<String, String>emptyMap();
+    }
+
+    /**
+     * @param workspaceId
+     * @param workspaceAttributes
+     * @return <code>true</code> if the workspace exists and has all of the specified attributes
+     */
+    public boolean matches(String workspaceId, Map<String, String> workspaceAttributes) {
+        Map<String, String> attributes = workspaces.get(workspaceId);
+        if (attributes == null) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : workspaceAttributes.entrySet()) {
+            if (entry.getValue() == null || !entry.getValue().equals(attributes.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.workspace;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures read throughput of {@link AbstractWorkspaceManager} under contention. Not run as part of the test suite,
+ * start it with the test classpath:
+ * <p>
+ * <pre>
+ * java -cp ... org.brixcms.workspace.WorkspaceManagerContentionBenchmark [threads] [seconds]
+ * </pre>
+ * <p>
+ * Reader threads perform the lookups of a typical request (site workspace by name and state, existence check and
+ * attribute reads) while a single writer changes an attribute every millisecond. The <code>locked</code> run
+ * serializes every read on the manager as the previous synchronized implementation did.
+ */
+public class WorkspaceManagerContentionBenchmark {
+    private static final int SITES = 50;
+    private static final String[] STATES = {"draft", "live"};
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        // warm up
+        run(false, threads, 1);
+        run(true, threads, 1);
+
+        for (boolean locked : new boolean[]{true, false}) {
+            double opsPerSecond = run(locked, threads, seconds);
+            System.out.println(String.format(Locale.ROOT, "%-8s %3d threads %,16.0f lookups/s",
+                    locked ? "locked" : "snapshot", threads, opsPerSecond));
+        }
+    }
+
+    private static double run(final boolean locked, int threads, int seconds) throws InterruptedException {
+        final InMemoryWorkspaceManager manager = new InMemoryWorkspaceManager();
+        final List<String> ids = new ArrayList<String>();
+        manager.beginUpdate();
+        for (int i = 0; i < SITES; i++) {
+            for (String state : STATES) {
+                String id = "bx_" + i + "_" + state;
+                manager.addCachedWorkspace(id);
+                manager.setCachedAttribute(id, "brix:type", "brix:site");
+                manager.setCachedAttribute(id, "brix:name", "site" + i);
+                manager.setCachedAttribute(id, "brix:state", state);
+                ids.add(id);
+            }
+        }
+        manager.endUpdate();
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        final LongAdder lookups = new LongAdder();
+        final CountDownLatch started = new CountDownLatch(threads + 1);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            workers.add(new Thread(() -> {
+                Map<String, String> filter = new HashMap<String, String>();
+                filter.put("brix:type", "brix:site");
+                int i = seed;
+                long count = 0;
+                started.countDown();
+                while (!stop.get()) {
+                    filter.put("brix:name", "site" + (i % SITES));
+                    filter.put("brix:state", STATES[i % STATES.length]);
+                    String id = ids.get(i % ids.size());
+                    if (locked) {
+                        synchronized (manager) {
+                            lookup(manager, filter, id);
+                        }
+                    } else {
+                        lookup(manager, filter, id);
+                    }
+                    ++i;
+                    ++count;
+                }
+                lookups.add(count);
+            }));
+        }
+        Thread writer = new Thread(() -> {
+            int i = 0;
+            started.countDown();
+            while (!stop.get()) {
+                manager.setCachedAttribute(ids.get(i++ % ids.size()), "brix:modified", Integer.toString(i));
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        workers.add(writer);
+
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        started.await();
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return lookups.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static void lookup(InMemoryWorkspaceManager manager, Map<String, String> filter, String id) {
+        List<Workspace> sites = manager.getWorkspacesFiltered(filter);
+        if (sites.size() != 1 || !manager.workspaceExists(id) || manager.getAttribute(id, "brix:type") == null) {
+            throw new IllegalStateException("Unexpected lookup result for " + filter);
+        }
+    }
+
+    private static class InMemoryWorkspaceManager extends AbstractWorkspaceManager {
+        public Workspace createWorkspace() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void delete(String workspaceId) {
+            removeCachedWorkspace(workspaceId);
+        }
+
+        @Override
+        protected String getAttribute(String workspaceId, String key) {
+            return getCachedAttribute(workspaceId, key);
+        }
+
+        @Override
+        protected Iterator<String> getAttributeKeys(String workspaceId) {
+            return getCachedAttributeKeys(workspaceId);
+        }
+
+        @Override
+        protected void setAttribute(String workspaceId, String attributeKey, String attributeValue) {
+            setCachedAttribute(workspaceId, attributeKey, attributeValue);
+        }
+    }
+}
@@ -35,10 +35,13 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.*;
@@ -188,6 +191,34 @@ public class WorkspaceManagerTest {
         assertTrue(result.contains(w3));
     }
 
+    @Test
+    public void testParallelInitializationReportsFailingWorkspaces() throws RepositoryException {
+        List<Workspace> created = new ArrayList<Workspace>();
+        for (int i = 0; i < 6; i++) {
+            Workspace w = manager.createWorkspace();
+            w.setAttribute("index", Integer.toString(i));
+            created.add(w);
+        }
+        final String broken = created.get(3).getId();
+
+        LocalWorkspaceManager local = new LocalWorkspaceManager(repo) {
+            @Override
+            protected Session createSession(String workspaceName) {
+                if (broken.equals(workspaceName)) {
+                    throw new JcrException(new RepositoryException("broken"));
+                }
+                return super.createSession(workspaceName);
+            }
+        };
+        local.setInitializationThreads(4);
+        local.initialize();
+
+        assertEquals(5, local.getWorkspaces().size());
+        assertFalse(local.workspaceExists(broken));
+        assertEquals(Collections.singleton(broken), local.getInitializationFailures().keySet());
+        assertEquals("5", local.getWorkspace(created.get(5).getId()).getAttribute("index"));
+    }
+
     @Test
     public void testWorkspaceCreation() throws RepositoryException {
         assertEquals(0, manager.getWorkspaces().size());
@@ -269,6 +300,62 @@ public class WorkspaceManagerTest {
         assertEquals(2, result.size());
     }
 
+    @Test
+    public void testWorkspaceFilteringAfterChanges() throws RepositoryException {
+        Workspace w1 = manager.createWorkspace();
+        w1.setAttribute("type", "site");
+        w1.setAttribute("state", "draft");
+
+        HashMap<String, String> attrs = new HashMap<String, String>();
+        attrs.put("type", "site");
+        attrs.put("state", "draft");
+        assertEquals(Arrays.asList(w1), manager.getWorkspacesFiltered(attrs));
+
+        // repeated lookups must observe attribute changes
+        w1.setAttribute("state", "live");
+        assertEquals(0, manager.getWorkspacesFiltered(attrs).size());
+
+        Workspace w2 = manager.createWorkspace();
+        w2.setAttribute("type", "site");
+        w2.setAttribute("state", "draft");
+        assertEquals(Arrays.asList(w2), manager.getWorkspacesFiltered(attrs));
+
+        // results are private copies
+        manager.getWorkspacesFiltered(attrs).clear();
+        assertEquals(1, manager.getWorkspacesFiltered(attrs).size());
+
+        // and deletions
+        w2.delete();
+        assertEquals(0, manager.getWorkspacesFiltered(attrs).size());
+        assertFalse(manager.workspaceExists(w2.getId()));
+        assertTrue(manager.workspaceExists(w1.getId()));
+        assertEquals("live", manager.getWorkspace(w1.getId()).getAttribute("state"));
+    }
+
+    @Test
+    public void testSwapAttributeValues() throws RepositoryException {
+        Workspace live = manager.createWorkspace();
+        live.setAttribute("state", "production");
+        Workspace staged = manager.createWorkspace();
+        staged.setAttribute("state", "production:staging");
+
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        values.put(staged.getId(), "production");
+        values.put(live.getId(), "production:previous");
+        manager.setAttributes("state", values);
+
+        HashMap<String, String> attrs = new HashMap<String, String>();
+        attrs.put("state", "production");
+        assertEquals(Arrays.asList(staged), manager.getWorkspacesFiltered(attrs));
+        attrs.put("state", "production:previous");
+        assertEquals(Arrays.asList(live), manager.getWorkspacesFiltered(attrs));
+
+        // the values are persisted as well
+        WorkspaceManager local = new LocalWorkspaceManager(repo).initialize();
+        assertEquals("production", local.getWorkspace(staged.getId()).getAttribute("state"));
+        assertEquals("production:previous", local.getWorkspace(live.getId()).getAttribute("state"));
+    }
+
     @Test
     public void testWorkspaceIdLength() {
         // some database systems do not allow table names over 30 characters
@@ -1,58 +1,343 @@
-///**
-// * Licensed under the Apache License, Version 2.0 (the "License");
-// * you may not use this file except in compliance with the License.
-// * You may obtain a copy of the License at
-// *
-// *     http://www.apache.org/licenses/LICENSE-2.0
-// *
-// * Unless required by applicable law or agreed to in writing, software
-// * distributed under the License is distributed on an "AS IS" BASIS,
-// * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
-// * See the License for the specific language governing permissions and
-// * limitations under the License.
-// */
-//
-//package org.brixcms.workspace.rmi;
-//
-//import org.brixcms.workspace.Workspace;
-//import org.brixcms.workspace.WorkspaceManager;
-//import org.easymock.classextension.EasyMock;
-//import org.junit.Ignore;
-//import org.junit.Test;
-//
-//import java.rmi.registry.LocateRegistry;
-//import java.rmi.registry.Registry;
-//import java.rmi.server.RemoteStub;
-//import java.rmi.server.UnicastRemoteObject;
-//
-//
-//// FIXME figure out why this is failing on teamcity
-//@Ignore
-//public class WorkspaceManagerRmiTest {
-//    @Test
-//    public void test() throws Exception {
-//        WorkspaceManager remote = EasyMock.createMock(WorkspaceManager.class);
-//
-//        Workspace workspace = EasyMock.createMock(Workspace.class);
-//
-//        EasyMock.expect(remote.createWorkspace()).andReturn(workspace);
-//        workspace.delete();
-//
-//        EasyMock.replay(remote, workspace);
-//
-//        Registry registry = LocateRegistry.createRegistry(10000);
-//
-//        ServerWorkspaceManager server = new ServerWorkspaceManager(remote);
-//        RemoteStub stub = UnicastRemoteObject.exportObject(server);
-//        registry.rebind("wm", stub);
-//
-//        RemoteWorkspaceManager client = (RemoteWorkspaceManager) registry.lookup("wm");
-//        WorkspaceManager local = new ClientWorkspaceManager(client);
-//
-//        Workspace w = local.createWorkspace();
-//        w.delete();
-//        EasyMock.verify(remote, workspace);
-//
-//        UnicastRemoteObject.unexportObject(server, true);
-//    }
-//}
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.workspace.rmi;
+
+import org.brixcms.workspace.Workspace;
+import org.brixcms.workspace.WorkspaceManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link ClientWorkspaceManager} against an in-process {@link ServerWorkspaceManager} and counts the calls that
+ * would cross the wire.
+ */
+public class WorkspaceManagerRmiTest {
+    private InMemoryWorkspaceManager local;
+    private ServerWorkspaceManager server;
+    private AtomicInteger roundTrips;
+    private AtomicInteger transfers;
+
+    @Before
+    public void setUp() {
+        local = new InMemoryWorkspaceManager();
+        server = new ServerWorkspaceManager(local);
+        roundTrips = new AtomicInteger();
+        transfers = new AtomicInteger();
+
+        Workspace first = local.createWorkspace("first");
+        first.setAttribute("type", "site");
+        first.setAttribute("state", "live");
+        Workspace second = local.createWorkspace("second");
+        second.setAttribute("type", "site");
+        second.setAttribute("state", "draft");
+        Workspace third = local.createWorkspace("third");
+        third.setAttribute("type", "snapshot");
+        server.invalidate();
+    }
+
+    @Test
+    public void readsAreServedFromSnapshot() {
+        ClientWorkspaceManager client = newClient(Duration.ofHours(1));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(3, client.getWorkspaces().size());
+            assertTrue(client.workspaceExists("first"));
+            assertFalse(client.workspaceExists("missing"));
+
+            List<Workspace> live = client.getWorkspacesFiltered(attributes("type", "site", "state", "live"));
+            assertEquals(1, live.size());
+            assertEquals("first", live.get(0).getId());
+            assertEquals("live", live.get(0).getAttribute("state"));
+            assertEquals(2, client.getWorkspacesFiltered(attributes("type", "site")).size());
+
+            Workspace third = client.getWorkspace("third");
+            assertEquals("snapshot", third.getAttribute("type"));
+            assertNull(third.getAttribute("state"));
+            assertEquals(Collections.singleton("type"), keys(third.getAttributeKeys()));
+        }
+
+        assertEquals(1, roundTrips.get());
+        assertEquals(1, transfers.get());
+    }
+
+    @Test
+    public void localChangesAreVisibleImmediately() {
+        ClientWorkspaceManager client = newClient(Duration.ofHours(1));
+        assertEquals(1, client.getWorkspacesFiltered(attributes("state", "draft")).size());
+
+        client.getWorkspace("first").setAttribute("state", "draft");
+
+        assertEquals("draft", local.getWorkspace("first").getAttribute("state"));
+        assertEquals(2, client.getWorkspacesFiltered(attributes("state", "draft")).size());
+        assertEquals("draft", client.getWorkspace("first").getAttribute("state"));
+        // snapshot, workspace lookup, attribute change and a new snapshot
+        assertEquals(4, roundTrips.get());
+        assertEquals(2, transfers.get());
+    }
+
+    @Test
+    public void unchangedStateIsOnlyCheckedAgainstVersion() {
+        ClientWorkspaceManager client = newClient(Duration.ZERO);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(client.workspaceExists("second"));
+        }
+
+        assertEquals(5, roundTrips.get());
+        assertEquals(1, transfers.get());
+    }
+
+    @Test
+    public void changesOfOtherClientsAreVisibleAfterVersionCheck() {
+        ClientWorkspaceManager reader = newClient(Duration.ZERO);
+        ClientWorkspaceManager writer = newClient(Duration.ZERO);
+        assertNull(reader.getWorkspace("third").getAttribute("state"));
+
+        writer.getWorkspace("third").setAttribute("state", "frozen");
+        assertEquals("frozen", reader.getWorkspace("third").getAttribute("state"));
+
+        Workspace created = writer.createWorkspace();
+        assertTrue(reader.workspaceExists(created.getId()));
+
+        created.delete();
+        assertFalse(reader.workspaceExists(created.getId()));
+        assertEquals(3, reader.getWorkspaces().size());
+    }
+
+    @Test
+    public void changesOfWrappedManagerInvalidateSnapshot() {
+        ClientWorkspaceManager client = newClient(Duration.ZERO);
+        assertTrue(client.workspaceExists("second"));
+
+        // deletions are reported through the workspace manager listener
+        local.getWorkspace("second").delete();
+        assertFalse(client.workspaceExists("second"));
+
+        // other changes made directly on the wrapped manager have to be announced
+        local.getWorkspace("first").setAttribute("state", "archived");
+        assertEquals("live", client.getWorkspace("first").getAttribute("state"));
+        server.invalidate();
+        assertEquals("archived", client.getWorkspace("first").getAttribute("state"));
+    }
+
+    @Test
+    public void restartedServerIsNotMistakenForPreviousInstance() {
+        final ServerWorkspaceManager[] current = {server};
+        RemoteWorkspaceManager delegate = (RemoteWorkspaceManager) Proxy.newProxyInstance(
+                RemoteWorkspaceManager.class.getClassLoader(), new Class<?>[]{RemoteWorkspaceManager.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        try {
+                            return method.invoke(current[0], args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+        ClientWorkspaceManager client = new ClientWorkspaceManager(delegate);
+        client.setMaxStaleness(Duration.ZERO);
+        assertEquals("live", client.getWorkspace("first").getAttribute("state"));
+
+        // the new instance starts counting again and reaches the version the client has seen
+        local.getWorkspace("first").setAttribute("state", "archived");
+        current[0] = new ServerWorkspaceManager(local);
+        current[0].invalidate();
+        assertEquals(server.getVersion(), current[0].getVersion());
+
+        assertEquals("archived", client.getWorkspace("first").getAttribute("state"));
+    }
+
+    @Test
+    public void snapshotSurvivesSerialization() throws Exception {
+        WorkspaceSnapshot snapshot = server.getSnapshot(null, -1);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(snapshot);
+        out.close();
+        WorkspaceSnapshot copy = (WorkspaceSnapshot) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertEquals(snapshot.getEpoch(), copy.getEpoch());
+        assertEquals(snapshot.getVersion(), copy.getVersion());
+        assertEquals(snapshot.getWorkspaceIds(), copy.getWorkspaceIds());
+        assertEquals(attributes("type", "site", "state", "draft"), copy.getAttributes("second"));
+        assertTrue(copy.matches("first", attributes("state", "live")));
+        assertNull(server.getSnapshot(copy.getEpoch(), copy.getVersion()));
+    }
+
+    private ClientWorkspaceManager newClient(Duration maxStaleness) {
+        ClientWorkspaceManager client = new ClientWorkspaceManager(counting(RemoteWorkspaceManager.class, server));
+        client.setMaxStaleness(maxStaleness);
+        return client;
+    }
+
+    private <T> T counting(Class<T> type, final Object target) {
+        InvocationHandler handler = new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return method.invoke(target, args);
+                }
+                roundTrips.incrementAndGet();
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof WorkspaceSnapshot) {
+                    transfers.incrementAndGet();
+                } else if (result instanceof RemoteWorkspace) {
+                    result = counting(RemoteWorkspace.class, result);
+                }
+                return result;
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Map<String, String> attributes(String... keysAndValues) {
+        Map<String, String> attributes = new HashMap<String, String>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            attributes.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return attributes;
+    }
+
+    private static Set<String> keys(Iterator<String> iterator) {
+        Set<String> keys = new HashSet<String>();
+        while (iterator.hasNext()) {
+            keys.add(iterator.next());
+        }
+        return keys;
+    }
+
+    private static class InMemoryWorkspaceManager implements WorkspaceManager {
+        private final Map<String, Map<String, String>> workspaces = new LinkedHashMap<String, Map<String, String>>();
+        private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+        private int counter;
+
+        @Override
+        public void addListener(Listener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void removeListener(Listener listener) {
+            listeners.remove(listener);
+        }
+
+        public synchronized Workspace createWorkspace() {
+            return createWorkspace("ws" + (++counter));
+        }
+
+        synchronized Workspace createWorkspace(String id) {
+            workspaces.put(id, new LinkedHashMap<String, String>());
+            return new InMemoryWorkspace(id);
+        }
+
+        public synchronized Workspace getWorkspace(String workspaceId) {
+            return workspaces.containsKey(workspaceId) ? new InMemoryWorkspace(workspaceId) : null;
+        }
+
+        public synchronized List<Workspace> getWorkspaces() {
+            List<Workspace> result = new ArrayList<Workspace>();
+            for (String id : workspaces.keySet()) {
+                result.add(new InMemoryWorkspace(id));
+            }
+            return result;
+        }
+
+        public synchronized List<Workspace> getWorkspacesFiltered(Map<String, String> workspaceAttributes) {
+            List<Workspace> result = new ArrayList<Workspace>();
+            for (Map.Entry<String, Map<String, String>> entry : workspaces.entrySet()) {
+                if (entry.getValue().entrySet().containsAll(workspaceAttributes.entrySet())) {
+                    result.add(new InMemoryWorkspace(entry.getKey()));
+                }
+            }
+            return result;
+        }
+
+        public synchronized boolean workspaceExists(String workspaceId) {
+            return workspaces.containsKey(workspaceId);
+        }
+
+        private class InMemoryWorkspace implements Workspace {
+            private final String id;
+
+            InMemoryWorkspace(String id) {
+                this.id = id;
+            }
+
+            public void delete() {
+                synchronized (InMemoryWorkspaceManager.this) {
+                    workspaces.remove(id);
+                }
+                for (Listener listener : listeners) {
+                    listener.workspaceDeleted(id);
+                }
+            }
+
+            public String getAttribute(String attributeKey) {
+                synchronized (InMemoryWorkspaceManager.this) {
+                    return workspaces.get(id).get(attributeKey);
+                }
+            }
+
+            public Iterator<String> getAttributeKeys() {
+                synchronized (InMemoryWorkspaceManager.this) {
+                    return new ArrayList<String>(workspaces.get(id).keySet()).iterator();
+                }
+            }
+
+            public String getId() {
+                return id;
+            }
+
+            public void setAttribute(String attributeKey, String attributeValue) {
+                synchronized (InMemoryWorkspaceManager.this) {
+                    workspaces.get(id).put(attributeKey, attributeValue);
+                }
+            }
+        }
+    }
+}
@@ -386,5 +386,12 @@ public interface JcrSession extends BrixSession {
          * @param e
          */
         public void handleException(Exception e);
+
+        /**
+         * Invoked when the session discards its cached node wrappers, e.g. because nodes were added, moved, removed
+         * or changed their type.
+         */
+        default void wrappersInvalidated() {
+        }
     }
 }
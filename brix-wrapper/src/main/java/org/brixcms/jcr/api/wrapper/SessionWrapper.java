@@ -102,6 +102,9 @@ class SessionWrapper extends AbstractWrapper implements JcrSession {
     @Override
     public void clearIdentifierCache() {
         uuidMap.clear();
+        if (behavior != null) {
+            behavior.wrappersInvalidated();
+        }
     }
 
     void suspendIdentifierCache() {
@@ -0,0 +1,37 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr.base;
+
+/**
+ * Save event listener that receives the save events raised within a batch (see {@link EventUtil#beginBatch()}) at
+ * once, after the batch has ended and therefore after the nodes have been saved. Events are delivered once per node
+ * and ordered by workspace and path, so ancestors precede their descendants. Outside of a batch the listener receives
+ * every event immediately, like any other {@link SaveEventListener}.
+ * <p>
+ * Listeners that inspect or modify the transient state of saved nodes must not be batched.
+ */
+public interface BatchedSaveEventListener extends SaveEventListener {
+    /**
+     * Tells whether batches are delivered on the dispatch thread of {@link EventUtil} instead of the thread that ended
+     * the batch. Asynchronous listeners must not access the saved nodes or their sessions, they may only use the path,
+     * identifier and workspace name of the events.
+     *
+     * @return <code>true</code> for asynchronous delivery
+     */
+    default boolean isAsynchronous() {
+        return false;
+    }
+}
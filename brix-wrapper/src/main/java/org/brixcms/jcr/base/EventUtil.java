@@ -24,13 +24,34 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.observation.Event;
 import javax.jcr.observation.EventIterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class EventUtil {
     private static final List<SaveEventListener> listeners = new CopyOnWriteArrayList<SaveEventListener>();
 
+    private static final ThreadLocal<Batch> batch = new ThreadLocal<Batch>();
+
+    private static final ThreadLocal<Boolean> suppressed = new ThreadLocal<Boolean>();
+
+    /**
+     * Orders batched events by workspace and path so that ancestors precede their descendants
+     */
+    private static final Comparator<EventImpl> BATCH_ORDER = Comparator.comparing(EventImpl::getWorkspaceName)
+            .thenComparing(EventImpl::getSnapshotPath, EventUtil::comparePaths);
+
+    private static volatile Executor asynchronousExecutor;
+
+    private static ExecutorService defaultExecutor;
+
     public static void raiseSaveEvent(Node node) {
         try {
             JcrSession session = JcrSession.Wrapper.wrap(node.getSession(), null);
@@ -42,12 +63,111 @@ public class EventUtil {
     }
 
     public static void raiseSaveEvent(JcrNode node) {
-        Event event = new EventImpl(node);
+        if (isSaveEventsSuppressed()) {
+            return;
+        }
+        EventImpl event = new EventImpl(node);
+        Batch current = batch.get();
+        if (current != null) {
+            current.add(event);
+        }
         for (SaveEventListener listener : listeners) {
-            listener.onEvent(new Iterator(event));
+            if (current == null || !(listener instanceof BatchedSaveEventListener)) {
+                listener.onEvent(new Iterator(Collections.<Event>singletonList(event)));
+            }
         }
     }
 
+    /**
+     * Starts collecting the save events raised on the current thread for {@link BatchedSaveEventListener}s until the
+     * matching call to {@link #endBatch()}. Batches may be nested, events are delivered when the outermost batch ends.
+     * Other listeners keep receiving every event immediately.
+     * <pre>
+     * EventUtil.beginBatch();
+     * try {
+     *     ...
+     * } finally {
+     *     EventUtil.endBatch();
+     * }
+     * </pre>
+     */
+    public static void beginBatch() {
+        Batch current = batch.get();
+        if (current == null) {
+            current = new Batch();
+            batch.set(current);
+        }
+        current.depth++;
+    }
+
+    /**
+     * Ends the batch started by {@link #beginBatch()}. When the outermost batch ends the collected events, one per
+     * saved node, are delivered to the {@link BatchedSaveEventListener}s.
+     */
+    public static void endBatch() {
+        Batch current = batch.get();
+        if (current == null) {
+            throw new IllegalStateException("No save event batch has been started on this thread");
+        }
+        if (--current.depth > 0) {
+            return;
+        }
+        batch.remove();
+        if (current.events.isEmpty()) {
+            return;
+        }
+
+        List<EventImpl> sorted = new ArrayList<EventImpl>(current.events.values());
+        sorted.sort(BATCH_ORDER);
+        final List<Event> events = Collections.<Event>unmodifiableList(sorted);
+        for (final SaveEventListener listener : listeners) {
+            if (listener instanceof BatchedSaveEventListener batched) {
+                if (batched.isAsynchronous()) {
+                    getAsynchronousExecutor().execute(new Runnable() {
+                        public void run() {
+                            listener.onEvent(new Iterator(events));
+                        }
+                    });
+                } else {
+                    listener.onEvent(new Iterator(events));
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the action without raising save events for the nodes it saves on the current thread. Meant for saves that
+     * only persist data derived from the content, such as content hashes, which must not make listeners discard
+     * caches of the content itself.
+     *
+     * @param action action that saves nodes
+     */
+    public static void runWithoutSaveEvents(Runnable action) {
+        Boolean previous = suppressed.get();
+        suppressed.set(Boolean.TRUE);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) {
+                suppressed.remove();
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the current thread is saving within {@link #runWithoutSaveEvents(Runnable)}
+     */
+    public static boolean isSaveEventsSuppressed() {
+        return suppressed.get() != null;
+    }
+
+    /**
+     * @return <code>true</code> if save events raised on the current thread are being batched
+     */
+    public static boolean isBatching() {
+        return batch.get() != null;
+    }
+
     public static void registerSaveEventListener(SaveEventListener listener) {
         listeners.add(listener);
     }
@@ -56,6 +176,51 @@ public class EventUtil {
         listeners.remove(listener);
     }
 
+    /**
+     * Sets the executor used to deliver batches to asynchronous {@link BatchedSaveEventListener}s. By default batches
+     * are delivered in order on a single daemon thread.
+     *
+     * @param executor executor or <code>null</code> to restore the default
+     */
+    public static void setAsynchronousExecutor(Executor executor) {
+        asynchronousExecutor = executor;
+    }
+
+    /**
+     * Stops the default thread delivering batches to asynchronous {@link BatchedSaveEventListener}s once the batches
+     * handed to it so far have been delivered. A new thread is started when another batch needs one. Executors set
+     * through {@link #setAsynchronousExecutor(Executor)} are left to their owner.
+     */
+    public static void shutdownAsynchronousExecutor() {
+        synchronized (EventUtil.class) {
+            if (defaultExecutor != null) {
+                defaultExecutor.shutdown();
+                if (asynchronousExecutor == defaultExecutor) {
+                    asynchronousExecutor = null;
+                }
+                defaultExecutor = null;
+            }
+        }
+    }
+
+    private static Executor getAsynchronousExecutor() {
+        Executor executor = asynchronousExecutor;
+        if (executor == null) {
+            synchronized (EventUtil.class) {
+                executor = asynchronousExecutor;
+                if (executor == null) {
+                    ExecutorService service = Executors.newSingleThreadExecutor(r -> {
+                        Thread thread = new Thread(r, "brix-save-event-dispatch");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    asynchronousExecutor = executor = defaultExecutor = service;
+                }
+            }
+        }
+        return executor;
+    }
+
     /**
      * Ensure that calling checkin and save on nodes within the session raises the save event.
      *
@@ -70,33 +235,69 @@ public class EventUtil {
         return WrapperAccessor.unwrap(session);
     }
 
+    /**
+     * Compares paths segment by segment, so that <code>/a/b</code> sorts before <code>/a-b</code>.
+     */
+    private static int comparePaths(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(i);
+            if (ca != cb) {
+                if (ca == '/') {
+                    return -1;
+                } else if (cb == '/') {
+                    return 1;
+                }
+                return ca - cb;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    private static class Batch {
+        private int depth;
+
+        /**
+         * Events keyed by workspace and path, the first event raised for a node is kept
+         */
+        private final Map<String, EventImpl> events = new LinkedHashMap<String, EventImpl>();
+
+        private void add(EventImpl event) {
+            event.snapshot();
+            events.putIfAbsent(event.getWorkspaceName() + "\u0000" + event.getSnapshotPath(), event);
+        }
+    }
+
     private static class Iterator implements EventIterator {
-        private Event event;
+        private final List<Event> events;
+        private int position;
 
-        public Iterator(Event event) {
-            this.event = event;
+        public Iterator(List<Event> events) {
+            this.events = events;
         }
 
         public Event nextEvent() {
-            Event res = event;
-            event = null;
-            return res;
+            if (position >= events.size()) {
+                return null;
+            }
+            return events.get(position++);
         }
 
         public long getPosition() {
-            return 0;
+            return position;
         }
 
         public long getSize() {
-            return -1;
+            return events.size();
         }
 
         public void skip(long skipNum) {
-
+            position = (int) Math.min(events.size(), position + skipNum);
         }
 
         public boolean hasNext() {
-            return event != null;
+            return position < events.size();
         }
 
         public Object next() {
@@ -111,17 +312,35 @@ public class EventUtil {
     private static class EventImpl implements SaveEvent {
         private final JcrNode node;
         private long timestamp = System.currentTimeMillis();
+        private String path;
+        private String identifier;
+        private String workspaceName;
+        private String userID;
 
         public EventImpl(JcrNode node) {
             this.node = node;
         }
 
+        /**
+         * Captures the node's path, identifier, workspace and user so they can be read after the save and on other threads
+         */
+        void snapshot() {
+            path = node.getPath();
+            identifier = node.getIdentifier();
+            workspaceName = node.getSession().getWorkspace().getName();
+            userID = node.getSession().getUserID();
+        }
+
+        String getSnapshotPath() {
+            return path;
+        }
+
         public JcrNode getNode() {
             return node;
         }
 
         public String getPath() throws RepositoryException {
-            return node.getPath();
+            return path != null ? path : node.getPath();
         }
 
         public int getType() {
@@ -129,7 +348,7 @@ public class EventUtil {
         }
 
         public String getUserID() {
-            return node.getSession().getUserID();
+            return userID != null ? userID : node.getSession().getUserID();
         }
 
         public long getDate() throws RepositoryException {
@@ -137,7 +356,11 @@ public class EventUtil {
         }
 
         public String getIdentifier() throws RepositoryException {
-            return node.getIdentifier();
+            return identifier != null ? identifier : node.getIdentifier();
+        }
+
+        public String getWorkspaceName() {
+            return workspaceName != null ? workspaceName : node.getSession().getWorkspace().getName();
         }
 
         public Map<?, ?> getInfo() throws RepositoryException {
@@ -148,6 +371,4 @@ public class EventUtil {
             throw new UnsupportedOperationException();
         }
     }
-
-    ;
 }
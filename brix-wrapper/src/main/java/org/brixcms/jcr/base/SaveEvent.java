@@ -22,4 +22,9 @@ public interface SaveEvent extends Event {
     public static final int NODE_SAVE = 4096;
 
     JcrNode getNode();
+
+    /**
+     * @return name of the workspace the node was saved in
+     */
+    String getWorkspaceName();
 }
@@ -14,12 +14,15 @@
 
 package org.brixcms.jcr.base.event;
 
-import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
 
 /**
  * ChangeLog keep tracks of events happening in a single {@link Session}. At certain points (usually when Item#save() or
@@ -28,16 +31,34 @@ import java.util.ListIterator;
  * <p>
  * The session must add proper events to the {@link ChangeLog} using {@link #addEvent(Event)} and {@link ChangeLog} will
  * make sure that the events will be normalized (i.e. redundant events will be removed, etc).
+ * <p>
+ * Events are indexed by the path of the item they concern (see {@link Event#getIndexPath()}), so normalizing a new
+ * event and collecting the events of a subtree only visit the events below the node in question. Paths change when a
+ * node or one of its ancestors is moved, or when a same-name sibling is removed or reordered. The change log updates
+ * the affected part of the index when it sees such events. Moves it cannot observe, such as workspace moves, must be
+ * reported through {@link #refreshPaths(String)}.
  *
  * @author Matej Knopp
  * @see #addEvent(Event)
- * @see #removeAndGetAffectedEvents(Node)
+ * @see #removeAndGetAffectedEvents(String)
  */
 public class ChangeLog {
-    private List<Event> events = new ArrayList<Event>();
+    private static final Comparator<Entry> BY_SEQUENCE = Comparator.comparingLong(entry -> entry.sequence);
 
-    public ChangeLog() {
+    private final NavigableMap<String, List<Entry>> index = new TreeMap<String, List<Entry>>();
+    private final List<Entry> unindexed = new ArrayList<Entry>();
+    private final List<String> stalePrefixes = new ArrayList<String>();
+
+    /**
+     * Sentinel of the list keeping all events in the order they were added
+     */
+    private final Entry head = new Entry(-1, null, null);
+    private long nextSequence;
+    private int size;
 
+    public ChangeLog() {
+        head.previous = head;
+        head.next = head;
     }
 
     /**
@@ -47,28 +68,57 @@ public class ChangeLog {
      * @throws RepositoryException
      */
     public void addEvent(Event event) throws RepositoryException {
+        refreshStalePaths();
+
+        // only node events are indexed, other events are offered to every queued event
+        String path = event.getIndexPath() != null ? ((NodeEvent) event).getNodePath() : null;
+        if (event instanceof MoveNodeEvent move) {
+            // events below the source still carry the paths from before the move
+            refreshSubtree(move.getOriginalPath());
+            stalePrefixes.add(sameNameSiblingPrefix(move.getOriginalPath()));
+        }
+
+        List<Entry> candidates = path != null ? collectSubtree(path) : collect(index.values());
+        if (!unindexed.isEmpty()) {
+            candidates.addAll(unindexed);
+        }
+        candidates.sort(BY_SEQUENCE);
+
         final boolean blockAddingEvent[] = {false};
-        for (ListIterator<Event> iterator = events.listIterator(); iterator.hasNext(); ) {
-            Event e = iterator.next();
-            Event.QueueCallback callback = new Event.QueueCallback() {
-                public void blockAddingEvent() {
-                    blockAddingEvent[0] = true;
-                }
-            };
-            Event updated = e.onNewEvent(event, callback);
+        Event.QueueCallback callback = new Event.QueueCallback() {
+            public void blockAddingEvent() {
+                blockAddingEvent[0] = true;
+            }
+        };
+        for (Entry entry : candidates) {
+            Event updated = entry.event.onNewEvent(event, callback);
             if (updated == null) {
-                iterator.remove();
-            } else if (updated != e) {
-                iterator.set(updated);
+                remove(entry);
+            } else {
+                // the event may have re-read its path while handling the new event
+                String key = updated.getIndexPath();
+                if (updated != entry.event || !Objects.equals(key, entry.key)) {
+                    unindex(entry);
+                    entry.event = updated;
+                    entry.key = key;
+                    index(entry);
+                }
             }
         }
 
         if (blockAddingEvent[0] == false) {
             Event transformed = event.transformBeforeAddingToQueue();
             if (transformed != null) {
-                events.add(transformed);
+                add(transformed);
             }
         }
+
+        if (event instanceof BeforeRemoveNodeEvent) {
+            // the event is raised before the node is removed, same-name siblings are renumbered afterwards
+            stalePrefixes.add(sameNameSiblingPrefix(path));
+        } else if (event instanceof ChangeChildNodesOrderEvent) {
+            refreshPrefix(childPrefix(path));
+        }
     }
 
     /**
@@ -80,20 +130,179 @@ public class ChangeLog {
      * @throws RepositoryException
      */
     public List<Event> removeAndGetAffectedEvents(String path) throws RepositoryException {
-        List<Event> result;
+        List<Event> result = new ArrayList<Event>();
         if (path == null) {
-            result = events;
-            events = new ArrayList<Event>();
+            for (Entry entry = head.next; entry != head; entry = entry.next) {
+                result.add(entry.event);
+            }
+            index.clear();
+            unindexed.clear();
+            stalePrefixes.clear();
+            head.previous = head;
+            head.next = head;
+            size = 0;
         } else {
-            result = new ArrayList<Event>();
-            for (ListIterator<Event> iterator = events.listIterator(); iterator.hasNext(); ) {
-                Event e = iterator.next();
-                if (e.isAffected(path)) {
-                    result.add(e);
-                    iterator.remove();
-                }
+            refreshStalePaths();
+            List<Entry> entries = collectSubtree(path);
+            entries.sort(BY_SEQUENCE);
+            for (Entry entry : entries) {
+                remove(entry);
+                result.add(entry.event);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Re-reads the paths of events concerning the item with given path or any of its descendants. Must be called when
+     * the item has been moved by means that do not add a {@link MoveNodeEvent}, such as a workspace move.
+     *
+     * @param path path the item had before it was moved
+     * @throws RepositoryException
+     */
+    public void refreshPaths(String path) throws RepositoryException {
+        refreshSubtree(path);
+        stalePrefixes.add(sameNameSiblingPrefix(path));
+    }
+
+    /**
+     * @return number of queued events
+     */
+    public int size() {
+        return size;
+    }
+
+    private void refreshStalePaths() throws RepositoryException {
+        if (stalePrefixes.isEmpty()) {
+            return;
+        }
+        List<String> prefixes = new ArrayList<String>(stalePrefixes);
+        stalePrefixes.clear();
+        for (String prefix : prefixes) {
+            refreshPrefix(prefix);
+        }
+    }
+
+    private void refreshSubtree(String path) throws RepositoryException {
+        refresh(collectSubtree(path));
+    }
+
+    private void refreshPrefix(String prefix) throws RepositoryException {
+        refresh(collectPrefix(prefix));
+    }
+
+    private void refresh(List<Entry> entries) throws RepositoryException {
+        for (Entry entry : entries) {
+            try {
+                entry.event.refreshIndexPath();
+            } catch (RepositoryException e) {
+                // the item is gone, the event keeps the last known path
+                continue;
+            }
+            String key = entry.event.getIndexPath();
+            if (key != null && !key.equals(entry.key)) {
+                unindex(entry);
+                entry.key = key;
+                index(entry);
             }
         }
+    }
+
+    /**
+     * Collects events indexed under the path or any of its descendants.
+     */
+    private List<Entry> collectSubtree(String path) {
+        if ("/".equals(path)) {
+            return collect(index.values());
+        }
+        List<Entry> result = collectPrefix(path + "/");
+        List<Entry> exact = index.get(path);
+        if (exact != null) {
+            result.addAll(exact);
+        }
+        return result;
+    }
+
+    /**
+     * Collects events whose index path starts with the given string.
+     */
+    private List<Entry> collectPrefix(String prefix) {
+        char last = prefix.charAt(prefix.length() - 1);
+        String end = prefix.substring(0, prefix.length() - 1) + (char) (last + 1);
+        return collect(index.subMap(prefix, true, end, false).values());
+    }
+
+    private static List<Entry> collect(Collection<List<Entry>> buckets) {
+        List<Entry> result = new ArrayList<Entry>();
+        for (List<Entry> bucket : buckets) {
+            result.addAll(bucket);
+        }
         return result;
     }
+
+    private static String childPrefix(String path) {
+        return "/".equals(path) ? path : path + "/";
+    }
+
+    /**
+     * Returns the prefix shared by the paths of the node and all of its same-name siblings, e.g. <code>/a/b</code> for
+     * <code>/a/b[2]</code>.
+     */
+    private static String sameNameSiblingPrefix(String path) {
+        if (path.endsWith("]")) {
+            return path.substring(0, path.lastIndexOf('['));
+        }
+        return path;
+    }
+
+    private void add(Event event) throws RepositoryException {
+        Entry entry = new Entry(nextSequence++, event, event.getIndexPath());
+        entry.previous = head.previous;
+        entry.next = head;
+        head.previous.next = entry;
+        head.previous = entry;
+        index(entry);
+        size++;
+    }
+
+    private void remove(Entry entry) {
+        unindex(entry);
+        entry.previous.next = entry.next;
+        entry.next.previous = entry.previous;
+        size--;
+    }
+
+    private void index(Entry entry) {
+        if (entry.key == null) {
+            unindexed.add(entry);
+        } else {
+            index.computeIfAbsent(entry.key, key -> new ArrayList<Entry>(2)).add(entry);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        if (entry.key == null) {
+            unindexed.remove(entry);
+        } else {
+            List<Entry> bucket = index.get(entry.key);
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                index.remove(entry.key);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final long sequence;
+        private Event event;
+        private String key;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(long sequence, Event event, String key) {
+            this.sequence = sequence;
+            this.event = event;
+            this.key = key;
+        }
+    }
 }
@@ -186,6 +186,7 @@ public class ChangeLogActionHandler extends AbstractActionHandler {
 
     @Override
     public void afterWorkspaceMove(String srcAbsPath, String destAbsPath) throws RepositoryException {
+        changeLog.refreshPaths(srcAbsPath);
         discardEvents(destAbsPath);
     }
 
@@ -23,16 +23,23 @@ import javax.jcr.RepositoryException;
  */
 public abstract class Event {
     /**
-     * Returns true if this event is affected by the specified path. The path is usually path of node being saved and this
-     * method should check if this event is event either for the node with given path or it's child node (doesn't have to
-     * be immediate child).
+     * Returns the path this event is indexed under in the {@link ChangeLog}. The event is affected by saving the item
+     * with that path or any of its ancestors. An event that is indexed under a path may only react to new events (see
+     * {@link #onNewEvent(Event, QueueCallback)}) for nodes whose path equals or is an ancestor of the index path.
+     *
+     * @return path or <code>null</code> if the event does not concern any particular item
+     * @throws RepositoryException
+     */
+    String getIndexPath() throws RepositoryException {
+        return null;
+    }
+
+    /**
+     * Re-reads the index path from the repository after the item or one of its ancestors has changed its path.
      *
-     * @param path
-     * @return
      * @throws RepositoryException
      */
-    boolean isAffected(String path) throws RepositoryException {
-        return false;
+    void refreshIndexPath() throws RepositoryException {
     }
 
     /**
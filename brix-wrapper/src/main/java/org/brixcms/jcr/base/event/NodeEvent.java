@@ -47,16 +47,13 @@ abstract class NodeEvent extends Event {
     }
 
     @Override
-    boolean isAffected(String path) throws RepositoryException {
-        String currentPath = getNodePath();
-        if (!currentPath.startsWith(path)) {
-            String freshPath = getNode().getPath();
-            if (!freshPath.equals(currentPath)) {
-                setNodePath(freshPath);
-                currentPath = freshPath;
-            }
-        }
-        return currentPath.startsWith(path);
+    String getIndexPath() throws RepositoryException {
+        return getNode() != null ? getNodePath() : null;
+    }
+
+    @Override
+    void refreshIndexPath() throws RepositoryException {
+        setNodePath(getNode().getPath());
     }
 
     @Override
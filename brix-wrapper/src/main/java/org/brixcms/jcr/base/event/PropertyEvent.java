@@ -47,18 +47,20 @@ abstract class PropertyEvent extends NodeEvent {
     }
 
     @Override
-    boolean isAffected(String path) throws RepositoryException {
+    String getIndexPath() throws RepositoryException {
+        if (getNode() == null) {
+            return null;
+        }
         if (propertyPath == null) {
             propertyPath = getNodePath() + "/" + getPropertyName();
-        } else if (!propertyPath.startsWith(path)) {
-            String currentNodePath = getNodePath();
-            String freshNodePath = getNode().getPath();
-            if (!freshNodePath.equals(currentNodePath)) {
-                setNodePath(freshNodePath);
-                propertyPath = freshNodePath + "/" + getPropertyName();
-            }
         }
-        return propertyPath.startsWith(path);
+        return propertyPath;
+    }
+
+    @Override
+    protected void setNodePath(String nodePath) {
+        super.setNodePath(nodePath);
+        propertyPath = null;
     }
 
     @Override
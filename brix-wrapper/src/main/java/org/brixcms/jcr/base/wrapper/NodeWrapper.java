@@ -85,10 +85,9 @@ class NodeWrapper extends ItemWrapper implements Node {
     public void save() throws RepositoryException {
         // TODO: we will need to rewire how save event is raised if we dont call
         // node.save
-        // TODO: Remove this code
         SessionWrapper session = getSessionWrapper();
         Node node = getDelegate();
-        if (session.raisedSaveEvent.contains(node) == false) {
+        if (!EventUtil.isSaveEventsSuppressed() && session.raisedSaveEvent.contains(node) == false) {
             EventUtil.raiseSaveEvent(node);
             session.raisedSaveEvent.add(node);
         }
@@ -0,0 +1,245 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+
+import org.brixcms.jcr.api.JcrNode;
+import org.brixcms.jcr.api.JcrSession;
+import org.brixcms.jcr.api.JcrWorkspace;
+import org.junit.After;
+import org.junit.Test;
+
+public class EventUtilTest {
+    private final List<SaveEventListener> registered = new ArrayList<SaveEventListener>();
+
+    @After
+    public void tearDown() {
+        for (SaveEventListener listener : registered) {
+            EventUtil.unregisterSaveEventListener(listener);
+        }
+        EventUtil.setAsynchronousExecutor(null);
+        EventUtil.shutdownAsynchronousExecutor();
+    }
+
+    @Test
+    public void eventsAreDeliveredImmediatelyOutsideOfBatch() throws Exception {
+        RecordingListener immediate = register(new RecordingListener());
+        RecordingListener batched = register(new RecordingBatchedListener(false));
+
+        EventUtil.raiseSaveEvent(node("default", "/a"));
+
+        assertEquals(List.of("/a"), immediate.paths);
+        assertEquals(List.of("/a"), batched.paths);
+    }
+
+    @Test
+    public void batchedListenersReceiveOneCoalescedBatch() throws Exception {
+        RecordingListener immediate = register(new RecordingListener());
+        RecordingListener batched = register(new RecordingBatchedListener(false));
+
+        EventUtil.beginBatch();
+        try {
+            EventUtil.raiseSaveEvent(node("default", "/site/b"));
+            EventUtil.beginBatch();
+            try {
+                EventUtil.raiseSaveEvent(node("default", "/site"));
+                EventUtil.raiseSaveEvent(node("default", "/site/b"));
+                EventUtil.raiseSaveEvent(node("default", "/site-a"));
+            } finally {
+                EventUtil.endBatch();
+            }
+            EventUtil.raiseSaveEvent(node("other", "/site"));
+            assertTrue(batched.paths.isEmpty());
+        } finally {
+            EventUtil.endBatch();
+        }
+
+        assertEquals(5, immediate.batches);
+        assertEquals(1, batched.batches);
+        assertEquals(List.of("default:/site", "default:/site/b", "default:/site-a", "other:/site"),
+                batched.workspacePaths);
+        assertFalse(EventUtil.isBatching());
+    }
+
+    @Test
+    public void eventsAreNotRaisedWhileSuppressed() throws Exception {
+        RecordingListener immediate = register(new RecordingListener());
+        RecordingListener batched = register(new RecordingBatchedListener(false));
+
+        EventUtil.beginBatch();
+        try {
+            EventUtil.runWithoutSaveEvents(() -> {
+                EventUtil.raiseSaveEvent(node("default", "/hash"));
+                assertTrue(EventUtil.isSaveEventsSuppressed());
+            });
+            EventUtil.raiseSaveEvent(node("default", "/page"));
+        } finally {
+            EventUtil.endBatch();
+        }
+
+        assertFalse(EventUtil.isSaveEventsSuppressed());
+        assertEquals(List.of("/page"), immediate.paths);
+        assertEquals(List.of("/page"), batched.paths);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void endingBatchThatWasNotStartedFails() {
+        EventUtil.endBatch();
+    }
+
+    @Test
+    public void asynchronousListenersReceiveBatchOnDispatchThread() throws Exception {
+        RecordingBatchedListener listener = register(new RecordingBatchedListener(true));
+
+        EventUtil.beginBatch();
+        try {
+            EventUtil.raiseSaveEvent(node("default", "/a"));
+        } finally {
+            EventUtil.endBatch();
+        }
+
+        assertTrue(listener.delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("/a"), listener.paths);
+        assertNotSame(Thread.currentThread(), listener.thread);
+    }
+
+    @Test
+    public void shutdownStopsDispatchThreadUntilNextBatch() throws Exception {
+        RecordingBatchedListener first = register(new RecordingBatchedListener(true));
+        EventUtil.beginBatch();
+        try {
+            EventUtil.raiseSaveEvent(node("default", "/a"));
+        } finally {
+            EventUtil.endBatch();
+        }
+        assertTrue(first.delivered.await(5, TimeUnit.SECONDS));
+
+        Thread dispatchThread = first.thread;
+        EventUtil.shutdownAsynchronousExecutor();
+        dispatchThread.join(5000);
+        assertFalse(dispatchThread.isAlive());
+
+        RecordingBatchedListener second = register(new RecordingBatchedListener(true));
+        EventUtil.beginBatch();
+        try {
+            EventUtil.raiseSaveEvent(node("default", "/b"));
+        } finally {
+            EventUtil.endBatch();
+        }
+        assertTrue(second.delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("/b"), second.paths);
+        assertNotSame(dispatchThread, second.thread);
+    }
+
+    private <T extends SaveEventListener> T register(T listener) {
+        EventUtil.registerSaveEventListener(listener);
+        registered.add(listener);
+        return listener;
+    }
+
+    private static JcrNode node(String workspaceName, String path) {
+        JcrWorkspace workspace = proxy(JcrWorkspace.class, "getName", workspaceName);
+        JcrSession session = (JcrSession) Proxy.newProxyInstance(EventUtilTest.class.getClassLoader(),
+                new Class<?>[]{JcrSession.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getWorkspace":
+                            return workspace;
+                        case "getUserID":
+                            return "admin";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return (JcrNode) Proxy.newProxyInstance(EventUtilTest.class.getClassLoader(), new Class<?>[]{JcrNode.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getPath":
+                            return path;
+                        case "getIdentifier":
+                            return workspaceName + path;
+                        case "getSession":
+                            return session;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static <T> T proxy(Class<T> type, String methodName, Object result) {
+        return type.cast(Proxy.newProxyInstance(EventUtilTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (method.getName().equals(methodName)) {
+                        return result;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+    }
+
+    private static class RecordingListener implements SaveEventListener {
+        final List<String> paths = new ArrayList<String>();
+        final List<String> workspacePaths = new ArrayList<String>();
+        int batches;
+
+        @Override
+        public void onEvent(EventIterator events) {
+            batches++;
+            while (events.hasNext()) {
+                Event event = events.nextEvent();
+                try {
+                    paths.add(event.getPath());
+                    workspacePaths.add(((SaveEvent) event).getWorkspaceName() + ":" + event.getPath());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    private static class RecordingBatchedListener extends RecordingListener implements BatchedSaveEventListener {
+        private final boolean asynchronous;
+        final CountDownLatch delivered = new CountDownLatch(1);
+        volatile Thread thread;
+
+        private RecordingBatchedListener(boolean asynchronous) {
+            this.asynchronous = asynchronous;
+        }
+
+        @Override
+        public boolean isAsynchronous() {
+            return asynchronous;
+        }
+
+        @Override
+        public void onEvent(EventIterator events) {
+            super.onEvent(events);
+            thread = Thread.currentThread();
+            delivered.countDown();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr.base.event;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+
+/**
+ * Measures {@link ChangeLog} throughput for bulk changes such as a WebDAV folder import. Not run as part of the test
+ * suite, start it with the test classpath:
+ * <p>
+ * <pre>
+ * java -cp ... org.brixcms.jcr.base.event.ChangeLogBenchmark [eventCount...]
+ * </pre>
+ * <p>
+ * Each run adds a node and sets a property on it for half of the events, spread over folders of 100 nodes, then
+ * discards the pending events folder by folder as item saves do.
+ */
+public class ChangeLogBenchmark {
+    private static final int FOLDER_SIZE = 100;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {1000, 10000, 100000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        // warm up
+        run(sizes[0]);
+        run(sizes[0]);
+
+        for (int size : sizes) {
+            long[] nanos = run(size);
+            System.out.println(String.format(Locale.ROOT, "%,8d events  add %,14.0f events/s  remove %,14.0f events/s",
+                    size, size / (nanos[0] / 1e9), size / (nanos[1] / 1e9)));
+        }
+    }
+
+    private static long[] run(int eventCount) throws RepositoryException {
+        int nodeCount = eventCount / 2;
+        List<Event> events = new ArrayList<Event>(eventCount);
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = node("/bench/folder" + (i / FOLDER_SIZE) + "/node" + i);
+            events.add(new AddNodeEvent(node));
+            events.add(new SetPropertyEvent(property(node, "jcr:data")));
+        }
+
+        ChangeLog changeLog = new ChangeLog();
+        long start = System.nanoTime();
+        for (Event event : events) {
+            changeLog.addEvent(event);
+        }
+        long added = System.nanoTime();
+
+        int removed = 0;
+        int folders = (nodeCount + FOLDER_SIZE - 1) / FOLDER_SIZE;
+        for (int f = 0; f < folders; f++) {
+            removed += changeLog.removeAndGetAffectedEvents("/bench/folder" + f).size();
+        }
+        long end = System.nanoTime();
+
+        if (removed != events.size()) {
+            throw new IllegalStateException("Expected " + events.size() + " events, got " + removed);
+        }
+        return new long[]{added - start, end - added};
+    }
+
+    private static Node node(final String path) {
+        return (Node) Proxy.newProxyInstance(ChangeLogBenchmark.class.getClassLoader(), new Class<?>[]{Node.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getPath":
+                            return path;
+                        case "getName":
+                            return path.substring(path.lastIndexOf('/') + 1);
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "Node[" + path + "]";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static Property property(final Node parent, final String name) {
+        return (Property) Proxy.newProxyInstance(ChangeLogBenchmark.class.getClassLoader(),
+                new Class<?>[]{Property.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getParent":
+                            return parent;
+                        case "getName":
+                            return name;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.brixcms.jcr.base.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+
+import org.junit.Test;
+
+public class ChangeLogTest {
+    private final Map<Node, String> paths = new IdentityHashMap<Node, String>();
+
+    @Test
+    public void repeatedPropertyChangesAreCoalesced() throws Exception {
+        Node node = node("/a");
+        ChangeLog changeLog = new ChangeLog();
+
+        changeLog.addEvent(new SetPropertyEvent(property(node, "p")));
+        changeLog.addEvent(new SetPropertyEvent(property(node, "q")));
+        SetPropertyEvent last = new SetPropertyEvent(property(node, "p"));
+        changeLog.addEvent(last);
+
+        assertEquals(2, changeLog.size());
+        List<Event> events = changeLog.removeAndGetAffectedEvents(null);
+        assertEquals("q", ((SetPropertyEvent) events.get(0)).getPropertyName());
+        assertSame(last, events.get(1));
+    }
+
+    @Test
+    public void affectedEventsAreReturnedInInsertionOrder() throws Exception {
+        Node folder = node("/folder");
+        Node b = node("/folder/b");
+        Node a = node("/folder/a");
+        ChangeLog changeLog = new ChangeLog();
+
+        AddNodeEvent first = new AddNodeEvent(b);
+        AddNodeEvent second = new AddNodeEvent(a);
+        SetPropertyEvent third = new SetPropertyEvent(property(folder, "p"));
+        changeLog.addEvent(first);
+        changeLog.addEvent(second);
+        changeLog.addEvent(third);
+
+        List<Event> events = changeLog.removeAndGetAffectedEvents("/folder");
+        assertEquals(List.of(first, second, third), events);
+        assertEquals(0, changeLog.size());
+    }
+
+    @Test
+    public void siblingWithCommonPrefixIsNotAffected() throws Exception {
+        ChangeLog changeLog = new ChangeLog();
+        AddNodeEvent sibling = new AddNodeEvent(node("/ab"));
+        changeLog.addEvent(new AddNodeEvent(node("/a")));
+        changeLog.addEvent(new AddNodeEvent(node("/a/c")));
+        changeLog.addEvent(sibling);
+
+        assertEquals(2, changeLog.removeAndGetAffectedEvents("/a").size());
+        assertEquals(List.of(sibling), changeLog.removeAndGetAffectedEvents(null));
+    }
+
+    @Test
+    public void removingNodeDropsEventsOfItsSubtree() throws Exception {
+        Node parent = node("/p");
+        Node removed = node("/p/x");
+        Node sibling = node("/p/xy");
+        ChangeLog changeLog = new ChangeLog();
+        changeLog.addEvent(new SetPropertyEvent(property(removed, "p")));
+        changeLog.addEvent(new AddNodeEvent(node("/p/x/child")));
+        changeLog.addEvent(new SetPropertyEvent(property(sibling, "p")));
+
+        changeLog.addEvent(new BeforeRemoveNodeEvent(removed));
+
+        List<Event> events = changeLog.removeAndGetAffectedEvents("/p");
+        assertEquals(2, events.size());
+        assertTrue(events.get(0) instanceof SetPropertyEvent);
+        assertSame(parent, ((RemoveNodeEvent) events.get(1)).getParentNode());
+        assertEquals("x", ((RemoveNodeEvent) events.get(1)).getNodeName());
+    }
+
+    @Test
+    public void removingAddedNodeCancelsBothEvents() throws Exception {
+        node("/p");
+        Node added = node("/p/x");
+        ChangeLog changeLog = new ChangeLog();
+        changeLog.addEvent(new AddNodeEvent(added));
+
+        changeLog.addEvent(new BeforeRemoveNodeEvent(added));
+
+        assertEquals(0, changeLog.size());
+    }
+
+    @Test
+    public void moveReindexesEventsBelowSource() throws Exception {
+        Node moved = node("/a/x");
+        Node child = node("/a/x/child");
+        ChangeLog changeLog = new ChangeLog();
+        SetPropertyEvent property = new SetPropertyEvent(property(child, "p"));
+        changeLog.addEvent(property);
+
+        paths.put(moved, "/b/x");
+        paths.put(child, "/b/x/child");
+        changeLog.addEvent(new MoveNodeEvent(moved, "/a/x"));
+
+        assertTrue(changeLog.removeAndGetAffectedEvents("/a").isEmpty());
+        List<Event> events = changeLog.removeAndGetAffectedEvents("/b");
+        assertEquals(2, events.size());
+        assertSame(property, events.get(0));
+    }
+
+    @Test
+    public void unobservedMoveIsReportedThroughRefreshPaths() throws Exception {
+        Node moved = node("/a/x");
+        Node child = node("/a/x/child");
+        ChangeLog changeLog = new ChangeLog();
+        SetPropertyEvent property = new SetPropertyEvent(property(child, "p"));
+        changeLog.addEvent(property);
+
+        // a workspace move does not add a move event
+        paths.put(moved, "/b/x");
+        paths.put(child, "/b/x/child");
+        changeLog.refreshPaths("/a/x");
+
+        assertTrue(changeLog.removeAndGetAffectedEvents("/a").isEmpty());
+        assertEquals(List.of(property), changeLog.removeAndGetAffectedEvents("/b"));
+    }
+
+    @Test
+    public void eventIsReindexedWhenItReadsItsPathWhileNormalizing() throws Exception {
+        Node a = node("/a");
+        node("/b");
+        Node moved = node("/a/x");
+        ChangeLog changeLog = new ChangeLog();
+        NodeEvent event = new NodeEvent(moved) {
+            @Override
+            Event onNewEvent(Event event, QueueCallback queueCallback) throws RepositoryException {
+                setNodePath(getNode().getPath());
+                return super.onNewEvent(event, queueCallback);
+            }
+        };
+        changeLog.addEvent(event);
+
+        paths.put(moved, "/b/x");
+        AddNodeEvent parent = new AddNodeEvent(a);
+        changeLog.addEvent(parent);
+
+        assertEquals(List.of(parent), changeLog.removeAndGetAffectedEvents("/a"));
+        assertEquals(List.of(event), changeLog.removeAndGetAffectedEvents("/b"));
+    }
+
+    private Node node(String path) {
+        final Node[] node = new Node[1];
+        node[0] = (Node) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Node.class},
+                (proxy, method, args) -> {
+                    String current = paths.get(node[0]);
+                    switch (method.getName()) {
+                        case "getPath":
+                            return current;
+                        case "getName":
+                            return current.substring(current.lastIndexOf('/') + 1);
+                        case "getParent":
+                            String parentPath = current.substring(0, current.lastIndexOf('/'));
+                            for (Map.Entry<Node, String> entry : paths.entrySet()) {
+                                if (entry.getValue().equals(parentPath)) {
+                                    return entry.getKey();
+                                }
+                            }
+                            throw new IllegalStateException("No parent for " + current);
+                        case "isNodeType":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "Node[" + current + "]";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        paths.put(node[0], path);
+        return node[0];
+    }
+
+    private static Property property(final Node parent, final String name) {
+        return (Property) Proxy.newProxyInstance(ChangeLogTest.class.getClassLoader(), new Class<?>[]{Property.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getParent":
+                            return parent;
+                        case "getName":
+                            return name;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}